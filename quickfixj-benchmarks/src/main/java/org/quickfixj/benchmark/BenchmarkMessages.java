@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import quickfix.ConfigError;
+import quickfix.DataDictionary;
+import quickfix.FixVersions;
+import quickfix.Group;
+import quickfix.Message;
+import quickfix.field.Account;
+import quickfix.field.ApplVerID;
+import quickfix.field.AvgPx;
+import quickfix.field.BeginString;
+import quickfix.field.ClOrdID;
+import quickfix.field.CumQty;
+import quickfix.field.ExecID;
+import quickfix.field.ExecType;
+import quickfix.field.HandlInst;
+import quickfix.field.LastPx;
+import quickfix.field.LastQty;
+import quickfix.field.LeavesQty;
+import quickfix.field.MsgSeqNum;
+import quickfix.field.MsgType;
+import quickfix.field.NoPartyIDs;
+import quickfix.field.OrdStatus;
+import quickfix.field.OrdType;
+import quickfix.field.OrderID;
+import quickfix.field.OrderQty;
+import quickfix.field.PartyID;
+import quickfix.field.PartyIDSource;
+import quickfix.field.PartyRole;
+import quickfix.field.Price;
+import quickfix.field.SenderCompID;
+import quickfix.field.SendingTime;
+import quickfix.field.Side;
+import quickfix.field.Symbol;
+import quickfix.field.TargetCompID;
+import quickfix.field.TimeInForce;
+import quickfix.field.TransactTime;
+
+/**
+ * Messages and dictionaries shared by the benchmarks. Messages are built as
+ * plain {@link Message} objects so that they do not depend on the generated
+ * FIX 5.0 SP2 classes.
+ */
+final class BenchmarkMessages {
+
+    static final String SENDER = "BANZAI";
+    static final String TARGET = "EXEC";
+
+    private static final int[] PARTY_ORDER = { PartyID.FIELD, PartyIDSource.FIELD, PartyRole.FIELD };
+
+    private BenchmarkMessages() {
+    }
+
+    /**
+     * @param beginString FIX.4.4 or FIXT.1.1
+     * @return the transport dictionary for the begin string
+     */
+    static DataDictionary sessionDictionary(String beginString) {
+        return loadDictionary(FixVersions.BEGINSTRING_FIXT11.equals(beginString)
+                ? "FIXT11.xml"
+                : "FIX44.xml");
+    }
+
+    /**
+     * @param beginString FIX.4.4 or FIXT.1.1
+     * @return the application dictionary for the begin string
+     */
+    static DataDictionary applicationDictionary(String beginString) {
+        return loadDictionary(FixVersions.BEGINSTRING_FIXT11.equals(beginString)
+                ? "FIX50SP2.xml"
+                : "FIX44.xml");
+    }
+
+    private static DataDictionary loadDictionary(String fileName) {
+        try {
+            return new DataDictionary(fileName);
+        } catch (ConfigError e) {
+            throw new IllegalStateException("cannot load " + fileName, e);
+        }
+    }
+
+    /**
+     * Creates a NewOrderSingle with a complete header and two parties.
+     *
+     * @param beginString FIX.4.4 or FIXT.1.1
+     * @param clOrdID the order id
+     * @return the message
+     */
+    static Message newOrderSingle(String beginString, String clOrdID) {
+        final Message message = new Message();
+        setHeader(message, beginString, MsgType.ORDER_SINGLE, SENDER, TARGET);
+
+        message.setString(ClOrdID.FIELD, clOrdID);
+        message.setString(Account.FIELD, "ACCOUNT-1");
+        message.setChar(HandlInst.FIELD, HandlInst.AUTOMATED_EXECUTION_ORDER_PRIVATE);
+        message.setString(Symbol.FIELD, "IBM");
+        message.setChar(Side.FIELD, Side.BUY);
+        message.setUtcTimeStamp(TransactTime.FIELD, now(), true, false);
+        message.setDecimal(OrderQty.FIELD, new BigDecimal("100"));
+        message.setChar(OrdType.FIELD, OrdType.LIMIT);
+        message.setDecimal(Price.FIELD, new BigDecimal("123.45"));
+        message.setChar(TimeInForce.FIELD, TimeInForce.DAY);
+        message.addGroup(party("TRADER-1", PartyRole.ORDER_ORIGINATION_TRADER));
+        message.addGroup(party("FIRM-1", PartyRole.EXECUTING_FIRM));
+        return message;
+    }
+
+    /**
+     * Creates a partial fill ExecutionReport with a complete header and two
+     * parties.
+     *
+     * @param beginString FIX.4.4 or FIXT.1.1
+     * @param execID the execution id
+     * @return the message
+     */
+    static Message executionReport(String beginString, String execID) {
+        final Message message = new Message();
+        setHeader(message, beginString, MsgType.EXECUTION_REPORT, TARGET, SENDER);
+
+        message.setString(OrderID.FIELD, "ORDER-1");
+        message.setString(ClOrdID.FIELD, "CLORDID-1");
+        message.setString(ExecID.FIELD, execID);
+        message.setChar(ExecType.FIELD, ExecType.TRADE);
+        message.setChar(OrdStatus.FIELD, OrdStatus.PARTIALLY_FILLED);
+        message.setString(Account.FIELD, "ACCOUNT-1");
+        message.setString(Symbol.FIELD, "IBM");
+        message.setChar(Side.FIELD, Side.BUY);
+        message.setDecimal(OrderQty.FIELD, new BigDecimal("100"));
+        message.setChar(OrdType.FIELD, OrdType.LIMIT);
+        message.setDecimal(Price.FIELD, new BigDecimal("123.45"));
+        message.setDecimal(LastQty.FIELD, new BigDecimal("40"));
+        message.setDecimal(LastPx.FIELD, new BigDecimal("123.40"));
+        message.setDecimal(LeavesQty.FIELD, new BigDecimal("60"));
+        message.setDecimal(CumQty.FIELD, new BigDecimal("40"));
+        message.setDecimal(AvgPx.FIELD, new BigDecimal("123.40"));
+        message.setUtcTimeStamp(TransactTime.FIELD, now(), true, false);
+        message.addGroup(party("TRADER-1", PartyRole.ORDER_ORIGINATION_TRADER));
+        message.addGroup(party("FIRM-1", PartyRole.EXECUTING_FIRM));
+        return message;
+    }
+
+    private static void setHeader(Message message, String beginString, String msgType,
+            String sender, String target) {
+        final Message.Header header = message.getHeader();
+        header.setString(BeginString.FIELD, beginString);
+        header.setString(MsgType.FIELD, msgType);
+        header.setString(SenderCompID.FIELD, sender);
+        header.setString(TargetCompID.FIELD, target);
+        header.setInt(MsgSeqNum.FIELD, 1);
+        header.setUtcTimeStamp(SendingTime.FIELD, now(), true, false);
+        if (FixVersions.BEGINSTRING_FIXT11.equals(beginString)) {
+            header.setString(ApplVerID.FIELD, ApplVerID.FIX50SP2);
+        }
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+
+    private static Group party(String partyID, int partyRole) {
+        final Group party = new Group(NoPartyIDs.FIELD, PartyID.FIELD, PARTY_ORDER);
+        party.setString(PartyID.FIELD, partyID);
+        party.setChar(PartyIDSource.FIELD, PartyIDSource.PROPRIETARY_CUSTOM_CODE);
+        party.setInt(PartyRole.FIELD, partyRole);
+        return party;
+    }
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.quickfixj.CharsetSupport;
+
+import quickfix.FieldNotFound;
+import quickfix.FixedPointDecimal;
+import quickfix.InvalidMessage;
+import quickfix.Message;
+import quickfix.field.CumQty;
+import quickfix.field.LastPx;
+import quickfix.field.OrderQty;
+import quickfix.field.Price;
+
+/**
+ * Reads Price, OrderQty, LastPx and CumQty from an ExecutionReport as
+ * BigDecimals, fixed-point decimals and doubles. With
+ * <code>fromBytes=true</code> the message is parsed from bytes, so that the
+ * values are converted from the message bytes, otherwise from Strings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecimalFieldBenchmark {
+
+    private static final int[] TAGS = { Price.FIELD, OrderQty.FIELD, LastPx.FIELD, CumQty.FIELD };
+
+    @Param({ "true", "false" })
+    public boolean fromBytes;
+
+    private Message message;
+    private final FixedPointDecimal value = new FixedPointDecimal();
+
+    @Setup
+    public void setUp() throws InvalidMessage {
+        final String text = BenchmarkMessages.executionReport("FIX.4.4", "EXEC-1").toString();
+        message = new Message();
+        if (fromBytes) {
+            final byte[] data = text.getBytes(CharsetSupport.getCharsetInstance());
+            message.fromBytes(data, 0, data.length, null, false);
+        } else {
+            message.fromString(text, null, false);
+        }
+    }
+
+    @Benchmark
+    public void bigDecimal(Blackhole blackhole) throws FieldNotFound {
+        for (int tag : TAGS) {
+            final BigDecimal decimal = message.getDecimal(tag);
+            blackhole.consume(decimal);
+        }
+    }
+
+    @Benchmark
+    public void fixedPoint(Blackhole blackhole) throws FieldNotFound {
+        for (int tag : TAGS) {
+            blackhole.consume(message.getDecimal(tag, value).getMantissa());
+        }
+    }
+
+    @Benchmark
+    public void primitiveDouble(Blackhole blackhole) throws FieldNotFound {
+        for (int tag : TAGS) {
+            blackhole.consume(message.getDouble(tag));
+        }
+    }
+}
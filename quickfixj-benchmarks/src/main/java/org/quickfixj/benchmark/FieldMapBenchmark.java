@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import quickfix.Field;
+import quickfix.FieldMap;
+import quickfix.FieldNotFound;
+import quickfix.Group;
+import quickfix.Message;
+import quickfix.StringField;
+
+/**
+ * Compares the FieldMap field storage with the <code>TreeMap</code> keyed by a
+ * field order comparator that FieldMap used before. Fields are added in wire
+ * order, as the parser does, then looked up and iterated.
+ * <p>
+ * With <code>ordered=true</code> the fields are stored in a group with a field
+ * order, otherwise in a message body, which is sorted by tag.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldMapBenchmark {
+
+    // NewOrderSingle fields in wire order
+    private static final int[] TAGS = { 11, 1, 21, 18, 110, 111, 100, 55, 65, 48, 22, 167, 207,
+            54, 60, 38, 40, 44, 99, 15, 59, 126, 528, 58 };
+
+    @Param({ "true", "false" })
+    public boolean ordered;
+
+    private String[] values;
+    private FieldMap fieldMap;
+    private TreeMap<Integer, Field<?>> treeMap;
+
+    @Setup
+    public void setUp() {
+        values = new String[TAGS.length];
+        for (int i = 0; i < TAGS.length; i++) {
+            values[i] = "VALUE-" + TAGS[i];
+        }
+        fieldMap = buildFieldMap();
+        treeMap = buildTreeMap();
+    }
+
+    @Benchmark
+    public FieldMap buildFieldMap() {
+        final FieldMap map = ordered ? new Group(TAGS[0], TAGS[0], TAGS) : new Message();
+        for (int i = 0; i < TAGS.length; i++) {
+            map.setString(TAGS[i], values[i]);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public TreeMap<Integer, Field<?>> buildTreeMap() {
+        final TreeMap<Integer, Field<?>> map = new TreeMap<Integer, Field<?>>(
+                ordered ? new FieldOrderComparator(TAGS) : null);
+        for (int i = 0; i < TAGS.length; i++) {
+            map.put(TAGS[i], new StringField(TAGS[i], values[i]));
+        }
+        return map;
+    }
+
+    @Benchmark
+    public void lookupFieldMap(Blackhole blackhole) throws FieldNotFound {
+        for (int tag : TAGS) {
+            blackhole.consume(fieldMap.getString(tag));
+        }
+    }
+
+    @Benchmark
+    public void lookupTreeMap(Blackhole blackhole) {
+        for (int tag : TAGS) {
+            blackhole.consume(((StringField) treeMap.get(tag)).getValue());
+        }
+    }
+
+    @Benchmark
+    public int iterateFieldMap() {
+        int sum = 0;
+        for (final Iterator<Field<?>> i = fieldMap.iterator(); i.hasNext();) {
+            sum += i.next().getTag();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int iterateTreeMap() {
+        int sum = 0;
+        for (final Field<?> field : treeMap.values()) {
+            sum += field.getTag();
+        }
+        return sum;
+    }
+
+    /**
+     * The comparator FieldMap used with its TreeMap.
+     */
+    private static final class FieldOrderComparator implements Comparator<Integer>, Serializable {
+        static final long serialVersionUID = 1L;
+
+        private final int[] fieldOrder;
+
+        FieldOrderComparator(int[] fieldOrder) {
+            this.fieldOrder = fieldOrder;
+        }
+
+        private int rank(int field) {
+            for (int i = 0; i < fieldOrder.length; i++) {
+                if (field == fieldOrder[i]) {
+                    return i;
+                }
+            }
+            return Integer.MAX_VALUE; // unspecified fields are last
+        }
+
+        public int compare(Integer tag1, Integer tag2) {
+            final int rank1 = rank(tag1);
+            final int rank2 = rank(tag2);
+            return rank1 != Integer.MAX_VALUE || rank2 != Integer.MAX_VALUE
+                    ? rank1 - rank2
+                    : tag1 - tag2;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import quickfix.ApplicationAdapter;
+import quickfix.DefaultSessionFactory;
+import quickfix.FixVersions;
+import quickfix.MemoryStoreFactory;
+import quickfix.Message;
+import quickfix.MessageUtils;
+import quickfix.Session;
+import quickfix.SessionFactory;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+import quickfix.mina.AbstractIoHandler;
+import quickfix.mina.NetworkingOptions;
+import quickfix.mina.SessionConnector;
+
+/**
+ * Inbound message handling in {@link AbstractIoHandler#messageReceived}, from
+ * the decoded message string to the parsed message that is handed to the
+ * event handling strategy. A connection bound to its session skips extracting
+ * the session ID from the header; an unbound connection takes the lookup path
+ * that every message used to take, and the lookup alone is measured as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IoHandlerBenchmark {
+
+    @Param({ "FIX.4.4", "FIXT.1.1" })
+    public String beginString;
+
+    private Session session;
+    private IoSession boundIoSession;
+    private IoSession unboundIoSession;
+    private ReceivingIoHandler handler;
+    private String messageString;
+
+    @Setup
+    public void setUp() throws Exception {
+        // the order is sent by the counterparty, so the session is its reverse
+        final SessionID sessionID = new SessionID(beginString, BenchmarkMessages.TARGET,
+                BenchmarkMessages.SENDER);
+        final SessionSettings settings = new SessionSettings();
+        settings.setString(sessionID, SessionFactory.SETTING_CONNECTION_TYPE,
+                SessionFactory.ACCEPTOR_CONNECTION_TYPE);
+        settings.setString(sessionID, Session.SETTING_START_TIME, "00:00:00");
+        settings.setString(sessionID, Session.SETTING_END_TIME, "00:00:00");
+        settings.setString(sessionID, Session.SETTING_USE_DATA_DICTIONARY, "Y");
+        if (FixVersions.BEGINSTRING_FIXT11.equals(beginString)) {
+            settings.setString(sessionID, Session.SETTING_TRANSPORT_DATA_DICTIONARY, "FIXT11.xml");
+            settings.setString(sessionID, Session.SETTING_APP_DATA_DICTIONARY, "FIX50SP2.xml");
+            settings.setString(sessionID, Session.SETTING_DEFAULT_APPL_VER_ID, FixVersions.FIX50SP2);
+        } else {
+            settings.setString(sessionID, Session.SETTING_DATA_DICTIONARY, "FIX44.xml");
+        }
+        session = new DefaultSessionFactory(new ApplicationAdapter(), new MemoryStoreFactory(),
+                null).create(sessionID, settings);
+
+        boundIoSession = new DummySession();
+        boundIoSession.setAttribute(SessionConnector.QF_SESSION, session);
+        unboundIoSession = new DummySession();
+        handler = new ReceivingIoHandler();
+        messageString = BenchmarkMessages.newOrderSingle(beginString, "ORDER-1").toString();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        session.close();
+    }
+
+    @Benchmark
+    public Message boundSession() throws Exception {
+        handler.messageReceived(boundIoSession, messageString);
+        return handler.message;
+    }
+
+    @Benchmark
+    public Message unboundSession() throws Exception {
+        handler.messageReceived(unboundIoSession, messageString);
+        return handler.message;
+    }
+
+    @Benchmark
+    public Session reverseSessionIDLookup() {
+        return Session.lookupSession(MessageUtils.getReverseSessionID(messageString));
+    }
+
+    /**
+     * Keeps the parsed message instead of passing it to an event handling
+     * strategy.
+     */
+    private static final class ReceivingIoHandler extends AbstractIoHandler {
+        private Message message;
+
+        ReceivingIoHandler() throws Exception {
+            super(new NetworkingOptions(new Properties()), null);
+        }
+
+        @Override
+        protected void processMessage(IoSession ioSession, Message message) {
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import quickfix.DataDictionary;
+import quickfix.FieldNotFound;
+import quickfix.FixVersions;
+import quickfix.IncorrectTagValue;
+import quickfix.InvalidMessage;
+import quickfix.Message;
+import quickfix.SessionID;
+import quickfix.UnsupportedMessageType;
+import quickfix.field.MsgType;
+import quickfix.fix44.ExecutionReport;
+import quickfix.fix44.NewOrderSingle;
+import quickfix.fix44.OrderCancelRequest;
+
+/**
+ * Dispatch of a parsed FIX 4.4 application message to its handler by the
+ * reflective quickfix.MessageCracker and by the generated
+ * quickfix.fix44.MessageCracker.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCrackerBenchmark {
+
+    @Param({ MsgType.ORDER_SINGLE, MsgType.EXECUTION_REPORT })
+    public String msgType;
+
+    private final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER",
+            "TARGET");
+    private final ReflectiveHandler reflectiveHandler = new ReflectiveHandler();
+    private final GeneratedHandler generatedHandler = new GeneratedHandler();
+    private Message message;
+
+    @Setup
+    public void setUp() throws InvalidMessage {
+        final DataDictionary dictionary = BenchmarkMessages
+                .applicationDictionary(FixVersions.BEGINSTRING_FIX44);
+        if (MsgType.EXECUTION_REPORT.equals(msgType)) {
+            message = new ExecutionReport();
+            message.fromString(BenchmarkMessages.executionReport(FixVersions.BEGINSTRING_FIX44,
+                    "EXEC-1").toString(), dictionary, false);
+        } else {
+            message = new NewOrderSingle();
+            message.fromString(BenchmarkMessages.newOrderSingle(FixVersions.BEGINSTRING_FIX44,
+                    "ORDER-1").toString(), dictionary, false);
+        }
+    }
+
+    @Benchmark
+    public long reflective() throws UnsupportedMessageType, FieldNotFound, IncorrectTagValue {
+        reflectiveHandler.crack(message, sessionID);
+        return reflectiveHandler.count;
+    }
+
+    @Benchmark
+    public long generated() throws UnsupportedMessageType, FieldNotFound, IncorrectTagValue {
+        generatedHandler.crack(message, sessionID);
+        return generatedHandler.count;
+    }
+
+    public static class ReflectiveHandler extends quickfix.MessageCracker {
+        long count;
+
+        public void onMessage(NewOrderSingle message, SessionID sessionID) {
+            count++;
+        }
+
+        public void onMessage(OrderCancelRequest message, SessionID sessionID) {
+            count += 2;
+        }
+
+        public void onMessage(ExecutionReport message, SessionID sessionID) {
+            count += 3;
+        }
+    }
+
+    public static class GeneratedHandler extends quickfix.fix44.MessageCracker {
+        long count;
+
+        @Override
+        public void onMessage(NewOrderSingle message, SessionID sessionID) {
+            count++;
+        }
+
+        @Override
+        public void onMessage(OrderCancelRequest message, SessionID sessionID) {
+            count += 2;
+        }
+
+        @Override
+        public void onMessage(ExecutionReport message, SessionID sessionID) {
+            count += 3;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quickfixj.CharsetSupport;
+
+import quickfix.Message;
+import quickfix.MessageWriter;
+
+/**
+ * Encoding of a NewOrderSingle: Message.toString() (FieldMap.calculateString),
+ * toString() followed by the charset encoding done by the MINA encoder, and
+ * the single pass MessageWriter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageEncodeBenchmark {
+
+    @Param({ "FIX.4.4", "FIXT.1.1" })
+    public String beginString;
+
+    private Message message;
+    private Charset charset;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        message = BenchmarkMessages.newOrderSingle(beginString, "ORDER-1");
+        charset = CharsetSupport.getCharsetInstance();
+        buffer = ByteBuffer.allocate(1024);
+    }
+
+    @Benchmark
+    public String toStringEncode() {
+        return message.toString();
+    }
+
+    @Benchmark
+    public byte[] toStringBytesEncode() {
+        return message.toString().getBytes(charset);
+    }
+
+    @Benchmark
+    public ByteBuffer messageWriterEncode() {
+        buffer.clear();
+        return new MessageWriter(buffer, charset).write(message);
+    }
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.quickfixj.CharsetSupport;
+
+import quickfix.DataDictionary;
+import quickfix.FieldNotFound;
+import quickfix.InvalidMessage;
+import quickfix.Message;
+import quickfix.field.Price;
+
+/**
+ * Parsing of a NewOrderSingle from a String and from the raw message bytes,
+ * using the FIX 4.4 or the FIXT 1.1/FIX 5.0 SP2 dictionaries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageParseBenchmark {
+
+    @Param({ "FIX.4.4", "FIXT.1.1" })
+    public String beginString;
+
+    private DataDictionary sessionDictionary;
+    private DataDictionary applicationDictionary;
+    private String messageString;
+    private byte[] messageBytes;
+
+    @Setup
+    public void setUp() {
+        sessionDictionary = BenchmarkMessages.sessionDictionary(beginString);
+        applicationDictionary = BenchmarkMessages.applicationDictionary(beginString);
+        messageString = BenchmarkMessages.newOrderSingle(beginString, "ORDER-1").toString();
+        messageBytes = messageString.getBytes(CharsetSupport.getCharsetInstance());
+    }
+
+    @Benchmark
+    public Message parseString() throws InvalidMessage {
+        final Message message = new Message();
+        message.fromString(messageString, sessionDictionary, applicationDictionary, false);
+        return message;
+    }
+
+    @Benchmark
+    public Message parseBytes() throws InvalidMessage {
+        final Message message = new Message();
+        message.fromBytes(messageBytes, 0, messageBytes.length, sessionDictionary,
+                applicationDictionary, false);
+        return message;
+    }
+
+    @Benchmark
+    public Object parseStringAndReadPrice() throws InvalidMessage, FieldNotFound {
+        return parseString().getDecimal(Price.FIELD);
+    }
+
+    @Benchmark
+    public Object parseBytesAndReadPrice() throws InvalidMessage, FieldNotFound {
+        return parseBytes().getDecimal(Price.FIELD);
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import quickfix.Message;
+import quickfix.Session;
+import quickfix.mina.LinkedSessionMessageQueue;
+import quickfix.mina.RingBufferSessionMessageQueue;
+import quickfix.mina.SessionMessageQueue;
+
+/**
+ * Handing received messages to the message processor thread through the
+ * queues of SingleThreadedEventHandlingStrategy. The benchmark threads are
+ * the producers (run with -t for several I/O threads) and a background
+ * thread consumes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageQueueBenchmark {
+
+    @Param({ "linked", "ringbuffer-park", "ringbuffer-yield", "ringbuffer-busyspin" })
+    public String queue;
+
+    private final Message message = new Message();
+    private SessionMessageQueue messageQueue;
+    private Thread consumer;
+    private volatile boolean running;
+
+    @Setup
+    public void setUp() {
+        if ("linked".equals(queue)) {
+            messageQueue = new LinkedSessionMessageQueue(10000);
+        } else {
+            final String waitStrategy = queue.substring(queue.indexOf('-') + 1);
+            messageQueue = new RingBufferSessionMessageQueue(10000,
+                    "busyspin".equals(waitStrategy) ? RingBufferSessionMessageQueue.WaitStrategy.BUSY_SPIN
+                            : RingBufferSessionMessageQueue.WaitStrategy.valueOf(waitStrategy.toUpperCase()));
+        }
+        final SessionMessageQueue.Handler handler = new SessionMessageQueue.Handler() {
+            public void onMessage(Session session, Message message) {
+            }
+        };
+        running = true;
+        consumer = new Thread("consumer") {
+            public void run() {
+                while (running) {
+                    try {
+                        messageQueue.poll(handler, 10, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        };
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        consumer.join();
+    }
+
+    @Benchmark
+    public void put() throws InterruptedException {
+        messageQueue.put(null, message);
+    }
+}
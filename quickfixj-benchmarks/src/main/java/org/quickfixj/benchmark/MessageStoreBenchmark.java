@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import quickfix.CachedFileStore;
+import quickfix.CachedFileStoreFactory;
+import quickfix.FileStore;
+import quickfix.FileStoreFactory;
+import quickfix.FixVersions;
+import quickfix.MappedFileStore;
+import quickfix.MappedFileStoreFactory;
+import quickfix.MessageStore;
+import quickfix.MessageStoreFactory;
+import quickfix.SessionID;
+import quickfix.SessionSettings;
+
+/**
+ * Persisting outgoing messages the way Session.sendRaw does: store the message
+ * and increment the next sender sequence number.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageStoreBenchmark {
+
+    @Param({ "FileStore", "CachedFileStore", "MappedFileStore" })
+    public String store;
+
+    /**
+     * N: no sync, Y: sync every write, G: sync through the group commit
+     * flusher. Run with several threads (-t) to see writes share syncs.
+     */
+    @Param({ "N", "Y", "G" })
+    public String sync;
+
+    private File directory;
+    private MessageStore messageStore;
+    private String messageString;
+    private int sequence;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = File.createTempFile("quickfixj-benchmark", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("cannot create " + directory);
+        }
+
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44,
+                BenchmarkMessages.SENDER, BenchmarkMessages.TARGET);
+        final SessionSettings settings = new SessionSettings();
+        settings.setString(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH, directory.getPath());
+        settings.setBool(sessionID, FileStoreFactory.SETTING_FILE_STORE_SYNC, !"N".equals(sync));
+        settings.setBool(sessionID, FileStoreFactory.SETTING_FILE_STORE_GROUP_COMMIT, "G".equals(sync));
+        // a synced mapped store forces its pages after every write
+        settings.setString(sessionID, MappedFileStoreFactory.SETTING_MAPPED_FILE_STORE_FORCE,
+                "N".equals(sync) ? "timer" : "message");
+        final MessageStoreFactory factory;
+        if ("CachedFileStore".equals(store)) {
+            factory = new CachedFileStoreFactory(settings);
+        } else if ("MappedFileStore".equals(store)) {
+            factory = new MappedFileStoreFactory(settings);
+        } else {
+            factory = new FileStoreFactory(settings);
+        }
+        messageStore = factory.create(sessionID);
+        messageString = BenchmarkMessages.newOrderSingle(FixVersions.BEGINSTRING_FIX44, "ORDER-1")
+                .toString();
+        sequence = messageStore.getNextSenderMsgSeqNum();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (messageStore instanceof FileStore) {
+            ((FileStore) messageStore).deleteFiles();
+        } else if (messageStore instanceof CachedFileStore) {
+            ((CachedFileStore) messageStore).deleteFiles();
+        } else if (messageStore instanceof MappedFileStore) {
+            ((MappedFileStore) messageStore).deleteFiles();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public boolean storeOutgoingMessage() throws IOException {
+        final boolean stored = messageStore.set(sequence++, messageString);
+        messageStore.incrNextSenderMsgSeqNum();
+        return stored;
+    }
+}
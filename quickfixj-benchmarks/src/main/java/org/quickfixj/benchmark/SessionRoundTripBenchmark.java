@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import quickfix.Acceptor;
+import quickfix.ApplicationAdapter;
+import quickfix.DefaultMessageFactory;
+import quickfix.FieldNotFound;
+import quickfix.FixVersions;
+import quickfix.Initiator;
+import quickfix.MemoryStoreFactory;
+import quickfix.Message;
+import quickfix.Session;
+import quickfix.SessionFactory;
+import quickfix.SessionID;
+import quickfix.SessionNotFound;
+import quickfix.SessionSettings;
+import quickfix.SocketAcceptor;
+import quickfix.SocketInitiator;
+import quickfix.field.AvgPx;
+import quickfix.field.ClOrdID;
+import quickfix.field.CumQty;
+import quickfix.field.ExecID;
+import quickfix.field.ExecType;
+import quickfix.field.LeavesQty;
+import quickfix.field.MsgType;
+import quickfix.field.OrdStatus;
+import quickfix.field.OrderID;
+import quickfix.field.OrderQty;
+import quickfix.field.Side;
+import quickfix.field.Symbol;
+
+/**
+ * NewOrderSingle to ExecutionReport round trip between an initiator and an
+ * acceptor running in the same process over a loopback socket. Both sides
+ * validate the messages with their data dictionaries. The sample time mode
+ * reports latency percentiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionRoundTripBenchmark {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    @Param({ "FIX.4.4", "FIXT.1.1" })
+    public String beginString;
+
+    private final BlockingQueue<Message> executionReports = new LinkedBlockingQueue<Message>();
+    private SocketAcceptor acceptor;
+    private SocketInitiator initiator;
+    private Session session;
+    private long orderCount;
+
+    @Setup
+    public void setUp() throws Exception {
+        final int port = freePort();
+        final SessionID acceptorSessionID = new SessionID(beginString, BenchmarkMessages.TARGET,
+                BenchmarkMessages.SENDER);
+        final SessionID initiatorSessionID = new SessionID(beginString, BenchmarkMessages.SENDER,
+                BenchmarkMessages.TARGET);
+
+        final SessionSettings acceptorSettings = settings(acceptorSessionID);
+        acceptorSettings.setString(acceptorSessionID, SessionFactory.SETTING_CONNECTION_TYPE,
+                SessionFactory.ACCEPTOR_CONNECTION_TYPE);
+        acceptorSettings.setLong(acceptorSessionID, Acceptor.SETTING_SOCKET_ACCEPT_PORT, port);
+        acceptor = new SocketAcceptor(new ExecutorApplication(), new MemoryStoreFactory(),
+                acceptorSettings, null, new DefaultMessageFactory(), null);
+
+        final SessionSettings initiatorSettings = settings(initiatorSessionID);
+        initiatorSettings.setString(initiatorSessionID, SessionFactory.SETTING_CONNECTION_TYPE,
+                SessionFactory.INITIATOR_CONNECTION_TYPE);
+        initiatorSettings.setString(initiatorSessionID, Initiator.SETTING_SOCKET_CONNECT_HOST,
+                "127.0.0.1");
+        initiatorSettings.setLong(initiatorSessionID, Initiator.SETTING_SOCKET_CONNECT_PORT, port);
+        initiatorSettings.setLong(initiatorSessionID, Session.SETTING_HEARTBTINT, 30);
+        initiatorSettings.setLong(initiatorSessionID, Initiator.SETTING_RECONNECT_INTERVAL, 1);
+        initiator = new SocketInitiator(new OrderApplication(), new MemoryStoreFactory(),
+                initiatorSettings, null, new DefaultMessageFactory(), null);
+
+        acceptor.start();
+        initiator.start();
+
+        session = Session.lookupSession(initiatorSessionID);
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (!session.isLoggedOn()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("initiator did not log on");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        initiator.stop(true);
+        acceptor.stop(true);
+    }
+
+    @Benchmark
+    public Message newOrderSingleToExecutionReport() throws InterruptedException {
+        final Message order = BenchmarkMessages.newOrderSingle(beginString, "ORDER-" + orderCount++);
+        if (!session.send(order)) {
+            throw new IllegalStateException("order was not sent");
+        }
+        final Message executionReport = executionReports.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (executionReport == null) {
+            throw new IllegalStateException("no ExecutionReport received");
+        }
+        return executionReport;
+    }
+
+    private SessionSettings settings(SessionID sessionID) {
+        final SessionSettings settings = new SessionSettings();
+        settings.setString(sessionID, Session.SETTING_START_TIME, "00:00:00");
+        settings.setString(sessionID, Session.SETTING_END_TIME, "00:00:00");
+        settings.setString(sessionID, Session.SETTING_USE_DATA_DICTIONARY, "Y");
+        if (FixVersions.BEGINSTRING_FIXT11.equals(beginString)) {
+            settings.setString(sessionID, Session.SETTING_TRANSPORT_DATA_DICTIONARY, "FIXT11.xml");
+            settings.setString(sessionID, Session.SETTING_APP_DATA_DICTIONARY, "FIX50SP2.xml");
+            settings.setString(sessionID, Session.SETTING_DEFAULT_APPL_VER_ID, FixVersions.FIX50SP2);
+        } else {
+            settings.setString(sessionID, Session.SETTING_DATA_DICTIONARY, "FIX44.xml");
+        }
+        return settings;
+    }
+
+    private static int freePort() throws IOException {
+        final ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Acknowledges every order with an ExecutionReport.
+     */
+    private static final class ExecutorApplication extends ApplicationAdapter {
+        private long execCount;
+
+        @Override
+        public void fromApp(Message message, SessionID sessionId) throws FieldNotFound {
+            if (!MsgType.ORDER_SINGLE.equals(message.getHeader().getString(MsgType.FIELD))) {
+                return;
+            }
+            final Message executionReport = new Message();
+            executionReport.getHeader().setString(MsgType.FIELD, MsgType.EXECUTION_REPORT);
+            executionReport.setString(OrderID.FIELD, message.getString(ClOrdID.FIELD));
+            executionReport.setString(ExecID.FIELD, Long.toString(++execCount));
+            executionReport.setString(ClOrdID.FIELD, message.getString(ClOrdID.FIELD));
+            executionReport.setChar(ExecType.FIELD, ExecType.NEW);
+            executionReport.setChar(OrdStatus.FIELD, OrdStatus.NEW);
+            executionReport.setString(Symbol.FIELD, message.getString(Symbol.FIELD));
+            executionReport.setChar(Side.FIELD, message.getChar(Side.FIELD));
+            executionReport.setDecimal(LeavesQty.FIELD, message.getDecimal(OrderQty.FIELD));
+            executionReport.setDecimal(CumQty.FIELD, BigDecimal.ZERO);
+            executionReport.setDecimal(AvgPx.FIELD, BigDecimal.ZERO);
+            try {
+                Session.sendToTarget(executionReport, sessionId);
+            } catch (SessionNotFound e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private final class OrderApplication extends ApplicationAdapter {
+        @Override
+        public void fromApp(Message message, SessionID sessionId) {
+            executionReports.add(message);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import quickfix.FieldConvertError;
+import quickfix.field.converter.UtcTimestampCodec;
+import quickfix.field.converter.UtcTimestampConverter;
+
+/**
+ * Measures formatting and parsing of UTC timestamps, as done for SendingTime
+ * on every message and for every log line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimestampBenchmark {
+
+    private Timestamp timestamp;
+    private String value;
+    private final byte[] buffer = new byte[UtcTimestampCodec.MAX_TIMESTAMP_LENGTH];
+
+    @Setup
+    public void setUp() {
+        timestamp = new Timestamp(System.currentTimeMillis());
+        value = UtcTimestampConverter.convert(timestamp, true, false);
+    }
+
+    @Benchmark
+    public String format() {
+        return UtcTimestampConverter.convert(timestamp, true, false);
+    }
+
+    @Benchmark
+    public int formatBytes() {
+        return UtcTimestampCodec.formatTimestamp(timestamp.getTime(), timestamp.getNanos(), 3,
+                buffer, 0);
+    }
+
+    @Benchmark
+    public Timestamp parse() throws FieldConvertError {
+        return UtcTimestampConverter.convert(value);
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package org.quickfixj.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import quickfix.DataDictionary;
+import quickfix.FieldNotFound;
+import quickfix.IncorrectDataFormat;
+import quickfix.IncorrectTagValue;
+import quickfix.InvalidMessage;
+import quickfix.Message;
+import quickfix.field.MsgType;
+
+/**
+ * DataDictionary validation of a parsed NewOrderSingle and ExecutionReport.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    @Param({ "FIX.4.4", "FIXT.1.1" })
+    public String beginString;
+
+    @Param({ MsgType.ORDER_SINGLE, MsgType.EXECUTION_REPORT })
+    public String msgType;
+
+    private DataDictionary sessionDictionary;
+    private DataDictionary applicationDictionary;
+    private Message message;
+
+    @Setup
+    public void setUp() throws InvalidMessage, IncorrectTagValue, FieldNotFound,
+            IncorrectDataFormat {
+        sessionDictionary = BenchmarkMessages.sessionDictionary(beginString);
+        applicationDictionary = BenchmarkMessages.applicationDictionary(beginString);
+        message = new Message();
+        final Message template = MsgType.EXECUTION_REPORT.equals(msgType)
+                ? BenchmarkMessages.executionReport(beginString, "EXEC-1")
+                : BenchmarkMessages.newOrderSingle(beginString, "ORDER-1");
+        message.fromString(template.toString(), sessionDictionary, applicationDictionary, false);
+        // fail early rather than measuring the exception path
+        validate();
+    }
+
+    @Benchmark
+    public Message validate() throws IncorrectTagValue, FieldNotFound, IncorrectDataFormat {
+        DataDictionary.validate(message, sessionDictionary, applicationDictionary);
+        return message;
+    }
+}
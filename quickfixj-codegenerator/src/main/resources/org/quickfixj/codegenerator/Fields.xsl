@@ -83,6 +83,10 @@ public class <xsl:value-of select="@name"/> extends <xsl:call-template name="get
 	public <xsl:value-of select="@name"/>(double data) {
 		super(<xsl:value-of select="@number"/>, new <xsl:value-of select="$dataType"/>(data));
 	}
+
+	public <xsl:value-of select="@name"/>(long mantissa, int scale) {
+		super(<xsl:value-of select="@number"/>, mantissa, scale);
+	}
 	</xsl:if>
 }
 </xsl:template>
@@ -119,12 +119,49 @@ public class MessageCracker {
 
 		String type = message.getHeader().getString(MsgType.FIELD);
 
-		<xsl:for-each select="//fix/messages/message">
-		<xsl:if test="position()!=1">
-		else </xsl:if>if (type.equals(<xsl:value-of select="@name"/>.MSGTYPE))
-			onMessage((<xsl:value-of select="@name"/>)message, sessionID);</xsl:for-each>
-		else
-			onMessage(message, sessionID);
+		// dispatch on the characters of the message type
+		switch (type.length()) {
+		case 1:
+			switch (type.charAt(0)) {<xsl:text/>
+		<xsl:for-each select="//fix/messages/message[string-length(@msgtype)=1]">
+			case '<xsl:value-of select="@msgtype"/>':
+				onMessage((<xsl:value-of select="@name"/>) message, sessionID);
+				return;<xsl:text/>
+		</xsl:for-each>
+			}
+			break;<xsl:text/>
+		<xsl:if test="//fix/messages/message[string-length(@msgtype)=2]">
+		case 2:
+			switch (type.charAt(0)) {<xsl:text/>
+			<xsl:for-each select="//fix/messages/message[string-length(@msgtype)=2]">
+			<xsl:variable name="first" select="substring(@msgtype, 1, 1)"/>
+			<xsl:if test="not(preceding-sibling::message[string-length(@msgtype)=2][substring(@msgtype, 1, 1)=$first])">
+			case '<xsl:value-of select="$first"/>':
+				switch (type.charAt(1)) {<xsl:text/>
+				<xsl:for-each select="../message[string-length(@msgtype)=2][substring(@msgtype, 1, 1)=$first]">
+				case '<xsl:value-of select="substring(@msgtype, 2, 1)"/>':
+					onMessage((<xsl:value-of select="@name"/>) message, sessionID);
+					return;<xsl:text/>
+				</xsl:for-each>
+				}
+				break;<xsl:text/>
+			</xsl:if>
+			</xsl:for-each>
+			}
+			break;<xsl:text/>
+		</xsl:if>
+		<xsl:if test="//fix/messages/message[string-length(@msgtype)&gt;2]">
+		default:<xsl:text/>
+			<xsl:for-each select="//fix/messages/message[string-length(@msgtype)&gt;2]">
+			if (type.equals(<xsl:value-of select="@name"/>.MSGTYPE)) {
+				onMessage((<xsl:value-of select="@name"/>) message, sessionID);
+				return;
+			}<xsl:text/>
+			</xsl:for-each>
+			break;<xsl:text/>
+		</xsl:if>
+		}
+		onMessage(message, sessionID);
 	}
 </xsl:template>
 
@@ -46,6 +46,7 @@ import quickfix.Session;
 import quickfix.SessionID;
 import quickfix.SessionSettings;
 import quickfix.mina.SessionConnector;
+import quickfix.mina.ThreadPerSessionEventHandlingStrategy;
 
 abstract class ConnectorAdmin implements ConnectorAdminMBean, MBeanRegistration {
     private final Logger log = LoggerFactory.getLogger(getClass());
@@ -130,6 +131,58 @@ abstract class ConnectorAdmin implements ConnectorAdminMBean, MBeanRegistration
         }
     }
 
+    public static class SessionDispatcher {
+        private final SessionID sessionID;
+        private final ThreadPerSessionEventHandlingStrategy strategy;
+
+        public SessionDispatcher(SessionID sessionID, ThreadPerSessionEventHandlingStrategy strategy) {
+            this.sessionID = sessionID;
+            this.strategy = strategy;
+        }
+
+        public SessionID getSessionID() {
+            return sessionID;
+        }
+
+        public int getQueueSize() {
+            return strategy.getQueueSize(sessionID);
+        }
+
+        public int getMaxQueueSize() {
+            return strategy.getMaxQueueSize(sessionID);
+        }
+
+        public long getMessageCount() {
+            return strategy.getMessageCount(sessionID);
+        }
+
+        public long getBatchCount() {
+            return strategy.getBatchCount(sessionID);
+        }
+
+        public int getMaxBatchSize() {
+            return strategy.getMaxBatchSize(sessionID);
+        }
+    }
+
+    public TabularData getDispatchers() throws IOException {
+        List<SessionDispatcher> dispatchers = new ArrayList<SessionDispatcher>();
+        ThreadPerSessionEventHandlingStrategy strategy = getThreadPerSessionEventHandlingStrategy();
+        if (strategy != null) {
+            for (SessionID sessionID : connector.getSessions()) {
+                dispatchers.add(new SessionDispatcher(sessionID, strategy));
+            }
+        }
+        try {
+            return tabularDataAdapter.fromBeanList("Dispatchers", "Dispatcher", "sessionID",
+                    dispatchers);
+        } catch (OpenDataException e) {
+            throw JmxSupport.toIOException(e);
+        }
+    }
+
+    protected abstract ThreadPerSessionEventHandlingStrategy getThreadPerSessionEventHandlingStrategy();
+
     public TabularData getLoggedOnSessions() throws OpenDataException {
         List<ObjectName> names = new ArrayList<ObjectName>();
         for (SessionID sessionID : connector.getSessions()) {
@@ -63,4 +63,14 @@ public interface ConnectorAdminMBean {
      * @return size of the queue; if this counters grows, the application does not consume FIX message quick enough
      */
     int getQueueSize();
+
+    /**
+     * Get the queue and batch statistics of the session dispatchers. There is
+     * only a row for each session if the connector dispatches the messages of
+     * each session on its own thread.
+     *
+     * @return a table with the statistics of each session dispatcher
+     * @throws IOException
+     */
+    TabularData getDispatchers() throws IOException;
 }
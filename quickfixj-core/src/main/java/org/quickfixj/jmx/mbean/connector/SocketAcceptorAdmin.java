@@ -34,6 +34,7 @@ import org.quickfixj.jmx.mbean.session.SessionJmxExporter;
 import org.quickfixj.jmx.openmbean.TabularDataAdapter;
 
 import quickfix.SessionID;
+import quickfix.mina.ThreadPerSessionEventHandlingStrategy;
 import quickfix.mina.acceptor.AbstractSocketAcceptor;
 
 /**
@@ -103,4 +104,8 @@ public class SocketAcceptorAdmin extends ConnectorAdmin implements SocketAccepto
         return acceptor.getQueueSize();
     }
 
+    protected ThreadPerSessionEventHandlingStrategy getThreadPerSessionEventHandlingStrategy() {
+        return acceptor.getThreadPerSessionEventHandlingStrategy();
+    }
+
 }
@@ -29,6 +29,7 @@ import org.quickfixj.jmx.mbean.JmxSupport;
 import org.quickfixj.jmx.mbean.session.SessionJmxExporter;
 import org.quickfixj.jmx.openmbean.TabularDataAdapter;
 
+import quickfix.mina.ThreadPerSessionEventHandlingStrategy;
 import quickfix.mina.initiator.AbstractSocketInitiator;
 import quickfix.mina.initiator.IoSessionInitiator;
 
@@ -56,4 +57,8 @@ class SocketInitiatorAdmin extends ConnectorAdmin implements SocketInitiatorAdmi
     public int getQueueSize() {
         return initiator.getQueueSize();
     }
+
+    protected ThreadPerSessionEventHandlingStrategy getThreadPerSessionEventHandlingStrategy() {
+        return initiator.getThreadPerSessionEventHandlingStrategy();
+    }
 }
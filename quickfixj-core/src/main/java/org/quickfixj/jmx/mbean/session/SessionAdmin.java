@@ -163,6 +163,14 @@ public class SessionAdmin extends NotificationBroadcasterSupport implements Sess
         return session.getExpectedTargetNum();
     }
 
+    public int getQueuedMessageCount() {
+        return session.getQueuedMessageCount();
+    }
+
+    public int getSpilledMessageCount() {
+        return session.getSpilledMessageCount();
+    }
+
     /* (non-Javadoc)
      * @see quickfix.jmx.SessionMBean#getMessages(int, int)
      */
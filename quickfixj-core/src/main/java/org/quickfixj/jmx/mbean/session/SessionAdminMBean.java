@@ -118,6 +118,22 @@ public interface SessionAdminMBean {
      */
     void setNextTargetMsgSeqNum(int next) throws IOException;
 
+    /**
+     * Get the number of messages received ahead of sequence that wait for a
+     * gap to be filled.
+     *
+     * @return the number of queued messages
+     */
+    int getQueuedMessageCount();
+
+    /**
+     * Get the number of queued messages that were written to disk because
+     * they exceeded the memory limit.
+     *
+     * @return the number of spilled messages
+     */
+    int getSpilledMessageCount();
+
     boolean isLogonSent();
 
     boolean isLogonReceived();
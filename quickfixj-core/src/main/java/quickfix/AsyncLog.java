@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Log that hands the calls over to a background writer, which forwards them to
+ * the underlying log in order.
+ *
+ * @see AsyncLogFactory
+ */
+class AsyncLog implements Log, Closeable {
+    private final AsyncLogWriter writer;
+    private final Log log;
+    private final AtomicLong droppedCount = new AtomicLong();
+    // only written while holding the write lock of the writer
+    private long reportedCount;
+
+    AsyncLog(AsyncLogWriter writer, Log log) {
+        this.writer = writer;
+        this.log = log;
+    }
+
+    /**
+     * Clears the underlying log once the entries queued before are written.
+     */
+    public void clear() {
+        writer.execute(this, AsyncLogWriter.CLEAR);
+    }
+
+    public void onIncoming(String message) {
+        enqueue(AsyncLogWriter.INCOMING, message);
+    }
+
+    public void onOutgoing(String message) {
+        enqueue(AsyncLogWriter.OUTGOING, message);
+    }
+
+    public void onEvent(String text) {
+        enqueue(AsyncLogWriter.EVENT, text);
+    }
+
+    public void onErrorEvent(String text) {
+        enqueue(AsyncLogWriter.ERROR_EVENT, text);
+    }
+
+    /**
+     * Waits until the entries queued so far are written to the underlying log.
+     */
+    public void flush() {
+        writer.execute(this, AsyncLogWriter.FLUSH);
+    }
+
+    /**
+     * Writes the queued entries and closes the underlying log if it is
+     * closeable.
+     */
+    public void close() throws IOException {
+        writer.execute(this, AsyncLogWriter.CLOSE);
+    }
+
+    private void enqueue(int type, String text) {
+        if (!writer.log(this, type, text)) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of entries of this log dropped because the ring was
+     * full.
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    Log getLog() {
+        return log;
+    }
+
+    /**
+     * Called by the writer for each queued entry, holding its write lock.
+     *
+     * @param dropped the number of entries of this log dropped before the
+     *        entry was queued
+     */
+    void write(int type, String text, long dropped) throws IOException {
+        if (dropped != reportedCount
+                && writer.getOverflowPolicy() == AsyncLogFactory.OverflowPolicy.REPORT) {
+            log.onErrorEvent("Async log dropped " + (dropped - reportedCount)
+                    + " entries because its queue was full");
+            reportedCount = dropped;
+        }
+        switch (type) {
+        case AsyncLogWriter.INCOMING:
+            log.onIncoming(text);
+            break;
+        case AsyncLogWriter.OUTGOING:
+            log.onOutgoing(text);
+            break;
+        case AsyncLogWriter.EVENT:
+            log.onEvent(text);
+            break;
+        case AsyncLogWriter.ERROR_EVENT:
+            log.onErrorEvent(text);
+            break;
+        case AsyncLogWriter.CLEAR:
+            log.clear();
+            break;
+        case AsyncLogWriter.CLOSE:
+            if (log instanceof Closeable) {
+                ((Closeable) log).close();
+            }
+            break;
+        default:
+            break;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+/**
+ * Log factory decorator that takes logging off the session threads. The logs
+ * created by the wrapped factory are written by a single background thread;
+ * sessions only capture their log calls in a preallocated ring buffer.
+ * <p>
+ * Entries of a log are written in the order they were logged, and
+ * {@link Log#clear()} as well as closing a log wait for the entries queued
+ * before them. Logs that add their own time stamps, like the file log, stamp
+ * an entry when it is written rather than when it was logged.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * LogFactory logFactory = new AsyncLogFactory(settings, new FileLogFactory(settings));
+ * </pre>
+ */
+public class AsyncLogFactory implements LocationAwareLogFactory {
+
+    /**
+     * Number of entries the ring buffer can hold. Rounded up to a power of
+     * two. The default is 8192.
+     */
+    public static final String SETTING_ASYNC_LOG_CAPACITY = "AsyncLogCapacity";
+
+    /**
+     * Maximum number of entries the writer takes from the ring buffer at once.
+     * The default is 256.
+     */
+    public static final String SETTING_ASYNC_LOG_BATCH_SIZE = "AsyncLogBatchSize";
+
+    /**
+     * What a session does when the ring buffer is full: <code>block</code>
+     * (the default) waits for the writer, <code>drop</code> discards the entry
+     * and <code>report</code> discards it and writes the number of discarded
+     * entries to the log once there is room again.
+     */
+    public static final String SETTING_ASYNC_LOG_OVERFLOW_POLICY = "AsyncLogOverflowPolicy";
+
+    static final int DEFAULT_CAPACITY = 8192;
+    static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * What happens to log calls when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait until the writer has made room. Nothing is lost. */
+        BLOCK,
+        /** Discard the entry. Discarded entries are only counted. */
+        DROP,
+        /** Discard the entry and write an error event with the count later. */
+        REPORT
+    }
+
+    private final LogFactory logFactory;
+    private final AsyncLogWriter writer;
+
+    /**
+     * Wraps a log factory with the default settings.
+     *
+     * @param logFactory the factory of the logs to write to
+     */
+    public AsyncLogFactory(LogFactory logFactory) {
+        this(logFactory, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Wraps a log factory.
+     *
+     * @param logFactory the factory of the logs to write to
+     * @param capacity the number of entries the ring buffer can hold
+     * @param batchSize the maximum number of entries written at once
+     * @param overflowPolicy what to do when the ring buffer is full
+     */
+    public AsyncLogFactory(LogFactory logFactory, int capacity, int batchSize,
+            OverflowPolicy overflowPolicy) {
+        this.logFactory = logFactory;
+        writer = new AsyncLogWriter(capacity, batchSize, overflowPolicy);
+    }
+
+    /**
+     * Wraps a log factory with configuration from the default section of the
+     * session settings.
+     *
+     * @param settings the session settings
+     * @param logFactory the factory of the logs to write to
+     * @throws ConfigError if a setting is invalid
+     */
+    public AsyncLogFactory(SessionSettings settings, LogFactory logFactory) throws ConfigError {
+        this(logFactory, getCapacity(settings), getBatchSize(settings), getOverflowPolicy(settings));
+    }
+
+    private static int getCapacity(SessionSettings settings) throws ConfigError {
+        final int capacity = getInt(settings, SETTING_ASYNC_LOG_CAPACITY, DEFAULT_CAPACITY);
+        if (capacity < 1) {
+            throw new ConfigError("Invalid " + SETTING_ASYNC_LOG_CAPACITY + ": " + capacity);
+        }
+        return capacity;
+    }
+
+    private static int getBatchSize(SessionSettings settings) throws ConfigError {
+        final int batchSize = getInt(settings, SETTING_ASYNC_LOG_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        if (batchSize < 1) {
+            throw new ConfigError("Invalid " + SETTING_ASYNC_LOG_BATCH_SIZE + ": " + batchSize);
+        }
+        return batchSize;
+    }
+
+    private static int getInt(SessionSettings settings, String key, int defaultValue)
+            throws ConfigError {
+        if (!settings.isSetting(key)) {
+            return defaultValue;
+        }
+        try {
+            return (int) settings.getLong(key);
+        } catch (FieldConvertError e) {
+            throw new ConfigError(e);
+        }
+    }
+
+    private static OverflowPolicy getOverflowPolicy(SessionSettings settings) throws ConfigError {
+        if (!settings.isSetting(SETTING_ASYNC_LOG_OVERFLOW_POLICY)) {
+            return OverflowPolicy.BLOCK;
+        }
+        final String policy;
+        try {
+            policy = settings.getString(SETTING_ASYNC_LOG_OVERFLOW_POLICY);
+        } catch (FieldConvertError e) {
+            throw new ConfigError(e);
+        }
+        try {
+            return OverflowPolicy.valueOf(policy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ConfigError("Invalid " + SETTING_ASYNC_LOG_OVERFLOW_POLICY + ": " + policy);
+        }
+    }
+
+    /**
+     * Creates an asynchronous log around a log of the wrapped factory. The
+     * writer thread is started with the first log.
+     *
+     * @param sessionID session ID for the log
+     */
+    public Log create(SessionID sessionID) {
+        return create(sessionID, AsyncLog.class.getName());
+    }
+
+    public Log create(SessionID sessionID, String callerFQCN) {
+        final Log log;
+        if (logFactory instanceof LocationAwareLogFactory) {
+            log = ((LocationAwareLogFactory) logFactory).create(sessionID, callerFQCN);
+        } else {
+            log = logFactory.create(sessionID);
+        }
+        writer.start();
+        return new AsyncLog(writer, log);
+    }
+
+    public Log create() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the writer thread after the queued entries are written. Logs used
+     * afterwards write on the calling thread.
+     *
+     * @throws InterruptedException if interrupted while waiting for the writer
+     */
+    public void stop() throws InterruptedException {
+        writer.stop();
+    }
+
+    /**
+     * Returns the number of entries the ring buffer can hold.
+     */
+    public int getCapacity() {
+        return writer.getCapacity();
+    }
+
+    /**
+     * Returns the maximum number of entries written at once.
+     */
+    public int getBatchSize() {
+        return writer.getBatchSize();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return writer.getOverflowPolicy();
+    }
+
+    /**
+     * Returns the number of entries waiting to be written.
+     */
+    public int getQueueSize() {
+        return writer.getQueueSize();
+    }
+
+    /**
+     * Returns the largest number of waiting entries the writer has seen.
+     */
+    public int getMaxQueueSize() {
+        return writer.getMaxQueueSize();
+    }
+
+    /**
+     * Returns the number of entries dropped because the ring buffer was full.
+     */
+    public long getDroppedCount() {
+        return writer.getDroppedCount();
+    }
+
+    /**
+     * Returns the number of entries taken from the ring buffer by the writer.
+     */
+    public long getWrittenCount() {
+        return writer.getWrittenCount();
+    }
+
+    /**
+     * Returns the number of batches taken from the ring buffer by the writer.
+     */
+    public long getBatchCount() {
+        return writer.getBatchCount();
+    }
+}
@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background writer behind {@link AsyncLogFactory}.
+ * <p>
+ * Log calls are captured in a preallocated ring of reusable entries. Producers
+ * claim a slot with a compare-and-set on the tail and publish it by writing its
+ * sequence number, so the session threads never take a lock or allocate. The
+ * writer thread copies up to a batch of published entries out of the ring,
+ * frees their slots in one step and then hands them to the underlying logs.
+ * <p>
+ * Entries are only ever written while holding the write lock, by the writer
+ * thread or, once it has stopped, by the threads that log. This keeps them in
+ * order and lets {@link AsyncLog} track dropped entries without locking. Starting
+ * and stopping use the monitor of the writer, so they do not wait for I/O.
+ */
+final class AsyncLogWriter implements Runnable {
+
+    static final int INCOMING = 0;
+    static final int OUTGOING = 1;
+    static final int EVENT = 2;
+    static final int ERROR_EVENT = 3;
+    static final int CLEAR = 4;
+    static final int CLOSE = 5;
+    static final int FLUSH = 6;
+
+    private static final long PRODUCER_PARK_NANOS = 10000L;
+    private static final long WRITER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final AtomicLong THREAD_COUNT = new AtomicLong();
+
+    private final Logger defaultLog = LoggerFactory.getLogger(getClass());
+
+    private final Entry[] entries;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final int batchSize;
+    private final AsyncLogFactory.OverflowPolicy overflowPolicy;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicReference<Thread> parkedWriter = new AtomicReference<Thread>();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private volatile int maxQueueSize;
+
+    // guards the batch and all writes to the underlying logs
+    private final Object writeLock = new Object();
+    private final Entry[] batch;
+
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    AsyncLogWriter(int capacity, int batchSize, AsyncLogFactory.OverflowPolicy overflowPolicy) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid async log capacity: " + capacity);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid async log batch size: " + batchSize);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        entries = new Entry[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            published.set(i, -1);
+        }
+        mask = size - 1;
+        this.batchSize = Math.min(batchSize, size);
+        batch = new Entry[this.batchSize];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new Entry();
+        }
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    synchronized void start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(this, "QFJ Async Log Writer-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the writer thread once the entries queued so far are written.
+     * Entries logged afterwards are written by the calling thread.
+     */
+    void stop() throws InterruptedException {
+        final Thread writer;
+        synchronized (this) {
+            writer = thread;
+            running = false;
+        }
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            writer.join();
+        }
+        drainStopped();
+    }
+
+    /**
+     * Writes entries that were queued while the writer was stopping.
+     */
+    private void drainStopped() {
+        synchronized (writeLock) {
+            while (writeBatch() > 0) {
+                // keep draining
+            }
+        }
+    }
+
+    /**
+     * Writes an entry on the calling thread after the writer has stopped,
+     * behind any entries still queued.
+     */
+    private void writeStopped(AsyncLog log, int type, String text, long dropped) {
+        synchronized (writeLock) {
+            drainStopped();
+            write(log, type, text, dropped);
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Queues a log call. Depending on the overflow policy a full ring makes
+     * the producer wait or drops the entry.
+     *
+     * @return false if the entry was dropped
+     */
+    boolean log(AsyncLog log, int type, String text) {
+        final long dropped = log.getDroppedCount();
+        if (Thread.currentThread() == thread) {
+            // logged by an underlying log while the writer holds the write lock
+            write(log, type, text, dropped);
+            return true;
+        }
+        if (!running) {
+            writeStopped(log, type, text, dropped);
+            return true;
+        }
+        if (!publish(log, type, text, dropped, null,
+                overflowPolicy == AsyncLogFactory.OverflowPolicy.BLOCK)) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        if (!running) {
+            drainStopped();
+        }
+        return true;
+    }
+
+    /**
+     * Queues a control operation behind the entries already queued and waits
+     * until the writer has performed it. Control operations are never dropped.
+     */
+    void execute(AsyncLog log, int type) {
+        final long dropped = log.getDroppedCount();
+        if (Thread.currentThread() == thread) {
+            write(log, type, null, dropped);
+            return;
+        }
+        if (!running) {
+            writeStopped(log, type, null, dropped);
+            return;
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        publish(log, type, null, dropped, done, true);
+        boolean interrupted = false;
+        while (true) {
+            if (!running) {
+                drainStopped();
+            }
+            try {
+                if (done.await(WRITER_PARK_NANOS, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean publish(AsyncLog log, int type, String text, long dropped,
+            CountDownLatch done, boolean block) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            while (sequence - head.get() >= entries.length) {
+                if (!block) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+                sequence = tail.get();
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        final int index = (int) sequence & mask;
+        final Entry entry = entries[index];
+        entry.log = log;
+        entry.type = type;
+        entry.text = text;
+        entry.dropped = dropped;
+        entry.done = done;
+        published.set(index, sequence);
+
+        if (parkedWriter.get() != null) {
+            final Thread writer = parkedWriter.getAndSet(null);
+            if (writer != null) {
+                LockSupport.unpark(writer);
+            }
+        }
+        return true;
+    }
+
+    public void run() {
+        while (true) {
+            if (writeBatch() > 0) {
+                continue;
+            }
+            if (!running) {
+                break;
+            }
+            parkedWriter.set(Thread.currentThread());
+            // check again, a producer may have published before seeing us
+            if (running && !isPublished(head.get())) {
+                LockSupport.parkNanos(this, WRITER_PARK_NANOS);
+            }
+            parkedWriter.set(null);
+        }
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == sequence;
+    }
+
+    /**
+     * Copies the next batch out of the ring, frees the slots and writes it.
+     */
+    private int writeBatch() {
+        synchronized (writeLock) {
+            return writeNextBatch();
+        }
+    }
+
+    private int writeNextBatch() {
+        long sequence = head.get();
+        final int queued = (int) Math.min(tail.get() - sequence, entries.length);
+        if (queued > maxQueueSize) {
+            maxQueueSize = queued;
+        }
+        int count = 0;
+        while (count < batch.length && isPublished(sequence)) {
+            final Entry entry = entries[(int) sequence & mask];
+            batch[count++].copyFrom(entry);
+            entry.clear();
+            sequence++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        head.lazySet(sequence);
+        for (int i = 0; i < count; i++) {
+            final Entry entry = batch[i];
+            write(entry.log, entry.type, entry.text, entry.dropped);
+            if (entry.done != null) {
+                entry.done.countDown();
+            }
+            entry.clear();
+        }
+        writtenCount.addAndGet(count);
+        batchCount.incrementAndGet();
+        return count;
+    }
+
+    private void write(AsyncLog log, int type, String text, long dropped) {
+        try {
+            log.write(type, text, dropped);
+        } catch (Throwable e) {
+            defaultLog.error(e.getMessage() + ", continuing", e);
+        }
+    }
+
+    int getCapacity() {
+        return entries.length;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    AsyncLogFactory.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    int getQueueSize() {
+        return (int) Math.max(0, Math.min(tail.get() - head.get(), entries.length));
+    }
+
+    int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    long getBatchCount() {
+        return batchCount.get();
+    }
+
+    private static final class Entry {
+        private AsyncLog log;
+        private int type;
+        private String text;
+        private long dropped;
+        private CountDownLatch done;
+
+        void copyFrom(Entry other) {
+            log = other.log;
+            type = other.type;
+            text = other.text;
+            dropped = other.dropped;
+            done = other.done;
+        }
+
+        void clear() {
+            log = null;
+            text = null;
+            done = null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.ObjectStreamException;
+import java.math.BigDecimal;
+
+import org.quickfixj.CharsetSupport;
+
+import quickfix.field.converter.DecimalConverter;
+import quickfix.field.converter.DoubleConverter;
+import quickfix.field.converter.IntConverter;
+
+/**
+ * A string field whose value is a slice of the raw message bytes it was parsed
+ * from. The value is only decoded into a String when it is first requested, and
+ * integral and decimal values are converted directly from the bytes.
+ *
+ * @see Message#fromBytes(byte[], int, int, DataDictionary, boolean)
+ */
+final class ByteSliceField extends StringField {
+    static final long serialVersionUID = -2707393489476618463L;
+
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+    private boolean decoded;
+
+    ByteSliceField(int field, byte[] data, int offset, int length) {
+        super(field, null);
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public String getObject() {
+        if (!decoded) {
+            setObject(new String(data, offset, length, CharsetSupport.getCharsetInstance()));
+        }
+        return super.getObject();
+    }
+
+    @Override
+    protected void setObject(String object) {
+        super.setObject(object);
+        decoded = true;
+    }
+
+    @Override
+    protected String objectAsString() {
+        return getObject();
+    }
+
+    boolean isDecoded() {
+        return decoded;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    int dataOffset() {
+        return offset;
+    }
+
+    int dataLength() {
+        return length;
+    }
+
+    int getIntValue() throws FieldConvertError {
+        return decoded ? IntConverter.convert(getObject()) : IntConverter.convert(data, offset, length);
+    }
+
+    BigDecimal getDecimalValue() throws FieldConvertError {
+        return decoded ? DecimalConverter.convert(getObject()) : DecimalConverter.convert(data, offset, length);
+    }
+
+    FixedPointDecimal getDecimalValue(FixedPointDecimal result) throws FieldConvertError {
+        return decoded ? DecimalConverter.convert(getObject(), result)
+                : DecimalConverter.convert(data, offset, length, result);
+    }
+
+    double getDoubleValue() throws FieldConvertError {
+        return decoded ? DoubleConverter.convert(getObject()) : DoubleConverter.convert(data, offset, length);
+    }
+
+    @Override
+    public int hashCode() {
+        return getObject().hashCode();
+    }
+
+    /**
+     * Serialized as a plain StringField so that the message bytes are not
+     * written out once for every field.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new StringField(getTag(), getObject());
+    }
+}
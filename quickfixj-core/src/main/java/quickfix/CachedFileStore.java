@@ -21,20 +21,21 @@ package quickfix;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -51,7 +52,7 @@ import quickfix.field.converter.UtcTimestampConverter;
  *
  * @see quickfix.CachedFileStoreFactory
  */
-public class CachedFileStore implements MessageStore {
+public class CachedFileStore implements RawMessageStore {
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -69,28 +70,44 @@ public class CachedFileStore implements MessageStore {
 
     private final String headerFileName;
 
+    private final String indexFileName;
+
     private final String seqNumFileName;
 
     private final String sessionFileName;
 
-    private RandomAccessFile messageFileReader;
-
-    private RandomAccessFile messageFileWriter;
+    private MessageBodyFile bodyFile;
 
-    private DataOutputStream headerDataOutputStream;
+    private MessageIndexFile indexFile;
 
     private RandomAccessFile sequenceNumberFile;
 
     private final boolean syncWrites;
 
-    private final CachedHashMap messageIndex = new CachedHashMap(100);
+    private final boolean groupCommit;
+
+    private final MessageBodyFile.Rollover rollover;
 
-    private FileOutputStream headerFileOutputStream;
+    private boolean unsyncedMessages;
+
+    private final CachedHashMap messageIndex = new CachedHashMap(100);
 
     private final String charsetEncoding = CharsetSupport.getCharset();
 
     CachedFileStore(String path, SessionID sessionID, boolean syncWrites) throws IOException {
+        this(path, sessionID, syncWrites, false);
+    }
+
+    CachedFileStore(String path, SessionID sessionID, boolean syncWrites, boolean groupCommit)
+            throws IOException {
+        this(path, sessionID, syncWrites, groupCommit, MessageBodyFile.Rollover.NONE);
+    }
+
+    CachedFileStore(String path, SessionID sessionID, boolean syncWrites, boolean groupCommit,
+            MessageBodyFile.Rollover rollover) throws IOException {
         this.syncWrites = syncWrites;
+        this.groupCommit = syncWrites && groupCommit;
+        this.rollover = rollover;
 
         final String fullPath = new File(path == null ? "." : path).getAbsolutePath();
         final String sessionName = FileUtil.sessionIdFileName(sessionID);
@@ -98,6 +115,7 @@ public class CachedFileStore implements MessageStore {
 
         msgFileName = prefix + "body";
         headerFileName = prefix + "header";
+        indexFileName = prefix + "index";
         seqNumFileName = prefix + "seqnums";
         sessionFileName = prefix + "session";
 
@@ -116,8 +134,7 @@ public class CachedFileStore implements MessageStore {
             deleteFiles();
         }
 
-        messageFileWriter = new RandomAccessFile(msgFileName, getRandomAccessFileOptions());
-        messageFileReader = new RandomAccessFile(msgFileName, READ_OPTION);
+        bodyFile = new MessageBodyFile(msgFileName, getRandomAccessFileOptions(), rollover);
         sequenceNumberFile = new RandomAccessFile(seqNumFileName, getRandomAccessFileOptions());
 
         initializeCache();
@@ -128,7 +145,6 @@ public class CachedFileStore implements MessageStore {
         initializeMessageIndex();
         initializeSequenceNumbers();
         initializeSessionCreateTime();
-        messageFileWriter.seek(messageFileWriter.length());
     }
 
     private void initializeSessionCreateTime() throws IOException {
@@ -185,28 +201,21 @@ public class CachedFileStore implements MessageStore {
     }
 
     private void initializeMessageIndex() throws IOException {
+        messageIndex.clear();
         final File headerFile = new File(headerFileName);
         if (headerFile.exists()) {
-            final DataInputStream headerDataInputStream = new DataInputStream(
-                    new BufferedInputStream(new FileInputStream(headerFile)));
-            try {
-                while (headerDataInputStream.available() > 0) {
-                    final int sequenceNumber = headerDataInputStream.readInt();
-                    final long offset = headerDataInputStream.readLong();
-                    final int size = headerDataInputStream.readInt();
-                    messageIndex.put((long) sequenceNumber, new long[] { offset, size });
-                }
-            } finally {
-                headerDataInputStream.close();
-            }
+            // left by an earlier version or by an interrupted conversion
+            MessageIndexFile.convert(headerFile, indexFileName);
         }
-        headerFileOutputStream = new FileOutputStream(headerFileName, true);
-        headerDataOutputStream = new DataOutputStream(new BufferedOutputStream(
-                headerFileOutputStream));
+        indexFile = new MessageIndexFile(indexFileName, getRandomAccessFileOptions());
+        final int lastSequence = indexFile.getLastSequence();
+        indexFile.get(Math.max(indexFile.getFirstSequence(), lastSequence - messageIndex.maxSize + 1),
+                lastSequence, messageIndex);
     }
 
     private String getRandomAccessFileOptions() {
-        return READ_OPTION + WRITE_OPTION + (syncWrites ? SYNC_OPTION : NOSYNC_OPTION);
+        // with group commit the files are forced by the flusher instead
+        return READ_OPTION + WRITE_OPTION + (syncWrites && !groupCommit ? SYNC_OPTION : NOSYNC_OPTION);
     }
 
     /**
@@ -215,28 +224,30 @@ public class CachedFileStore implements MessageStore {
      * @throws IOException
      */
     public void closeFiles() throws IOException {
-        closeOutputStream(headerDataOutputStream);
-        closeFile(messageFileWriter);
-        closeFile(messageFileReader);
+        if (unsyncedMessages) {
+            GroupCommitFlusher.getInstance().force(indexFile.getChannel(),
+                    bodyFile.getChannel());
+            unsyncedMessages = false;
+        }
+        closeFile(indexFile);
+        closeFile(bodyFile);
         closeFile(sequenceNumberFile);
     }
 
-    private void closeFile(RandomAccessFile file) throws IOException {
+    private void closeFile(Closeable file) throws IOException {
         if (file != null) {
             file.close();
         }
     }
 
-    private void closeOutputStream(OutputStream stream) throws IOException {
-        if (stream != null) {
-            stream.close();
-        }
-    }
-
     public void deleteFiles() throws IOException {
         closeFiles();
         deleteFile(headerFileName);
-        deleteFile(msgFileName);
+        deleteFile(MessageIndexFile.getBackupFile(new File(headerFileName)).getPath());
+        deleteFile(indexFileName);
+        for (final File file : MessageBodyFile.listFiles(msgFileName)) {
+            deleteFile(file.getPath());
+        }
         deleteFile(seqNumFileName);
         deleteFile(sessionFileName);
     }
@@ -306,8 +317,20 @@ public class CachedFileStore implements MessageStore {
      */
     public void get(int startSequence, int endSequence, Collection<String> messages)
             throws IOException {
-        final Collection<String> readedMsg = getMessage(startSequence, endSequence);
-        messages.addAll(readedMsg);
+        for (final byte[] data : getMessageData(startSequence, endSequence)) {
+            messages.add(new String(data, charsetEncoding));
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see quickfix.RawMessageStore#getMessageBuffers(int, int, java.util.Collection)
+     */
+    public void getMessageBuffers(int startSequence, int endSequence,
+            Collection<ByteBuffer> messages) throws IOException {
+        for (final byte[] data : getMessageData(startSequence, endSequence)) {
+            messages.add(ByteBuffer.wrap(data));
+        }
     }
 
     /**
@@ -318,30 +341,11 @@ public class CachedFileStore implements MessageStore {
         throw new UnsupportedOperationException("not supported");
     }
 
-    private String read(long offset, long size) throws IOException {
-        final byte[] data = new byte[(int) size];
-
-        messageFileReader.seek(offset);
-        if (messageFileReader.read(data) != size) {
-            throw new IOException("Truncated input while reading message: "
-                    + new String(data, charsetEncoding));
-        }
-
-        return new String(data, charsetEncoding);
-    }
-
-    private Collection<String> getMessage(long startSequence, long endSequence) throws IOException {
-        final Collection<String> messages = new ArrayList<String>();
-
-        final List<long[]> offsetAndSizes = messageIndex.get(startSequence, endSequence);
-        for (final long[] offsetAndSize : offsetAndSizes) {
-            if (offsetAndSize != null) {
-                final String message = read(offsetAndSize[0], offsetAndSize[1]);
-                messages.add(message);
-            }
-        }
-
-        messageFileReader.seek(messageFileReader.length());
+    private Collection<byte[]> getMessageData(int startSequence, int endSequence)
+            throws IOException {
+        final Collection<long[]> offsetAndSizes = messageIndex.get(startSequence, endSequence);
+        final Collection<byte[]> messages = new ArrayList<byte[]>();
+        bodyFile.read(offsetAndSizes, messages);
         return messages;
     }
 
@@ -350,17 +354,21 @@ public class CachedFileStore implements MessageStore {
      * @see quickfix.MessageStore#set(int, java.lang.String)
      */
     public boolean set(int sequence, String message) throws IOException {
-        final long offset = messageFileWriter.getFilePointer();
-        final int size = message.length();
-        messageIndex.put((long) sequence, new long[] { offset, size });
-        headerDataOutputStream.writeInt(sequence);
-        headerDataOutputStream.writeLong(offset);
-        headerDataOutputStream.writeInt(size);
-        headerDataOutputStream.flush();
-        if (syncWrites) {
-            headerFileOutputStream.getFD().sync();
-        }
-        messageFileWriter.write(message.getBytes(CharsetSupport.getCharset()));
+        final byte[] data = message.getBytes(charsetEncoding);
+        return set(sequence, data, 0, data.length);
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see quickfix.RawMessageStore#set(int, byte[], int, int)
+     */
+    public boolean set(int sequence, byte[] data, int offset, int length) throws IOException {
+        final long position = bodyFile.append(data, offset, length);
+        // the message is written first so the index never points past the end of the file
+        indexFile.put(sequence, position, length);
+        messageIndex.put((long) sequence, new long[] { position, length });
+        // synced together with the sequence numbers that follow it
+        unsyncedMessages = groupCommit;
         return true;
     }
 
@@ -372,16 +380,41 @@ public class CachedFileStore implements MessageStore {
         // http://bugs.sun.com/bugdatabase/view_bug.do;:WuuT?bug_id=4259569
         sequenceNumberFile.writeUTF("" + cache.getNextSenderMsgSeqNum() + ':'
                 + cache.getNextTargetMsgSeqNum());
+        sync(sequenceNumberFile.getChannel());
+    }
+
+    /**
+     * Waits for the group commit flusher to force the sequence number file to
+     * disk, along with any messages stored since the last sync.
+     */
+    private void sync(FileChannel sequenceNumberChannel) throws IOException {
+        if (groupCommit) {
+            if (unsyncedMessages) {
+                GroupCommitFlusher.getInstance().force(sequenceNumberChannel,
+                        indexFile.getChannel(), bodyFile.getChannel());
+                unsyncedMessages = false;
+            } else {
+                GroupCommitFlusher.getInstance().force(sequenceNumberChannel);
+            }
+        }
     }
 
     String getHeaderFileName() {
         return headerFileName;
     }
 
+    String getIndexFileName() {
+        return indexFileName;
+    }
+
     String getMsgFileName() {
         return msgFileName;
     }
 
+    int getSegmentCount() {
+        return bodyFile.getSegmentCount();
+    }
+
     String getSeqNumFileName() {
         return seqNumFileName;
     }
@@ -480,69 +513,19 @@ public class CachedFileStore implements MessageStore {
         }
 
         private long[] seekMessageIndex(final long index) {
-            final File headerFile = new File(headerFileName);
-            if (headerFile.exists()) {
-                DataInputStream headerDataInputStream = null;
-                try {
-                    headerDataInputStream = new DataInputStream(new BufferedInputStream(
-                            new FileInputStream(headerFile)));
-                    while (headerDataInputStream.available() > 0) {
-                        final int sequenceNumber = headerDataInputStream.readInt();
-                        final long offset = headerDataInputStream.readLong();
-                        final int size = headerDataInputStream.readInt();
-                        if (index == sequenceNumber) {
-                            return new long[] { offset, size };
-                        }
-                    }
-                } catch (final IOException e) {
-                    return null;
-                } finally {
-                    try {
-                        if (headerDataInputStream != null) {
-                            headerDataInputStream.close();
-                        }
-                    } catch (final IOException e) {
-                        log.error("", e);
-                    }
-                }
-            }
-            return null;
-        }
-
-        private List<long[]> seekMessageIndex(final long startSequence, final long endSequence) {
-            final TreeMap<Integer, long[]> indexPerSequenceNumber = new TreeMap<Integer, long[]>();
-            final File headerFile = new File(headerFileName);
-            if (headerFile.exists()) {
-                DataInputStream headerDataInputStream = null;
-                try {
-                    headerDataInputStream = new DataInputStream(new BufferedInputStream(
-                            new FileInputStream(headerFile)));
-                    while (headerDataInputStream.available() > 0) {
-                        final int sequenceNumber = headerDataInputStream.readInt();
-                        final long offset = headerDataInputStream.readLong();
-                        final int size = headerDataInputStream.readInt();
-                        if (sequenceNumber >= startSequence && sequenceNumber <= endSequence) {
-                            indexPerSequenceNumber.put(sequenceNumber, new long[] { offset, size });
-                        }
-                    }
-                } catch (final IOException e) {
-                    log.error("", e);
-                    return null;
-                } finally {
-                    try {
-                        if (headerDataInputStream != null) {
-                            headerDataInputStream.close();
-                        }
-                    } catch (final IOException e) {
-                        log.error("", e);
-                    }
-                }
+            try {
+                return indexFile.get((int) index);
+            } catch (final IOException e) {
+                log.error("", e);
+                return null;
             }
-            return new ArrayList<long[]>(indexPerSequenceNumber.values());
         }
 
-        public List<long[]> get(final long startSequence, final long endSequence) {
-            return seekMessageIndex(startSequence, endSequence);
+        public Collection<long[]> get(final int startSequence, final int endSequence)
+                throws IOException {
+            final TreeMap<Long, long[]> indexPerSequenceNumber = new TreeMap<Long, long[]>();
+            indexFile.get(startSequence, endSequence, indexPerSequenceNumber);
+            return indexPerSequenceNumber.values();
         }
     }
 
@@ -45,7 +45,12 @@ public class CachedFileStoreFactory extends FileStoreFactory {
             if (settings.isSetting(sessionID, SETTING_FILE_STORE_SYNC)) {
                 syncWrites = settings.getBool(sessionID, SETTING_FILE_STORE_SYNC);
             }
-            return new CachedFileStore(settings.getString(sessionID, SETTING_FILE_STORE_PATH), sessionID, syncWrites);
+            boolean groupCommit = false;
+            if (settings.isSetting(sessionID, SETTING_FILE_STORE_GROUP_COMMIT)) {
+                groupCommit = settings.getBool(sessionID, SETTING_FILE_STORE_GROUP_COMMIT);
+            }
+            return new CachedFileStore(settings.getString(sessionID, SETTING_FILE_STORE_PATH), sessionID, syncWrites, groupCommit,
+                    getRollover(sessionID));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
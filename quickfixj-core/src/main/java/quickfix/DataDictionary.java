@@ -24,6 +24,7 @@ import static quickfix.FileUtil.Location.CONTEXT_RESOURCE;
 import static quickfix.FileUtil.Location.FILESYSTEM;
 import static quickfix.FileUtil.Location.URL;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
@@ -47,13 +48,6 @@ import org.w3c.dom.NodeList;
 import quickfix.field.BeginString;
 import quickfix.field.MsgType;
 import quickfix.field.SessionRejectReason;
-import quickfix.field.converter.BooleanConverter;
-import quickfix.field.converter.CharConverter;
-import quickfix.field.converter.DoubleConverter;
-import quickfix.field.converter.IntConverter;
-import quickfix.field.converter.UtcDateOnlyConverter;
-import quickfix.field.converter.UtcTimeOnlyConverter;
-import quickfix.field.converter.UtcTimestampConverter;
 
 /**
  * Provide the message metadata for various versions of FIX.
@@ -93,6 +87,9 @@ public class DataDictionary {
 
     private DataDictionary delegate;
 
+    // compiled on first use, dropped when the dictionary changes
+    private volatile ValidationPlan validationPlan;
+
     public DataDictionary() {
     }
 
@@ -129,6 +126,7 @@ public class DataDictionary {
     private void setVersion(String beginString) {
         this.beginString = beginString;
         hasVersion = true;
+        validationPlan = null;
     }
 
     /**
@@ -142,6 +140,7 @@ public class DataDictionary {
 
     private void addField(int field) {
         fields.add(field);
+        validationPlan = null;
     }
 
     private void addFieldName(int field, String name) throws ConfigError {
@@ -267,6 +266,7 @@ public class DataDictionary {
             messageFields.put(msgType, fields);
         }
         fields.add(field);
+        validationPlan = null;
     }
 
     /**
@@ -305,6 +305,7 @@ public class DataDictionary {
 
     private void addFieldType(int field, FieldType fieldType) {
         fieldTypes.put(field, fieldType);
+        validationPlan = null;
     }
 
     /**
@@ -340,6 +341,7 @@ public class DataDictionary {
             requiredFields.put(msgType, fields);
         }
         fields.add(field);
+        validationPlan = null;
     }
 
     /**
@@ -381,6 +383,7 @@ public class DataDictionary {
             fieldValues.put(field, values);
         }
         values.add(value);
+        validationPlan = null;
     }
 
     /**
@@ -428,6 +431,7 @@ public class DataDictionary {
 
     public void addGroup(String msg, int field, int delim, DataDictionary dataDictionary) {
         groups.put(new IntStringPair(field, msg), new GroupInfo(delim, dataDictionary));
+        validationPlan = null;
     }
 
     /**
@@ -558,6 +562,24 @@ public class DataDictionary {
         copyCollection(fields, rhs.getFields());
         copyMap(fieldValues, rhs.getFieldValues());
         copyMap(groups, rhs.getGroups());
+        validationPlan = null;
+    }
+
+    /**
+     * Returns the compiled validation rules, compiling them if the dictionary
+     * changed since they were last used.
+     */
+    ValidationPlan getValidationPlan() {
+        ValidationPlan plan = validationPlan;
+        if (plan == null) {
+            final Map<Integer, FieldType> types = fieldTypes.isEmpty() && delegate != null
+                    ? delegate.fieldTypes
+                    : fieldTypes;
+            plan = new ValidationPlan(fields, types, fieldValues, messageFields, requiredFields,
+                    groups, beginString);
+            validationPlan = plan;
+        }
+        return plan;
     }
 
     @SuppressWarnings("unchecked")
@@ -697,6 +719,14 @@ public class DataDictionary {
 
     public void iterate(FieldMap map, String msgType, DataDictionary dd) throws IncorrectTagValue,
             IncorrectDataFormat {
+        final ValidationPlan plan = getValidationPlan();
+        final ValidationPlan.MessagePlan messagePlan = plan.getMessagePlan(msgType);
+        final ValidationPlan ddPlan = dd == this ? plan : dd.getValidationPlan();
+        final ValidationPlan.MessagePlan ddMessagePlan = dd == this
+                ? messagePlan
+                : ddPlan.getMessagePlan(msgType);
+        final boolean checkIsInMessage = map instanceof Message;
+
         final Iterator<Field<?>> iterator = map.iterator();
         while (iterator.hasNext()) {
             final StringField field = (StringField) iterator.next();
@@ -704,23 +734,27 @@ public class DataDictionary {
             checkHasValue(field);
 
             if (hasVersion) {
-                checkValidFormat(field);
-                checkValue(field);
+                plan.checkValidFormat(field);
+                plan.checkValue(field);
             }
 
             if (beginString != null && shouldCheckTag(field)) {
-                dd.checkValidTagNumber(field);
-                if (map instanceof Message) {
-                    checkIsInMessage(field, msgType);
+                final int tag = field.getField();
+                checkValidTagNumber(ddPlan, tag);
+                if (checkIsInMessage) {
+                    checkIsInMessage(messagePlan, tag);
                 }
-                dd.checkGroupCount(field, map, msgType);
+                checkGroupCount(ddMessagePlan, field, map);
             }
         }
 
-        for (final List<Group> groups : map.getGroups().values()) {
-            for (final Group group : groups) {
-                iterate(group, msgType, dd.getGroup(msgType, group.getFieldTag())
-                        .getDataDictionary());
+        final Map<Integer, List<Group>> groups = map.getGroups();
+        if (!groups.isEmpty()) {
+            for (final List<Group> groupList : groups.values()) {
+                for (final Group group : groupList) {
+                    iterate(group, msgType, ddMessagePlan.getGroup(group.getFieldTag())
+                            .getDataDictionary());
+                }
             }
         }
     }
@@ -741,81 +775,12 @@ public class DataDictionary {
 
     // / Check if field tag number is defined in spec.
     public void checkValidTagNumber(Field<?> field) {
-        if (!fields.contains(Integer.valueOf(field.getTag()))) {
-            throw new FieldException(SessionRejectReason.INVALID_TAG_NUMBER, field.getField());
-        }
+        checkValidTagNumber(getValidationPlan(), field.getField());
     }
 
-    private void checkValidFormat(StringField field) throws IncorrectDataFormat {
-        try {
-            final FieldType fieldType = getFieldTypeEnum(field.getTag());
-            if (fieldType == FieldType.String) {
-                // String
-            } else if (fieldType == FieldType.Char) {
-                if (beginString.compareTo(FixVersions.BEGINSTRING_FIX41) > 0) {
-                    CharConverter.convert(field.getValue());
-                } else {
-                    // String, for older FIX versions
-                }
-            } else if (fieldType == FieldType.Price) {
-                DoubleConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.Int) {
-                IntConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.Amt) {
-                DoubleConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.Qty) {
-                DoubleConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.Qty) {
-                // String
-            } else if (fieldType == FieldType.MultipleValueString) {
-                // String
-            } else if (fieldType == FieldType.Exchange) {
-                // String
-            } else if (fieldType == FieldType.Boolean) {
-                BooleanConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.LocalMktDate) {
-                // String
-            } else if (fieldType == FieldType.Data) {
-                // String
-            } else if (fieldType == FieldType.Float) {
-                DoubleConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.PriceOffset) {
-                DoubleConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.MonthYear) {
-                // String
-            } else if (fieldType == FieldType.DayOfMonth) {
-                // String
-            } else if (fieldType == FieldType.UtcDate) {
-                UtcDateOnlyConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.UtcTimeOnly) {
-                UtcTimeOnlyConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.UtcTimeStamp || fieldType == FieldType.UtcTimeStampSecondPresicion || fieldType == FieldType.Time) {
-                UtcTimestampConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.NumInGroup) {
-                IntConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.Percentage) {
-                DoubleConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.SeqNum) {
-                IntConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.Length) {
-                IntConverter.convert(field.getValue());
-            } else if (fieldType == FieldType.Country) {
-                // String
-            }
-        } catch (final FieldConvertError e) {
-            throw new IncorrectDataFormat(field.getTag(), field.getValue());
-        }
-    }
-
-    private void checkValue(StringField field) throws IncorrectTagValue {
-        final int tag = field.getField();
-        if (!hasFieldValue(tag)) {
-            return;
-        }
-
-        final String value = field.getValue();
-        if (!isFieldValue(tag, value)) {
-            throw new IncorrectTagValue(tag);
+    private static void checkValidTagNumber(ValidationPlan plan, int tag) {
+        if (!plan.isField(tag)) {
+            throw new FieldException(SessionRejectReason.INVALID_TAG_NUMBER, tag);
         }
     }
 
@@ -828,17 +793,22 @@ public class DataDictionary {
     }
 
     // / Check if a field is in this message type.
-    private void checkIsInMessage(Field<?> field, String msgType) {
-        if (!isMsgField(msgType, field.getField()) && !allowUnknownMessageFields) {
+    private void checkIsInMessage(ValidationPlan.MessagePlan messagePlan, int tag) {
+        if (!messagePlan.isField(tag) && !allowUnknownMessageFields) {
             throw new FieldException(SessionRejectReason.TAG_NOT_DEFINED_FOR_THIS_MESSAGE_TYPE,
-                    field.getField());
+                    tag);
         }
     }
 
     // / Check if group count matches number of groups in
     public void checkGroupCount(StringField field, FieldMap fieldMap, String msgType) {
+        checkGroupCount(getValidationPlan().getMessagePlan(msgType), field, fieldMap);
+    }
+
+    private static void checkGroupCount(ValidationPlan.MessagePlan messagePlan, StringField field,
+            FieldMap fieldMap) {
         final int fieldNum = field.getField();
-        if (isGroup(msgType, fieldNum)) {
+        if (messagePlan.getGroup(fieldNum) != null) {
             if (fieldMap.getGroupCount(fieldNum) != Integer.parseInt(field.getValue())) {
                 throw new FieldException(
                         SessionRejectReason.INCORRECT_NUMINGROUP_COUNT_FOR_REPEATING_GROUP,
@@ -859,8 +829,9 @@ public class DataDictionary {
     }
 
     private void checkHasRequired(String msgType, FieldMap fields, boolean bodyOnly) {
-        final Set<Integer> requiredFieldsForMessage = requiredFields.get(msgType);
-        if (requiredFieldsForMessage == null || requiredFieldsForMessage.isEmpty()) {
+        final ValidationPlan.MessagePlan messagePlan = getValidationPlan().getMessagePlan(msgType);
+        final int[] requiredFieldsForMessage = messagePlan.getRequiredFields();
+        if (requiredFieldsForMessage.length == 0) {
             return;
         }
 
@@ -871,9 +842,9 @@ public class DataDictionary {
         }
 
         final Map<Integer, List<Group>> groups = fields.getGroups();
-        if (!groups.isEmpty()) {
+        if (!groups.isEmpty() && messagePlan.hasGroups()) {
             for (Map.Entry<Integer, List<Group>> entry : groups.entrySet()) {
-                final GroupInfo p = getGroup(msgType, entry.getKey());
+                final GroupInfo p = messagePlan.getGroup(entry.getKey());
                 if (p != null) {
                     for (Group groupInstance : entry.getValue()) {
                         p.getDataDictionary().checkHasRequired(groupInstance, groupInstance,
@@ -885,22 +856,34 @@ public class DataDictionary {
     }
 
     private void read(String location) throws ConfigError {
-        final InputStream inputStream = FileUtil.open(getClass(), location, URL, FILESYSTEM,
+        final java.net.URL url = FileUtil.locate(getClass(), location, URL, FILESYSTEM,
                 CONTEXT_RESOURCE, CLASSLOADER_RESOURCE);
-        if (inputStream == null) {
+        if (url == null) {
             throw new DataDictionary.Exception("Could not find data dictionary: " + location);
         }
 
+        // the XML is read once: it identifies the snapshot and is parsed if
+        // there is no matching snapshot
+        final byte[] xml;
         try {
-            load(inputStream);
-        } catch (final java.lang.Exception e) {
-            throw new ConfigError(location + ": " + e.getMessage(), e);
-        } finally {
+            final InputStream inputStream = url.openStream();
             try {
+                xml = DataDictionarySnapshot.readFully(inputStream);
+            } finally {
                 inputStream.close();
-            } catch (final IOException e) {
-                throw new ConfigError(e);
             }
+            // a precompiled snapshot of the XML file spares parsing it
+            if (DataDictionarySnapshot.read(this, location, url, xml)) {
+                return;
+            }
+        } catch (final IOException e) {
+            throw new ConfigError(location + ": " + e.getMessage(), e);
+        }
+
+        try {
+            load(new ByteArrayInputStream(xml));
+        } catch (final java.lang.Exception e) {
+            throw new ConfigError(location + ": " + e.getMessage(), e);
         }
     }
 
@@ -1261,6 +1244,178 @@ public class DataDictionary {
         return groups;
     }
 
+    /**
+     * Writes the definitions of this dictionary and its group dictionaries.
+     *
+     * @see DataDictionarySnapshot
+     */
+    void writeSnapshot(DataDictionarySnapshot.Writer out) {
+        out.writeBoolean(hasVersion);
+        out.writeString(beginString);
+        out.writeBoolean(checkFieldsOutOfOrder);
+        out.writeBoolean(checkFieldsHaveValues);
+        out.writeBoolean(checkUserDefinedFields);
+        out.writeBoolean(checkUnorderedGroupFields);
+        out.writeBoolean(allowUnknownMessageFields);
+
+        writeIntSets(out, messageFields);
+        writeIntSets(out, requiredFields);
+        writeStrings(out, messages);
+        writeStringMap(out, messageCategory);
+        writeStringMap(out, messageTypeForName);
+        writeInts(out, fields);
+
+        out.writeInt(fieldTypes.size());
+        for (Map.Entry<Integer, FieldType> entry : fieldTypes.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeString(entry.getValue().getName());
+        }
+        out.writeInt(fieldValues.size());
+        for (Map.Entry<Integer, Set<String>> entry : fieldValues.entrySet()) {
+            out.writeInt(entry.getKey());
+            writeStrings(out, entry.getValue());
+        }
+        out.writeInt(fieldNames.size());
+        for (Map.Entry<Integer, String> entry : fieldNames.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeString(entry.getValue());
+        }
+        out.writeInt(names.size());
+        for (Map.Entry<String, Integer> entry : names.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        out.writeInt(valueNames.size());
+        for (Map.Entry<IntStringPair, String> entry : valueNames.entrySet()) {
+            out.writeInt(entry.getKey().getIntValue());
+            out.writeString(entry.getKey().getStringValue());
+            out.writeString(entry.getValue());
+        }
+        out.writeInt(groups.size());
+        for (Map.Entry<IntStringPair, GroupInfo> entry : groups.entrySet()) {
+            out.writeInt(entry.getKey().getIntValue());
+            out.writeString(entry.getKey().getStringValue());
+            out.writeInt(entry.getValue().getDelimiterField());
+            entry.getValue().getDataDictionary().writeSnapshot(out);
+        }
+    }
+
+    /**
+     * Reads definitions written by {@link #writeSnapshot} into this empty
+     * dictionary.
+     */
+    void readSnapshot(DataDictionarySnapshot.Reader in) {
+        hasVersion = in.readBoolean();
+        beginString = in.readString();
+        checkFieldsOutOfOrder = in.readBoolean();
+        checkFieldsHaveValues = in.readBoolean();
+        checkUserDefinedFields = in.readBoolean();
+        checkUnorderedGroupFields = in.readBoolean();
+        allowUnknownMessageFields = in.readBoolean();
+
+        readIntSets(in, messageFields);
+        readIntSets(in, requiredFields);
+        readStrings(in, messages);
+        readStringMap(in, messageCategory);
+        for (Map.Entry<String, String> entry : messageCategory.entrySet()) {
+            // Categories are interned
+            entry.setValue(entry.getValue().intern());
+        }
+        readStringMap(in, messageTypeForName);
+        readInts(in, fields);
+
+        for (int i = in.readInt(); i > 0; i--) {
+            final int field = in.readInt();
+            fieldTypes.put(field, FieldType.fromName(beginString, in.readString()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            final Set<String> values = new HashSet<String>();
+            fieldValues.put(in.readInt(), values);
+            readStrings(in, values);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            final int field = in.readInt();
+            fieldNames.put(field, in.readString());
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            final String name = in.readString();
+            names.put(name, in.readInt());
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            final int field = in.readInt();
+            final String value = in.readString();
+            valueNames.put(new IntStringPair(field, value), in.readString());
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            final int field = in.readInt();
+            final String msgType = in.readString();
+            final int delim = in.readInt();
+            final DataDictionary groupDD = new DataDictionary();
+            groupDD.readSnapshot(in);
+            groups.put(new IntStringPair(field, msgType), new GroupInfo(delim, groupDD));
+        }
+        validationPlan = null;
+    }
+
+    private static void writeInts(DataDictionarySnapshot.Writer out, Collection<Integer> values) {
+        out.writeInt(values.size());
+        for (Integer value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void readInts(DataDictionarySnapshot.Reader in, Collection<Integer> values) {
+        for (int i = in.readInt(); i > 0; i--) {
+            values.add(in.readInt());
+        }
+    }
+
+    private static void writeStrings(DataDictionarySnapshot.Writer out, Collection<String> values) {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeString(value);
+        }
+    }
+
+    private static void readStrings(DataDictionarySnapshot.Reader in, Collection<String> values) {
+        for (int i = in.readInt(); i > 0; i--) {
+            values.add(in.readString());
+        }
+    }
+
+    private static void writeStringMap(DataDictionarySnapshot.Writer out, Map<String, String> map) {
+        out.writeInt(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeString(entry.getValue());
+        }
+    }
+
+    private static void readStringMap(DataDictionarySnapshot.Reader in, Map<String, String> map) {
+        for (int i = in.readInt(); i > 0; i--) {
+            final String key = in.readString();
+            map.put(key, in.readString());
+        }
+    }
+
+    private static void writeIntSets(DataDictionarySnapshot.Writer out,
+            Map<String, Set<Integer>> map) {
+        out.writeInt(map.size());
+        for (Map.Entry<String, Set<Integer>> entry : map.entrySet()) {
+            out.writeString(entry.getKey());
+            writeInts(out, entry.getValue());
+        }
+    }
+
+    private static void readIntSets(DataDictionarySnapshot.Reader in,
+            Map<String, Set<Integer>> map) {
+        for (int i = in.readInt(); i > 0; i--) {
+            final Set<Integer> values = new HashSet<Integer>();
+            map.put(in.readString(), values);
+            readInts(in, values);
+        }
+    }
+
     /**
      * Data dictionary-related exception.
      */
@@ -1285,13 +1440,13 @@ public class DataDictionary {
             stringValue = value2;
         }
 
-        //public int getIntValue() {
-        //    return intValue;
-        //}
+        public int getIntValue() {
+            return intValue;
+        }
 
-        //public String getStringValue() {
-        //    return stringValue;
-        //}
+        public String getStringValue() {
+            return stringValue;
+        }
 
         @Override
         public boolean equals(Object other) {
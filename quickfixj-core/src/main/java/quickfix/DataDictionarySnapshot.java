@@ -0,0 +1,365 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Precompiled binary form of a {@link DataDictionary}.
+ * <p>
+ * A snapshot is stored next to the XML file it was created from, with the
+ * <code>.xml</code> extension replaced by {@link #SNAPSHOT_SUFFIX}. When a
+ * dictionary is loaded by location, a snapshot that matches the length and
+ * the CRC32 checksum of the XML file is read instead of parsing the XML. It
+ * is taken from next to the XML file or else from anywhere on the class path
+ * under the snapshot name of the location. Snapshot files are memory-mapped.
+ * Snapshots are created by running this class with the XML files or the
+ * directories containing them as arguments.
+ */
+public final class DataDictionarySnapshot {
+
+    /**
+     * File name extension of snapshots.
+     */
+    public static final String SNAPSHOT_SUFFIX = ".dd";
+
+    private static final String XML_SUFFIX = ".xml";
+    private static final int MAGIC = 0x51464a44; // "QFJD"
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_LENGTH = 20;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private DataDictionarySnapshot() {
+    }
+
+    /**
+     * Parses a dictionary XML file and writes its snapshot next to it.
+     *
+     * @param xmlFile the dictionary XML file
+     * @return the snapshot file
+     * @throws ConfigError if the dictionary cannot be parsed
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static File create(File xmlFile) throws ConfigError, IOException {
+        final byte[] xml;
+        final InputStream in = new FileInputStream(xmlFile);
+        try {
+            xml = readFully(in);
+        } finally {
+            in.close();
+        }
+        final DataDictionary dictionary = new DataDictionary(new ByteArrayInputStream(xml));
+
+        final File snapshotFile = getSnapshotFile(xmlFile);
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(snapshotFile));
+        try {
+            write(dictionary, xml, out);
+        } finally {
+            out.close();
+        }
+        return snapshotFile;
+    }
+
+    /**
+     * Writes a dictionary snapshot.
+     *
+     * @param dictionary the dictionary
+     * @param source the XML the dictionary was loaded from, whose length and
+     *            checksum are checked when the snapshot is read
+     * @param out the stream to write to
+     * @throws IOException if writing fails
+     */
+    public static void write(DataDictionary dictionary, byte[] source, OutputStream out)
+            throws IOException {
+        final Writer writer = new Writer();
+        dictionary.writeSnapshot(writer);
+
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeLong(source.length);
+        data.writeInt(checksum(source));
+        data.writeInt(writer.strings.size());
+        for (String string : writer.strings.keySet()) {
+            final byte[] bytes = string.getBytes(UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+        writer.body.writeTo(data);
+        data.flush();
+    }
+
+    /**
+     * Reads the snapshot of a dictionary XML file into an empty dictionary.
+     * The snapshot next to the XML file is used if it matches. Otherwise the
+     * class path is searched for a matching snapshot of the location, because
+     * the XML may be resolved from another jar than the one that ships its
+     * snapshot, for example from quickfixj-core ahead of a message jar.
+     *
+     * @param dictionary the dictionary to fill
+     * @param location the location the XML file was looked up by
+     * @param source the URL of the XML file
+     * @param xml the content of the XML file
+     * @return true if the snapshot was read, false if there is no snapshot
+     *         that matches the XML file
+     * @throws IOException if a matching snapshot cannot be read
+     */
+    static boolean read(DataDictionary dictionary, String location, URL source, byte[] xml)
+            throws IOException {
+        final URL snapshotUrl = new URL(getSnapshotName(source.toExternalForm()));
+        ByteBuffer buffer = open(snapshotUrl);
+        if (buffer == null || !readHeader(buffer, xml)) {
+            buffer = null;
+            for (URL url : getResources(getSnapshotName(location))) {
+                if (!url.toExternalForm().equals(snapshotUrl.toExternalForm())) {
+                    buffer = open(url);
+                    if (buffer != null && readHeader(buffer, xml)) {
+                        break;
+                    }
+                    buffer = null;
+                }
+            }
+            if (buffer == null) {
+                return false;
+            }
+        }
+        try {
+            dictionary.readSnapshot(new Reader(buffer));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated data dictionary snapshot", e);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt data dictionary snapshot", e);
+        }
+        return true;
+    }
+
+    /**
+     * Creates the snapshots of dictionary XML files.
+     *
+     * @param args XML files or directories whose XML files are converted
+     */
+    public static void main(String[] args) throws ConfigError, IOException {
+        for (String arg : args) {
+            final File file = new File(arg);
+            final File[] xmlFiles = file.isDirectory() ? file.listFiles() : new File[] { file };
+            if (xmlFiles == null) {
+                throw new FileNotFoundException(arg);
+            }
+            for (File xmlFile : xmlFiles) {
+                if (xmlFile.isFile() && xmlFile.getName().endsWith(XML_SUFFIX)) {
+                    System.out.println("Writing " + create(xmlFile));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a stream to its end.
+     *
+     * @param in the stream, which is not closed
+     * @return the bytes read
+     * @throws IOException if reading fails
+     */
+    static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        final byte[] chunk = new byte[8192];
+        int length;
+        while ((length = in.read(chunk)) != -1) {
+            out.write(chunk, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean readHeader(ByteBuffer buffer, byte[] source) {
+        return buffer.remaining() >= HEADER_LENGTH && buffer.getInt() == MAGIC
+                && buffer.getInt() == FORMAT_VERSION && buffer.getLong() == source.length
+                && buffer.getInt() == checksum(source);
+    }
+
+    private static int checksum(byte[] source) {
+        final CRC32 crc = new CRC32();
+        crc.update(source, 0, source.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Returns the content of a snapshot, memory-mapped if it is a file, or
+     * null if it does not exist.
+     */
+    private static ByteBuffer open(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            final File file = toFile(url);
+            return file != null && file.isFile() ? map(file) : null;
+        }
+        return load(url);
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // the mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    private static ByteBuffer load(URL url) throws IOException {
+        final InputStream in;
+        try {
+            in = url.openStream();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            return ByteBuffer.wrap(readFully(in));
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Set<URL> getResources(String name) throws IOException {
+        final Set<URL> urls = new LinkedHashSet<URL>();
+        final String resourceName = name.startsWith("/") ? name.substring(1) : name;
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        if (contextClassLoader != null) {
+            urls.addAll(Collections.list(contextClassLoader.getResources(resourceName)));
+        }
+        final ClassLoader classLoader = DataDictionarySnapshot.class.getClassLoader();
+        if (classLoader != null) {
+            urls.addAll(Collections.list(classLoader.getResources(resourceName)));
+        }
+        return urls;
+    }
+
+    private static File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static File getSnapshotFile(File xmlFile) {
+        return new File(xmlFile.getParentFile(), getSnapshotName(xmlFile.getName()));
+    }
+
+    private static String getSnapshotName(String xmlName) {
+        if (xmlName.regionMatches(true, xmlName.length() - XML_SUFFIX.length(), XML_SUFFIX, 0,
+                XML_SUFFIX.length())) {
+            return xmlName.substring(0, xmlName.length() - XML_SUFFIX.length()) + SNAPSHOT_SUFFIX;
+        }
+        return xmlName + SNAPSHOT_SUFFIX;
+    }
+
+    /**
+     * Encodes snapshot data. Strings are stored once in a table ahead of the
+     * data and referred to by their index.
+     */
+    static final class Writer {
+        private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+
+        void writeBoolean(boolean value) {
+            body.write(value ? 1 : 0);
+        }
+
+        void writeInt(int value) {
+            body.write(value >>> 24);
+            body.write(value >>> 16);
+            body.write(value >>> 8);
+            body.write(value);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeInt(-1);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.put(value, index);
+            }
+            writeInt(index);
+        }
+    }
+
+    /**
+     * Decodes snapshot data written by a {@link Writer}.
+     */
+    static final class Reader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                final int length = buffer.getInt();
+                if (length > bytes.length) {
+                    bytes = new byte[length];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, UTF_8);
+            }
+        }
+
+        boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        int readInt() {
+            return buffer.getInt();
+        }
+
+        String readString() {
+            final int index = buffer.getInt();
+            return index < 0 ? null : strings[index];
+        }
+    }
+}
@@ -40,6 +40,10 @@ public class DecimalField extends Field<BigDecimal> {
         super(field, BigDecimal.valueOf(data));
     }
 
+    public DecimalField(int field, long mantissa, int scale) {
+        super(field, BigDecimal.valueOf(mantissa, scale));
+    }
+
     public DecimalField(int field, BigDecimal data, int padding) {
         super(field, data);
         this.padding = padding;
@@ -53,6 +57,10 @@ public class DecimalField extends Field<BigDecimal> {
         setObject(BigDecimal.valueOf(value));
     }
 
+    public void setValue(long mantissa, int scale) {
+        setObject(BigDecimal.valueOf(mantissa, scale));
+    }
+
     public BigDecimal getValue() {
         return getObject();
     }
@@ -195,6 +195,10 @@ public class DefaultSessionFactory implements SessionFactory {
             final boolean enableLastMsgSeqNumProcessed = getSetting(settings, sessionID, Session.SETTING_ENABLE_LAST_MSG_SEQ_NUM_PROCESSED, false);
             final int resendRequestChunkSize = getSetting(settings, sessionID, Session.SETTING_RESEND_REQUEST_CHUNK_SIZE, Session.DEFAULT_RESEND_RANGE_CHUNK_SIZE);
             final int receiveLimit = getSetting(settings, sessionID, Session.RECEIVE_LIMIT, 0);
+            final long queuedMessagesMemoryLimit = getSetting(settings, sessionID,
+                    Session.SETTING_QUEUED_MESSAGES_MEMORY_LIMIT, SessionState.DEFAULT_QUEUE_MEMORY_LIMIT);
+            final boolean resendWithoutApplicationCallbacks = getSetting(settings, sessionID,
+                    Session.SETTING_RESEND_WITHOUT_APPLICATION_CALLBACKS, false);
             final boolean validateFieldsOutOfRange =
                     getSetting(settings, sessionID, Session.SETTING_VALIDATE_FIELDS_OUT_OF_RANGE, true);
             final int[] logonIntervals = getLogonIntervalsInSeconds(settings, sessionID);
@@ -216,6 +220,8 @@ public class DefaultSessionFactory implements SessionFactory {
             session.setLogoutTimeout(logoutTimeout);
             session.setReceiveLimit(receiveLimit);
             session.setValidateFieldsOutOfRange(validateFieldsOutOfRange);
+            session.setQueuedMessagesMemoryLimit(queuedMessagesMemoryLimit);
+            session.setResendWithoutApplicationCallbacks(resendWithoutApplicationCallbacks);
 
             //
             // Session registration and creation callback is done here instead of in
@@ -395,6 +401,11 @@ public class DefaultSessionFactory implements SessionFactory {
                 : defaultValue;
     }
 
+    private long getSetting(SessionSettings settings, SessionID sessionID, String key,
+            long defaultValue) throws ConfigError, FieldConvertError {
+        return settings.isSetting(sessionID, key) ? settings.getLong(sessionID, key) : defaultValue;
+    }
+
     private double getSetting(SessionSettings settings, SessionID sessionID, String key,
             double defaultValue) throws ConfigError, FieldConvertError {
         return settings.isSetting(sessionID, key)
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.ObjectStreamException;
+import java.nio.charset.Charset;
+
+/**
+ * A string field that keeps its encoded form (tag=value&lt;SOH&gt;) and the
+ * byte sum of that form for the checksum. It is used for the header fields
+ * that are the same in every message sent by a session, so that they are
+ * encoded once and copied as bytes by {@link MessageWriter}.
+ * <p>
+ * As the field is shared between messages its value cannot be changed.
+ */
+final class EncodedStringField extends StringField {
+    static final long serialVersionUID = 3021693758142236853L;
+
+    private final transient Charset charset;
+    private final transient byte[] encoded;
+    private final transient int checksum;
+
+    EncodedStringField(int field, String value, Charset charset) {
+        super(field, value);
+        this.charset = charset;
+        encoded = (toString() + '\001').getBytes(charset);
+        int sum = 0;
+        for (final byte b : encoded) {
+            sum += b & 0xFF;
+        }
+        checksum = sum;
+    }
+
+    @Override
+    protected void setObject(String object) {
+        throw new UnsupportedOperationException("Encoded fields cannot be changed");
+    }
+
+    @Override
+    public void setTag(int tag) {
+        throw new UnsupportedOperationException("Encoded fields cannot be changed");
+    }
+
+    boolean isEncodedWith(Charset charset) {
+        return this.charset.equals(charset);
+    }
+
+    byte[] encoded() {
+        return encoded;
+    }
+
+    int encodedChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Serialized as a plain StringField, the encoded form is not needed by
+     * a deserialized message.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return new StringField(getTag(), getObject());
+    }
+}
@@ -19,6 +19,10 @@
 
 package quickfix;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
@@ -50,16 +54,25 @@ public abstract class FieldMap implements Serializable {
 
     static final long serialVersionUID = -3193357271891865972L;
 
-    private final int[] fieldOrder;
+    /**
+     * The serialized form is the one written while the fields were kept in a
+     * <code>TreeMap</code>, so messages can be exchanged with earlier versions.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("fieldOrder", int[].class),
+            new ObjectStreamField("fields", TreeMap.class),
+            new ObjectStreamField("groups", TreeMap.class) };
 
-    private final TreeMap<Integer, Field<?>> fields;
+    // not final, since they are assigned by readObject
+    private int[] fieldOrder;
 
-    private final TreeMap<Integer, List<Group>> groups = new TreeMap<Integer, List<Group>>();
+    private FieldStorage fields;
+
+    private TreeMap<Integer, List<Group>> groups = new TreeMap<Integer, List<Group>>();
 
     protected FieldMap(int[] fieldOrder) {
         this.fieldOrder = fieldOrder;
-        fields = new TreeMap<Integer, Field<?>>(
-                fieldOrder != null ? new FieldOrderComparator() : null);
+        fields = new FieldStorage(fieldOrder);
     }
 
     protected FieldMap() {
@@ -90,10 +103,14 @@ public abstract class FieldMap implements Serializable {
         return -1;
     }
 
-    private static boolean isOrderedField(int field, int[] fieldOrder) {
+    static boolean isOrderedField(int field, int[] fieldOrder) {
         return indexOf(field, fieldOrder) > -1;
     }
 
+    /**
+     * Only used for the serialized form, which keeps the fields in a
+     * <code>TreeMap</code> ordered by this comparator.
+     */
     private class FieldOrderComparator implements Comparator<Integer>, Serializable {
         static final long serialVersionUID = 3416006398018829270L;
 
@@ -112,6 +129,38 @@ public abstract class FieldMap implements Serializable {
         }
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        final TreeMap<Integer, Field<?>> fieldsByTag = new TreeMap<Integer, Field<?>>(
+                fieldOrder != null ? new FieldOrderComparator() : null);
+        for (int i = 0; i < fields.size(); i++) {
+            final Field<?> field = fields.valueAt(i);
+            fieldsByTag.put(field.getField(), field);
+        }
+        final ObjectOutputStream.PutField putFields = out.putFields();
+        putFields.put("fieldOrder", fieldOrder);
+        putFields.put("fields", fieldsByTag);
+        putFields.put("groups", groups);
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        final ObjectInputStream.GetField getFields = in.readFields();
+        fieldOrder = (int[]) getFields.get("fieldOrder", null);
+        fields = new FieldStorage(fieldOrder);
+        final TreeMap<Integer, Field<?>> fieldsByTag = (TreeMap<Integer, Field<?>>) getFields
+                .get("fields", null);
+        if (fieldsByTag != null) {
+            for (final Field<?> field : fieldsByTag.values()) {
+                fields.put(field.getField(), field);
+            }
+        }
+        groups = (TreeMap<Integer, List<Group>>) getFields.get("groups", null);
+        if (groups == null) {
+            groups = new TreeMap<Integer, List<Group>>();
+        }
+    }
+
     public void setFields(FieldMap fieldMap) {
         fields.clear();
         fields.putAll(fieldMap.fields);
@@ -171,6 +220,18 @@ public abstract class FieldMap implements Serializable {
         setField(new StringField(field, DecimalConverter.convert(value, padding)));
     }
 
+    /**
+     * Sets a decimal field to <code>mantissa * 10^-scale</code>, formatted
+     * with <code>scale</code> digits after the decimal point.
+     */
+    public void setDecimal(int field, long mantissa, int scale) {
+        setField(new StringField(field, DecimalConverter.convert(mantissa, scale)));
+    }
+
+    public void setDecimal(int field, FixedPointDecimal value) {
+        setDecimal(field, value.getMantissa(), value.getScale());
+    }
+
     public void setUtcTimeStamp(int field, Timestamp value) {
         setUtcTimeStamp(field, value, false, false);
     }
@@ -237,7 +298,11 @@ public abstract class FieldMap implements Serializable {
 
     public int getInt(int field) throws FieldNotFound {
         try {
-            return IntConverter.convert(getString(field));
+            final StringField f = getField(field);
+            if (f instanceof ByteSliceField) {
+                return ((ByteSliceField) f).getIntValue();
+            }
+            return IntConverter.convert(f.getValue());
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -245,7 +310,11 @@ public abstract class FieldMap implements Serializable {
 
     public double getDouble(int field) throws FieldNotFound {
         try {
-            return DoubleConverter.convert(getString(field));
+            final StringField f = getField(field);
+            if (f instanceof ByteSliceField) {
+                return ((ByteSliceField) f).getDoubleValue();
+            }
+            return DoubleConverter.convert(f.getValue());
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -253,7 +322,34 @@ public abstract class FieldMap implements Serializable {
 
     public BigDecimal getDecimal(int field) throws FieldNotFound {
         try {
-            return DecimalConverter.convert(getString(field));
+            final StringField f = getField(field);
+            if (f instanceof ByteSliceField) {
+                return ((ByteSliceField) f).getDecimalValue();
+            }
+            return DecimalConverter.convert(f.getValue());
+        } catch (final FieldConvertError e) {
+            throw newIncorrectDataException(e, field);
+        }
+    }
+
+    /**
+     * Reads a decimal field into a fixed-point decimal without creating a
+     * BigDecimal, or a String if the message was parsed from bytes.
+     *
+     * @param field the tag of the field
+     * @param value receives the value, so that it can be reused
+     * @return the value
+     * @throws FieldNotFound if the field is not set
+     * @throws FieldException if the value is not a plain decimal whose digits
+     *             fit in a long
+     */
+    public FixedPointDecimal getDecimal(int field, FixedPointDecimal value) throws FieldNotFound {
+        try {
+            final StringField f = getField(field);
+            if (f instanceof ByteSliceField) {
+                return ((ByteSliceField) f).getDecimalValue(value);
+            }
+            return DecimalConverter.convert(f.getValue(), value);
         } catch (final FieldConvertError e) {
             throw newIncorrectDataException(e, field);
         }
@@ -288,12 +384,17 @@ public abstract class FieldMap implements Serializable {
     }
 
     public void setField(StringField field) {
-        if (field.getValue() == null) {
+        if (isNullValue(field)) {
             throw new NullPointerException("Null field values are not allowed.");
         }
         fields.put(field.getField(), field);
     }
 
+    private static boolean isNullValue(StringField field) {
+        // parsed slices always have a value and should not be decoded just for this check
+        return !(field instanceof ByteSliceField) && field.getValue() == null;
+    }
+
     public void setField(BooleanField field) {
         setBoolean(field.getField(), field.getValue());
     }
@@ -401,7 +502,7 @@ public abstract class FieldMap implements Serializable {
     }
 
     public Iterator<Field<?>> iterator() {
-        return fields.values().iterator();
+        return fields.iterator();
     }
 
     protected void initializeFrom(FieldMap source) {
@@ -423,30 +524,53 @@ public abstract class FieldMap implements Serializable {
         return groups.containsKey(field);
     }
 
-    private static void appendField(StringBuilder buffer, Field<?> field) {
-        if (field != null) {
+    /**
+     * Receives the fields of a field map in the order they are sent on the wire.
+     */
+    interface FieldWriter {
+        void write(Field<?> field);
+    }
+
+    private static final class StringBuilderFieldWriter implements FieldWriter {
+        private final StringBuilder buffer;
+
+        StringBuilderFieldWriter(StringBuilder buffer) {
+            this.buffer = buffer;
+        }
+
+        public void write(Field<?> field) {
             field.toString(buffer);
             buffer.append('\001');
         }
     }
 
     protected void calculateString(StringBuilder buffer, int[] preFields, int[] postFields) {
+        writeFields(new StringBuilderFieldWriter(buffer), preFields, postFields);
+    }
+
+    /**
+     * Passes the fields and groups to the writer in wire order. The fields in
+     * <code>preFields</code> are written first and the fields in
+     * <code>postFields</code> last.
+     */
+    void writeFields(FieldWriter writer, int[] preFields, int[] postFields) {
         if (preFields != null) {
             for (int preField : preFields) {
-                appendField(buffer, getField(preField, null));
+                writeField(writer, getField(preField, null));
             }
         }
 
-        for (final Field<?> field : fields.values()) {
+        for (int i = 0; i < fields.size(); i++) {
+            final Field<?> field = fields.valueAt(i);
             final int tag = field.getField();
             if (!isOrderedField(tag, preFields) && !isOrderedField(tag, postFields)
                     && !isGroupField(tag)) {
-                appendField(buffer, field);
+                writer.write(field);
             } else if (isGroupField(tag) && isOrderedField(tag, fieldOrder)
                     && getGroupCount(tag) > 0) {
-                appendField(buffer, field);
+                writer.write(field);
                 for (Group group : getGroups(tag)) {
-                    group.calculateString(buffer, preFields, postFields);
+                    group.writeFields(writer, preFields, postFields);
                 }
             }
         }
@@ -457,10 +581,9 @@ public abstract class FieldMap implements Serializable {
                 final List<Group> groups = entry.getValue();
                 int groupCount = groups.size();
                 if (groupCount > 0) {
-                    final IntField countField = new IntField(groupCountTag.intValue(), groupCount);
-                    appendField(buffer, countField);
+                    writer.write(new IntField(groupCountTag.intValue(), groupCount));
                     for (Group group : groups) {
-                        group.calculateString(buffer, preFields, postFields);
+                        group.writeFields(writer, preFields, postFields);
                     }
                 }
             }
@@ -468,14 +591,21 @@ public abstract class FieldMap implements Serializable {
 
         if (postFields != null) {
             for (int postField : postFields) {
-                appendField(buffer, getField(postField, null));
+                writeField(writer, getField(postField, null));
             }
         }
     }
 
+    private static void writeField(FieldWriter writer, Field<?> field) {
+        if (field != null) {
+            writer.write(field);
+        }
+    }
+
     int calculateLength() {
         int result = 0;
-        for (final Field<?> field : fields.values()) {
+        for (int i = 0; i < fields.size(); i++) {
+            final Field<?> field = fields.valueAt(i);
             int tag = field.getField();
             if (tag != BeginString.FIELD && tag != BodyLength.FIELD
                     && tag != CheckSum.FIELD && !isGroupField(tag)) {
@@ -499,7 +629,8 @@ public abstract class FieldMap implements Serializable {
 
     int calculateChecksum() {
         int result = 0;
-        for (final Field<?> field : fields.values()) {
+        for (int i = 0; i < fields.size(); i++) {
+            final Field<?> field = fields.valueAt(i);
             if (field.getField() != CheckSum.FIELD && !isGroupField(field.getField())) {
                 result += field.getChecksum();
             }
@@ -642,12 +773,11 @@ public abstract class FieldMap implements Serializable {
     }
 
     public void setField(StringField field, boolean duplicateTagsAllowed) {
-        if (field.getValue() == null) {
+        if (isNullValue(field)) {
             throw new NullPointerException("Null field values are not allowed.");
         }
         if(!duplicateTagsAllowed){
-            Field old =  fields.get(field.getField());
-            if(old != null){
+            if (fields.containsKey(field.getField())) {
                 throw new FieldException(SessionRejectReason.TAG_APPEARS_MORE_THAN_ONCE, field.getTag());
             }
         }
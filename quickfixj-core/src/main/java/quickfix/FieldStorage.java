@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Field storage used by {@link FieldMap}. Fields are kept in parallel primitive
+ * arrays sorted by their position in the field order, so lookups are a binary
+ * search over a <code>long[]</code> and do not box the tag.
+ * <p>
+ * Each field gets a sort key made of its rank in the field order (or
+ * <code>Integer.MAX_VALUE</code> if it is not listed) in the upper 32 bits and
+ * its tag in the lower 32 bits. This gives the same ordering as the comparator
+ * previously used with a <code>TreeMap</code>: ordered fields first, by rank,
+ * followed by all other fields, by tag. Without a field order the key is simply
+ * the tag.
+ * <p>
+ * Since fields are usually added in order, most insertions are appends.
+ */
+final class FieldStorage {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int[] fieldOrder;
+    private long[] keys;
+    private int[] tags;
+    private Field<?>[] values;
+    private int size;
+    private int modCount;
+
+    FieldStorage(int[] fieldOrder) {
+        this.fieldOrder = fieldOrder;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        if (size > 0) {
+            for (int i = 0; i < size; i++) {
+                values[i] = null;
+            }
+            size = 0;
+            modCount++;
+        }
+    }
+
+    Field<?> valueAt(int index) {
+        return values[index];
+    }
+
+    Field<?> get(int tag) {
+        final int index = indexOf(tag);
+        return index >= 0 ? values[index] : null;
+    }
+
+    boolean containsKey(int tag) {
+        return indexOf(tag) >= 0;
+    }
+
+    Field<?> put(int tag, Field<?> field) {
+        final long key = keyOf(tag);
+        int index = size > 0 && key > keys[size - 1] ? -(size + 1) : search(key);
+        if (index >= 0) {
+            final Field<?> old = values[index];
+            values[index] = field;
+            return old;
+        }
+        index = -(index + 1);
+        ensureCapacity(size + 1);
+        if (index < size) {
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(tags, index, tags, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        keys[index] = key;
+        tags[index] = tag;
+        values[index] = field;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    Field<?> remove(int tag) {
+        final int index = indexOf(tag);
+        if (index < 0) {
+            return null;
+        }
+        final Field<?> old = values[index];
+        removeAt(index);
+        return old;
+    }
+
+    void putAll(FieldStorage source) {
+        if (source.size == 0) {
+            return;
+        }
+        if (size == 0 && source.fieldOrder == fieldOrder) {
+            // same ordering, so the arrays can be copied as they are
+            ensureCapacity(source.size);
+            System.arraycopy(source.keys, 0, keys, 0, source.size);
+            System.arraycopy(source.tags, 0, tags, 0, source.size);
+            System.arraycopy(source.values, 0, values, 0, source.size);
+            size = source.size;
+            modCount++;
+        } else {
+            for (int i = 0; i < source.size; i++) {
+                put(source.tags[i], source.values[i]);
+            }
+        }
+    }
+
+    Iterator<Field<?>> iterator() {
+        return new Iterator<Field<?>>() {
+            private int next;
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            public Field<?> next() {
+                checkForComodification();
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return values[last];
+            }
+
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                checkForComodification();
+                removeAt(last);
+                next = last;
+                last = -1;
+                expectedModCount = modCount;
+            }
+
+            private void checkForComodification() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+            }
+        };
+    }
+
+    private void removeAt(int index) {
+        final int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(keys, index + 1, keys, index, moved);
+            System.arraycopy(tags, index + 1, tags, index, moved);
+            System.arraycopy(values, index + 1, values, index, moved);
+        }
+        values[--size] = null;
+        modCount++;
+    }
+
+    private int indexOf(int tag) {
+        return size > 0 ? search(keyOf(tag)) : -1;
+    }
+
+    private long keyOf(int tag) {
+        if (fieldOrder == null) {
+            return tag;
+        }
+        final int rank = FieldMap.indexOf(tag, fieldOrder);
+        return ((long) (rank > -1 ? rank : Integer.MAX_VALUE) << 32) | (tag & 0xFFFFFFFFL);
+    }
+
+    private int search(long key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midKey = keys[mid];
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (keys == null) {
+            final int length = Math.max(INITIAL_CAPACITY, capacity);
+            keys = new long[length];
+            tags = new int[length];
+            values = new Field<?>[length];
+        } else if (capacity > keys.length) {
+            final int length = Math.max(keys.length * 2, capacity);
+            final long[] newKeys = new long[length];
+            final int[] newTags = new int[length];
+            final Field<?>[] newValues = new Field<?>[length];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            System.arraycopy(tags, 0, newTags, 0, size);
+            System.arraycopy(values, 0, newValues, 0, size);
+            keys = newKeys;
+            tags = newTags;
+            values = newValues;
+        }
+    }
+}
@@ -28,7 +28,7 @@ import java.io.UnsupportedEncodingException;
 
 import org.quickfixj.CharsetSupport;
 
-import quickfix.field.converter.UtcTimestampConverter;
+import quickfix.field.converter.UtcTimestampCodec;
 
 /**
  * File log implementation. THIS CLASS IS PUBLIC ONLY TO MAINTAIN COMPATIBILITY
@@ -120,9 +120,14 @@ public class FileLog extends AbstractLog {
     }
 
     private void writeTimeStamp(OutputStream out) throws IOException {
-        String formattedTime = UtcTimestampConverter.convert(SystemTime.getDate(), includeMillis, includeMicros);
-        out.write(formattedTime.getBytes(CharsetSupport.getCharset()));
-        out.write(TIME_STAMP_DELIMITER);
+        final byte[] buffer = new byte[UtcTimestampCodec.MAX_TIMESTAMP_LENGTH
+                + TIME_STAMP_DELIMITER.length];
+        final long time = SystemTime.currentTimeMillis();
+        int length = UtcTimestampCodec.formatTimestamp(time, (int) (time % 1000) * 1000000,
+                UtcTimestampCodec.getFractionDigits(includeMillis, includeMicros, false), buffer, 0);
+        System.arraycopy(TIME_STAMP_DELIMITER, 0, buffer, length, TIME_STAMP_DELIMITER.length);
+        length += TIME_STAMP_DELIMITER.length;
+        out.write(buffer, 0, length);
     }
 
     String getEventFileName() {
@@ -24,18 +24,17 @@ import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -51,40 +50,63 @@ import quickfix.field.converter.UtcTimestampConverter;
  *
  * @see quickfix.FileStoreFactory
  */
-public class FileStore implements MessageStore, Closeable {
+public class FileStore implements RawMessageStore, Closeable {
     private static final String READ_OPTION = "r";
     private static final String WRITE_OPTION = "w";
     private static final String SYNC_OPTION = "d";
     private static final String NOSYNC_OPTION = "";
 
-    private final TreeMap<Long, long[]> messageIndex;
+    private final PositionCache messageIndex;
     private final MemoryStore cache = new MemoryStore();
 
     private final String msgFileName;
     private final String headerFileName;
+    private final String indexFileName;
     private final String senderSeqNumFileName;
     private final String targetSeqNumFileName;
     private final String sessionFileName;
     private final boolean syncWrites;
+    private final boolean groupCommit;
     private final int maxCachedMsgs;
+    private final boolean mappedIndex;
+    private final MessageBodyFile.Rollover rollover;
     private final String charsetEncoding = CharsetSupport.getCharset();
-    private RandomAccessFile messageFileReader;
-    private RandomAccessFile messageFileWriter;
-    private DataOutputStream headerDataOutputStream;
-    private FileOutputStream headerFileOutputStream;
+    private MessageBodyFile bodyFile;
+    private MessageIndexFile indexFile;
     private RandomAccessFile senderSequenceNumberFile;
     private RandomAccessFile targetSequenceNumberFile;
     private SessionID sessionID;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean unsyncedMessages;
 
     FileStore(String path, SessionID sessionID, boolean syncWrites, int maxCachedMsgs)
             throws IOException {
+        this(path, sessionID, syncWrites, false, maxCachedMsgs);
+    }
+
+    FileStore(String path, SessionID sessionID, boolean syncWrites, boolean groupCommit,
+            int maxCachedMsgs) throws IOException {
+        this(path, sessionID, syncWrites, groupCommit, maxCachedMsgs, false);
+    }
+
+    FileStore(String path, SessionID sessionID, boolean syncWrites, boolean groupCommit,
+            int maxCachedMsgs, boolean mappedIndex) throws IOException {
+        this(path, sessionID, syncWrites, groupCommit, maxCachedMsgs, mappedIndex,
+                MessageBodyFile.Rollover.NONE);
+    }
+
+    FileStore(String path, SessionID sessionID, boolean syncWrites, boolean groupCommit,
+            int maxCachedMsgs, boolean mappedIndex, MessageBodyFile.Rollover rollover)
+            throws IOException {
         this.syncWrites = syncWrites;
+        this.groupCommit = syncWrites && groupCommit;
         this.maxCachedMsgs = maxCachedMsgs;
+        this.mappedIndex = mappedIndex;
+        this.rollover = rollover;
         this.sessionID = sessionID;
 
         if (maxCachedMsgs > 0) {
-            messageIndex = new TreeMap<Long, long[]>();
+            messageIndex = new PositionCache(maxCachedMsgs);
         } else {
             messageIndex = null;
         }
@@ -95,6 +117,7 @@ public class FileStore implements MessageStore, Closeable {
 
         msgFileName = prefix + "body";
         headerFileName = prefix + "header";
+        indexFileName = prefix + "index";
         senderSeqNumFileName = prefix + "senderseqnums";
         targetSeqNumFileName = prefix + "targetseqnums";
         sessionFileName = prefix + "session";
@@ -115,8 +138,7 @@ public class FileStore implements MessageStore, Closeable {
             } else {
                 close();
             }
-            messageFileWriter = new RandomAccessFile(msgFileName, getRandomAccessFileOptions());
-            messageFileReader = new RandomAccessFile(msgFileName, READ_OPTION);
+            bodyFile = new MessageBodyFile(msgFileName, getRandomAccessFileOptions(), rollover);
             senderSequenceNumberFile = new RandomAccessFile(senderSeqNumFileName, getRandomAccessFileOptions());
             targetSequenceNumberFile = new RandomAccessFile(targetSeqNumFileName, getRandomAccessFileOptions());
 
@@ -131,7 +153,6 @@ public class FileStore implements MessageStore, Closeable {
         initializeMessageIndex();
         initializeSequenceNumbers();
         initializeSessionCreateTime();
-        messageFileWriter.seek(messageFileWriter.length());
     }
 
     private void initializeSessionCreateTime() throws IOException {
@@ -199,46 +220,39 @@ public class FileStore implements MessageStore, Closeable {
     }
 
     private void initializeMessageIndex() throws IOException {
+        final File headerFile = new File(headerFileName);
+        if (headerFile.exists()) {
+            // left by an earlier version or by an interrupted conversion
+            try {
+                MessageIndexFile.convert(headerFile, indexFileName);
+            } catch (IOException e) {
+                throw new IOException(String.format("IO problem with file [%s]", headerFileName), e);
+            }
+        }
+        indexFile = new MessageIndexFile(indexFileName, getRandomAccessFileOptions(), mappedIndex);
         // this part is unnecessary if no offsets are being stored in memory
         if (messageIndex != null) {
             messageIndex.clear();
-            final File headerFile = new File(headerFileName);
-            if (headerFile.exists()) {
-                final DataInputStream headerDataInputStream = new DataInputStream(
-                        new BufferedInputStream(new FileInputStream(headerFile)));
-                try {
-                    while (headerDataInputStream.available() > 0) {
-                        final int sequenceNumber = headerDataInputStream.readInt();
-                        final long offset = headerDataInputStream.readLong();
-                        final int size = headerDataInputStream.readInt();
-                        updateMessageIndex((long) sequenceNumber, new long[] { offset, size });
+            // only the most recent messages are loaded, older ones are read from the index file
+            final int lastSequence = indexFile.getLastSequence();
+            final int firstSequence = Math.max(indexFile.getFirstSequence(),
+                    lastSequence - maxCachedMsgs + 1);
+            if (firstSequence <= lastSequence) {
+                final long[] offsets = new long[lastSequence - firstSequence + 1];
+                final int[] sizes = new int[offsets.length];
+                indexFile.get(firstSequence, lastSequence, offsets, sizes);
+                for (int i = 0; i < offsets.length; i++) {
+                    if (sizes[i] >= 0) {
+                        messageIndex.put(firstSequence + i, offsets[i], sizes[i]);
                     }
-                } catch (EOFException e) {
-                    throw new IOException(String.format("End of file [%s] or end of stream has been reached", headerFileName), e);
-                } catch (IOException e) {
-                    throw new IOException(String.format("IO problem with file [%s]", headerFileName), e);
-                } finally {
-                    headerDataInputStream.close();
                 }
             }
         }
-        headerFileOutputStream = new FileOutputStream(headerFileName, true);
-        headerDataOutputStream = new DataOutputStream(new BufferedOutputStream(
-                headerFileOutputStream));
-    }
-
-    private void updateMessageIndex(Long sequenceNum, long[] offsetAndSize) {
-        // Remove the lowest indexed sequence number if this addition
-        // would result the index growing to larger than maxCachedMsgs.
-        if (messageIndex.size() >= maxCachedMsgs && messageIndex.get(sequenceNum) == null) {
-            messageIndex.pollFirstEntry();
-        }
-
-        messageIndex.put(sequenceNum, offsetAndSize);
     }
 
     private String getRandomAccessFileOptions() {
-        return READ_OPTION + WRITE_OPTION + (syncWrites ? SYNC_OPTION : NOSYNC_OPTION);
+        // with group commit the files are forced by the flusher instead
+        return READ_OPTION + WRITE_OPTION + (syncWrites && !groupCommit ? SYNC_OPTION : NOSYNC_OPTION);
     }
 
     /**
@@ -258,9 +272,14 @@ public class FileStore implements MessageStore, Closeable {
     public void close() throws IOException {
         try {
             lock.writeLock().lock();
-            closeOutputStream(headerDataOutputStream);
-            closeFile(messageFileWriter);
-            closeFile(messageFileReader);
+            if (unsyncedMessages) {
+                GroupCommitFlusher.getInstance().force(indexFile.getChannel(),
+                        bodyFile.getChannel());
+                unsyncedMessages = false;
+            }
+            // releases the mapping of the index, which no read holds under the write lock
+            closeFile(indexFile);
+            closeFile(bodyFile);
             closeFile(senderSequenceNumberFile);
             closeFile(targetSequenceNumberFile);
         } finally {
@@ -268,7 +287,7 @@ public class FileStore implements MessageStore, Closeable {
         }
     }
 
-    private void closeFile(RandomAccessFile file) throws IOException {
+    private void closeFile(Closeable file) throws IOException {
         if (file != null) {
             try {
                 file.close();
@@ -279,23 +298,16 @@ public class FileStore implements MessageStore, Closeable {
         }
     }
 
-    private void closeOutputStream(OutputStream stream) throws IOException {
-        if (stream != null) {
-            try {
-                stream.close();
-            } catch (IOException e){
-                LogUtil.logThrowable(sessionID, e.getMessage(), e);
-                throw e;
-            }
-        }
-    }
-
     public void deleteFiles() throws IOException {
         try {
             lock.writeLock().lock();
             close();
             deleteFile(headerFileName);
-            deleteFile(msgFileName);
+            deleteFile(MessageIndexFile.getBackupFile(new File(headerFileName)).getPath());
+            deleteFile(indexFileName);
+            for (final File file : MessageBodyFile.listFiles(msgFileName)) {
+                deleteFile(file.getPath());
+            }
             deleteFile(senderSeqNumFileName);
             deleteFile(targetSeqNumFileName);
             deleteFile(sessionFileName);
@@ -392,48 +404,52 @@ public class FileStore implements MessageStore, Closeable {
      */
     public void get(int startSequence, int endSequence, Collection<String> messages)
         throws IOException {
-        final Set<Integer> uncachedOffsetMsgIds = new HashSet<Integer>();
-        // Use a treemap to make sure the messages are sorted by sequence num
-        final TreeMap<Integer, String> messagesFound = new TreeMap<Integer, String>();
-        for (int i = startSequence; i <= endSequence; i++) {
-            final String message = getMessage(i);
-            if (message != null) {
-                messagesFound.put(i, message);
-            } else {
-                uncachedOffsetMsgIds.add(i);
-            }
+        for (final byte[] data : getMessageData(startSequence, endSequence)) {
+            messages.add(new String(data, charsetEncoding));
         }
+    }
 
-        if (!uncachedOffsetMsgIds.isEmpty()) {
-            // parse the header file to find missing messages
-            final File headerFile = new File(headerFileName);
-            try {
-                lock.writeLock().lock();
-                final DataInputStream headerDataInputStream = new DataInputStream(
-                        new BufferedInputStream(new FileInputStream(headerFile)));
-                try {
-                    while (headerDataInputStream.available() > 0) {
-                        final int sequenceNumber = headerDataInputStream.readInt();
-                        final long offset = headerDataInputStream.readLong();
-                        final int size = headerDataInputStream.readInt();
-                        if (uncachedOffsetMsgIds.remove(sequenceNumber)) {
-                            final String message = getMessage(new long[]{offset, size},
-                                    sequenceNumber);
-                            messagesFound.put(sequenceNumber, message);
-                        }
-                        if (uncachedOffsetMsgIds.isEmpty()) {
-                            break;
-                        }
+    /* (non-Javadoc)
+     * @see quickfix.RawMessageStore#getMessageBuffers(int, int, java.util.Collection)
+     */
+    public void getMessageBuffers(int startSequence, int endSequence,
+            Collection<ByteBuffer> messages) throws IOException {
+        for (final byte[] data : getMessageData(startSequence, endSequence)) {
+            messages.add(ByteBuffer.wrap(data));
+        }
+    }
+
+    private Collection<byte[]> getMessageData(int startSequence, int endSequence)
+        throws IOException {
+        final Collection<byte[]> messages = new ArrayList<byte[]>();
+        try {
+            lock.readLock().lock();
+            // Use a treemap to make sure the messages are sorted by sequence num
+            final TreeMap<Long, long[]> positions = new TreeMap<Long, long[]>();
+            final int start = Math.max(startSequence, indexFile.getFirstSequence());
+            final int end = Math.min(endSequence, indexFile.getLastSequence());
+            // runs of messages that are not cached are looked up in the index file
+            int uncachedStart = -1;
+            for (int i = start; i <= end; i++) {
+                final long[] offsetAndSize = messageIndex != null ? messageIndex.get(i) : null;
+                if (offsetAndSize != null) {
+                    if (uncachedStart >= 0) {
+                        indexFile.get(uncachedStart, i - 1, positions);
+                        uncachedStart = -1;
                     }
-                } finally {
-                    headerDataInputStream.close();
+                    positions.put((long) i, offsetAndSize);
+                } else if (uncachedStart < 0) {
+                    uncachedStart = i;
                 }
-            } finally {
-                lock.writeLock().unlock();
             }
+            if (uncachedStart >= 0) {
+                indexFile.get(uncachedStart, end, positions);
+            }
+            bodyFile.read(positions.values(), messages);
+        } finally {
+            lock.readLock().unlock();
         }
-
-        messages.addAll(messagesFound.values());
+        return messages;
     }
 
     /**
@@ -445,57 +461,28 @@ public class FileStore implements MessageStore, Closeable {
         throw new UnsupportedOperationException("not supported");
     }
 
-    private String getMessage(int i) throws IOException {
-        try {
-            lock.writeLock().lock();
-            String message = null;
-            if (messageIndex != null) {
-                final long[] offsetAndSize = messageIndex.get((long) i);
-                if (offsetAndSize != null) {
-                    message = getMessage(offsetAndSize, i);
-                }
-            }
-            return message;
-        } finally {
-            lock.writeLock().unlock();
-        }
-    }
-
-    private String getMessage(long[] offsetAndSize, int i) throws IOException {
-        final long offset = offsetAndSize[0];
-        messageFileReader.seek(offset);
-        final int size = (int) offsetAndSize[1];
-        final byte[] data = new byte[size];
-        final int sizeRead = messageFileReader.read(data);
-        if (sizeRead != size) {
-            throw new IOException("Truncated input while reading message: messageIndex=" + i
-                    + ", offset=" + offset + ", expected size=" + size + ", size read from file="
-                    + sizeRead);
-        }
-        final String message = new String(data, charsetEncoding);
-        messageFileReader.seek(messageFileReader.length());
-        return message;
-    }
-
     /* (non-Javadoc)
      * @see quickfix.MessageStore#set(int, java.lang.String)
      */
     public boolean set(int sequence, String message) throws IOException {
+        final byte[] data = message.getBytes(charsetEncoding);
+        return set(sequence, data, 0, data.length);
+    }
+
+    /* (non-Javadoc)
+     * @see quickfix.RawMessageStore#set(int, byte[], int, int)
+     */
+    public boolean set(int sequence, byte[] data, int offset, int length) throws IOException {
         try {
             lock.writeLock().lock();
-            final long offset = messageFileWriter.getFilePointer();
-            final int size = message.length();
+            final long position = bodyFile.append(data, offset, length);
+            // the message is written first so the index never points past the end of the file
+            indexFile.put(sequence, position, length);
             if (messageIndex != null) {
-                updateMessageIndex((long) sequence, new long[]{offset, size});
-            }
-            headerDataOutputStream.writeInt(sequence);
-            headerDataOutputStream.writeLong(offset);
-            headerDataOutputStream.writeInt(size);
-            headerDataOutputStream.flush();
-            if (syncWrites) {
-                headerFileOutputStream.getFD().sync();
+                messageIndex.put(sequence, position, length);
             }
-            messageFileWriter.write(message.getBytes(CharsetSupport.getCharset()));
+            // synced together with the sequence number that follows it
+            unsyncedMessages = groupCommit;
             return true;
         } finally {
             lock.writeLock().unlock();
@@ -505,21 +492,47 @@ public class FileStore implements MessageStore, Closeable {
     private void storeSenderSequenceNumber() throws IOException {
         senderSequenceNumberFile.seek(0);
         senderSequenceNumberFile.writeUTF("" + cache.getNextSenderMsgSeqNum());
+        sync(senderSequenceNumberFile.getChannel());
     }
 
     private void storeTargetSequenceNumber() throws IOException {
         targetSequenceNumberFile.seek(0);
         targetSequenceNumberFile.writeUTF("" + cache.getNextTargetMsgSeqNum());
+        sync(targetSequenceNumberFile.getChannel());
+    }
+
+    /**
+     * Waits for the group commit flusher to force a sequence number file to
+     * disk, along with any messages stored since the last sync.
+     */
+    private void sync(FileChannel sequenceNumberChannel) throws IOException {
+        if (groupCommit) {
+            if (unsyncedMessages) {
+                GroupCommitFlusher.getInstance().force(sequenceNumberChannel,
+                        indexFile.getChannel(), bodyFile.getChannel());
+                unsyncedMessages = false;
+            } else {
+                GroupCommitFlusher.getInstance().force(sequenceNumberChannel);
+            }
+        }
     }
 
     String getHeaderFileName() {
         return headerFileName;
     }
 
+    String getIndexFileName() {
+        return indexFileName;
+    }
+
     String getMsgFileName() {
         return msgFileName;
     }
 
+    int getSegmentCount() {
+        return bodyFile.getSegmentCount();
+    }
+
     String getSeqNumSenderFileName() {
         return senderSeqNumFileName;
     }
@@ -542,4 +555,87 @@ public class FileStore implements MessageStore, Closeable {
     public void reset() throws IOException {
         initialize(true);
     }
-}
\ No newline at end of file
+
+    /**
+     * Offsets and sizes of the most recent messages, kept in arrays that are
+     * used as a ring indexed by sequence number. The ring covers up to
+     * maxCachedMsgs sequence numbers ending with the highest one stored, and
+     * grows to that size as messages are added. A zero size marks a sequence
+     * number that is not cached.
+     */
+    private static final class PositionCache {
+        private static final int INITIAL_SIZE = 1024;
+
+        private final int capacity;
+        private long[] offsets;
+        private int[] sizes;
+        private int firstSequence;
+        private int lastSequence;
+
+        PositionCache(int capacity) {
+            this.capacity = capacity;
+            clear();
+        }
+
+        void clear() {
+            offsets = new long[Math.min(capacity, INITIAL_SIZE)];
+            sizes = new int[offsets.length];
+            firstSequence = 0;
+            lastSequence = 0;
+        }
+
+        long[] get(int sequence) {
+            if (!covers(sequence)) {
+                return null;
+            }
+            final int slot = sequence % sizes.length;
+            return sizes[slot] == 0 ? null : new long[] { offsets[slot], sizes[slot] - 1 };
+        }
+
+        void put(int sequence, long offset, int size) {
+            if (sequence <= 0) {
+                return;
+            }
+            if (lastSequence == 0) {
+                firstSequence = sequence;
+                lastSequence = sequence;
+            } else if (sequence > lastSequence) {
+                while (sizes.length < capacity && sequence - firstSequence >= sizes.length) {
+                    grow();
+                }
+                // slots passed over hold older sequence numbers
+                final int skipped = Math.min(sequence - lastSequence - 1, sizes.length);
+                for (int i = 1; i <= skipped; i++) {
+                    sizes[(lastSequence + i) % sizes.length] = 0;
+                }
+                lastSequence = sequence;
+            } else if (!covers(sequence)) {
+                return;
+            }
+            firstSequence = Math.min(firstSequence, sequence);
+            final int slot = sequence % sizes.length;
+            offsets[slot] = offset;
+            sizes[slot] = size + 1;
+        }
+
+        private boolean covers(int sequence) {
+            return sequence > 0 && sequence <= lastSequence
+                    && sequence > lastSequence - sizes.length;
+        }
+
+        private void grow() {
+            final long[] oldOffsets = offsets;
+            final int[] oldSizes = sizes;
+            offsets = new long[(int) Math.min(capacity, 2L * oldSizes.length)];
+            sizes = new int[offsets.length];
+            for (int sequence = Math.max(1, lastSequence - oldSizes.length + 1);
+                    sequence <= lastSequence; sequence++) {
+                final int oldSlot = sequence % oldSizes.length;
+                if (oldSizes[oldSlot] != 0) {
+                    offsets[sequence % sizes.length] = oldOffsets[oldSlot];
+                    sizes[sequence % sizes.length] = oldSizes[oldSlot];
+                }
+            }
+        }
+    }
+}
@@ -40,14 +40,61 @@ public class FileStoreFactory implements MessageStoreFactory {
      */
     public static final String SETTING_FILE_STORE_SYNC = "FileStoreSync";
 
+    /**
+     * Boolean option, used together with {@link #SETTING_FILE_STORE_SYNC}, for
+     * syncing writes through a shared flusher (group commit). A stored message
+     * is synced together with the sequence number update that follows it, and
+     * a sync is shared by the writers waiting on the same file. The message and
+     * the new sequence number are on disk before the message is sent, as with
+     * {@link #SETTING_FILE_STORE_SYNC} alone, but far fewer syncs are issued.
+     */
+    public static final String SETTING_FILE_STORE_GROUP_COMMIT = "FileStoreGroupCommit";
+
     /**
      * Numeric option limiting the number of messages stored in the in-memory
      * message index. If, during recovery, one or more messages are requested
-     * whose offset/size is not cached in memory, the on-disk header file will
-     * be searched. Values can be from 0 to Integer.MAX_VALUE (default), inclusive.
+     * whose offset/size is not cached in memory, they are looked up in the
+     * on-disk index file. Values can be from 0 to Integer.MAX_VALUE (default), inclusive.
      */
     public static final String SETTING_FILE_STORE_MAX_CACHED_MSGS = "FileStoreMaxCachedMsgs";
 
+    /**
+     * Boolean option for reading the on-disk message index through a memory
+     * mapping instead of file reads. Only the cached messages are loaded when
+     * the store is opened, the positions of older messages are read from the
+     * mapping when they are requested.
+     */
+    public static final String SETTING_FILE_STORE_MAPPED_INDEX = "FileStoreMappedIndex";
+
+    /**
+     * Numeric option for writing messages to a series of segment files instead
+     * of a single body file. A new segment is started when the next message
+     * would make the current one larger than this number of bytes. Zero
+     * (default) does not limit the size of a segment.
+     */
+    public static final String SETTING_FILE_STORE_SEGMENT_SIZE = "FileStoreSegmentSize";
+
+    /**
+     * Numeric option for writing messages to a series of segment files instead
+     * of a single body file. A new segment is started when the current one was
+     * started, or the store opened, this number of seconds ago. Zero (default)
+     * does not limit the age of a segment.
+     */
+    public static final String SETTING_FILE_STORE_SEGMENT_INTERVAL = "FileStoreSegmentInterval";
+
+    /**
+     * Numeric option for the number of closed segments that are kept. Older
+     * segments are deleted, and messages in them are no longer returned for
+     * resends. Zero (default) keeps all segments until the store is reset.
+     */
+    public static final String SETTING_FILE_STORE_RETAINED_SEGMENTS = "FileStoreRetainedSegments";
+
+    /**
+     * Boolean option for compressing closed segments with gzip. Segments are
+     * compressed in the background and read back transparently.
+     */
+    public static final String SETTING_FILE_STORE_COMPRESS_SEGMENTS = "FileStoreCompressSegments";
+
     protected final SessionSettings settings;
 
     /**
@@ -70,6 +117,10 @@ public class FileStoreFactory implements MessageStoreFactory {
             if (settings.isSetting(sessionID, SETTING_FILE_STORE_SYNC)) {
                 syncWrites = settings.getBool(sessionID, SETTING_FILE_STORE_SYNC);
             }
+            boolean groupCommit = false;
+            if (settings.isSetting(sessionID, SETTING_FILE_STORE_GROUP_COMMIT)) {
+                groupCommit = settings.getBool(sessionID, SETTING_FILE_STORE_GROUP_COMMIT);
+            }
             int maxCachedMsgs = 10000;
             if (settings.isSetting(sessionID, SETTING_FILE_STORE_MAX_CACHED_MSGS)) {
                 long maxCachedMsgsSetting = settings.getLong(sessionID, SETTING_FILE_STORE_MAX_CACHED_MSGS);
@@ -77,9 +128,39 @@ public class FileStoreFactory implements MessageStoreFactory {
                     maxCachedMsgs = (int) maxCachedMsgsSetting;
                 }
             }
-            return new FileStore(settings.getString(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH), sessionID, syncWrites, maxCachedMsgs);
+            boolean mappedIndex = false;
+            if (settings.isSetting(sessionID, SETTING_FILE_STORE_MAPPED_INDEX)) {
+                mappedIndex = settings.getBool(sessionID, SETTING_FILE_STORE_MAPPED_INDEX);
+            }
+            return new FileStore(settings.getString(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH), sessionID, syncWrites, groupCommit, maxCachedMsgs, mappedIndex,
+                    getRollover(sessionID));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
+
+    MessageBodyFile.Rollover getRollover(SessionID sessionID) throws ConfigError,
+            FieldConvertError {
+        long segmentSize = 0;
+        if (settings.isSetting(sessionID, SETTING_FILE_STORE_SEGMENT_SIZE)) {
+            segmentSize = settings.getLong(sessionID, SETTING_FILE_STORE_SEGMENT_SIZE);
+        }
+        long segmentInterval = 0;
+        if (settings.isSetting(sessionID, SETTING_FILE_STORE_SEGMENT_INTERVAL)) {
+            segmentInterval = settings.getLong(sessionID, SETTING_FILE_STORE_SEGMENT_INTERVAL) * 1000L;
+        }
+        if (segmentSize <= 0 && segmentInterval <= 0) {
+            return MessageBodyFile.Rollover.NONE;
+        }
+        int retainedSegments = 0;
+        if (settings.isSetting(sessionID, SETTING_FILE_STORE_RETAINED_SEGMENTS)) {
+            retainedSegments = (int) settings.getLong(sessionID, SETTING_FILE_STORE_RETAINED_SEGMENTS);
+        }
+        boolean compressSegments = false;
+        if (settings.isSetting(sessionID, SETTING_FILE_STORE_COMPRESS_SEGMENTS)) {
+            compressSegments = settings.getBool(sessionID, SETTING_FILE_STORE_COMPRESS_SEGMENTS);
+        }
+        return new MessageBodyFile.Rollover(segmentSize, segmentInterval, retainedSegments,
+                compressSegments);
+    }
 }
@@ -24,10 +24,34 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
 public class FileUtil {
+    // Unsafe.invokeCleaner(ByteBuffer) on Java 9 and later
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Exception e) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
     public static String fileAppendPath(String pathPrefix, String pathSuffix) {
         return pathPrefix + (pathPrefix.endsWith(File.separator) ? "" : File.separator)
                 + pathSuffix;
@@ -157,4 +181,98 @@ public class FileUtil {
 
         return in;
     }
+
+    /**
+     * Find a file/resource in a series of locations. The locations are searched
+     * in the same order as {@link #open(Class, String, Location...)} does. A
+     * URL location is not opened to check it, so it is only skipped if it is
+     * not a valid URL or is a <code>file</code> URL of a missing file.
+     *
+     * @param clazz a class (can be null) for resource searches
+     * @param name the name of the file/resource
+     * @param locations a series of locations that will be searched.
+     * @return the URL of the file/resource or null if it could not be found.
+     */
+    public static URL locate(Class<?> clazz, String name, Location... locations) {
+        URL url = null;
+        for (Location location : locations) {
+            switch (location) {
+            case FILESYSTEM:
+                final File file = new File(name);
+                if (file.isFile()) {
+                    try {
+                        url = file.toURI().toURL();
+                    } catch (MalformedURLException e) {
+                        // ignore
+                    }
+                }
+                break;
+            case CONTEXT_RESOURCE:
+                ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+                if (contextClassLoader != null) {
+                    url = contextClassLoader.getResource(name);
+                }
+                break;
+            case CLASS_RESOURCE:
+                if (clazz != null) {
+                    url = clazz.getResource(name);
+                }
+                break;
+            case CLASSLOADER_RESOURCE:
+                if (clazz != null) {
+                    url = clazz.getClassLoader().getResource(name);
+                }
+                break;
+            case URL:
+                try {
+                    final URL candidate = new URL(name);
+                    if (!"file".equals(candidate.getProtocol())
+                            || new File(candidate.toURI()).isFile()) {
+                        url = candidate;
+                    }
+                } catch (MalformedURLException e) {
+                    // ignore
+                } catch (URISyntaxException e) {
+                    // ignore
+                } catch (IllegalArgumentException e) {
+                    // not a hierarchical file URL
+                }
+                break;
+            }
+            if (url != null) {
+                break;
+            }
+        }
+
+        return url;
+    }
+
+    /**
+     * Releases the mapping of a buffer returned by
+     * {@link java.nio.channels.FileChannel#map} instead of leaving it to the
+     * garbage collector, so the file is no longer held open and can be deleted.
+     * The buffer and any views of it must not be used afterwards. If the JVM
+     * does not allow it, the mapping is left to the garbage collector.
+     *
+     * @param buffer the mapped buffer, may be null
+     */
+    static void unmap(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception e) {
+            // left to the garbage collector
+        }
+    }
 }
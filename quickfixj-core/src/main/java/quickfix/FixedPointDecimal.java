@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.math.BigDecimal;
+
+import quickfix.field.converter.DecimalConverter;
+
+/**
+ * A mutable decimal held as a long mantissa and a scale, so that the value
+ * is <code>mantissa * 10^-scale</code>. Prices and quantities can be read
+ * into a reused instance without allocating a {@link BigDecimal}.
+ * <p>
+ * Like a {@link BigDecimal}, the scale is significant: 1.5 and 1.50 are
+ * compared as equal by {@link #compareTo(FixedPointDecimal)} but are not
+ * {@link #equals(Object) equal}, and each is formatted as it was parsed.
+ *
+ * @see FieldMap#getDecimal(int, FixedPointDecimal)
+ * @see FieldMap#setDecimal(int, long, int)
+ */
+public final class FixedPointDecimal implements Comparable<FixedPointDecimal> {
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // powers of ten that are exact doubles
+    private static final double[] DOUBLE_POWERS_OF_TEN = new double[23];
+
+    static {
+        DOUBLE_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < DOUBLE_POWERS_OF_TEN.length; i++) {
+            DOUBLE_POWERS_OF_TEN[i] = DOUBLE_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private long mantissa;
+    private int scale;
+
+    public FixedPointDecimal() {
+    }
+
+    public FixedPointDecimal(long mantissa, int scale) {
+        set(mantissa, scale);
+    }
+
+    /**
+     * Sets the value.
+     *
+     * @param mantissa the unscaled value
+     * @param scale the number of digits after the decimal point
+     * @return this decimal
+     * @throws IllegalArgumentException if the scale is negative
+     */
+    public FixedPointDecimal set(long mantissa, int scale) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("negative scale: " + scale);
+        }
+        this.mantissa = mantissa;
+        this.scale = scale;
+        return this;
+    }
+
+    public long getMantissa() {
+        return mantissa;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns the value with another scale.
+     *
+     * @param newScale the scale of the result
+     * @return the mantissa of the value with the new scale
+     * @throws ArithmeticException if digits would be lost or the result does
+     *             not fit in a long
+     */
+    public long getMantissa(int newScale) {
+        if (newScale == scale) {
+            return mantissa;
+        } else if (newScale > scale) {
+            final long result = multiply(mantissa, newScale - scale);
+            if (result == Long.MIN_VALUE) {
+                throw new ArithmeticException("overflow: " + this + " with scale " + newScale);
+            }
+            return result;
+        } else if (scale - newScale >= POWERS_OF_TEN.length) {
+            if (mantissa != 0) {
+                throw new ArithmeticException("rounding necessary: " + this + " with scale " + newScale);
+            }
+            return 0;
+        } else {
+            final long divisor = POWERS_OF_TEN[scale - newScale];
+            if (mantissa % divisor != 0) {
+                throw new ArithmeticException("rounding necessary: " + this + " with scale " + newScale);
+            }
+            return mantissa / divisor;
+        }
+    }
+
+    public double doubleValue() {
+        if (scale < DOUBLE_POWERS_OF_TEN.length && mantissa > -(1L << 53)
+                && mantissa < (1L << 53)) {
+            // both operands are exact, so the quotient is correctly rounded
+            return mantissa / DOUBLE_POWERS_OF_TEN[scale];
+        }
+        return toBigDecimal().doubleValue();
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(mantissa, scale);
+    }
+
+    public int compareTo(FixedPointDecimal other) {
+        if (scale == other.scale) {
+            return mantissa < other.mantissa ? -1 : (mantissa == other.mantissa ? 0 : 1);
+        }
+        final long a = scale < other.scale ? multiply(mantissa, other.scale - scale) : mantissa;
+        final long b = scale > other.scale ? multiply(other.mantissa, scale - other.scale) : other.mantissa;
+        if (a == Long.MIN_VALUE || b == Long.MIN_VALUE) {
+            return toBigDecimal().compareTo(other.toBigDecimal());
+        }
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FixedPointDecimal)) {
+            return false;
+        }
+        final FixedPointDecimal other = (FixedPointDecimal) obj;
+        return mantissa == other.mantissa && scale == other.scale;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (mantissa ^ (mantissa >>> 32)) + scale;
+    }
+
+    /**
+     * Returns the value in the text form of a FIX decimal field.
+     */
+    @Override
+    public String toString() {
+        return DecimalConverter.convert(mantissa, scale);
+    }
+
+    /**
+     * Multiplies by a power of ten, returning Long.MIN_VALUE on overflow.
+     */
+    private static long multiply(long value, int exponent) {
+        if (exponent >= POWERS_OF_TEN.length) {
+            return value == 0 ? 0 : Long.MIN_VALUE;
+        }
+        final long factor = POWERS_OF_TEN[exponent];
+        final long limit = Long.MAX_VALUE / factor;
+        if (value > limit || value < -limit) {
+            return Long.MIN_VALUE;
+        }
+        return value * factor;
+    }
+}
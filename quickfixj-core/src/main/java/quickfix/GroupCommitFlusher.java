@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Forces file channels to disk on behalf of many writers (group commit).
+ * <p>
+ * A writer queues a sync for each channel it has written to. If the sync is
+ * still queued, the writer takes it and forces the channel itself, otherwise
+ * it waits for the writer that took it. Writes that pile up on a channel while
+ * a force is in progress share the next one, so each channel is forced once
+ * for everyone waiting on it. A writer only ever forces its own channels, and
+ * the channels of different sessions are forced in parallel by their writers,
+ * which lets the file system merge them into a single journal commit. A writer
+ * is released as soon as a force that started after its request has completed.
+ */
+final class GroupCommitFlusher {
+
+    private static final GroupCommitFlusher INSTANCE = new GroupCommitFlusher();
+
+    private final Map<FileChannel, Sync> pending = new HashMap<FileChannel, Sync>();
+    private long syncCount;
+
+    /**
+     * Returns the flusher shared by all file stores.
+     */
+    static GroupCommitFlusher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Forces the channels and waits until the data written to them so far is
+     * on disk.
+     *
+     * @param channels the channels to force
+     * @throws IOException if forcing one of the channels failed
+     */
+    void force(FileChannel... channels) throws IOException {
+        final Sync[] syncs = new Sync[channels.length];
+        synchronized (this) {
+            for (int i = 0; i < channels.length; i++) {
+                Sync sync = pending.get(channels[i]);
+                if (sync == null) {
+                    sync = new Sync(channels[i]);
+                    pending.put(channels[i], sync);
+                }
+                syncs[i] = sync;
+            }
+        }
+        for (final Sync sync : syncs) {
+            if (take(sync)) {
+                sync.force();
+            } else {
+                // the sync was taken by another writer and is in progress
+                sync.await();
+            }
+            sync.checkFailure();
+        }
+    }
+
+    /**
+     * Returns the number of channel forces issued so far.
+     */
+    synchronized long getSyncCount() {
+        return syncCount;
+    }
+
+    private synchronized boolean take(Sync sync) {
+        if (pending.get(sync.channel) != sync) {
+            return false;
+        }
+        // writers arriving from now on queue a new sync for the channel
+        pending.remove(sync.channel);
+        syncCount++;
+        return true;
+    }
+
+    private static final class Sync {
+        private final FileChannel channel;
+        private boolean done;
+        private IOException failure;
+
+        Sync(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void force() {
+            IOException failure = null;
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+            }
+            synchronized (this) {
+                this.failure = failure;
+                done = true;
+                notifyAll();
+            }
+        }
+
+        synchronized void await() throws IOException {
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for file sync");
+                }
+            }
+        }
+
+        synchronized void checkFailure() throws IOException {
+            if (failure != null) {
+                throw new IOException("File sync failed", failure);
+            }
+        }
+    }
+}
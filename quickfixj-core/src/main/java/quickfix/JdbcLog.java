@@ -22,18 +22,29 @@ package quickfix;
 import static quickfix.JdbcSetting.*;
 import static quickfix.JdbcUtil.*;
 
+import java.io.Flushable;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 
 import javax.sql.DataSource;
 
-class JdbcLog extends AbstractLog {
+/**
+ * Log backed by database tables. With {@link JdbcSetting#SETTING_JDBC_LOG_BATCH_SIZE}
+ * above one the entries are collected and inserted in JDBC batches, one
+ * transaction per batch. A batch that cannot be inserted is kept and inserted
+ * again with the next flush; entries logged while it is still full are dropped
+ * and counted.
+ */
+class JdbcLog extends AbstractLog implements Flushable {
     private static final String DEFAULT_MESSAGES_LOG_TABLE = "messages_log";
     private static final String DEFAULT_EVENT_LOG_TABLE = "event_log";
+    private static final long DEFAULT_FLUSH_INTERVAL = 100L;
     private final String outgoingMessagesTableName;
     private final String incomingMessagesTableName;
     private final String eventTableName;
@@ -48,6 +59,16 @@ class JdbcLog extends AbstractLog {
     private final Map<String, String> insertItemSqlCache = new HashMap<String, String>();
     private final Map<String, String> deleteItemsSqlCache = new HashMap<String, String>();
 
+    private final int batchSize;
+    private final String[] pendingTables;
+    private final long[] pendingTimes;
+    private final String[] pendingValues;
+    private int pendingCount;
+    private boolean flushing;
+    private boolean flushFailed;
+    private long droppedCount;
+    private ScheduledFuture<?> flushTask;
+
     public JdbcLog(SessionSettings settings, SessionID sessionID, DataSource ds)
             throws SQLException, ClassNotFoundException, ConfigError, FieldConvertError {
         this.sessionID = sessionID;
@@ -89,6 +110,32 @@ class JdbcLog extends AbstractLog {
                 outgoingMessagesTableName);
 
         createCachedSql();
+
+        if (settings.isSetting(sessionID, SETTING_JDBC_LOG_BATCH_SIZE)) {
+            batchSize = (int) settings.getLong(sessionID, SETTING_JDBC_LOG_BATCH_SIZE);
+        } else {
+            batchSize = 1;
+        }
+        if (batchSize > 1) {
+            pendingTables = new String[batchSize];
+            pendingTimes = new long[batchSize];
+            pendingValues = new String[batchSize];
+            long flushInterval = DEFAULT_FLUSH_INTERVAL;
+            if (settings.isSetting(sessionID, SETTING_JDBC_LOG_FLUSH_INTERVAL)) {
+                flushInterval = settings.getLong(sessionID, SETTING_JDBC_LOG_FLUSH_INTERVAL);
+            }
+            if (flushInterval > 0) {
+                flushTask = JdbcUtil.scheduleFlush(new Runnable() {
+                    public void run() {
+                        flush();
+                    }
+                }, flushInterval);
+            }
+        } else {
+            pendingTables = null;
+            pendingTimes = null;
+            pendingValues = null;
+        }
     }
 
     private void createCachedSql() {
@@ -141,6 +188,10 @@ class JdbcLog extends AbstractLog {
      * @param value
      */
     private void insert(String tableName, String value) {
+        if (batchSize > 1) {
+            addPending(tableName, value);
+            return;
+        }
         Connection connection = null;
         PreparedStatement insert = null;
         if (recursiveException != null) {
@@ -166,10 +217,128 @@ class JdbcLog extends AbstractLog {
         }
     }
 
+    private synchronized void addPending(String tableName, String value) {
+        if (pendingCount == batchSize) {
+            // an earlier batch could not be inserted and is kept for a retry
+            flush();
+            if (pendingCount == batchSize) {
+                droppedCount++;
+                return;
+            }
+        }
+        pendingTables[pendingCount] = tableName;
+        pendingTimes[pendingCount] = SystemTime.currentTimeMillis();
+        pendingValues[pendingCount] = value;
+        if (++pendingCount == batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Inserts the pending entries, a JDBC batch per table in one transaction.
+     * If that fails, the error is logged and the entries are kept, so they are
+     * inserted with the next flush.
+     */
+    public synchronized void flush() {
+        // errors logged while flushing may come back to this log
+        if (pendingCount == 0 || flushing) {
+            return;
+        }
+        flushing = true;
+        try {
+            final int count = pendingCount;
+            final SQLException failure = insertPending();
+            if (failure == null) {
+                discardPending();
+                flushFailed = false;
+                if (droppedCount > 0) {
+                    final long dropped = droppedCount;
+                    droppedCount = 0;
+                    addPending(eventTableName, "JdbcLog dropped " + dropped
+                            + " entries while log entries could not be inserted");
+                }
+            } else if (!flushFailed) {
+                // reported once until a batch is inserted again
+                flushFailed = true;
+                LogUtil.logThrowable(sessionID, "JdbcLog could not insert " + count
+                        + " log entries, they are kept for a retry", failure);
+            }
+        } finally {
+            flushing = false;
+        }
+    }
+
+    /**
+     * @return the error, or null if the pending entries were inserted
+     */
+    private SQLException insertPending() {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                insertPending(connection, eventTableName);
+                insertPending(connection, incomingMessagesTableName);
+                if (!incomingMessagesTableName.equals(outgoingMessagesTableName)) {
+                    insertPending(connection, outgoingMessagesTableName);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                JdbcUtil.rollback(sessionID, connection);
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        } catch (SQLException e) {
+            return e;
+        } finally {
+            JdbcUtil.close(sessionID, connection);
+        }
+    }
+
+    private void insertPending(Connection connection, String tableName) throws SQLException {
+        PreparedStatement insert = null;
+        try {
+            for (int i = 0; i < pendingCount; i++) {
+                if (tableName.equals(pendingTables[i])) {
+                    if (insert == null) {
+                        insert = connection.prepareStatement(getInsertItemSql(tableName));
+                    }
+                    insert.setTimestamp(1, new Timestamp(pendingTimes[i]));
+                    int offset = setSessionIdParameters(insert, 2);
+                    insert.setString(offset, pendingValues[i]);
+                    insert.addBatch();
+                }
+            }
+            if (insert != null) {
+                insert.executeBatch();
+            }
+        } finally {
+            JdbcUtil.close(sessionID, insert);
+        }
+    }
+
+    /**
+     * Inserts the pending entries and stops the flush timer.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        flush();
+    }
+
     /**
      * Deletes all rows from the log tables.
      */
     public void clear() {
+        if (batchSize > 1) {
+            discardPending();
+        }
         clearTable(eventTableName);
         clearTable(incomingMessagesTableName);
         if (!incomingMessagesTableName.equals(outgoingMessagesTableName)) {
@@ -193,6 +362,26 @@ class JdbcLog extends AbstractLog {
         }
     }
 
+    private synchronized void discardPending() {
+        for (int i = 0; i < pendingCount; i++) {
+            pendingTables[i] = null;
+            pendingValues[i] = null;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Returns the number of entries dropped since the last inserted batch
+     * because earlier entries could not be inserted.
+     */
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
     public String getIncomingMessagesTableName() {
         return incomingMessagesTableName;
     }
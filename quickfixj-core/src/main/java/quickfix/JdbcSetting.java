@@ -101,4 +101,46 @@ public class JdbcSetting {
      * is primarily for Oracle which treats empty strings as SQL NULLs.
      */
     public static final String SETTING_JDBC_SESSION_ID_DEFAULT_PROPERTY_VALUE = "JdbcSessionIdDefaultPropertyValue";
+
+    /**
+     * Turns on write-behind for the JDBC message store. Stored messages and
+     * sequence number changes are then kept in memory and written together in
+     * one transaction, either when {@link #SETTING_JDBC_STORE_BATCH_SIZE} changes
+     * are pending or every {@link #SETTING_JDBC_STORE_FLUSH_INTERVAL}
+     * milliseconds, and when the session disconnects or is closed.
+     * <p>
+     * Messages are sent before they are written, so changes that were not
+     * written yet are lost if the process crashes. The outgoing sequence number
+     * is recovered from the stored messages when the store is opened again, but
+     * if all messages of the lost batch were pending, their sequence numbers are
+     * used again for new messages, and the counterparty has to be resynchronized
+     * (for example with a sequence reset). Use it only where that is acceptable.
+     * Off, by default.
+     */
+    public static final String SETTING_JDBC_STORE_WRITE_BEHIND = "JdbcStoreWriteBehind";
+
+    /**
+     * Number of pending changes that makes a write-behind store write them
+     * out. Default is 100.
+     */
+    public static final String SETTING_JDBC_STORE_BATCH_SIZE = "JdbcStoreBatchSize";
+
+    /**
+     * Milliseconds between writes of pending changes of a write-behind store.
+     * Zero turns the timer off. Default is 100.
+     */
+    public static final String SETTING_JDBC_STORE_FLUSH_INTERVAL = "JdbcStoreFlushInterval";
+
+    /**
+     * Number of log entries inserted together in one JDBC batch. Default is 1,
+     * which inserts every entry as it is logged.
+     */
+    public static final String SETTING_JDBC_LOG_BATCH_SIZE = "JdbcLogBatchSize";
+
+    /**
+     * Milliseconds between inserts of pending log entries when
+     * {@link #SETTING_JDBC_LOG_BATCH_SIZE} is greater than one. Zero turns the
+     * timer off. Default is 100.
+     */
+    public static final String SETTING_JDBC_LOG_FLUSH_INTERVAL = "JdbcLogFlushInterval";
 }
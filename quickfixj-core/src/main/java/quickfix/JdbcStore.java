@@ -21,17 +21,30 @@ package quickfix;
 
 import static quickfix.JdbcSetting.*;
 
+import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.sql.*;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
 
 import javax.sql.DataSource;
 
-class JdbcStore implements MessageStore {
+/**
+ * Message store backed by a database. In write-behind mode (see
+ * {@link JdbcSetting#SETTING_JDBC_STORE_WRITE_BEHIND}) changes are collected in
+ * memory and written in batches; {@link #flush()} writes them out and is the
+ * durability barrier for callers that need one.
+ */
+class JdbcStore implements MessageStore, Flushable, Closeable {
     private final static String DEFAULT_SESSION_TABLE_NAME = "sessions";
     private final static String DEFAULT_MESSAGE_TABLE_NAME = "messages";
+    private final static int DEFAULT_BATCH_SIZE = 100;
+    private final static long DEFAULT_FLUSH_INTERVAL = 100L;
 
     private final MemoryStore cache = new MemoryStore();
     private final boolean extendedSessionIdSupported;
@@ -41,6 +54,13 @@ class JdbcStore implements MessageStore {
     private final String messageTableName;
     private final String defaultSessionIdPropertyValue;
 
+    private final boolean writeBehind;
+    private final int batchSize;
+    private final Map<Integer, String> pendingMessages = new TreeMap<Integer, String>();
+    private boolean sequenceNumbersPending;
+    private int pendingCount;
+    private ScheduledFuture<?> flushTask;
+
     private String SQL_UPDATE_SEQNUMS;
     private String SQL_INSERT_SESSION;
     private String SQL_GET_SEQNUMS;
@@ -49,6 +69,8 @@ class JdbcStore implements MessageStore {
     private String SQL_GET_MESSAGES;
     private String SQL_UPDATE_SESSION;
     private String SQL_DELETE_MESSAGES;
+    private String SQL_DELETE_MESSAGE;
+    private String SQL_GET_MAX_SEQNUM;
 
     public JdbcStore(SessionSettings settings, SessionID sessionID, DataSource ds) throws Exception {
         this.sessionID = sessionID;
@@ -73,6 +95,20 @@ class JdbcStore implements MessageStore {
             defaultSessionIdPropertyValue = SessionID.NOT_SET;
         }
 
+        writeBehind = settings.isSetting(sessionID, SETTING_JDBC_STORE_WRITE_BEHIND)
+                && settings.getBool(sessionID, SETTING_JDBC_STORE_WRITE_BEHIND);
+        if (settings.isSetting(sessionID, SETTING_JDBC_STORE_BATCH_SIZE)) {
+            batchSize = (int) settings.getLong(sessionID, SETTING_JDBC_STORE_BATCH_SIZE);
+        } else {
+            batchSize = DEFAULT_BATCH_SIZE;
+        }
+        final long flushInterval;
+        if (settings.isSetting(sessionID, SETTING_JDBC_STORE_FLUSH_INTERVAL)) {
+            flushInterval = settings.getLong(sessionID, SETTING_JDBC_STORE_FLUSH_INTERVAL);
+        } else {
+            flushInterval = DEFAULT_FLUSH_INTERVAL;
+        }
+
         dataSource = ds == null ? JdbcUtil.getDataSource(settings, sessionID) : ds;
 
         // One table is sampled for the extended session ID columns. Be sure
@@ -83,6 +119,18 @@ class JdbcStore implements MessageStore {
         setSqlStrings();
 
         loadCache();
+
+        if (writeBehind && flushInterval > 0) {
+            flushTask = JdbcUtil.scheduleFlush(new Runnable() {
+                public void run() {
+                    try {
+                        flush();
+                    } catch (IOException e) {
+                        LogUtil.logThrowable(JdbcStore.this.sessionID, e.getMessage(), e);
+                    }
+                }
+            }, flushInterval);
+        }
     }
 
     private void setSqlStrings() {
@@ -113,6 +161,12 @@ class JdbcStore implements MessageStore {
                 + "incoming_seqnum=?, outgoing_seqnum=? " + "WHERE " + idWhereClause;
 
         SQL_DELETE_MESSAGES = "DELETE FROM " + messageTableName + " WHERE " + idWhereClause;
+
+        SQL_DELETE_MESSAGE = "DELETE FROM " + messageTableName + " WHERE " + idWhereClause
+                + " and msgseqnum=?";
+
+        SQL_GET_MAX_SEQNUM = "SELECT MAX(msgseqnum) FROM " + messageTableName + " WHERE "
+                + idWhereClause;
     }
 
     private void loadCache() throws SQLException, IOException {
@@ -137,6 +191,9 @@ class JdbcStore implements MessageStore {
                 insert.setInt(offset, cache.getNextSenderMsgSeqNum());
                 insert.execute();
             }
+            if (writeBehind) {
+                recoverSenderSeqNum(connection);
+            }
         } finally {
             JdbcUtil.close(sessionID, rs);
             JdbcUtil.close(sessionID, query);
@@ -145,6 +202,31 @@ class JdbcStore implements MessageStore {
         }
     }
 
+    /**
+     * A crash can lose the last sequence number update of a write-behind
+     * store while messages stored before it were written. Continue after the
+     * last stored message so that no sequence number is sent twice.
+     */
+    private void recoverSenderSeqNum(Connection connection) throws SQLException, IOException {
+        PreparedStatement query = null;
+        ResultSet rs = null;
+        try {
+            query = connection.prepareStatement(SQL_GET_MAX_SEQNUM);
+            setSessionIdParameters(query, 1);
+            rs = query.executeQuery();
+            if (rs.next()) {
+                final int lastStored = rs.getInt(1);
+                if (!rs.wasNull() && lastStored >= cache.getNextSenderMsgSeqNum()) {
+                    cache.setNextSenderMsgSeqNum(lastStored + 1);
+                    sequenceNumbersPending = true;
+                }
+            }
+        } finally {
+            JdbcUtil.close(sessionID, rs);
+            JdbcUtil.close(sessionID, query);
+        }
+    }
+
     private int setSessionIdParameters(PreparedStatement query, int offset) throws SQLException {
         return JdbcUtil.setSessionIdParameters(sessionID, query, offset,
                 extendedSessionIdSupported, defaultSessionIdPropertyValue);
@@ -162,18 +244,22 @@ class JdbcStore implements MessageStore {
         return cache.getNextTargetMsgSeqNum();
     }
 
-    public void incrNextSenderMsgSeqNum() throws IOException {
+    public synchronized void incrNextSenderMsgSeqNum() throws IOException {
         cache.incrNextSenderMsgSeqNum();
         setNextSenderMsgSeqNum(cache.getNextSenderMsgSeqNum());
     }
 
-    public void incrNextTargetMsgSeqNum() throws IOException {
+    public synchronized void incrNextTargetMsgSeqNum() throws IOException {
         cache.incrNextTargetMsgSeqNum();
         setNextTargetMsgSeqNum(cache.getNextTargetMsgSeqNum());
     }
 
-    public void reset() throws IOException {
+    public synchronized void reset() throws IOException {
         cache.reset();
+        // the pending changes are deleted or overwritten anyway
+        pendingMessages.clear();
+        sequenceNumbersPending = false;
+        pendingCount = 0;
         Connection connection = null;
         PreparedStatement deleteMessages = null;
         PreparedStatement updateTime = null;
@@ -199,8 +285,9 @@ class JdbcStore implements MessageStore {
         }
     }
 
-    public void get(int startSequence, int endSequence, Collection<String> messages)
+    public synchronized void get(int startSequence, int endSequence, Collection<String> messages)
             throws IOException {
+        flush();
         Connection connection = null;
         PreparedStatement query = null;
         ResultSet rs = null;
@@ -224,7 +311,12 @@ class JdbcStore implements MessageStore {
         }
     }
 
-    public boolean set(int sequence, String message) throws IOException {
+    public synchronized boolean set(int sequence, String message) throws IOException {
+        if (writeBehind) {
+            pendingMessages.put(sequence, message);
+            addPending();
+            return true;
+        }
         Connection connection = null;
         PreparedStatement insert = null;
         ResultSet rs = null;
@@ -259,35 +351,133 @@ class JdbcStore implements MessageStore {
         return true;
     }
 
-    public void setNextSenderMsgSeqNum(int next) throws IOException {
+    public synchronized void setNextSenderMsgSeqNum(int next) throws IOException {
         cache.setNextSenderMsgSeqNum(next);
         storeSequenceNumbers();
     }
 
-    public void setNextTargetMsgSeqNum(int next) throws IOException {
+    public synchronized void setNextTargetMsgSeqNum(int next) throws IOException {
         cache.setNextTargetMsgSeqNum(next);
         storeSequenceNumbers();
     }
 
     private void storeSequenceNumbers() throws IOException {
+        if (writeBehind) {
+            sequenceNumbersPending = true;
+            addPending();
+            return;
+        }
         Connection connection = null;
-        PreparedStatement update = null;
         try {
             connection = dataSource.getConnection();
+            updateSequenceNumbers(connection);
+        } catch (SQLException e) {
+            throw (IOException) new IOException(e.getMessage()).initCause(e);
+        } finally {
+            JdbcUtil.close(sessionID, connection);
+        }
+    }
+
+    private void updateSequenceNumbers(Connection connection) throws SQLException, IOException {
+        PreparedStatement update = null;
+        try {
             update = connection.prepareStatement(SQL_UPDATE_SEQNUMS);
             update.setInt(1, cache.getNextTargetMsgSeqNum());
             update.setInt(2, cache.getNextSenderMsgSeqNum());
             setSessionIdParameters(update, 3);
             update.execute();
+        } finally {
+            JdbcUtil.close(sessionID, update);
+        }
+    }
+
+    private void addPending() throws IOException {
+        if (++pendingCount >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the pending changes of a write-behind store in one transaction
+     * and returns once they are committed. Does nothing otherwise.
+     */
+    public synchronized void flush() throws IOException {
+        if (pendingMessages.isEmpty() && !sequenceNumbersPending) {
+            return;
+        }
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                insertMessages(connection);
+                if (sequenceNumbersPending) {
+                    updateSequenceNumbers(connection);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                JdbcUtil.rollback(sessionID, connection);
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            pendingMessages.clear();
+            sequenceNumbersPending = false;
+            pendingCount = 0;
         } catch (SQLException e) {
             throw (IOException) new IOException(e.getMessage()).initCause(e);
         } finally {
-            JdbcUtil.close(sessionID, update);
             JdbcUtil.close(sessionID, connection);
         }
     }
 
-    public void refresh() throws IOException {
+    private void insertMessages(Connection connection) throws SQLException {
+        if (pendingMessages.isEmpty()) {
+            return;
+        }
+        try {
+            executeMessageBatch(connection, SQL_INSERT_MESSAGE, true);
+        } catch (BatchUpdateException e) {
+            // some of the messages are stored already, replace them
+            connection.rollback();
+            executeMessageBatch(connection, SQL_DELETE_MESSAGE, false);
+            executeMessageBatch(connection, SQL_INSERT_MESSAGE, true);
+        }
+    }
+
+    private void executeMessageBatch(Connection connection, String sql, boolean withMessage)
+            throws SQLException {
+        PreparedStatement statement = null;
+        try {
+            statement = connection.prepareStatement(sql);
+            for (Map.Entry<Integer, String> entry : pendingMessages.entrySet()) {
+                int offset = setSessionIdParameters(statement, 1);
+                statement.setInt(offset++, entry.getKey());
+                if (withMessage) {
+                    statement.setString(offset, entry.getValue());
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } finally {
+            JdbcUtil.close(sessionID, statement);
+        }
+    }
+
+    /**
+     * Writes the pending changes and stops the flush timer.
+     */
+    public synchronized void close() throws IOException {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        flush();
+    }
+
+    public synchronized void refresh() throws IOException {
+        flush();
         try {
             loadCache();
         } catch (SQLException e) {
@@ -26,6 +26,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -39,6 +44,7 @@ class JdbcUtil {
 
     private static final Map<String, ProxoolDataSource> dataSources = new ConcurrentHashMap<String, ProxoolDataSource>();
     private static int dataSourceCounter = 1;
+    private static ScheduledExecutorService flushExecutor;
 
     static DataSource getDataSource(SessionSettings settings, SessionID sessionID)
             throws ConfigError, FieldConvertError {
@@ -93,6 +99,32 @@ class JdbcUtil {
         return ds;
     }
 
+    /**
+     * Runs a task that writes pending batches at a fixed interval. The task
+     * shares a daemon thread with the other JDBC stores and logs.
+     */
+    static synchronized ScheduledFuture<?> scheduleFlush(Runnable task, long intervalMillis) {
+        if (flushExecutor == null) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "QFJ JDBC Flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return flushExecutor.scheduleWithFixedDelay(task, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    static void rollback(SessionID sessionID, Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            LogUtil.logThrowable(sessionID, e.getMessage(), e);
+        }
+    }
+
     static void close(SessionID sessionID, Connection connection) {
         if (connection != null) {
             try {
@@ -0,0 +1,724 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.quickfixj.CharsetSupport;
+
+import quickfix.field.converter.UtcTimestampConverter;
+
+/**
+ * Append-only message store backed by memory-mapped files. It should only be
+ * created using a {@link MappedFileStoreFactory}.
+ * <p>
+ * Messages are appended to a log made of fixed size segments. Each segment is
+ * preallocated and mapped when the log reaches it, so storing a message is a
+ * copy into memory and does not need a system call. Each record is the length,
+ * the sequence number, a CRC32 checksum and the bytes of the message. Dirty
+ * pages of a mapped file are not written back in the order they were written,
+ * so after a crash the log is cut at the first record whose checksum does not
+ * match, and everything after it is cleared.
+ * <p>
+ * The position of each message is kept in an index of fixed size pages, which
+ * is rebuilt from the log when the store is opened. Only pages that hold
+ * messages are allocated, so a jump in the sequence numbers does not grow the
+ * index. When the mapped pages are forced to disk is controlled by the
+ * {@link ForcePolicy}; the files are always forced when the store is closed,
+ * and the mappings are released so the files can be deleted.
+ *
+ * @see MappedFileStoreFactory
+ */
+public class MappedFileStore implements RawMessageStore, Closeable {
+
+    /**
+     * Controls when written pages are forced to the storage device.
+     */
+    public enum ForcePolicy {
+        /** Force after every message and sequence number update. */
+        MESSAGE,
+        /** Force after a number of messages have been written. */
+        BATCH,
+        /** Force periodically from a background thread. */
+        TIMER
+    }
+
+    private static final int STATE_MAGIC = 0x51464A4D;
+    private static final int STATE_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int END_OF_SEGMENT = -1;
+
+    private static final ScheduledExecutorService forceExecutor = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "QFJ MappedFileStore");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final MemoryStore cache = new MemoryStore();
+    private final SequenceIndex messageIndex = new SequenceIndex();
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Charset charset = CharsetSupport.getCharsetInstance();
+    private final CRC32 checksum = new CRC32();
+
+    private final String msgFileName;
+    private final String stateFileName;
+    private final String sessionFileName;
+    private final SessionID sessionID;
+    private final int configuredSegmentSize;
+    private final ForcePolicy forcePolicy;
+    private final int forceBatchSize;
+    private final long forceInterval;
+
+    private int segmentSize;
+    private RandomAccessFile messageFile;
+    private RandomAccessFile stateFile;
+    private MappedByteBuffer stateBuffer;
+    private long writePosition;
+    private int unforcedSegment;
+    private int unforcedMessages;
+    private volatile boolean dirty;
+    private ScheduledFuture<?> forceTask;
+
+    MappedFileStore(String path, SessionID sessionID, int segmentSize, ForcePolicy forcePolicy,
+            int forceBatchSize, long forceInterval) throws IOException {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        this.sessionID = sessionID;
+        this.configuredSegmentSize = segmentSize;
+        this.forcePolicy = forcePolicy;
+        this.forceBatchSize = Math.max(1, forceBatchSize);
+        this.forceInterval = forceInterval;
+
+        final String fullPath = new File(path == null ? "." : path).getAbsolutePath();
+        final String sessionName = FileUtil.sessionIdFileName(sessionID);
+        final String prefix = FileUtil.fileAppendPath(fullPath, sessionName + ".");
+
+        msgFileName = prefix + "mappedbody";
+        stateFileName = prefix + "mappedstate";
+        sessionFileName = prefix + "session";
+
+        final File directory = new File(msgFileName).getParentFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        initialize(false);
+    }
+
+    void initialize(boolean deleteFiles) throws IOException {
+        try {
+            lock.writeLock().lock();
+            if (deleteFiles) {
+                deleteFiles();
+            } else {
+                close();
+            }
+            cache.reset();
+            unforcedSegment = 0;
+            initializeState();
+            messageFile = new RandomAccessFile(msgFileName, "rw");
+            initializeMessageIndex();
+            initializeSessionCreateTime();
+            if (forcePolicy == ForcePolicy.TIMER && forceInterval > 0) {
+                forceTask = forceExecutor.scheduleWithFixedDelay(new Runnable() {
+                    public void run() {
+                        forceIfDirty();
+                    }
+                }, forceInterval, forceInterval, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void initializeState() throws IOException {
+        stateFile = new RandomAccessFile(stateFileName, "rw");
+        final boolean exists = stateFile.length() >= STATE_SIZE;
+        stateBuffer = stateFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, STATE_SIZE);
+        if (exists && stateBuffer.getInt(0) == STATE_MAGIC) {
+            // an existing log keeps the segment size it was written with
+            segmentSize = stateBuffer.getInt(4);
+            cache.setNextSenderMsgSeqNum(stateBuffer.getInt(8));
+            cache.setNextTargetMsgSeqNum(stateBuffer.getInt(12));
+        } else {
+            segmentSize = configuredSegmentSize;
+            stateBuffer.putInt(4, segmentSize);
+            stateBuffer.putInt(8, cache.getNextSenderMsgSeqNum());
+            stateBuffer.putInt(12, cache.getNextTargetMsgSeqNum());
+            stateBuffer.putInt(0, STATE_MAGIC);
+            stateBuffer.force();
+        }
+    }
+
+    private void initializeMessageIndex() throws IOException {
+        messageIndex.clear();
+        final int segmentCount = (int) Math.max(1, (messageFile.length() + segmentSize - 1)
+                / segmentSize);
+        for (int i = 0; i < segmentCount; i++) {
+            mapSegment(i);
+        }
+        // scan the log up to the first empty or damaged record
+        final byte[] scratch = new byte[4096];
+        for (int i = 0; i < segmentCount; i++) {
+            final MappedByteBuffer segment = segments.get(i);
+            int position = 0;
+            while (position <= segmentSize - RECORD_HEADER_SIZE) {
+                final int header = segment.getInt(position);
+                if (header == 0) {
+                    endLog(i, position, false);
+                    return;
+                }
+                if (header == END_OF_SEGMENT) {
+                    break;
+                }
+                final int length = header - 1;
+                final int sequence = segment.getInt(position + 4);
+                if (length < 0 || length > segmentSize - position - RECORD_HEADER_SIZE
+                        || segment.getInt(position + 8) != checksum(segment, position
+                                + RECORD_HEADER_SIZE, length, sequence, scratch)) {
+                    endLog(i, position, true);
+                    return;
+                }
+                messageIndex.put(sequence, (long) i * segmentSize + position);
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+        writePosition = (long) segmentCount * segmentSize;
+    }
+
+    /**
+     * Ends the log at the first empty or damaged record. Since pages may have
+     * been written back out of order before a crash, records found after it are
+     * cleared and later segments are dropped, so none of them can be mistaken
+     * for a record written after the log is opened.
+     */
+    private void endLog(int segmentIndex, int position, boolean damaged) throws IOException {
+        if (damaged) {
+            LogUtil.logThrowable(sessionID, "Damaged record in message store at offset "
+                    + ((long) segmentIndex * segmentSize + position) + ", truncating",
+                    new IOException());
+        }
+        final MappedByteBuffer segment = segments.get(segmentIndex);
+        if (clear(segment, position)) {
+            segment.force();
+        }
+        if (segments.size() > segmentIndex + 1) {
+            while (segments.size() > segmentIndex + 1) {
+                FileUtil.unmap(segments.remove(segments.size() - 1));
+            }
+            messageFile.setLength((long) (segmentIndex + 1) * segmentSize);
+        }
+        writePosition = (long) segmentIndex * segmentSize + position;
+    }
+
+    /**
+     * Zeroes a segment from the given position, writing only if it is not
+     * empty already.
+     *
+     * @return true if anything was cleared
+     */
+    private boolean clear(MappedByteBuffer segment, int position) {
+        int start = position;
+        while (start < segmentSize && segment.get(start) == 0) {
+            start++;
+        }
+        if (start == segmentSize) {
+            return false;
+        }
+        final byte[] zeros = new byte[4096];
+        final ByteBuffer buffer = segment.duplicate();
+        buffer.position(start);
+        while (buffer.hasRemaining()) {
+            buffer.put(zeros, 0, Math.min(zeros.length, buffer.remaining()));
+        }
+        return true;
+    }
+
+    private int checksum(ByteBuffer segment, int position, int length, int sequence,
+            byte[] scratch) {
+        checksum.reset();
+        final ByteBuffer data = segment.duplicate();
+        data.position(position);
+        data.limit(position + length);
+        while (data.hasRemaining()) {
+            final int count = Math.min(scratch.length, data.remaining());
+            data.get(scratch, 0, count);
+            checksum.update(scratch, 0, count);
+        }
+        return finishChecksum(sequence);
+    }
+
+    private int checksum(byte[] data, int offset, int length, int sequence) {
+        checksum.reset();
+        checksum.update(data, offset, length);
+        return finishChecksum(sequence);
+    }
+
+    private int finishChecksum(int sequence) {
+        checksum.update(sequence >>> 24);
+        checksum.update(sequence >>> 16);
+        checksum.update(sequence >>> 8);
+        checksum.update(sequence);
+        return (int) checksum.getValue();
+    }
+
+    private MappedByteBuffer mapSegment(int index) throws IOException {
+        final long start = (long) index * segmentSize;
+        if (messageFile.length() < start + segmentSize) {
+            messageFile.setLength(start + segmentSize);
+        }
+        final MappedByteBuffer segment = messageFile.getChannel().map(
+                FileChannel.MapMode.READ_WRITE, start, segmentSize);
+        segments.add(segment);
+        return segment;
+    }
+
+    private void initializeSessionCreateTime() throws IOException {
+        final File sessionTimeFile = new File(sessionFileName);
+        if (sessionTimeFile.exists() && sessionTimeFile.length() > 0) {
+            final DataInputStream sessionTimeInput = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(sessionTimeFile)));
+            try {
+                final Calendar c = SystemTime.getUtcCalendar(UtcTimestampConverter
+                        .convert(sessionTimeInput.readUTF()));
+                cache.setCreationTime(c);
+            } catch (final Exception e) {
+                throw new IOException(e.getMessage());
+            } finally {
+                sessionTimeInput.close();
+            }
+        } else {
+            storeSessionTimeStamp();
+        }
+    }
+
+    private void storeSessionTimeStamp() throws IOException {
+        final DataOutputStream sessionTimeOutput = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(sessionFileName, false)));
+        try {
+            final Timestamp date = SystemTime.getDate();
+            cache.setCreationTime(SystemTime.getUtcCalendar(date));
+            sessionTimeOutput.writeUTF(UtcTimestampConverter.convert(date, true, true));
+        } finally {
+            sessionTimeOutput.close();
+        }
+    }
+
+    /**
+     * Forces outstanding writes and closes the store's files.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            lock.writeLock().lock();
+            if (forceTask != null) {
+                forceTask.cancel(false);
+                forceTask = null;
+            }
+            force();
+            // release the mappings now, the files stay open while they exist
+            for (final MappedByteBuffer segment : segments) {
+                FileUtil.unmap(segment);
+            }
+            segments.clear();
+            FileUtil.unmap(stateBuffer);
+            stateBuffer = null;
+            closeFile(messageFile);
+            messageFile = null;
+            closeFile(stateFile);
+            stateFile = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeFile(RandomAccessFile file) throws IOException {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                LogUtil.logThrowable(sessionID, e.getMessage(), e);
+                throw e;
+            }
+        }
+    }
+
+    public void deleteFiles() throws IOException {
+        try {
+            lock.writeLock().lock();
+            close();
+            deleteFile(msgFileName);
+            deleteFile(stateFileName);
+            deleteFile(sessionFileName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void deleteFile(String fileName) throws IOException {
+        final File file = new File(fileName);
+        if (file.exists() && !file.delete()) {
+            LogUtil.logThrowable(sessionID, "File delete failed: " + fileName + " exists["
+                    + file.exists() + "]", new IOException());
+        }
+    }
+
+    /**
+     * Forces all written messages and sequence numbers to the storage device.
+     */
+    public void force() {
+        try {
+            lock.writeLock().lock();
+            // the log is only appended to, so earlier segments are already forced
+            for (int i = unforcedSegment; i < segments.size(); i++) {
+                segments.get(i).force();
+            }
+            unforcedSegment = Math.max(0, segments.size() - 1);
+            if (stateBuffer != null) {
+                stateBuffer.force();
+            }
+            unforcedMessages = 0;
+            dirty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void forceIfDirty() {
+        if (dirty) {
+            try {
+                force();
+            } catch (RuntimeException e) {
+                LogUtil.logThrowable(sessionID, "Error forcing message store", e);
+            }
+        }
+    }
+
+    private void written(boolean message) {
+        dirty = true;
+        switch (forcePolicy) {
+        case MESSAGE:
+            force();
+            break;
+        case BATCH:
+            if (message && ++unforcedMessages >= forceBatchSize) {
+                force();
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    public Timestamp getCreationTime() throws IOException {
+        try {
+            lock.readLock().lock();
+            return cache.getCreationTime();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getNextSenderMsgSeqNum() throws IOException {
+        try {
+            lock.readLock().lock();
+            return cache.getNextSenderMsgSeqNum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getNextTargetMsgSeqNum() throws IOException {
+        try {
+            lock.readLock().lock();
+            return cache.getNextTargetMsgSeqNum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setNextSenderMsgSeqNum(int next) throws IOException {
+        try {
+            lock.writeLock().lock();
+            cache.setNextSenderMsgSeqNum(next);
+            storeSequenceNumbers();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void setNextTargetMsgSeqNum(int next) throws IOException {
+        try {
+            lock.writeLock().lock();
+            cache.setNextTargetMsgSeqNum(next);
+            storeSequenceNumbers();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void incrNextSenderMsgSeqNum() throws IOException {
+        try {
+            lock.writeLock().lock();
+            cache.incrNextSenderMsgSeqNum();
+            storeSequenceNumbers();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void incrNextTargetMsgSeqNum() throws IOException {
+        try {
+            lock.writeLock().lock();
+            cache.incrNextTargetMsgSeqNum();
+            storeSequenceNumbers();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void storeSequenceNumbers() throws IOException {
+        stateBuffer.putInt(8, cache.getNextSenderMsgSeqNum());
+        stateBuffer.putInt(12, cache.getNextTargetMsgSeqNum());
+        written(false);
+    }
+
+    public void get(int startSequence, int endSequence, Collection<String> messages)
+            throws IOException {
+        try {
+            lock.readLock().lock();
+            for (int i = startSequence; i <= endSequence; i++) {
+                final ByteBuffer buffer = getMessageBuffer(i);
+                if (buffer != null) {
+                    messages.add(charset.decode(buffer).toString());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the stored bytes of a range of messages without decoding or copying
+     * them. The buffers are read-only views of the mapped log. They must not be
+     * used after the store is closed or reset, since the mappings are released
+     * then.
+     */
+    public void getMessageBuffers(int startSequence, int endSequence,
+            Collection<ByteBuffer> messages) throws IOException {
+        try {
+            lock.readLock().lock();
+            for (int i = startSequence; i <= endSequence; i++) {
+                final ByteBuffer buffer = getMessageBuffer(i);
+                if (buffer != null) {
+                    messages.add(buffer);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private ByteBuffer getMessageBuffer(int sequence) throws IOException {
+        final long offset = messageIndex.get(sequence);
+        if (offset < 0) {
+            return null;
+        }
+        final int position = (int) (offset % segmentSize);
+        final ByteBuffer buffer = segments.get((int) (offset / segmentSize)).duplicate();
+        final int length = buffer.getInt(position) - 1;
+        if (buffer.getInt(position + 4) != sequence) {
+            throw new IOException("Corrupted message store: expected sequence " + sequence
+                    + " at offset " + offset);
+        }
+        buffer.limit(position + RECORD_HEADER_SIZE + length);
+        buffer.position(position + RECORD_HEADER_SIZE);
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * This method is here for JNI API consistency but it's not
+     * implemented. Use get(int, int, Collection) with the same
+     * start and end sequence.
+     */
+    public boolean get(int sequence, String message) throws IOException {
+        throw new UnsupportedOperationException("not supported");
+    }
+
+    public boolean set(int sequence, String message) throws IOException {
+        final byte[] data = message.getBytes(charset);
+        return set(sequence, data, 0, data.length);
+    }
+
+    public boolean set(int sequence, byte[] data, int dataOffset, int length) throws IOException {
+        try {
+            lock.writeLock().lock();
+            final int required = RECORD_HEADER_SIZE + length;
+            if (required > segmentSize) {
+                throw new IOException("Message " + sequence + " of " + length
+                        + " bytes does not fit in a store segment of " + segmentSize + " bytes");
+            }
+            int segmentIndex = (int) (writePosition / segmentSize);
+            int position = (int) (writePosition % segmentSize);
+            if (position + required > segmentSize) {
+                if (position <= segmentSize - 4) {
+                    segments.get(segmentIndex).putInt(position, END_OF_SEGMENT);
+                }
+                segmentIndex++;
+                position = 0;
+            }
+            final MappedByteBuffer segment = segmentIndex < segments.size()
+                    ? segments.get(segmentIndex)
+                    : mapSegment(segmentIndex);
+            final ByteBuffer buffer = segment.duplicate();
+            buffer.position(position + 4);
+            buffer.putInt(sequence);
+            buffer.putInt(checksum(data, dataOffset, length, sequence));
+            buffer.put(data, dataOffset, length);
+            // the length marks the record as used, the checksum tells whether it is complete
+            segment.putInt(position, length + 1);
+
+            final long offset = (long) segmentIndex * segmentSize + position;
+            messageIndex.put(sequence, offset);
+            writePosition = offset + required;
+            written(true);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    String getMsgFileName() {
+        return msgFileName;
+    }
+
+    String getStateFileName() {
+        return stateFileName;
+    }
+
+    int getSegmentSize() {
+        return segmentSize;
+    }
+
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    int getIndexPageCount() {
+        return messageIndex.getPageCount();
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    public void refresh() throws IOException {
+        initialize(false);
+    }
+
+    public void reset() throws IOException {
+        initialize(true);
+    }
+
+    /**
+     * Maps sequence numbers to log offsets. The offsets are kept in pages of
+     * consecutive sequence numbers, and a page is only allocated once one of
+     * its sequence numbers is stored. Missing entries are -1.
+     */
+    private static final class SequenceIndex {
+        private static final int PAGE_BITS = 10;
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+        private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+        private final Map<Integer, long[]> pages = new HashMap<Integer, long[]>();
+        // the page written last, since messages are mostly stored in sequence
+        private int lastPageNumber;
+        private long[] lastPage;
+
+        void clear() {
+            pages.clear();
+            lastPage = null;
+        }
+
+        long get(int sequence) {
+            final long[] page = getPage(sequence >> PAGE_BITS);
+            return page != null ? page[sequence & PAGE_MASK] : -1;
+        }
+
+        void put(int sequence, long offset) {
+            final int pageNumber = sequence >> PAGE_BITS;
+            long[] page = getPage(pageNumber);
+            if (page == null) {
+                page = new long[PAGE_SIZE];
+                Arrays.fill(page, -1);
+                pages.put(pageNumber, page);
+            }
+            lastPageNumber = pageNumber;
+            lastPage = page;
+            page[sequence & PAGE_MASK] = offset;
+        }
+
+        int getPageCount() {
+            return pages.size();
+        }
+
+        private long[] getPage(int pageNumber) {
+            if (lastPage != null && pageNumber == lastPageNumber) {
+                return lastPage;
+            }
+            return pages.get(pageNumber);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+/**
+ * Creates a message store that appends messages to memory-mapped files. The
+ * files are written to the directory given by the
+ * {@link FileStoreFactory#SETTING_FILE_STORE_PATH FileStorePath} setting.
+ *
+ * @see MappedFileStore
+ */
+public class MappedFileStoreFactory implements MessageStoreFactory {
+
+    /**
+     * Size in bytes of each preallocated segment of the message log. A message
+     * must fit in a single segment. The default is 64 MB. The segment size of
+     * an existing log is kept when the store is opened again.
+     */
+    public static final String SETTING_MAPPED_FILE_STORE_SEGMENT_SIZE = "MappedFileStoreSegmentSize";
+
+    /**
+     * When written pages are forced to the storage device: <code>message</code>
+     * forces after every write, <code>batch</code> after a number of messages and
+     * <code>timer</code> (the default) at a fixed interval.
+     */
+    public static final String SETTING_MAPPED_FILE_STORE_FORCE = "MappedFileStoreForce";
+
+    /**
+     * Number of messages written between forces with the <code>batch</code>
+     * policy. The default is 100.
+     */
+    public static final String SETTING_MAPPED_FILE_STORE_FORCE_BATCH_SIZE = "MappedFileStoreForceBatchSize";
+
+    /**
+     * Milliseconds between forces with the <code>timer</code> policy. The
+     * default is 1000.
+     */
+    public static final String SETTING_MAPPED_FILE_STORE_FORCE_INTERVAL = "MappedFileStoreForceInterval";
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    static final int DEFAULT_FORCE_BATCH_SIZE = 100;
+    static final long DEFAULT_FORCE_INTERVAL = 1000L;
+
+    protected final SessionSettings settings;
+
+    /**
+     * Create the factory with configuration in session settings.
+     *
+     * @param settings
+     */
+    public MappedFileStoreFactory(SessionSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Creates a memory-mapped message store.
+     *
+     * @param sessionID session ID for the message store.
+     */
+    public MessageStore create(SessionID sessionID) {
+        try {
+            int segmentSize = DEFAULT_SEGMENT_SIZE;
+            if (settings.isSetting(sessionID, SETTING_MAPPED_FILE_STORE_SEGMENT_SIZE)) {
+                segmentSize = (int) settings.getLong(sessionID, SETTING_MAPPED_FILE_STORE_SEGMENT_SIZE);
+            }
+            MappedFileStore.ForcePolicy forcePolicy = MappedFileStore.ForcePolicy.TIMER;
+            if (settings.isSetting(sessionID, SETTING_MAPPED_FILE_STORE_FORCE)) {
+                final String policy = settings.getString(sessionID, SETTING_MAPPED_FILE_STORE_FORCE);
+                try {
+                    forcePolicy = MappedFileStore.ForcePolicy.valueOf(policy.trim().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new ConfigError("Invalid " + SETTING_MAPPED_FILE_STORE_FORCE + ": " + policy);
+                }
+            }
+            int forceBatchSize = DEFAULT_FORCE_BATCH_SIZE;
+            if (settings.isSetting(sessionID, SETTING_MAPPED_FILE_STORE_FORCE_BATCH_SIZE)) {
+                forceBatchSize = (int) settings.getLong(sessionID, SETTING_MAPPED_FILE_STORE_FORCE_BATCH_SIZE);
+            }
+            long forceInterval = DEFAULT_FORCE_INTERVAL;
+            if (settings.isSetting(sessionID, SETTING_MAPPED_FILE_STORE_FORCE_INTERVAL)) {
+                forceInterval = settings.getLong(sessionID, SETTING_MAPPED_FILE_STORE_FORCE_INTERVAL);
+            }
+            return new MappedFileStore(settings.getString(sessionID,
+                    FileStoreFactory.SETTING_FILE_STORE_PATH), sessionID, segmentSize, forcePolicy,
+                    forceBatchSize, forceInterval);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -21,6 +21,7 @@ package quickfix;
 
 import java.io.ByteArrayOutputStream;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
@@ -367,8 +368,8 @@ public class Message extends FieldMap {
         }
 
         @Override
-        protected void calculateString(StringBuilder buffer, int[] excludedFields, int[] postFields) {
-            super.calculateString(buffer, EXCLUDED_HEADER_FIELDS, postFields);
+        void writeFields(FieldWriter writer, int[] excludedFields, int[] postFields) {
+            super.writeFields(writer, EXCLUDED_HEADER_FIELDS, postFields);
         }
     }
 
@@ -377,6 +378,8 @@ public class Message extends FieldMap {
         private static final int[] TRAILER_FIELD_ORDER = { SignatureLength.FIELD, Signature.FIELD,
                 CheckSum.FIELD };
 
+        private static final int[] TRAILER_POST_FIELDS = { CheckSum.FIELD };
+
         public Trailer() {
             super(TRAILER_FIELD_ORDER);
         }
@@ -386,8 +389,8 @@ public class Message extends FieldMap {
         }
 
         @Override
-        protected void calculateString(StringBuilder buffer, int[] excludedFields, int[] postFields) {
-            super.calculateString(buffer, null, new int[] { CheckSum.FIELD });
+        void writeFields(FieldWriter writer, int[] excludedFields, int[] postFields) {
+            super.writeFields(writer, null, TRAILER_POST_FIELDS);
         }
     }
 
@@ -469,6 +472,32 @@ public class Message extends FieldMap {
         parse(messageData, sessionDictionary, applicationDictionary, doValidation);
     }
 
+    /**
+     * Parses the message from its encoded bytes, e.g. as read from the network.
+     * Field values are kept as slices of <code>data</code> and are only decoded
+     * when they are accessed, so the array must not be modified afterwards.
+     *
+     * @param data the buffer containing the encoded message
+     * @param offset the offset of the message in the buffer
+     * @param length the length of the message in bytes
+     * @param dd the data dictionary, or null
+     * @param doValidation whether to validate the message structure and checksum
+     * @throws InvalidMessage if the message could not be parsed
+     * @see #fromString(String, DataDictionary, boolean)
+     */
+    public void fromBytes(byte[] data, int offset, int length, DataDictionary dd,
+            boolean doValidation) throws InvalidMessage {
+        parse(data, offset, length, dd, dd, doValidation, null);
+    }
+
+    public void fromBytes(byte[] data, int offset, int length, DataDictionary sessionDictionary,
+            DataDictionary applicationDictionary, boolean doValidation) throws InvalidMessage {
+        if (sessionDictionary.isAdminMessage(MessageUtils.getMessageType(data, offset, length))) {
+            applicationDictionary = sessionDictionary;
+        }
+        parse(data, offset, length, sessionDictionary, applicationDictionary, doValidation, null);
+    }
+
     void parse(String messageData, DataDictionary sessionDataDictionary,
             DataDictionary applicationDataDictionary, boolean doValidation) throws InvalidMessage {
         this.messageData = messageData;
@@ -478,7 +507,24 @@ public class Message extends FieldMap {
     void parse(String messageData, DataDictionary sessionDataDictionary,
             DataDictionary applicationDataDictionary, boolean doValidation, Boolean duplicateTagsAllowed) throws InvalidMessage {
         this.messageData = messageData;
+        this.messageBytes = null;
         this.clear();
+        parseFields(sessionDataDictionary, applicationDataDictionary, doValidation, duplicateTagsAllowed);
+    }
+
+    void parse(byte[] data, int offset, int length, DataDictionary sessionDataDictionary,
+            DataDictionary applicationDataDictionary, boolean doValidation, Boolean duplicateTagsAllowed) throws InvalidMessage {
+        this.messageData = null;
+        this.messageBytes = data;
+        this.messageOffset = offset;
+        this.messageLength = length;
+        this.clear();
+        position = offset;
+        parseFields(sessionDataDictionary, applicationDataDictionary, doValidation, duplicateTagsAllowed);
+    }
+
+    private void parseFields(DataDictionary sessionDataDictionary,
+            DataDictionary applicationDataDictionary, boolean doValidation, Boolean duplicateTagsAllowed) throws InvalidMessage {
         try {
             if( duplicateTagsAllowed == null){
                 parseHeader(sessionDataDictionary, doValidation, true);
@@ -490,24 +536,27 @@ public class Message extends FieldMap {
                 parseTrailer(sessionDataDictionary, duplicateTagsAllowed);
             }
             if (doValidation) {
-                validateCheckSum(messageData);
+                validateCheckSum();
             }
         } catch (final FieldException e) {
             exception = e;
         }
     }
 
-    private void validateCheckSum(String messageData) throws InvalidMessage {
+    private void validateCheckSum() throws InvalidMessage {
         try {
             // Body length is checked at the protocol layer
             final int checksum = trailer.getInt(CheckSum.FIELD);
-            if (checksum != MessageUtils.checksum(messageData)) {
+            final int expectedChecksum = messageBytes != null
+                    ? MessageUtils.checksum(messageBytes, messageOffset, messageLength, true)
+                    : MessageUtils.checksum(messageData);
+            if (checksum != expectedChecksum) {
                 // message will be ignored if checksum is wrong or missing
-                throw new InvalidMessage("Expected CheckSum=" + MessageUtils.checksum(messageData)
-                        + ", Received CheckSum=" + checksum + " in " + messageData);
+                throw new InvalidMessage("Expected CheckSum=" + expectedChecksum
+                        + ", Received CheckSum=" + checksum + " in " + messageText());
             }
         } catch (final FieldNotFound e) {
-            throw new InvalidMessage("Field not found: " + e.field + " in " + messageData);
+            throw new InvalidMessage("Field not found: " + e.field + " in " + messageText());
         }
     }
 
@@ -519,7 +568,7 @@ public class Message extends FieldMap {
             if (!validHeaderFieldOrder) {
                 // Invalid message preamble (first three fields) is a serious
                 // condition and is handled differently from other message parsing errors.
-                throw new InvalidMessage("Header fields out of order in " + messageData);
+                throw new InvalidMessage("Header fields out of order in " + messageText());
             }
         }
 
@@ -549,7 +598,7 @@ public class Message extends FieldMap {
         try {
             return header.getString(MsgType.FIELD);
         } catch (final FieldNotFound e) {
-            throw new InvalidMessage(e.getMessage() + " in " + messageData);
+            throw new InvalidMessage(e.getMessage() + " in " + messageText());
         }
     }
 
@@ -626,7 +675,7 @@ public class Message extends FieldMap {
             } else if (groupDataDictionary.isGroup(msgType, tag)) {
                 if (!firstFieldFound) {
                     throw new InvalidMessage("The group " + groupCountTag
-                            + " must set the delimiter field " + firstField + " in " + messageData);
+                            + " must set the delimiter field " + firstField + " in " + messageText());
                 }
                 parseGroup(msgType, field, groupDataDictionary, group, duplicateTagsAllowed);
             } else if (groupDataDictionary.isField(tag)) {
@@ -737,6 +786,12 @@ public class Message extends FieldMap {
     //
     private String messageData;
 
+    private byte[] messageBytes;
+
+    private int messageOffset;
+
+    private int messageLength;
+
     private int position;
 
     private StringField pushedBackField;
@@ -753,6 +808,10 @@ public class Message extends FieldMap {
             return f;
         }
 
+        if (messageBytes != null) {
+            return extractByteSliceField(dataDictionary, fields);
+        }
+
         if (position >= messageData.length()) {
             return null;
         }
@@ -806,6 +865,101 @@ public class Message extends FieldMap {
         return new StringField(tag, messageData.substring(equalsOffset + 1, sohOffset));
     }
 
+    private StringField extractByteSliceField(DataDictionary dataDictionary, FieldMap fields)
+            throws InvalidMessage {
+        final int end = messageOffset + messageLength;
+        if (position >= end) {
+            return null;
+        }
+
+        final int equalsOffset = indexOf(messageBytes, '=', position, end);
+        if (equalsOffset == -1) {
+            throw new InvalidMessage("Equal sign not found in field" + " in " + messageText());
+        }
+
+        int tag = 0;
+        for (int i = position; i < equalsOffset; i++) {
+            final int digit = messageBytes[i] - '0';
+            if (digit < 0 || digit > 9 || tag > (Integer.MAX_VALUE - digit) / 10) {
+                tag = -1;
+                break;
+            }
+            tag = tag * 10 + digit;
+        }
+        if (tag == -1 || equalsOffset == position) {
+            final String tagString = new String(messageBytes, position, equalsOffset - position,
+                    CharsetSupport.getCharsetInstance());
+            position = indexOf(messageBytes, '\001', position + 1, end) + 1;
+            if (position == 0) {
+                position = end;
+            }
+            throw new InvalidMessage("Bad tag format: For input string: \"" + tagString + "\" in "
+                    + messageText());
+        }
+
+        int sohOffset = indexOf(messageBytes, '\001', equalsOffset + 1, end);
+        if (sohOffset == -1) {
+            throw new InvalidMessage("SOH not found at end of field: " + tag + " in " + messageText());
+        }
+
+        if (dataDictionary != null && dataDictionary.isDataField(tag)) {
+            /* Assume length field is 1 less. */
+            int lengthField = tag - 1;
+            /* Special case for Signature which violates above assumption. */
+            if (tag == 89) {
+                lengthField = 93;
+            }
+            int fieldLength;
+            try {
+                fieldLength = fields.getInt(lengthField);
+            } catch (final FieldNotFound e) {
+                throw new InvalidMessage("Tag " + e.field + " not found in " + messageText());
+            }
+
+            // the length is in bytes, so the data may contain SOHs which we can step over directly
+            while (sohOffset - equalsOffset - 1 < fieldLength) {
+                sohOffset = indexOf(messageBytes, '\001', sohOffset + 1, end);
+                if (sohOffset == -1) {
+                    throw new InvalidMessage("SOH not found at end of field: " + tag + " in " + messageText());
+                }
+            }
+        }
+
+        position = sohOffset + 1;
+        return new ByteSliceField(tag, messageBytes, equalsOffset + 1, sohOffset - equalsOffset - 1);
+    }
+
+    private static int indexOf(byte[] data, char ch, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the bytes the message was parsed from, or its encoding if it was
+     * not parsed. The message must not have been changed since it was parsed.
+     */
+    byte[] toRawBytes() {
+        if (messageBytes != null) {
+            return messageOffset == 0 && messageLength == messageBytes.length
+                    ? messageBytes
+                    : Arrays.copyOfRange(messageBytes, messageOffset, messageOffset + messageLength);
+        }
+        return (messageData != null ? messageData : toString())
+                .getBytes(CharsetSupport.getCharsetInstance());
+    }
+
+    private String messageText() {
+        if (messageData == null && messageBytes != null) {
+            messageData = new String(messageBytes, messageOffset, messageLength,
+                    CharsetSupport.getCharsetInstance());
+        }
+        return messageData;
+    }
+
     /**
      * Queries message structural validity.
      *
@@ -820,7 +974,7 @@ public class Message extends FieldMap {
     }
 
     public synchronized String getMessageData() {
-        return this.messageData;
+        return messageText();
     }
 
     /**
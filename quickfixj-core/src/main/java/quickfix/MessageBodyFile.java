@@ -0,0 +1,663 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The messages of a store, appended one after another. Messages are addressed
+ * by their position, which is the number of bytes written before them.
+ * <p>
+ * Without a {@link Rollover} the messages are kept in a single file. With one,
+ * they are written to a series of segment files named after the position of
+ * their first message, and a new segment is started once the current one has
+ * reached its maximum size or age. Closed segments can be compressed with gzip
+ * in the background, and the oldest ones are deleted when more than the
+ * retained number of segments are closed. Messages in deleted segments are
+ * skipped when they are read. A single file written without a rollover becomes
+ * the first segment when a rollover is configured.
+ * <p>
+ * Reads may run concurrently with each other and with appends; appends have
+ * to be serialized by the caller. Reads do not take the lock that guards the
+ * segment list: they work on a copy of it that is replaced whenever a segment
+ * is started, compressed or deleted, and read a segment again from the
+ * current copy if it was replaced while they read it.
+ */
+final class MessageBodyFile implements Closeable {
+
+    /**
+     * When segments are started, kept and compressed.
+     */
+    static final class Rollover {
+
+        static final Rollover NONE = new Rollover(0, 0, 0, false);
+
+        private final long maxSegmentSize;
+        private final long maxSegmentAge;
+        private final int retainedSegments;
+        private final boolean compress;
+
+        /**
+         * @param maxSegmentSize the size in bytes at which a new segment is
+         *        started, 0 for no limit. A message larger than this gets a
+         *        segment of its own.
+         * @param maxSegmentAge the milliseconds after which a new segment is
+         *        started, 0 for no limit. The age is measured from when the
+         *        segment was started or the store was opened.
+         * @param retainedSegments the number of closed segments that are kept,
+         *        0 to keep all of them
+         * @param compress whether closed segments are compressed
+         */
+        Rollover(long maxSegmentSize, long maxSegmentAge, int retainedSegments, boolean compress) {
+            this.maxSegmentSize = maxSegmentSize;
+            this.maxSegmentAge = maxSegmentAge;
+            this.retainedSegments = retainedSegments;
+            this.compress = compress;
+        }
+
+        boolean isSegmented() {
+            return maxSegmentSize > 0 || maxSegmentAge > 0;
+        }
+    }
+
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Pattern SEGMENT_SUFFIX = Pattern.compile("\\.(\\d{20})(\\.gz)?(\\.tmp)?");
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final ExecutorService compressor = Executors
+            .newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "QFJ Segment Compressor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final String fileName;
+    private final String mode;
+    private final Rollover rollover;
+    // guarded by this
+    private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+    // copy of the segments for readers
+    private volatile NavigableMap<Long, Segment> readableSegments;
+    private Segment active;
+    private RandomAccessFile writer;
+    private long activeStartTime;
+    private volatile boolean closed;
+
+    /**
+     * Opens the message files, creating the first one if there are none.
+     *
+     * @param fileName the name of the single file, which segment names are
+     *        derived from
+     * @param mode the {@link RandomAccessFile} access mode for writing
+     * @param rollover when segments are started, or {@link Rollover#NONE}
+     */
+    MessageBodyFile(String fileName, String mode, Rollover rollover) throws IOException {
+        this.fileName = fileName;
+        this.mode = mode;
+        this.rollover = rollover;
+        final List<Segment> closedSegments = openSegments();
+        writer = new RandomAccessFile(active.file, mode);
+        writer.seek(writer.length());
+        activeStartTime = SystemTime.currentTimeMillis();
+        if (rollover.compress) {
+            for (final Segment segment : closedSegments) {
+                scheduleCompression(segment);
+            }
+        }
+        synchronized (this) {
+            removeExpiredSegments();
+            publishSegments();
+        }
+    }
+
+    /**
+     * Lists all files of a store's messages, including segments.
+     *
+     * @param fileName the name of the single file
+     */
+    static List<File> listFiles(String fileName) {
+        final List<File> files = new ArrayList<File>();
+        final File file = new File(fileName);
+        if (file.exists()) {
+            files.add(file);
+        }
+        final File[] siblings = file.getAbsoluteFile().getParentFile().listFiles();
+        if (siblings != null) {
+            for (final File sibling : siblings) {
+                if (matchSegment(file, sibling) != null) {
+                    files.add(sibling);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Appends a message, starting a new segment first if the rollover calls
+     * for it.
+     *
+     * @return the position of the message
+     */
+    long append(byte[] data, int offset, int length) throws IOException {
+        if (isRolloverDue(length)) {
+            roll();
+        }
+        final long position = writer.getFilePointer();
+        writer.write(data, offset, length);
+        return active.base + position;
+    }
+
+    /**
+     * Reads messages in the given order. Messages that were in deleted segments
+     * are left out.
+     *
+     * @param positions the positions and lengths of the messages
+     * @param messages the messages read (out parameter)
+     */
+    void read(Collection<long[]> positions, Collection<byte[]> messages) throws IOException {
+        final long[][] requested = positions.toArray(new long[positions.size()][]);
+        final byte[][] results = new byte[requested.length][];
+        while (!readSegments(requested, results)) {
+            // a segment was compressed or deleted while it was read
+        }
+        for (final byte[] data : results) {
+            if (data != null) {
+                messages.add(data);
+            }
+        }
+    }
+
+    /**
+     * Reads the requested messages that have not been read yet.
+     *
+     * @return false if a segment was replaced while it was read, so the
+     *         remaining messages have to be read from the current segments
+     */
+    private boolean readSegments(long[][] requested, byte[][] results) throws IOException {
+        if (closed) {
+            throw new IOException("Message file is closed: " + fileName);
+        }
+        final NavigableMap<Long, Segment> view = readableSegments;
+        // the messages of a compressed segment are inflated in one pass over it
+        final Map<Segment, List<Integer>> compressedRequests = new HashMap<Segment, List<Integer>>();
+        for (int i = 0; i < requested.length; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            final Map.Entry<Long, Segment> entry = view.floorEntry(requested[i][0]);
+            if (entry == null) {
+                continue;
+            }
+            final Segment segment = entry.getValue();
+            try {
+                if (segment.compressed) {
+                    List<Integer> indexes = compressedRequests.get(segment);
+                    if (indexes == null) {
+                        indexes = new ArrayList<Integer>();
+                        compressedRequests.put(segment, indexes);
+                    }
+                    indexes.add(i);
+                } else {
+                    results[i] = readUncompressed(segment, requested[i][0] - segment.base,
+                            (int) requested[i][1]);
+                }
+            } catch (IOException e) {
+                if (isCurrent(segment)) {
+                    throw e;
+                }
+                return false;
+            }
+        }
+        for (final Map.Entry<Segment, List<Integer>> entry : compressedRequests.entrySet()) {
+            try {
+                inflate(entry.getKey(), entry.getValue(), requested, results);
+            } catch (IOException e) {
+                if (isCurrent(entry.getKey())) {
+                    throw e;
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isCurrent(Segment segment) {
+        return !closed && readableSegments.get(segment.base) == segment;
+    }
+
+    private static byte[] readUncompressed(Segment segment, long offset, int length)
+            throws IOException {
+        final byte[] data = new byte[length];
+        // positional reads leave the file pointer alone
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        final FileChannel channel = segment.getChannel();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Truncated input while reading message: file="
+                        + segment.file + ", offset=" + offset + ", expected size="
+                        + data.length + ", size read from file=" + buffer.position());
+            }
+        }
+        return data;
+    }
+
+    /**
+     * @return the channel that messages are currently appended to
+     */
+    FileChannel getChannel() {
+        return writer.getChannel();
+    }
+
+    /**
+     * @return the number of segments on disk, 1 without a rollover
+     */
+    int getSegmentCount() {
+        return readableSegments.size();
+    }
+
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            for (final Segment segment : segments.values()) {
+                segment.release();
+            }
+        }
+        writer.close();
+    }
+
+    /**
+     * Hands a copy of the segment list to readers. Called with the lock held
+     * after the list was changed.
+     */
+    private void publishSegments() {
+        readableSegments = new TreeMap<Long, Segment>(segments);
+    }
+
+    private List<Segment> openSegments() throws IOException {
+        final File file = new File(fileName);
+        for (final File sibling : listFiles(fileName)) {
+            final Matcher matcher = matchSegment(file, sibling);
+            if (matcher == null) {
+                continue;
+            }
+            final long base = Long.parseLong(matcher.group(1));
+            if (matcher.group(3) != null) {
+                // left by an interrupted compression
+                deleteFile(sibling);
+            } else if (matcher.group(2) == null) {
+                segments.put(base, new Segment(base, sibling, false));
+            } else if (!segments.containsKey(base)) {
+                segments.put(base, new Segment(base, sibling, true));
+            }
+        }
+        // a compressed copy next to the segment was not finished before the store was closed
+        for (final Segment segment : segments.values()) {
+            if (!segment.compressed) {
+                final File compressed = getSegmentFile(segment.base, true);
+                if (compressed.exists()) {
+                    deleteFile(compressed);
+                }
+            }
+        }
+
+        if (segments.isEmpty() && !rollover.isSegmented()) {
+            active = new Segment(0, file, false);
+            segments.put(active.base, active);
+            return new ArrayList<Segment>();
+        }
+        if (file.exists()) {
+            // written before a rollover was configured
+            final File first = getSegmentFile(0, false);
+            final Segment empty = segments.get(0L);
+            if (empty != null && !empty.compressed && empty.file.length() == 0) {
+                segments.remove(0L);
+                deleteFile(empty.file);
+            }
+            if (segments.containsKey(0L) || !file.renameTo(first)) {
+                throw new IOException("Could not convert message file " + file + " to segment "
+                        + first);
+            }
+            segments.put(0L, new Segment(0, first, false));
+        }
+        if (segments.isEmpty()) {
+            startSegment(0);
+        } else {
+            final Segment last = segments.lastEntry().getValue();
+            if (last.compressed) {
+                startSegment(last.base + getUncompressedLength(last.file));
+            }
+        }
+        active = segments.lastEntry().getValue();
+        final List<Segment> closedSegments = new ArrayList<Segment>();
+        for (final Segment segment : segments.headMap(active.base).values()) {
+            if (!segment.compressed) {
+                closedSegments.add(segment);
+            }
+        }
+        return closedSegments;
+    }
+
+    private Segment startSegment(long base) throws IOException {
+        final Segment segment = new Segment(base, getSegmentFile(base, false), false);
+        if (!segment.file.exists() && !segment.file.createNewFile()) {
+            throw new IOException("Could not create message segment " + segment.file);
+        }
+        segments.put(base, segment);
+        return segment;
+    }
+
+    private boolean isRolloverDue(int length) throws IOException {
+        if (!rollover.isSegmented()) {
+            return false;
+        }
+        final long size = writer.getFilePointer();
+        if (size == 0) {
+            return false;
+        }
+        return rollover.maxSegmentSize > 0 && size + length > rollover.maxSegmentSize
+                || rollover.maxSegmentAge > 0
+                && SystemTime.currentTimeMillis() - activeStartTime >= rollover.maxSegmentAge;
+    }
+
+    private void roll() throws IOException {
+        // the closed segment is complete on disk before it is compressed or deleted
+        writer.getChannel().force(false);
+        final long base = active.base + writer.getFilePointer();
+        final Segment closedSegment;
+        final RandomAccessFile closedWriter = writer;
+        synchronized (this) {
+            closedSegment = active;
+            active = startSegment(base);
+            writer = new RandomAccessFile(active.file, mode);
+            removeExpiredSegments();
+            publishSegments();
+        }
+        closedWriter.close();
+        activeStartTime = SystemTime.currentTimeMillis();
+        if (rollover.compress) {
+            scheduleCompression(closedSegment);
+        }
+    }
+
+    private void removeExpiredSegments() throws IOException {
+        if (rollover.retainedSegments <= 0) {
+            return;
+        }
+        // the active segment is not counted
+        while (segments.size() - 1 > rollover.retainedSegments) {
+            final Segment segment = segments.pollFirstEntry().getValue();
+            segment.release();
+            deleteFile(segment.file);
+        }
+    }
+
+    private void scheduleCompression(final Segment segment) {
+        compressor.execute(new Runnable() {
+            public void run() {
+                try {
+                    compress(segment);
+                } catch (IOException e) {
+                    log.error("Could not compress message segment " + segment.file, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes a compressed copy of a closed segment and replaces the segment
+     * with it, unless the segment was deleted or the file closed meanwhile.
+     */
+    private void compress(Segment segment) throws IOException {
+        final File source;
+        synchronized (this) {
+            if (closed || segments.get(segment.base) != segment) {
+                return;
+            }
+            source = segment.file;
+        }
+        final File compressed = getSegmentFile(segment.base, true);
+        final File temp = new File(compressed.getPath() + TEMP_SUFFIX);
+        final FileOutputStream fileOut = new FileOutputStream(temp);
+        try {
+            final GZIPOutputStream out = new GZIPOutputStream(fileOut, COPY_BUFFER_SIZE);
+            final InputStream in = new FileInputStream(source);
+            try {
+                copy(in, out);
+            } finally {
+                in.close();
+            }
+            out.finish();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        synchronized (this) {
+            if (closed || segments.get(segment.base) != segment) {
+                deleteFile(temp);
+                return;
+            }
+            if (!temp.renameTo(compressed)) {
+                deleteFile(temp);
+                throw new IOException("Could not rename " + temp + " to " + compressed);
+            }
+            // readers of the old segment read it again from the compressed one
+            segments.put(segment.base, new Segment(segment.base, compressed, true));
+            publishSegments();
+            segment.release();
+            deleteFile(source);
+        }
+    }
+
+    /**
+     * Reads messages from a compressed segment. The messages are read in the
+     * order of their positions, so the segment is inflated once up to the last
+     * of them.
+     *
+     * @param indexes the indexes of the requested messages in the segment
+     */
+    private static void inflate(Segment segment, List<Integer> indexes, final long[][] requested,
+            byte[][] results) throws IOException {
+        Collections.sort(indexes, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                final long positionA = requested[a][0];
+                final long positionB = requested[b][0];
+                return positionA < positionB ? -1 : (positionA == positionB ? 0 : 1);
+            }
+        });
+        InputStream in = null;
+        try {
+            long streamPosition = 0;
+            for (final int index : indexes) {
+                final long offset = requested[index][0] - segment.base;
+                if (in == null || offset < streamPosition) {
+                    // messages that overlap the previous one need a new pass
+                    if (in != null) {
+                        in.close();
+                    }
+                    in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(
+                            segment.file), COPY_BUFFER_SIZE));
+                    streamPosition = 0;
+                }
+                skipFully(in, offset - streamPosition, segment.file);
+                final byte[] data = new byte[(int) requested[index][1]];
+                int read = 0;
+                while (read < data.length) {
+                    final int count = in.read(data, read, data.length - read);
+                    if (count < 0) {
+                        throw new EOFException("Truncated message segment " + segment.file);
+                    }
+                    read += count;
+                }
+                streamPosition = offset + data.length;
+                results[index] = data;
+            }
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    private static long getUncompressedLength(File file) throws IOException {
+        final InputStream in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(
+                file), COPY_BUFFER_SIZE));
+        try {
+            final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            long length = 0;
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                length += count;
+            }
+            return length;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void skipFully(InputStream in, long count, File file) throws IOException {
+        while (count > 0) {
+            final long skipped = in.skip(count);
+            if (skipped > 0) {
+                count -= skipped;
+            } else if (in.read() >= 0) {
+                count--;
+            } else {
+                throw new EOFException("Truncated message segment " + file);
+            }
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+    }
+
+    private File getSegmentFile(long base, boolean compressed) {
+        return new File(String.format("%s.%020d%s", fileName, base,
+                compressed ? COMPRESSED_SUFFIX : ""));
+    }
+
+    private static Matcher matchSegment(File file, File sibling) {
+        final String name = sibling.getName();
+        if (!name.startsWith(file.getName())) {
+            return null;
+        }
+        final Matcher matcher = SEGMENT_SUFFIX.matcher(name.substring(file.getName().length()));
+        return matcher.matches() ? matcher : null;
+    }
+
+    private void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            log.error("File delete failed: " + file);
+        }
+    }
+
+    /**
+     * A segment file. A segment that is compressed is replaced by a new
+     * instance, so the fields do not change.
+     */
+    private static final class Segment {
+        private final long base;
+        private final File file;
+        private final boolean compressed;
+        private volatile FileChannel channel;
+        private boolean released;
+
+        Segment(long base, File file, boolean compressed) {
+            this.base = base;
+            this.file = file;
+            this.compressed = compressed;
+        }
+
+        /**
+         * @return the channel for reading an uncompressed segment, which is
+         *         opened on first use
+         * @throws ClosedChannelException if the segment was released
+         */
+        FileChannel getChannel() throws IOException {
+            FileChannel result = channel;
+            // a channel is also closed when a thread reading it is interrupted
+            if (result == null || !result.isOpen()) {
+                synchronized (this) {
+                    if (released) {
+                        throw new ClosedChannelException();
+                    }
+                    result = channel;
+                    if (result == null || !result.isOpen()) {
+                        result = new RandomAccessFile(file, "r").getChannel();
+                        channel = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Closes the channel for reading. Reads still running fail and are
+         * repeated with the segment that replaced this one.
+         */
+        synchronized void release() throws IOException {
+            released = true;
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,509 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the messages in a store's body file, addressed by sequence number.
+ * The file starts with a magic number and the number of entries per block,
+ * followed by blocks of fixed width entries. Each block starts with its block
+ * number and holds the entries of 4096 consecutive sequence numbers, each the
+ * offset of the message and its length plus one. Blocks are appended when a
+ * sequence number outside the existing blocks is written, so a jump in
+ * sequence numbers adds a single block and never moves the entries already
+ * written. Entries of messages that were never stored are zero.
+ * <p>
+ * The file positions of the blocks are kept in memory. Reads use positional
+ * I/O, or a read-only mapping of the file when the index is opened as mapped,
+ * and may run concurrently with each other; writes have to be serialized by
+ * the caller. The mapping is extended when a read goes past its end. The
+ * mappings are released by {@link #clear()} and {@link #close()}, which must
+ * not run concurrently with reads; the store calls them under its write lock.
+ * Until then a replaced mapping is kept, as reads may still be using it.
+ */
+final class MessageIndexFile implements Closeable {
+
+    private static final int MAGIC = 0x51464A42;
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 12;
+    private static final int BLOCK_SHIFT = 12;
+    private static final int BLOCK_ENTRIES = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_HEADER_SIZE = 4;
+    private static final int BLOCK_SIZE = BLOCK_HEADER_SIZE + BLOCK_ENTRIES * ENTRY_SIZE;
+
+    private final String fileName;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(ENTRY_SIZE);
+    private final boolean mapped;
+    private volatile MappedByteBuffer mapping;
+    // mappings replaced by a larger one, guarded by this
+    private final List<MappedByteBuffer> replacedMappings = new ArrayList<MappedByteBuffer>();
+    // file position of each block by block number
+    private final Map<Integer, Long> blocks = new HashMap<Integer, Long>();
+    private int blockCount;
+    private int firstSequence;
+    private int lastSequence = -1;
+
+    MessageIndexFile(String fileName, String mode) throws IOException {
+        this(fileName, mode, false);
+    }
+
+    /**
+     * Opens an index file, creating it if it does not exist.
+     *
+     * @param fileName the name of the index file
+     * @param mode the {@link RandomAccessFile} access mode
+     * @param mapped whether entries are read through a memory mapping
+     * @throws IOException if the file cannot be opened or is not an index file
+     */
+    MessageIndexFile(String fileName, String mode, boolean mapped) throws IOException {
+        this.fileName = fileName;
+        this.mapped = mapped;
+        file = new RandomAccessFile(fileName, mode);
+        channel = file.getChannel();
+        if (file.length() >= HEADER_SIZE) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != BLOCK_ENTRIES) {
+                file.close();
+                throw new IOException("Invalid message index file: " + fileName);
+            }
+            try {
+                readBlocks();
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Records the position of a message, replacing any earlier entry for the
+     * same sequence number.
+     */
+    void put(int sequence, long offset, int length) throws IOException {
+        Long block = blocks.get(sequence >> BLOCK_SHIFT);
+        if (block == null) {
+            block = addBlock(sequence >> BLOCK_SHIFT);
+        }
+        entryBuffer.clear();
+        entryBuffer.putLong(offset).putInt(length + 1).flip();
+        writeFully(entryBuffer, entryPosition(block, sequence));
+        addSequence(sequence);
+    }
+
+    /**
+     * Gets the position of a message.
+     *
+     * @return the offset and length of the message, or null if it is not stored
+     */
+    long[] get(int sequence) throws IOException {
+        final Long block = blocks.get(sequence >> BLOCK_SHIFT);
+        if (block == null) {
+            return null;
+        }
+        final ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        readFully(entry, entryPosition(block, sequence));
+        final int length = entry.getInt(8) - 1;
+        return length < 0 ? null : new long[] { entry.getLong(0), length };
+    }
+
+    /**
+     * Gets the positions of the stored messages in a range of sequence numbers
+     * (inclusive).
+     *
+     * @param positions the offsets and lengths of the messages by sequence
+     *        number (out parameter)
+     */
+    void get(int startSequence, int endSequence, Map<Long, long[]> positions)
+            throws IOException {
+        final int start = Math.max(startSequence, firstSequence);
+        final int end = Math.min(endSequence, lastSequence);
+        if (isEmpty() || start > end) {
+            return;
+        }
+        final ByteBuffer entries = ByteBuffer.allocate(Math.min(end - start + 1, BLOCK_ENTRIES)
+                * ENTRY_SIZE);
+        long sequence = start;
+        while (sequence <= end) {
+            final int count = getEntryCount((int) sequence, end);
+            final Long block = blocks.get((int) sequence >> BLOCK_SHIFT);
+            // missing blocks of a gap in the sequence numbers are skipped
+            if (block != null) {
+                readEntries(block, (int) sequence, count, entries);
+                for (int i = 0; i < count; i++) {
+                    final int length = entries.getInt(i * ENTRY_SIZE + 8) - 1;
+                    if (length >= 0) {
+                        positions.put(sequence + i,
+                                new long[] { entries.getLong(i * ENTRY_SIZE), length });
+                    }
+                }
+            }
+            sequence += count;
+        }
+    }
+
+    /**
+     * Gets the positions of the messages in a range of sequence numbers
+     * (inclusive) without creating an object per message.
+     *
+     * @param offsets the offsets of the messages by distance from the start
+     *        of the range (out parameter)
+     * @param lengths the lengths of the messages, -1 for messages that are not
+     *        stored (out parameter)
+     */
+    void get(int startSequence, int endSequence, long[] offsets, int[] lengths)
+            throws IOException {
+        final ByteBuffer entries = ByteBuffer.allocate(Math.min(endSequence - startSequence + 1,
+                BLOCK_ENTRIES) * ENTRY_SIZE);
+        long sequence = startSequence;
+        while (sequence <= endSequence) {
+            final int count = getEntryCount((int) sequence, endSequence);
+            final int index = (int) (sequence - startSequence);
+            final Long block = blocks.get((int) sequence >> BLOCK_SHIFT);
+            if (block == null) {
+                Arrays.fill(offsets, index, index + count, 0);
+                Arrays.fill(lengths, index, index + count, -1);
+            } else {
+                readEntries(block, (int) sequence, count, entries);
+                for (int i = 0; i < count; i++) {
+                    offsets[index + i] = entries.getLong(i * ENTRY_SIZE);
+                    lengths[index + i] = entries.getInt(i * ENTRY_SIZE + 8) - 1;
+                }
+            }
+            sequence += count;
+        }
+    }
+
+    /**
+     * @return the lowest sequence number with an entry, if there are any
+     */
+    int getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * @return the highest sequence number with an entry, or one less than the
+     *         first sequence number if the index is empty
+     */
+    int getLastSequence() {
+        return lastSequence;
+    }
+
+    boolean isEmpty() {
+        return lastSequence < firstSequence;
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() throws IOException {
+        // a file cannot be truncated while it is mapped on some platforms
+        unmap();
+        file.setLength(0);
+        blocks.clear();
+        blockCount = 0;
+        firstSequence = 0;
+        lastSequence = -1;
+    }
+
+    public void close() throws IOException {
+        unmap();
+        file.close();
+    }
+
+    /**
+     * Builds an index file from a header file written by earlier versions,
+     * which holds a record of sequence number, offset and length for every
+     * message in the order they were stored. The index is opened without
+     * synchronous writes, written a block at a time and forced once at the
+     * end. Once the index is on disk, the header file is renamed with a
+     * <code>.bak</code> suffix, so it can be restored to go back to an earlier
+     * version. If that does not happen the conversion is repeated when the
+     * store is opened again.
+     *
+     * @param headerFile the header file
+     * @param indexFileName the name of the index file, whose entries are
+     *        replaced
+     */
+    static void convert(File headerFile, String indexFileName) throws IOException {
+        final MessageIndexFile indexFile = new MessageIndexFile(indexFileName, "rw");
+        try {
+            indexFile.load(headerFile);
+            indexFile.channel.force(false);
+        } finally {
+            indexFile.close();
+        }
+        final File backupFile = getBackupFile(headerFile);
+        if (!backupFile.delete() && backupFile.exists() || !headerFile.renameTo(backupFile)) {
+            throw new IOException("Could not rename converted header file " + headerFile
+                    + " to " + backupFile);
+        }
+    }
+
+    /**
+     * @return the file a converted header file is kept as
+     */
+    static File getBackupFile(File headerFile) {
+        return new File(headerFile.getPath() + ".bak");
+    }
+
+    private void load(File headerFile) throws IOException {
+        clear();
+        // the entries of a block are collected and the block is written when
+        // a record for another block comes up
+        final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        int blockNumber = 0;
+        boolean blockLoaded = false;
+        final DataInputStream headerDataInputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(headerFile)));
+        try {
+            while (headerDataInputStream.available() > 0) {
+                final int sequenceNumber = headerDataInputStream.readInt();
+                final long offset = headerDataInputStream.readLong();
+                final int size = headerDataInputStream.readInt();
+                if (!blockLoaded || sequenceNumber >> BLOCK_SHIFT != blockNumber) {
+                    if (blockLoaded) {
+                        writeBlock(blockNumber, block);
+                    }
+                    blockNumber = sequenceNumber >> BLOCK_SHIFT;
+                    readBlock(blockNumber, block);
+                    blockLoaded = true;
+                }
+                final int entry = (int) entryPosition(0, sequenceNumber);
+                block.putLong(entry, offset).putInt(entry + 8, size + 1);
+                addSequence(sequenceNumber);
+            }
+        } catch (EOFException e) {
+            throw new IOException(String.format("End of file [%s] or end of stream has been reached", headerFile), e);
+        } finally {
+            headerDataInputStream.close();
+        }
+        if (blockLoaded) {
+            writeBlock(blockNumber, block);
+        }
+    }
+
+    private void readBlock(int blockNumber, ByteBuffer block) throws IOException {
+        final Long position = blocks.get(blockNumber);
+        block.clear();
+        if (position == null) {
+            Arrays.fill(block.array(), (byte) 0);
+            block.putInt(0, blockNumber);
+        } else {
+            readFully(block, position);
+            block.clear();
+        }
+    }
+
+    private void writeBlock(int blockNumber, ByteBuffer block) throws IOException {
+        Long position = blocks.get(blockNumber);
+        if (position == null) {
+            position = addBlock(blockNumber);
+        }
+        block.clear();
+        writeFully(block, position);
+    }
+
+    private void addSequence(int sequence) {
+        if (isEmpty()) {
+            firstSequence = sequence;
+            lastSequence = sequence;
+        } else if (sequence < firstSequence) {
+            firstSequence = sequence;
+        } else if (sequence > lastSequence) {
+            lastSequence = sequence;
+        }
+    }
+
+    private void readBlocks() throws IOException {
+        // a block cut short by a crash is ignored and later overwritten
+        blockCount = (int) ((file.length() - HEADER_SIZE) / BLOCK_SIZE);
+        final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        int lowestBlock = Integer.MAX_VALUE;
+        int highestBlock = Integer.MIN_VALUE;
+        for (int i = 0; i < blockCount; i++) {
+            final long position = HEADER_SIZE + (long) i * BLOCK_SIZE;
+            blockHeader.clear();
+            readFully(blockHeader, position);
+            final int blockNumber = blockHeader.getInt(0);
+            blocks.put(blockNumber, position);
+            lowestBlock = Math.min(lowestBlock, blockNumber);
+            highestBlock = Math.max(highestBlock, blockNumber);
+        }
+        if (blocks.isEmpty()) {
+            return;
+        }
+        // the first and last sequence numbers are those of the outermost
+        // entries that are set
+        final ByteBuffer entries = ByteBuffer.allocate(BLOCK_ENTRIES * ENTRY_SIZE);
+        for (int blockNumber = lowestBlock; blockNumber <= highestBlock && isEmpty(); blockNumber++) {
+            final Long block = blocks.get(blockNumber);
+            if (block != null) {
+                entries.clear();
+                readFully(entries, block + BLOCK_HEADER_SIZE);
+                for (int i = 0; i < BLOCK_ENTRIES; i++) {
+                    if (entries.getInt(i * ENTRY_SIZE + 8) != 0) {
+                        firstSequence = (blockNumber << BLOCK_SHIFT) + i;
+                        lastSequence = firstSequence;
+                        break;
+                    }
+                }
+            }
+        }
+        for (int blockNumber = highestBlock; blockNumber >= lowestBlock; blockNumber--) {
+            final Long block = blocks.get(blockNumber);
+            if (block != null) {
+                entries.clear();
+                readFully(entries, block + BLOCK_HEADER_SIZE);
+                for (int i = BLOCK_ENTRIES - 1; i >= 0; i--) {
+                    if (entries.getInt(i * ENTRY_SIZE + 8) != 0) {
+                        lastSequence = (blockNumber << BLOCK_SHIFT) + i;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private long addBlock(int blockNumber) throws IOException {
+        if (blockCount == 0) {
+            file.setLength(0);
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(BLOCK_ENTRIES).flip();
+            writeFully(header, 0);
+        }
+        final long position = HEADER_SIZE + (long) blockCount * BLOCK_SIZE;
+        // the block only counts once the file covers all of it, so a block
+        // number written before a crash does not claim any entries
+        file.setLength(position);
+        final ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        blockHeader.putInt(blockNumber).flip();
+        writeFully(blockHeader, position);
+        file.setLength(position + BLOCK_SIZE);
+        blocks.put(blockNumber, position);
+        blockCount++;
+        return position;
+    }
+
+    /**
+     * @return the number of entries from a sequence number to the end of its
+     *         block or the given end, whichever comes first
+     */
+    private static int getEntryCount(int sequence, int end) {
+        return (int) Math.min((long) end - sequence + 1,
+                BLOCK_ENTRIES - (sequence & (BLOCK_ENTRIES - 1)));
+    }
+
+    private void readEntries(long block, int sequence, int count, ByteBuffer entries)
+            throws IOException {
+        entries.clear();
+        entries.limit(count * ENTRY_SIZE);
+        readFully(entries, entryPosition(block, sequence));
+    }
+
+    private static long entryPosition(long block, int sequence) {
+        return block + BLOCK_HEADER_SIZE + (long) (sequence & (BLOCK_ENTRIES - 1)) * ENTRY_SIZE;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        if (mapped) {
+            final MappedByteBuffer entries = getMapping(position + buffer.remaining());
+            if (entries != null) {
+                final ByteBuffer source = entries.duplicate();
+                source.limit((int) position + buffer.remaining());
+                source.position((int) position);
+                buffer.put(source);
+                return;
+            }
+        }
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Truncated message index file: " + fileName);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Gets a mapping of the file that reaches at least the given position,
+     * mapping the file again if it has grown since it was last mapped.
+     *
+     * @return the mapping, or null if the file is too short or too large to map
+     */
+    private MappedByteBuffer getMapping(long end) throws IOException {
+        MappedByteBuffer entries = mapping;
+        if (entries == null || entries.capacity() < end) {
+            synchronized (this) {
+                entries = mapping;
+                if (entries == null || entries.capacity() < end) {
+                    final long size = channel.size();
+                    if (size < end || size > Integer.MAX_VALUE) {
+                        return null;
+                    }
+                    if (mapping != null) {
+                        replacedMappings.add(mapping);
+                    }
+                    entries = channel.map(MapMode.READ_ONLY, 0, size);
+                    mapping = entries;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private synchronized void unmap() {
+        FileUtil.unmap(mapping);
+        mapping = null;
+        for (MappedByteBuffer replacedMapping : replacedMappings) {
+            FileUtil.unmap(replacedMapping);
+        }
+        replacedMappings.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
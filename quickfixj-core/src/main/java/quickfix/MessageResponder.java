@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+/**
+ * A {@link Responder} that can encode and send a message object itself, or
+ * send the bytes of an encoded message, so the session does not need to
+ * convert the message to a String first.
+ *
+ * @see MessageWriter
+ */
+public interface MessageResponder extends Responder {
+
+    /**
+     * Send a FIX message. The message is encoded before this method returns.
+     *
+     * @param message the FIX message
+     * @return true is successful, false if send operation failed
+     */
+    boolean send(Message message);
+
+    /**
+     * Send a FIX message that has already been encoded. The array is not
+     * copied, so it must not be changed afterwards.
+     *
+     * @param data the encoded FIX message
+     * @return true is successful, false if send operation failed
+     */
+    boolean send(byte[] data);
+}
@@ -114,6 +114,33 @@ public class MessageUtils {
         return message;
     }
 
+    /**
+     * Utility method for parsing a message from its encoded bytes. This should only be
+     * used for parsing messages from FIX versions 4.4 or earlier.
+     *
+     * @param messageFactory
+     * @param dataDictionary
+     * @param data the buffer containing the encoded message
+     * @param offset the offset of the message in the buffer
+     * @param length the length of the message in bytes
+     * @return the parsed message
+     * @throws InvalidMessage
+     * @see Message#fromBytes(byte[], int, int, DataDictionary, boolean)
+     */
+    public static Message parse(MessageFactory messageFactory, DataDictionary dataDictionary,
+            byte[] data, int offset, int length) throws InvalidMessage {
+        final int index = indexOf(data, offset, offset + length, FIELD_SEPARATOR);
+        if (index < 0) {
+            throw new InvalidMessage("Message does not contain any field separator");
+        }
+        final String beginString = new String(data, offset + 2, index - offset - 2,
+                CharsetSupport.getCharsetInstance());
+        final String messageType = getMessageType(data, offset, length);
+        final quickfix.Message message = messageFactory.create(beginString, messageType);
+        message.fromBytes(data, offset, length, dataDictionary, dataDictionary != null);
+        return message;
+    }
+
     /**
      * NOTE: This method is intended for internal use.
      *
@@ -153,6 +180,51 @@ public class MessageUtils {
         return message;
     }
 
+    /**
+     * NOTE: This method is intended for internal use.
+     * <p>
+     * Parses the message straight from its encoded bytes. Field values are kept as
+     * slices of <code>data</code> and only decoded when accessed.
+     *
+     * @param session the Session that will process the message
+     * @param data the buffer containing the encoded message
+     * @param offset the offset of the message in the buffer
+     * @param length the length of the message in bytes
+     * @return the parsed message
+     * @throws InvalidMessage
+     */
+    public static Message parse(Session session, byte[] data, int offset, int length)
+            throws InvalidMessage {
+        final String beginString = getStringField(data, offset, length, BeginString.FIELD);
+        final String msgType = getMessageType(data, offset, length);
+
+        ApplVerID applVerID;
+
+        if (FixVersions.BEGINSTRING_FIXT11.equals(beginString)) {
+            applVerID = getApplVerID(session, data, offset, length, msgType);
+        } else {
+            applVerID = toApplVerID(beginString);
+        }
+
+        final MessageFactory messageFactory = session.getMessageFactory();
+
+        final DataDictionaryProvider ddProvider = session.getDataDictionaryProvider();
+        final DataDictionary sessionDataDictionary = ddProvider == null ? null : ddProvider
+                .getSessionDataDictionary(beginString);
+        final DataDictionary applicationDataDictionary = ddProvider == null ? null : ddProvider
+                .getApplicationDataDictionary(applVerID);
+
+        final quickfix.Message message = messageFactory.create(beginString, msgType);
+        final DataDictionary payloadDictionary = MessageUtils.isAdminMessage(msgType)
+                ? sessionDataDictionary
+                : applicationDataDictionary;
+
+        message.parse(data, offset, length, sessionDataDictionary, payloadDictionary,
+                payloadDictionary != null, session.isDuplicateTagsAllowed());
+
+        return message;
+    }
+
     private static ApplVerID getApplVerID(Session session, String messageString)
             throws InvalidMessage {
         ApplVerID applVerID = null;
@@ -181,6 +253,34 @@ public class MessageUtils {
         return applVerID;
     }
 
+    private static ApplVerID getApplVerID(Session session, byte[] data, int offset, int length,
+            String msgType) throws InvalidMessage {
+        ApplVerID applVerID = null;
+
+        final String applVerIdString = getStringField(data, offset, length, ApplVerID.FIELD);
+        if (applVerIdString != null) {
+            applVerID = new ApplVerID(applVerIdString);
+        }
+
+        if (applVerID == null) {
+            applVerID = session.getTargetDefaultApplicationVersionID();
+        }
+
+        if (applVerID == null && MsgType.LOGON.equals(msgType)) {
+            final String defaultApplVerIdString = getStringField(data, offset, length,
+                    DefaultApplVerID.FIELD);
+            if (defaultApplVerIdString != null) {
+                applVerID = new ApplVerID(defaultApplVerIdString);
+            }
+        }
+
+        if (applVerID == null) {
+            throw new InvalidMessage("Can't determine ApplVerID for message");
+        }
+
+        return applVerID;
+    }
+
     public static boolean isAdminMessage(String msgType) {
         return msgType.length() == 1 && "0A12345".contains(msgType);
     }
@@ -235,6 +335,55 @@ public class MessageUtils {
         return value;
     }
 
+    public static String getMessageType(byte[] data, int offset, int length) throws InvalidMessage {
+        final String value = getStringField(data, offset, length, MsgType.FIELD);
+        if (value == null) {
+            throw new InvalidMessage("Missing or garbled message type in "
+                    + new String(data, offset, length, CharsetSupport.getCharsetInstance()));
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value of the first occurrence of a tag in an encoded message,
+     * without decoding any other part of the message.
+     *
+     * @param data the buffer containing the encoded message
+     * @param offset the offset of the message in the buffer
+     * @param length the length of the message in bytes
+     * @param tag the tag to look for
+     * @return the field value, or null if the tag was not found
+     */
+    public static String getStringField(byte[] data, int offset, int length, int tag) {
+        final int end = offset + length;
+        int start = offset;
+        while (start < end) {
+            int i = start;
+            int value = 0;
+            while (i < end && data[i] >= '0' && data[i] <= '9' && value <= tag) {
+                value = value * 10 + (data[i++] - '0');
+            }
+            final int soh = indexOf(data, i, end, FIELD_SEPARATOR);
+            if (soh == -1) {
+                return null;
+            }
+            if (value == tag && i > start && data[i] == '=') {
+                return new String(data, i + 1, soh - i - 1, CharsetSupport.getCharsetInstance());
+            }
+            start = soh + 1;
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] data, int from, int end, char ch) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private static final Map<String, String> applVerIDtoBeginString = new HashMap<String, String>() {
         {
             // No support for earlier versions of FIX
@@ -326,6 +475,30 @@ public class MessageUtils {
         return sum & 0xFF; // better than sum % 256 since it avoids overflow issues
     }
 
+    /**
+     * Calculates the checksum for the given encoded data.
+     *
+     * @param data the buffer containing the data
+     * @param offset the offset of the data in the buffer
+     * @param length the length of the data in bytes
+     * @param isEntireMessage specifies whether the data is an entire message;
+     *        if true, and it ends with a checksum field, that checksum
+     *        field is excluded from the current checksum calculation
+     * @return the calculated checksum
+     */
+    public static int checksum(byte[] data, int offset, int length, boolean isEntireMessage) {
+        int end = offset + length;
+        if (isEntireMessage && length >= 8 && data[end - 8] == '\001' && data[end - 7] == '1'
+                && data[end - 6] == '0' && data[end - 5] == '=') {
+            end = end - 7;
+        }
+        int sum = 0;
+        for (int i = offset; i < end; i++) {
+            sum += (data[i] & 0xFF);
+        }
+        return sum & 0xFF;
+    }
+
     /**
      * Calculates the checksum for the given message
      * (excluding existing checksum field, if one exists).
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.quickfixj.CharsetSupport;
+
+import quickfix.field.BeginString;
+import quickfix.field.BodyLength;
+import quickfix.field.CheckSum;
+
+/**
+ * Encodes a message straight into a <code>ByteBuffer</code> in a single pass
+ * over its fields. BodyLength(9) and CheckSum(10) are computed while the fields
+ * are written, so no intermediate String is created for the message.
+ * <p>
+ * The body is written first, leaving enough room in front of it for the
+ * BeginString and BodyLength fields, which are filled in once the length is
+ * known. After {@link #write(Message)} the buffer position is at the first
+ * byte of the message and its limit is just past the last byte.
+ * <p>
+ * The produced bytes are the same as those of
+ * <code>message.toString().getBytes(charset)</code>, and like
+ * {@link Message#toString()} the BodyLength and CheckSum fields of the message
+ * are updated. Instances are not thread safe.
+ */
+public class MessageWriter {
+    private static final byte SOH = '\001';
+    private static final int MAX_BODY_LENGTH_DIGITS = 10;
+    private static final int[] HEADER_SKIPPED_FIELDS = { BeginString.FIELD, BodyLength.FIELD };
+    private static final int[] TRAILER_SKIPPED_FIELDS = { CheckSum.FIELD };
+    private static final String[] CHECKSUMS = new String[256];
+
+    static {
+        for (int i = 0; i < CHECKSUMS.length; i++) {
+            CHECKSUMS[i] = String.valueOf(new char[] { (char) ('0' + i / 100),
+                    (char) ('0' + i / 10 % 10), (char) ('0' + i % 10) });
+        }
+    }
+
+    private final Charset charset;
+    private final int maxDirectChar;
+    private final FieldMap.FieldWriter fieldWriter = new FieldMap.FieldWriter() {
+        public void write(Field<?> field) {
+            if (!FieldMap.isOrderedField(field.getTag(), skippedFields)) {
+                writeField(field);
+            }
+        }
+    };
+
+    private ByteBuffer buffer;
+    private int[] skippedFields;
+    private int checksum;
+
+    /**
+     * Creates a writer using the {@link CharsetSupport#getCharsetInstance() global charset}.
+     *
+     * @param buffer the buffer to write to
+     */
+    public MessageWriter(ByteBuffer buffer) {
+        this(buffer, CharsetSupport.getCharsetInstance());
+    }
+
+    public MessageWriter(ByteBuffer buffer, Charset charset) {
+        this.buffer = buffer;
+        this.charset = charset;
+        // characters of string-equivalent charsets are written without encoding
+        if (CharsetSupport.isStringEquivalent(charset)) {
+            maxDirectChar = "US-ASCII".equals(charset.name()) ? 0x7F : 0xFF;
+        } else {
+            maxDirectChar = -1;
+        }
+    }
+
+    /**
+     * Returns the buffer being written to. This is not the buffer passed to the
+     * constructor if it had to be expanded.
+     *
+     * @return the buffer
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Writes the message at the current buffer position.
+     *
+     * @param message the message to write
+     * @return the buffer holding the message between its position and limit
+     */
+    public ByteBuffer write(Message message) {
+        final Message.Header header = message.getHeader();
+        final Field<?> beginString = header.getField(BeginString.FIELD, null);
+        final int beginStringLength = beginString != null ? fieldLength(beginString) : 0;
+
+        // room for "8=...<SOH>9=<length><SOH>"
+        final int bodyStart = buffer.position() + beginStringLength + 3 + MAX_BODY_LENGTH_DIGITS;
+        ensureRemaining(bodyStart - buffer.position());
+        buffer.position(bodyStart);
+        checksum = 0;
+
+        skippedFields = HEADER_SKIPPED_FIELDS;
+        header.writeFields(fieldWriter, null, null);
+        skippedFields = null;
+        message.writeFields(fieldWriter, null, null);
+        skippedFields = TRAILER_SKIPPED_FIELDS;
+        message.getTrailer().writeFields(fieldWriter, null, null);
+        skippedFields = null;
+
+        final int bodyEnd = buffer.position();
+        final int bodyLength = bodyEnd - bodyStart;
+
+        // prepend BeginString and BodyLength right in front of the body
+        final int start = bodyStart - beginStringLength - 3 - digits(bodyLength);
+        buffer.position(start);
+        if (beginString != null) {
+            writeField(beginString);
+        }
+        writeTag(BodyLength.FIELD);
+        writeInt(bodyLength);
+        put(SOH);
+
+        buffer.position(bodyEnd);
+        final String checksumValue = CHECKSUMS[checksum & 0xFF];
+        ensureRemaining(7);
+        writeTag(CheckSum.FIELD);
+        for (int i = 0; i < checksumValue.length(); i++) {
+            buffer.put((byte) checksumValue.charAt(i));
+        }
+        buffer.put(SOH);
+
+        header.setInt(BodyLength.FIELD, bodyLength);
+        message.getTrailer().setString(CheckSum.FIELD, checksumValue);
+
+        buffer.limit(buffer.position());
+        buffer.position(start);
+        return buffer;
+    }
+
+    /**
+     * Makes room for the given number of bytes after the buffer position.
+     * The default implementation replaces the buffer with a larger heap buffer.
+     *
+     * @param buffer the current buffer
+     * @param required the number of bytes needed after the position
+     * @return the buffer to continue writing to, with the same position
+     */
+    protected ByteBuffer expand(ByteBuffer buffer, int required) {
+        final int capacity = Math.max(buffer.capacity() * 2, buffer.position() + required);
+        final ByteBuffer expanded = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        expanded.put(buffer);
+        return expanded;
+    }
+
+    private void ensureRemaining(int required) {
+        if (buffer.limit() - buffer.position() < required) {
+            if (buffer.capacity() - buffer.position() >= required) {
+                buffer.limit(buffer.capacity());
+            } else {
+                buffer = expand(buffer, required);
+            }
+        }
+    }
+
+    private void writeField(Field<?> field) {
+        if (field instanceof EncodedStringField && ((EncodedStringField) field).isEncodedWith(charset)) {
+            final EncodedStringField encodedField = (EncodedStringField) field;
+            final byte[] encoded = encodedField.encoded();
+            ensureRemaining(encoded.length);
+            buffer.put(encoded);
+            checksum += encodedField.encodedChecksum();
+            return;
+        }
+        writeTag(field.getTag());
+        if (field instanceof ByteSliceField && !((ByteSliceField) field).isDecoded()) {
+            final ByteSliceField slice = (ByteSliceField) field;
+            put(slice.data(), slice.dataOffset(), slice.dataLength());
+        } else {
+            writeValue(field.objectAsString());
+        }
+        put(SOH);
+    }
+
+    private void writeTag(int tag) {
+        writeInt(tag);
+        put((byte) '=');
+    }
+
+    private void writeValue(String value) {
+        final int length = value.length();
+        if (maxDirectChar < 0) {
+            final byte[] bytes = value.getBytes(charset);
+            put(bytes, 0, bytes.length);
+            return;
+        }
+        ensureRemaining(length);
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            // unmappable characters are replaced like String.getBytes() does
+            final byte b = c <= maxDirectChar ? (byte) c : (byte) '?';
+            buffer.put(b);
+            sum += b & 0xFF;
+        }
+        checksum += sum;
+    }
+
+    private void writeInt(int value) {
+        if (value < 0) {
+            put((byte) '-');
+            value = -value;
+        }
+        final int digits = digits(value);
+        ensureRemaining(digits);
+        int divisor = 1;
+        for (int i = 1; i < digits; i++) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            final byte b = (byte) ('0' + value / divisor % 10);
+            buffer.put(b);
+            checksum += b;
+        }
+    }
+
+    private void put(byte b) {
+        ensureRemaining(1);
+        buffer.put(b);
+        checksum += b & 0xFF;
+    }
+
+    private void put(byte[] bytes, int offset, int length) {
+        ensureRemaining(length);
+        buffer.put(bytes, offset, length);
+        for (int i = offset; i < offset + length; i++) {
+            checksum += bytes[i] & 0xFF;
+        }
+    }
+
+    private int fieldLength(Field<?> field) {
+        if (field instanceof EncodedStringField && ((EncodedStringField) field).isEncodedWith(charset)) {
+            return ((EncodedStringField) field).encoded().length;
+        }
+        final String value = field.objectAsString();
+        return digits(field.getTag()) + 2
+                + (maxDirectChar < 0 ? value.getBytes(charset).length : value.length());
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
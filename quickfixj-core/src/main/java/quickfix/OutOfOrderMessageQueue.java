@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The messages received ahead of sequence, kept as their raw bytes until the
+ * gap before them is filled. The queued sequence numbers are held in a sorted
+ * array, so the memory used depends on the number of queued messages and not
+ * on how far apart their sequence numbers are. Once the messages use more
+ * than the memory limit, further messages are written to a temporary file,
+ * which is deleted when the queue is empty again.
+ * <p>
+ * Like the rest of the session state, the queue is guarded by the session's
+ * lock. Only the counts may be read from other threads.
+ */
+final class OutOfOrderMessageQueue {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long memoryLimit;
+
+    // the entries from head to head + size - 1 are sorted by sequence number;
+    // messages are usually added at the end and removed from the head
+    private int[] seqNums = new int[INITIAL_CAPACITY];
+    private byte[][] messages = new byte[INITIAL_CAPACITY][];
+    // the position in the spill file of a message that is not held in memory
+    private long[] spillPositions = new long[INITIAL_CAPACITY];
+    private int head;
+    private long memoryUsed;
+
+    private volatile int size;
+    private volatile int spilled;
+
+    private File spillFile;
+    private RandomAccessFile spill;
+    private long spillLength;
+
+    OutOfOrderMessageQueue(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns how many of the messages are in the spill file.
+     */
+    int getSpilledCount() {
+        return spilled;
+    }
+
+    /**
+     * Queues a message, replacing a message with the same sequence number.
+     *
+     * @throws IOException if the message could not be written to the spill
+     *             file, in which case it is kept in memory
+     */
+    void put(int seqNum, byte[] data) throws IOException {
+        int index = indexOf(seqNum);
+        if (index >= 0) {
+            discard(index);
+        } else {
+            index = insert(-index - 1, seqNum);
+        }
+        if (memoryUsed + data.length > memoryLimit) {
+            try {
+                spillPositions[index] = write(data);
+                spilled++;
+                return;
+            } catch (IOException e) {
+                // the message is kept in memory rather than lost
+                messages[index] = data;
+                memoryUsed += data.length;
+                throw e;
+            }
+        }
+        messages[index] = data;
+        memoryUsed += data.length;
+    }
+
+    /**
+     * Returns a message without removing it.
+     *
+     * @return the bytes of the message, or null if it is not queued
+     */
+    byte[] get(int seqNum) throws IOException {
+        final int index = indexOf(seqNum);
+        if (index < 0) {
+            return null;
+        }
+        return messages[index] != null ? messages[index] : read(spillPositions[index]);
+    }
+
+    /**
+     * Removes a message.
+     *
+     * @return the bytes of the message, or null if it is not queued
+     */
+    byte[] remove(int seqNum) throws IOException {
+        final int index = indexOf(seqNum);
+        if (index < 0) {
+            return null;
+        }
+        byte[] data = messages[index];
+        if (data == null) {
+            data = read(spillPositions[index]);
+        }
+        discard(index);
+        delete(index);
+        return data;
+    }
+
+    /**
+     * Removes the messages with lower sequence numbers.
+     */
+    void removeBefore(int seqNum) throws IOException {
+        int end = indexOf(seqNum);
+        if (end < 0) {
+            end = -end - 1;
+        }
+        for (int index = head; index < end; index++) {
+            discard(index);
+        }
+        size -= end - head;
+        head = end;
+        if (size == 0) {
+            head = 0;
+            closeSpillFile();
+        }
+    }
+
+    /**
+     * Returns the lowest queued sequence number, or 0 if the queue is empty.
+     */
+    int firstSeqNum() {
+        return size > 0 ? seqNums[head] : 0;
+    }
+
+    List<Integer> seqNums() {
+        final List<Integer> queued = new ArrayList<Integer>(size);
+        for (int index = head; index < head + size; index++) {
+            queued.add(seqNums[index]);
+        }
+        return queued;
+    }
+
+    void clear() throws IOException {
+        for (int index = head; index < head + size; index++) {
+            messages[index] = null;
+        }
+        head = 0;
+        memoryUsed = 0;
+        size = 0;
+        spilled = 0;
+        closeSpillFile();
+    }
+
+    /**
+     * Finds the slot of a sequence number.
+     *
+     * @return the slot, or (-(insertion slot) - 1) if it is not queued
+     */
+    private int indexOf(int seqNum) {
+        final int end = head + size;
+        // fast path for messages arriving in order after the gap
+        if (size == 0 || seqNum > seqNums[end - 1]) {
+            return -end - 1;
+        }
+        return Arrays.binarySearch(seqNums, head, end, seqNum);
+    }
+
+    /**
+     * Opens an empty slot for a sequence number.
+     *
+     * @return the slot, which may differ from the given one if the entries
+     *         were moved
+     */
+    private int insert(int index, int seqNum) {
+        int end = head + size;
+        if (end == seqNums.length) {
+            // compact the entries to the front, growing the arrays if they are
+            // more than half full
+            final int capacity = size * 2 > seqNums.length ? seqNums.length * 2 : seqNums.length;
+            final int[] newSeqNums = new int[capacity];
+            final byte[][] newMessages = new byte[capacity][];
+            final long[] newSpillPositions = new long[capacity];
+            System.arraycopy(seqNums, head, newSeqNums, 0, size);
+            System.arraycopy(messages, head, newMessages, 0, size);
+            System.arraycopy(spillPositions, head, newSpillPositions, 0, size);
+            seqNums = newSeqNums;
+            messages = newMessages;
+            spillPositions = newSpillPositions;
+            index -= head;
+            end -= head;
+            head = 0;
+        }
+        if (index < end) {
+            System.arraycopy(seqNums, index, seqNums, index + 1, end - index);
+            System.arraycopy(messages, index, messages, index + 1, end - index);
+            System.arraycopy(spillPositions, index, spillPositions, index + 1, end - index);
+        }
+        seqNums[index] = seqNum;
+        messages[index] = null;
+        size++;
+        return index;
+    }
+
+    /**
+     * Removes the slot of a discarded message.
+     */
+    private void delete(int index) throws IOException {
+        final int end = head + size;
+        if (index == head) {
+            head++;
+        } else if (index < end - 1) {
+            System.arraycopy(seqNums, index + 1, seqNums, index, end - index - 1);
+            System.arraycopy(messages, index + 1, messages, index, end - index - 1);
+            System.arraycopy(spillPositions, index + 1, spillPositions, index, end - index - 1);
+            messages[end - 1] = null;
+        }
+        size--;
+        if (size == 0) {
+            head = 0;
+            closeSpillFile();
+        }
+    }
+
+    /**
+     * Releases the message held by a slot.
+     */
+    private void discard(int index) {
+        if (messages[index] != null) {
+            memoryUsed -= messages[index].length;
+            messages[index] = null;
+        } else {
+            spilled--;
+        }
+    }
+
+    private long write(byte[] data) throws IOException {
+        if (spill == null) {
+            spillFile = File.createTempFile("quickfixj-queue", ".tmp");
+            spill = new RandomAccessFile(spillFile, "rw");
+        }
+        final long position = spillLength;
+        final byte[] record = new byte[data.length + 4];
+        record[0] = (byte) (data.length >>> 24);
+        record[1] = (byte) (data.length >>> 16);
+        record[2] = (byte) (data.length >>> 8);
+        record[3] = (byte) data.length;
+        System.arraycopy(data, 0, record, 4, data.length);
+        spill.seek(position);
+        spill.write(record);
+        spillLength += record.length;
+        return position;
+    }
+
+    private byte[] read(long position) throws IOException {
+        spill.seek(position);
+        final byte[] data = new byte[spill.readInt()];
+        spill.readFully(data);
+        return data;
+    }
+
+    private void closeSpillFile() throws IOException {
+        if (spill != null) {
+            try {
+                spill.close();
+            } finally {
+                spill = null;
+                spillLength = 0;
+                if (!spillFile.delete()) {
+                    spillFile.deleteOnExit();
+                }
+                spillFile = null;
+            }
+        }
+    }
+}
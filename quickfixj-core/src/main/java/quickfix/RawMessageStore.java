@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * A message store that accepts and returns messages in their encoded form, so
+ * they do not have to be converted to and from Strings when they are persisted
+ * or resent.
+ *
+ * @see quickfix.Session#SETTING_RESEND_WITHOUT_APPLICATION_CALLBACKS
+ */
+public interface RawMessageStore extends MessageStore {
+
+    /**
+     * Adds an encoded FIX message to the store with the given sequence number.
+     *
+     * @param sequence the sequence number
+     * @param data the buffer containing the encoded message
+     * @param offset the offset of the message in the buffer
+     * @param length the length of the message in bytes
+     * @return true is successful, false otherwise
+     * @throws IOException IO error
+     */
+    boolean set(int sequence, byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Get the encoded messages within sequence number range (inclusive),
+     * ordered by sequence number. The buffers must not be modified.
+     *
+     * @param startSequence the starting message sequence number.
+     * @param endSequence the ending message sequence number.
+     * @param messages the retrieved message buffers (out parameter)
+     * @throws IOException IO error
+     */
+    void getMessageBuffers(int startSequence, int endSequence, Collection<ByteBuffer> messages)
+            throws IOException;
+}
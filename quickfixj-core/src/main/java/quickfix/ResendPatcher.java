@@ -0,0 +1,318 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.quickfixj.CharsetSupport;
+
+import quickfix.field.MsgSeqNum;
+import quickfix.field.MsgType;
+import quickfix.field.NoHops;
+import quickfix.field.OrigSendingTime;
+import quickfix.field.PossDupFlag;
+import quickfix.field.SecureDataLen;
+import quickfix.field.SendingTime;
+import quickfix.field.XmlDataLen;
+import quickfix.field.converter.UtcTimestampCodec;
+
+/**
+ * Prepares stored messages for a resend by editing their encoded form. The
+ * SendingTime is moved to OrigSendingTime, PossDupFlag is set and a new
+ * SendingTime is written, while the rest of the message is copied as it is.
+ * BodyLength and CheckSum are calculated again.
+ * <p>
+ * Only the header fields up to the first field that is not a standard header
+ * field are examined. Messages whose header contains data fields or repeating
+ * groups, or that have no SendingTime, are not accepted by {@link #scan} and
+ * must be parsed instead. The stored message is read in place and must not be
+ * changed until it has been patched. An instance reuses its buffers and is not
+ * thread safe.
+ */
+final class ResendPatcher {
+
+    private static final byte SOH = '\001';
+    private static final byte[] POSS_DUP_FIELD = { '4', '3', '=', 'Y', SOH };
+    private static final byte[] ORIG_SENDING_TIME_TAG = { '1', '2', '2', '=' };
+    // room for "9=" with the largest int value and the separator
+    private static final int MAX_BODY_LENGTH_FIELD = 13;
+
+    private final Charset charset = CharsetSupport.getCharsetInstance();
+    private final byte[] timestamp = new byte[UtcTimestampCodec.MAX_TIMESTAMP_LENGTH];
+    private ByteBuffer input;
+    private int base;
+    private byte[] output = new byte[1024];
+
+    private int length;
+    private int beginStringEnd;
+    private int bodyStart;
+    private int checkSumStart;
+    private int msgSeqNum;
+    private int msgTypeStart;
+    private int msgTypeEnd;
+    private int sendingTimeStart;
+    private int sendingTimeEnd;
+    private int possDupStart;
+    private int possDupEnd;
+    private int origSendingTimeStart;
+    private int origSendingTimeEnd;
+    private int possDupInsert;
+    private int origSendingTimeInsert;
+
+    /**
+     * Reads the header of a stored message.
+     *
+     * @param message the encoded message, which is not modified
+     * @return true if the message can be patched, false if it has to be parsed
+     */
+    boolean scan(ByteBuffer message) {
+        input = message.duplicate();
+        base = message.position();
+        length = message.remaining();
+
+        checkSumStart = length - 7;
+        if (length < 8 || at(0) != '8' || at(1) != '=' || at(checkSumStart - 1) != SOH
+                || at(checkSumStart) != '1' || at(checkSumStart + 1) != '0'
+                || at(checkSumStart + 2) != '=' || at(length - 1) != SOH) {
+            return false;
+        }
+        beginStringEnd = indexOfSeparator(2);
+        if (beginStringEnd < 0 || at(beginStringEnd + 1) != '9'
+                || at(beginStringEnd + 2) != '=') {
+            return false;
+        }
+        final int bodyLengthEnd = indexOfSeparator(beginStringEnd + 3);
+        if (bodyLengthEnd < 0) {
+            return false;
+        }
+        bodyStart = bodyLengthEnd + 1;
+
+        msgSeqNum = 0;
+        msgTypeStart = -1;
+        sendingTimeStart = -1;
+        possDupStart = -1;
+        origSendingTimeStart = -1;
+        possDupInsert = -1;
+        origSendingTimeInsert = -1;
+        int fieldStart = bodyStart;
+        while (fieldStart < checkSumStart) {
+            int tag = 0;
+            int position = fieldStart;
+            while (position < checkSumStart && at(position) >= '0' && at(position) <= '9') {
+                tag = tag * 10 + at(position++) - '0';
+            }
+            if (position == fieldStart || position == checkSumStart || at(position) != '=') {
+                return false;
+            }
+            if (!Message.isHeaderField(tag)) {
+                break;
+            }
+            final int valueStart = position + 1;
+            final int fieldEnd = indexOfSeparator(valueStart);
+            if (fieldEnd < 0) {
+                return false;
+            }
+            if (tag > PossDupFlag.FIELD && possDupInsert < 0) {
+                possDupInsert = fieldStart;
+            }
+            if (tag > OrigSendingTime.FIELD && origSendingTimeInsert < 0) {
+                origSendingTimeInsert = fieldStart;
+            }
+            switch (tag) {
+            case MsgType.FIELD:
+                msgTypeStart = valueStart;
+                msgTypeEnd = fieldEnd;
+                break;
+            case MsgSeqNum.FIELD:
+                msgSeqNum = parseInt(valueStart, fieldEnd);
+                break;
+            case SendingTime.FIELD:
+                sendingTimeStart = valueStart;
+                sendingTimeEnd = fieldEnd;
+                break;
+            case PossDupFlag.FIELD:
+                possDupStart = fieldStart;
+                possDupEnd = fieldEnd + 1;
+                break;
+            case OrigSendingTime.FIELD:
+                origSendingTimeStart = fieldStart;
+                origSendingTimeEnd = fieldEnd + 1;
+                break;
+            case SecureDataLen.FIELD:
+            case XmlDataLen.FIELD:
+            case NoHops.FIELD:
+                // data fields may contain separators and groups are not tracked
+                return false;
+            default:
+                break;
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        if (possDupInsert < 0) {
+            possDupInsert = fieldStart;
+        }
+        if (origSendingTimeInsert < 0) {
+            origSendingTimeInsert = fieldStart;
+        }
+        return msgTypeStart >= 0 && msgSeqNum > 0 && sendingTimeStart >= 0;
+    }
+
+    /**
+     * @return the MsgSeqNum of the last scanned message
+     */
+    int getMsgSeqNum() {
+        return msgSeqNum;
+    }
+
+    /**
+     * @return the MsgType of the last scanned message
+     */
+    String getMsgType() {
+        final byte[] msgType = new byte[msgTypeEnd - msgTypeStart];
+        copy(msgTypeStart, msgType, 0, msgType.length);
+        return new String(msgType, charset);
+    }
+
+    /**
+     * Builds the resend of the last scanned message.
+     *
+     * @param sendingTime the new SendingTime
+     * @param fractionDigits the number of fractional second digits of the SendingTime
+     * @return the encoded message to resend, which is not reused
+     */
+    byte[] patch(Timestamp sendingTime, int fractionDigits) {
+        final int timestampLength = UtcTimestampCodec.formatTimestamp(sendingTime.getTime(),
+                sendingTime.getNanos(), fractionDigits, timestamp, 0);
+        final int origSendingTimeLength = sendingTimeEnd - sendingTimeStart;
+        final int capacity = length + MAX_BODY_LENGTH_FIELD + POSS_DUP_FIELD.length
+                + ORIG_SENDING_TIME_TAG.length + origSendingTimeLength + 1 + timestampLength;
+        if (output.length < capacity) {
+            output = new byte[Math.max(capacity, output.length * 2)];
+        }
+
+        // the body is written first so the BodyLength can be put in front of it
+        final int bodyOffset = beginStringEnd + 1 + MAX_BODY_LENGTH_FIELD;
+        int out = bodyOffset;
+        int position = bodyStart;
+        boolean possDupWritten = false;
+        boolean origSendingTimeWritten = false;
+        while (true) {
+            if (!possDupWritten && position == possDupInsert) {
+                System.arraycopy(POSS_DUP_FIELD, 0, output, out, POSS_DUP_FIELD.length);
+                out += POSS_DUP_FIELD.length;
+                possDupWritten = true;
+            }
+            if (!origSendingTimeWritten && position == origSendingTimeInsert) {
+                System.arraycopy(ORIG_SENDING_TIME_TAG, 0, output, out,
+                        ORIG_SENDING_TIME_TAG.length);
+                out += ORIG_SENDING_TIME_TAG.length;
+                copy(sendingTimeStart, output, out, origSendingTimeLength);
+                out += origSendingTimeLength;
+                output[out++] = SOH;
+                origSendingTimeWritten = true;
+            }
+            if (position == checkSumStart) {
+                break;
+            }
+            if (position == possDupStart) {
+                position = possDupEnd;
+            } else if (position == origSendingTimeStart) {
+                position = origSendingTimeEnd;
+            } else if (position == sendingTimeStart) {
+                System.arraycopy(timestamp, 0, output, out, timestampLength);
+                out += timestampLength;
+                position = sendingTimeEnd;
+            } else {
+                final int next = nextEdit(position);
+                copy(position, output, out, next - position);
+                out += next - position;
+                position = next;
+            }
+        }
+
+        int start = bodyOffset;
+        output[--start] = SOH;
+        int bodyLength = out - bodyOffset;
+        do {
+            output[--start] = (byte) ('0' + bodyLength % 10);
+            bodyLength /= 10;
+        } while (bodyLength > 0);
+        output[--start] = '=';
+        output[--start] = '9';
+        start -= beginStringEnd + 1;
+        copy(0, output, start, beginStringEnd + 1);
+
+        final int checkSum = MessageUtils.checksum(output, start, out - start, false);
+        output[out++] = '1';
+        output[out++] = '0';
+        output[out++] = '=';
+        output[out++] = (byte) ('0' + checkSum / 100);
+        output[out++] = (byte) ('0' + checkSum / 10 % 10);
+        output[out++] = (byte) ('0' + checkSum % 10);
+        output[out++] = SOH;
+        return Arrays.copyOfRange(output, start, out);
+    }
+
+    private int nextEdit(int position) {
+        int next = checkSumStart;
+        next = nextAfter(position, possDupInsert, next);
+        next = nextAfter(position, origSendingTimeInsert, next);
+        next = nextAfter(position, possDupStart, next);
+        next = nextAfter(position, origSendingTimeStart, next);
+        return nextAfter(position, sendingTimeStart, next);
+    }
+
+    private static int nextAfter(int position, int candidate, int next) {
+        return candidate > position && candidate < next ? candidate : next;
+    }
+
+    private byte at(int index) {
+        return input.get(base + index);
+    }
+
+    private void copy(int from, byte[] destination, int offset, int count) {
+        input.position(base + from);
+        input.get(destination, offset, count);
+    }
+
+    private int indexOfSeparator(int from) {
+        for (int i = from; i < length; i++) {
+            if (at(i) == SOH) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int parseInt(int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = at(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+                return 0;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -26,8 +26,11 @@ import static quickfix.BusinessRejectReasonText.UNSUPPORTED_MESSAGE_TYPE;
 import static quickfix.LogUtil.logThrowable;
 
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
@@ -38,6 +41,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import org.quickfixj.CharsetSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,6 +77,7 @@ import quickfix.field.TargetLocationID;
 import quickfix.field.TargetSubID;
 import quickfix.field.TestReqID;
 import quickfix.field.Text;
+import quickfix.field.converter.UtcTimestampCodec;
 import quickfix.mina.EventHandlingStrategy;
 
 /**
@@ -369,6 +374,25 @@ public class Session implements Closeable {
 
     public static final String RECEIVE_LIMIT = "ReceiveLimit";
 
+    /**
+     * The number of bytes of messages received ahead of sequence that are kept
+     * in memory until the gap is filled. Further messages are written to a
+     * temporary file. Default is 32 MB.
+     */
+    public static final String SETTING_QUEUED_MESSAGES_MEMORY_LIMIT = "QueuedMessagesMemoryLimit";
+
+    /**
+     * Resend stored application messages without calling the application's
+     * toApp and onSendToApp callbacks, so they cannot be stopped with
+     * {@link DoNotSend} or changed. Since no Message is needed for the
+     * callbacks, the stored bytes are edited directly instead of being parsed.
+     * The message store has to be a {@link RawMessageStore}; messages whose
+     * header cannot be edited in place are parsed and passed to the callbacks
+     * as usual. Default is "N".
+     */
+    public static final String SETTING_RESEND_WITHOUT_APPLICATION_CALLBACKS =
+            "ResendWithoutApplicationCallbacks";
+
     /**
      * Default is "Y".
      * If set to N, messages which contain values not presented in the range will not be rejected.
@@ -379,6 +403,9 @@ public class Session implements Closeable {
 
     private final Application application;
     private final SessionID sessionID;
+    // identification fields copied into every outgoing header
+    private final StringField[] headerTemplate;
+    private final SessionSender sender;
     private final SessionSchedule sessionSchedule;
     private final MessageFactory messageFactory;
 
@@ -391,6 +418,8 @@ public class Session implements Closeable {
     // @GuardedBy(responderLock)
     private Responder responder;
 
+    private volatile Runnable timerWakeup;
+
     // The session time checks were causing performance problems
     // so we are checking only once per second.
     private long lastSessionTimeCheck = 0;
@@ -421,6 +450,8 @@ public class Session implements Closeable {
     private boolean forceResendWhenCorruptedStore = false;
     private boolean enableNextExpectedMsgSeqNum = false;
     private boolean enableLastMsgSeqNumProcessed = false;
+    private boolean resendWithoutApplicationCallbacks = false;
+    private ByteBuffer encodeBuffer; // only used while the sender sequence number is locked
 
     private final AtomicBoolean isResetting = new AtomicBoolean();
 
@@ -500,6 +531,8 @@ public class Session implements Closeable {
             boolean enableNextExpectedMsgSeqNum, boolean enableLastMsgSeqNumProcessed, boolean duplicateTagsAllowed, boolean ignoreAbsenceOf141tag) {
         this.application = application;
         this.sessionID = sessionID;
+        this.headerTemplate = createHeaderTemplate(sessionID);
+        this.sender = new SessionSender(this);
         this.sessionSchedule = sessionSchedule;
         this.checkLatency = checkLatency;
         this.maxLatency = maxLatency;
@@ -587,6 +620,7 @@ public class Session implements Closeable {
                 stateListener.onDisconnect();
             }
         }
+        wakeUpTimer();
     }
 
     public Responder getResponder() {
@@ -741,6 +775,29 @@ public class Session implements Closeable {
         return sessions.get(sessionID);
     }
 
+    /**
+     * Locates the sender of the session specified by the provided session ID.
+     * The sender can be kept to send messages without looking up the session
+     * again.
+     *
+     * @param sessionID the session ID
+     * @return the session sender, if found, or null otherwise
+     * @see #getSender()
+     */
+    public static SessionSender lookupSender(SessionID sessionID) {
+        final Session session = sessions.get(sessionID);
+        return session != null ? session.getSender() : null;
+    }
+
+    /**
+     * Returns the sender of this session.
+     *
+     * @return the session sender
+     */
+    public SessionSender getSender() {
+        return sender;
+    }
+
     /**
      * This method can be used to manually logon to a FIX session.
      */
@@ -749,26 +806,123 @@ public class Session implements Closeable {
         setEnabled(true);
     }
 
-    private synchronized void setEnabled(boolean enabled) {
-        this.enabled = enabled;
+    private void setEnabled(boolean enabled) {
+        synchronized (this) {
+            this.enabled = enabled;
+        }
+        wakeUpTimer();
+    }
+
+    /**
+     * Sets the task run when the time returned by {@link #getNextTimerDeadline()}
+     * may have moved closer, for example when the session is connected or a
+     * logout has been sent. Used by connectors that only call {@link #next()}
+     * when the session is due.
+     *
+     * @param timerWakeup the task, or null
+     */
+    public void setTimerWakeup(Runnable timerWakeup) {
+        this.timerWakeup = timerWakeup;
+    }
+
+    private void wakeUpTimer() {
+        final Runnable wakeup = timerWakeup;
+        if (wakeup != null) {
+            wakeup.run();
+        }
+    }
+
+    /**
+     * Returns the time at which {@link #next()} has to be called at the latest
+     * to send heartbeats, test requests and logons in time, to detect timeouts
+     * and to act on the session schedule. Calling {@link #next()} before that
+     * time is harmless. The result assumes that the session state does not
+     * change in the meantime, other than by receiving messages; changes that
+     * bring the deadline forward run the {@link #setTimerWakeup(Runnable) timer
+     * wakeup}.
+     *
+     * @return the deadline in milliseconds, or <code>Long.MAX_VALUE</code> if
+     *         nothing is due until the session state changes
+     */
+    public long getNextTimerDeadline() {
+        long deadline = Long.MAX_VALUE;
+
+        if (!isEnabled()) {
+            if (!isLoggedOn()) {
+                return deadline;
+            }
+            if (!state.isLogoutSent()) {
+                return SystemTime.currentTimeMillis();
+            }
+        }
+
+        if (sessionSchedule != null && !sessionSchedule.isNonStopSession()) {
+            final long now = SystemTime.currentTimeMillis();
+            // the schedule is checked at most once per second
+            deadline = Math.max(sessionSchedule.getNextTransitionTime(now),
+                    lastSessionTimeCheck + 1000L);
+            if (!isSessionTime()) {
+                return deadline;
+            }
+        }
+
+        if (!hasResponder()) {
+            return deadline;
+        }
+
+        if (!state.isLogonReceived()) {
+            if (state.isLogonSendNeeded()) {
+                deadline = Math.min(deadline, lastSessionLogon + computeNextLogonDelayMillis());
+            } else if (state.isLogonAlreadySent()) {
+                deadline = Math.min(deadline, state.getLogonTimeoutTime());
+            }
+            return deadline;
+        }
+
+        if (state.getHeartBeatInterval() == 0) {
+            return deadline;
+        }
+
+        if (state.isLogoutSent()) {
+            deadline = Math.min(deadline, state.getLogoutTimeoutTime());
+        }
+        deadline = Math.min(deadline, state.getTimeoutTime());
+        deadline = Math.min(deadline, state.getTestRequestTime());
+        return Math.min(deadline, state.getHeartBeatTime());
     }
 
     private void initializeHeader(Message.Header header) {
         state.setLastSentTime(SystemTime.currentTimeMillis());
-        header.setString(BeginString.FIELD, sessionID.getBeginString());
-        header.setString(SenderCompID.FIELD, sessionID.getSenderCompID());
-        optionallySetID(header, SenderSubID.FIELD, sessionID.getSenderSubID());
-        optionallySetID(header, SenderLocationID.FIELD, sessionID.getSenderLocationID());
-        header.setString(TargetCompID.FIELD, sessionID.getTargetCompID());
-        optionallySetID(header, TargetSubID.FIELD, sessionID.getTargetSubID());
-        optionallySetID(header, TargetLocationID.FIELD, sessionID.getTargetLocationID());
+        for (final StringField field : headerTemplate) {
+            header.setField(field);
+        }
         header.setInt(MsgSeqNum.FIELD, getExpectedSenderNum());
         insertSendingTime(header);
     }
 
-    private void optionallySetID(Header header, int field, String value) {
+    /**
+     * Creates the identification fields of the outgoing headers, in the order
+     * they are stored in the header. The fields are shared by all messages
+     * sent by the session and are encoded once here, so that only the
+     * sequence number and sending time are encoded for every message.
+     */
+    private static StringField[] createHeaderTemplate(SessionID sessionID) {
+        final Charset charset = CharsetSupport.getCharsetInstance();
+        final List<StringField> fields = new ArrayList<StringField>();
+        fields.add(new EncodedStringField(BeginString.FIELD, sessionID.getBeginString(), charset));
+        fields.add(new EncodedStringField(SenderCompID.FIELD, sessionID.getSenderCompID(), charset));
+        optionallyAddID(fields, SenderSubID.FIELD, sessionID.getSenderSubID(), charset);
+        fields.add(new EncodedStringField(TargetCompID.FIELD, sessionID.getTargetCompID(), charset));
+        optionallyAddID(fields, TargetSubID.FIELD, sessionID.getTargetSubID(), charset);
+        optionallyAddID(fields, SenderLocationID.FIELD, sessionID.getSenderLocationID(), charset);
+        optionallyAddID(fields, TargetLocationID.FIELD, sessionID.getTargetLocationID(), charset);
+        return fields.toArray(new StringField[fields.size()]);
+    }
+
+    private static void optionallyAddID(List<StringField> fields, int field, String value,
+            Charset charset) {
         if (!value.equals(SessionID.NOT_SET)) {
-            header.setString(field, value);
+            fields.add(new EncodedStringField(field, value, charset));
         }
     }
 
@@ -1317,6 +1471,12 @@ public class Session implements Closeable {
         return MessageUtils.parse(this, messageData);
     }
 
+    private Message parseMessage(ByteBuffer messageData) throws InvalidMessage {
+        final byte[] data = new byte[messageData.remaining()];
+        messageData.duplicate().get(data);
+        return MessageUtils.parse(this, data, 0, data.length);
+    }
+
     private boolean isTargetTooLow(int msgSeqNum) throws IOException {
         return msgSeqNum < state.getNextTargetMsgSeqNum();
     }
@@ -1454,6 +1614,7 @@ public class Session implements Closeable {
         }
         sendRaw(logout, 0);
         state.setLogoutSent(true);
+        wakeUpTimer();
     }
 
     private void nextSequenceReset(Message sequenceReset) throws IOException, RejectLogon,
@@ -2076,6 +2237,7 @@ public class Session implements Closeable {
             state.clearQueue();
             state.clearLogoutReason();
             state.setResendRange(0, 0);
+            flushStore();
 
             if (resetOnDisconnect) {
                 resetState();
@@ -2096,6 +2258,21 @@ public class Session implements Closeable {
     public void disconnect(String reason, boolean logError) throws IOException {
         disconnect(reason, logError, false);
     }
+
+    /**
+     * Writes the changes a write-behind store still keeps in memory, so the
+     * sequence numbers used in this connection are not lost with them.
+     */
+    private void flushStore() {
+        final MessageStore store = getStore();
+        if (store instanceof Flushable) {
+            try {
+                ((Flushable) store).flush();
+            } catch (final IOException e) {
+                logThrowable(getLog(), "Error flushing the message store", e);
+            }
+        }
+    }
     
     private void nextLogon(Message logon) throws FieldNotFound, RejectLogon, IncorrectDataFormat,
             IncorrectTagValue, UnsupportedMessageType, IOException, InvalidMessage {
@@ -2260,6 +2437,7 @@ public class Session implements Closeable {
             stateListener.onLogon();
             lastSessionLogon = SystemTime.currentTimeMillis();
             logonAttempts = 0;
+            wakeUpTimer();
         }
     }
 
@@ -2267,9 +2445,25 @@ public class Session implements Closeable {
             throws IOException, InvalidMessage, FieldNotFound {
 
         final ArrayList<String> messages = new ArrayList<String>();
+        final ArrayList<ByteBuffer> messageBuffers = new ArrayList<ByteBuffer>();
         try {
-            state.get(beginSeqNo, endSeqNo, messages);
+            final MessageStore store = state.getMessageStore();
+            if (store instanceof RawMessageStore) {
+                // work on the stored bytes without decoding them to a String;
+                // views of a mapped store are copied while the store cannot be
+                // reset or closed, so sending does not hold up other senders
+                state.lockSenderMsgSeqNum();
+                try {
+                    ((RawMessageStore) store).getMessageBuffers(beginSeqNo, endSeqNo, messageBuffers);
+                    copyDirectBuffers(messageBuffers);
+                } finally {
+                    state.unlockSenderMsgSeqNum();
+                }
+            } else {
+                state.get(beginSeqNo, endSeqNo, messages);
+            }
         } catch (final IOException e) {
+            messageBuffers.clear();
             if (forceResendWhenCorruptedStore) {
                 log.error("Cannot read messages from stores, resend HeartBeats", e);
                 for (int i = beginSeqNo; i < endSeqNo; i++) {
@@ -2288,30 +2482,53 @@ public class Session implements Closeable {
         int begin = 0;
         int current = beginSeqNo;
 
-        for (final String message : messages) {
-            final Message msg;
-            try {
-                // QFJ-626
-                msg = parseMessage(message);
-                msgSeqNum = msg.getHeader().getInt(MsgSeqNum.FIELD);
-            } catch (final Exception e) {
-                getLog().onErrorEvent(
-                        "Error handling ResendRequest: failed to parse message (" + e.getMessage()
-                        + "): " + message);
-                // Note: a SequenceReset message will be generated to fill the gap
-                continue;
+        final ResendPatcher patcher = resendWithoutApplicationCallbacks
+                && !messageBuffers.isEmpty()
+                ? new ResendPatcher()
+                : null;
+        final int count = messageBuffers.isEmpty() ? messages.size() : messageBuffers.size();
+        for (int i = 0; i < count; i++) {
+            final ByteBuffer messageBuffer = messageBuffers.isEmpty() ? null : messageBuffers.get(i);
+            Message msg = null;
+            final String msgType;
+            if (patcher != null && patcher.scan(messageBuffer)) {
+                msgSeqNum = patcher.getMsgSeqNum();
+                msgType = patcher.getMsgType();
+            } else {
+                try {
+                    // QFJ-626
+                    msg = messageBuffer != null ? parseMessage(messageBuffer) : parseMessage(messages.get(i));
+                    msgSeqNum = msg.getHeader().getInt(MsgSeqNum.FIELD);
+                } catch (final Exception e) {
+                    final String message = messageBuffer != null
+                            ? CharsetSupport.getCharsetInstance().decode(messageBuffer.duplicate()).toString()
+                            : messages.get(i);
+                    getLog().onErrorEvent(
+                            "Error handling ResendRequest: failed to parse message (" + e.getMessage()
+                            + "): " + message);
+                    // Note: a SequenceReset message will be generated to fill the gap
+                    continue;
+                }
+                msgType = msg.getHeader().getString(MsgType.FIELD);
             }
 
             if ((current != msgSeqNum) && begin == 0) {
                 begin = current;
             }
 
-            final String msgType = msg.getHeader().getString(MsgType.FIELD);
-
             if (MessageUtils.isAdminMessage(msgType) && !forceResendWhenCorruptedStore) {
                 if (begin == 0) {
                     begin = msgSeqNum;
                 }
+            } else if (msg == null) {
+                // patched in place, the application does not see the resend
+                if (begin != 0) {
+                    generateSequenceReset(receivedMessage, begin, msgSeqNum);
+                }
+                getLog().onEvent("Resending Message: " + msgSeqNum);
+                send(patcher.patch(SystemTime.getDate(), UtcTimestampCodec.getFractionDigits(
+                        includeMillis(), includeMicros(), includeNanos())));
+                begin = 0;
             } else {
                 initializeResendFields(msg);
                 if (resendApproved(msg)) {
@@ -2349,6 +2566,17 @@ public class Session implements Closeable {
         }
     }
 
+    private static void copyDirectBuffers(List<ByteBuffer> buffers) {
+        for (int i = 0; i < buffers.size(); i++) {
+            final ByteBuffer buffer = buffers.get(i);
+            if (buffer.isDirect()) {
+                final byte[] bytes = new byte[buffer.remaining()];
+                buffer.duplicate().get(bytes);
+                buffers.set(i, ByteBuffer.wrap(bytes));
+            }
+        }
+    }
+
     private void generateSequenceResetIfNeeded(Message receivedMessage, int beginSeqNo, int endSeqNo, int msgSeqNum)
             throws IOException, FieldNotFound {
         if (endSeqNo > msgSeqNum) {
@@ -2370,35 +2598,31 @@ public class Session implements Closeable {
 
     private boolean nextQueued(int num) throws FieldNotFound, RejectLogon, IncorrectDataFormat,
             IncorrectTagValue, UnsupportedMessageType, IOException, InvalidMessage {
-        final Message msg = state.dequeue(num);
-        if (msg != null) {
+        final byte[] data = state.dequeueBytes(num);
+        if (data != null) {
             getLog().onEvent("Processing queued message: " + num);
-
-            final String msgType = msg.getHeader().getString(MsgType.FIELD);
-            if (msgType.equals(MsgType.LOGON) || msgType.equals(MsgType.RESEND_REQUEST)) {
-                // Logon and ResendRequest processing has already been done, so we just need to increment the target seqnum.
-                state.incrNextTargetMsgSeqNum();
-            } else {
-                nextQueued(msg, msgType);
-            }
+            nextQueued(data);
             return true;
         }
         return false;
     }
 
-    private void nextQueued(Message msg, String msgType) throws InvalidMessage, FieldNotFound, RejectLogon,
+    private void nextQueued(byte[] data) throws InvalidMessage, FieldNotFound, RejectLogon,
             IncorrectDataFormat, IncorrectTagValue, UnsupportedMessageType, IOException {
         try {
-            next(msg, true);
+            final String msgType = MessageUtils.getMessageType(data, 0, data.length);
+            if (msgType.equals(MsgType.LOGON) || msgType.equals(MsgType.RESEND_REQUEST)) {
+                // Logon and ResendRequest processing has already been done, so we just need to increment the target seqnum.
+                state.incrNextTargetMsgSeqNum();
+                return;
+            }
+            // queued messages are kept as bytes and parsed again when their
+            // turn comes, which fails like the parsing of a received message
+            next(MessageUtils.parse(this, data, 0, data.length), true);
         } catch (final InvalidMessage e) {
-            final String message = "Invalid message: " + e;
-            if (MsgType.LOGON.equals(msgType)) {
-                disconnect(message, true, true);
-            } else {
-                getLog().onErrorEvent(message);
-                if (resetOrDisconnectIfRequired(null)) {
-                    return;
-                }
+            getLog().onErrorEvent("Invalid message: " + e);
+            if (resetOrDisconnectIfRequired(null)) {
+                return;
             }
             throw e;
         }
@@ -2554,7 +2778,8 @@ public class Session implements Closeable {
                 }
             }
 
-            String messageString;
+            byte[] messageData;
+            boolean sendAllowed;
 
             if (message.isAdmin()) {
                 try {
@@ -2577,12 +2802,10 @@ public class Session implements Closeable {
                     }
                 }
 
-                messageString = message.toString();
-                if (msgType.equals(MsgType.LOGON) || msgType.equals(MsgType.LOGOUT)
+                messageData = encodeIfRequired(message);
+                sendAllowed = msgType.equals(MsgType.LOGON) || msgType.equals(MsgType.LOGOUT)
                         || msgType.equals(MsgType.RESEND_REQUEST)
-                        || msgType.equals(MsgType.SEQUENCE_RESET) || isLoggedOn()) {
-                    result = send(messageString);
-                }
+                        || msgType.equals(MsgType.SEQUENCE_RESET) || isLoggedOn();
             } else {
                 try {
                     application.toApp(message, sessionID);
@@ -2591,10 +2814,22 @@ public class Session implements Closeable {
                 } catch (final Throwable t) {
                     logApplicationException("toApp()", t);
                 }
-                messageString = message.toString();
-                if (isLoggedOn()) {
-                    result = send(messageString);
+                messageData = encodeIfRequired(message);
+                sendAllowed = isLoggedOn();
+            }
+
+            // the message is stored before it is sent, so a synced store has
+            // it on disk before the counterparty can see its sequence number
+            if (num == 0) {
+                final int msgSeqNum = header.getInt(MsgSeqNum.FIELD);
+                if (persistMessages) {
+                    state.set(msgSeqNum, messageData);
                 }
+                state.incrNextSenderMsgSeqNum();
+            }
+
+            if (sendAllowed) {
+                result = send(message, messageData);
             }
 
             if (result) {
@@ -2609,14 +2844,6 @@ public class Session implements Closeable {
                 }
             }
 
-            if (num == 0) {
-                final int msgSeqNum = header.getInt(MsgSeqNum.FIELD);
-                if (persistMessages) {
-                    state.set(msgSeqNum, messageString);
-                }
-                state.incrNextSenderMsgSeqNum();
-            }
-
             return result;
         } catch (final IOException e) {
             logThrowable(getLog(), "Error Reading/Writing in MessageStore", e);
@@ -2629,13 +2856,68 @@ public class Session implements Closeable {
         }
     }
 
+    /**
+     * Encodes the message once when it is logged or persisted, or when the
+     * responder can only send strings, so that the same bytes are logged,
+     * stored and sent. Returns null if the responder can encode the message
+     * itself.
+     */
+    private byte[] encodeIfRequired(Message message) {
+        if (persistMessages || state.isLogEnabled() || !(getResponder() instanceof MessageResponder)) {
+            return encode(message);
+        }
+        return null;
+    }
+
+    private byte[] encode(Message message) {
+        if (encodeBuffer == null) {
+            encodeBuffer = ByteBuffer.allocate(1024);
+        }
+        encodeBuffer.clear();
+        final MessageWriter writer = new MessageWriter(encodeBuffer, CharsetSupport.getCharsetInstance());
+        final ByteBuffer encoded = writer.write(message);
+        final byte[] messageData = new byte[encoded.remaining()];
+        encoded.get(messageData);
+        encodeBuffer = writer.getBuffer();
+        return messageData;
+    }
+
+    private boolean send(Message message, byte[] messageData) {
+        final Responder responder = getResponder();
+        if (messageData == null) {
+            if (!(responder instanceof MessageResponder)) {
+                // responder changed after the check, fall back to the String
+                return send(message.toString());
+            }
+            return ((MessageResponder) responder).send(message);
+        }
+        return send(messageData);
+    }
+
+    private boolean send(byte[] messageData) {
+        final Responder responder = getResponder();
+        if (!(responder instanceof MessageResponder)) {
+            return send(new String(messageData, CharsetSupport.getCharsetInstance()));
+        }
+        if (state.isLogEnabled()) {
+            getLog().onOutgoing(new String(messageData, CharsetSupport.getCharsetInstance()));
+        }
+        return ((MessageResponder) responder).send(messageData);
+    }
+
     private void enqueueMessage(final Message msg, final int msgSeqNum) {
         state.enqueue(msgSeqNum, msg);
         getLog().onEvent("Enqueued at pos " + msgSeqNum + ": " + msg);
     }
 
     private void resetState() {
-        state.reset();
+        // views of stored messages handed out for a resend are only read with this lock held
+        state.lockSenderMsgSeqNum();
+        try {
+            state.reset();
+        } finally {
+            state.unlockSenderMsgSeqNum();
+        }
         stateListener.onReset();
     }
 
@@ -2974,7 +3256,12 @@ public class Session implements Closeable {
     @Override
     public void close() throws IOException {
         closeIfCloseable(getLog());
-        closeIfCloseable(getStore());
+        state.lockSenderMsgSeqNum();
+        try {
+            closeIfCloseable(getStore());
+        } finally {
+            state.unlockSenderMsgSeqNum();
+        }
     }
 
     private void closeIfCloseable(Object resource) throws IOException {
@@ -3002,6 +3289,36 @@ public class Session implements Closeable {
         this.receiveLimit = receiveLimit;
     }
 
+    public boolean isResendWithoutApplicationCallbacks() {
+        return resendWithoutApplicationCallbacks;
+    }
+
+    public void setResendWithoutApplicationCallbacks(boolean resendWithoutApplicationCallbacks) {
+        this.resendWithoutApplicationCallbacks = resendWithoutApplicationCallbacks;
+    }
+
+    public void setQueuedMessagesMemoryLimit(long queuedMessagesMemoryLimit) {
+        state.setQueueMemoryLimit(queuedMessagesMemoryLimit);
+    }
+
+    /**
+     * Returns the number of messages received ahead of sequence that wait for
+     * a gap to be filled.
+     */
+    public int getQueuedMessageCount() {
+        return state.getQueuedMessageCount();
+    }
+
+    /**
+     * Returns how many of the queued messages were written to disk because
+     * they did not fit in the memory limit.
+     *
+     * @see #SETTING_QUEUED_MESSAGES_MEMORY_LIMIT
+     */
+    public int getSpilledMessageCount() {
+        return state.getSpilledMessageCount();
+    }
+
     public boolean isValidateFieldsOutOfRange() {
         return validateFieldsOutOfRange;
     }
@@ -275,6 +275,34 @@ public class SessionSchedule {
         return interval.isContainingTime(now);
     }
 
+    /**
+     * Returns the first time after the given time at which the result of
+     * {@link #isSessionTime()} may change, that is the end of the current
+     * session or the start of the next one.
+     *
+     * @param time the time in milliseconds
+     * @return the time of the next transition in milliseconds, or
+     *         <code>Long.MAX_VALUE</code> for a non-stop session
+     */
+    public long getNextTransitionTime(long time) {
+        if (nonStopSession) {
+            return Long.MAX_VALUE;
+        }
+        final Calendar t = SystemTime.getUtcCalendar(time);
+        final TimeInterval interval = theMostRecentIntervalBefore(t);
+        if (interval.isContainingTime(t)) {
+            // the end time is still part of the session
+            return interval.getEnd().getTimeInMillis() + 1;
+        }
+        final Calendar nextStart = (Calendar) interval.getStart().clone();
+        if (isSet(startTime.getDay())) {
+            nextStart.add(Calendar.WEEK_OF_YEAR, 1);
+        } else {
+            nextStart.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        return nextStart.getTimeInMillis();
+    }
+
     public String toString() {
         StringBuilder buf = new StringBuilder();
 
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+/**
+ * Sends messages to a particular session. A sender is resolved once, with
+ * {@link Session#lookupSender(SessionID)} or {@link Session#getSender()}, and
+ * can then be kept by the application: unlike
+ * {@link Session#sendToTarget(Message)} it does not build a session ID from
+ * the message header or look up the session for every message.
+ * <p>
+ * The sender stays bound to the same session object, so it should be resolved
+ * again if the session is removed and created again, for example by a dynamic
+ * acceptor.
+ */
+public final class SessionSender {
+
+    private final Session session;
+
+    SessionSender(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Send a message to the session. The header identification fields,
+     * sequence number and sending time are set by the session.
+     *
+     * @param message a FIX message
+     * @return true is send was successful, false otherwise
+     * @see Session#send(Message)
+     */
+    public boolean send(Message message) {
+        return session.send(message);
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public SessionID getSessionID() {
+        return session.getSessionID();
+    }
+}
@@ -22,17 +22,19 @@ package quickfix;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.quickfixj.CharsetSupport;
+
 /**
  * Used by the session communications code. Not intended to be used by applications. All dynamic data is protected by
  * the session's intrinsic lock. The log and message store implementation must be thread safe.
  */
 public final class SessionState {
+    static final long DEFAULT_QUEUE_MEMORY_LIMIT = 32L * 1024 * 1024;
+
     private final Object lock;
     private final Log log;
 
@@ -72,7 +74,8 @@ public final class SessionState {
     private final AtomicInteger nextExpectedMsgSeqNum = new AtomicInteger(0);
 
     // The messageQueue should be accessed from a single thread
-    private final Map<Integer, Message> messageQueue = new LinkedHashMap<Integer, Message>();
+    private final OutOfOrderMessageQueue messageQueue = new OutOfOrderMessageQueue(
+            DEFAULT_QUEUE_MEMORY_LIMIT);
 
     public SessionState(Object lock, Log log, int heartBeatInterval, boolean initiator, MessageStore messageStore,
             double testRequestDelayMultiplier) {
@@ -115,6 +118,18 @@ public final class SessionState {
         return millisSinceLastSentTime + 10 > getHeartBeatMillis() && getTestRequestCounter() == 0;
     }
 
+    /**
+     * Returns the time from which {@link #isHeartBeatNeeded()} is true, or
+     * <code>Long.MAX_VALUE</code> while a test request is outstanding.
+     */
+    long getHeartBeatTime() {
+        if (getTestRequestCounter() != 0) {
+            return Long.MAX_VALUE;
+        }
+        // the first time that is more than the heartbeat interval minus 10 ms later
+        return getLastSentTime() + getHeartBeatMillis() - 9;
+    }
+
     public boolean isInitiator() {
         return initiator;
     }
@@ -147,6 +162,13 @@ public final class SessionState {
         return log;
     }
 
+    /**
+     * @return false if no log was configured for the session
+     */
+    public boolean isLogEnabled() {
+        return !(log instanceof NullLog);
+    }
+
     public boolean isLogonAlreadySent() {
         return isInitiator() && isLogonSent();
     }
@@ -185,6 +207,14 @@ public final class SessionState {
         }
     }
 
+    /**
+     * Returns the time from which {@link #isLogonTimedOut()} is true once the
+     * logon has been sent.
+     */
+    long getLogonTimeoutTime() {
+        return getLastReceivedTime() + getLogonTimeoutMs();
+    }
+
     public void setLogonTimeout(int logonTimeout) {
         setLogonTimeoutMs(logonTimeout * 1000L);
     }
@@ -253,6 +283,14 @@ public final class SessionState {
         return isLogoutSent() && ((SystemTime.currentTimeMillis() - getLastSentTime()) >= getLogoutTimeoutMs());
     }
 
+    /**
+     * Returns the time from which {@link #isLogoutTimedOut()} is true once the
+     * logout has been sent.
+     */
+    long getLogoutTimeoutTime() {
+        return getLastSentTime() + getLogoutTimeoutMs();
+    }
+
     public MessageStore getMessageStore() {
         return messageStore;
     }
@@ -285,6 +323,14 @@ public final class SessionState {
                 * getHeartBeatMillis();
     }
 
+    /**
+     * Returns the time from which {@link #isTestRequestNeeded()} is true.
+     */
+    long getTestRequestTime() {
+        return getLastReceivedTime() + (long) Math.ceil(((1 + testRequestDelayMultiplier)
+                * (getTestRequestCounter() + 1)) * getHeartBeatMillis());
+    }
+
     private long timeSinceLastReceivedMessage() {
         return SystemTime.currentTimeMillis() - getLastReceivedTime();
     }
@@ -294,20 +340,74 @@ public final class SessionState {
         return millisSinceLastReceivedTime >= 2.4 * getHeartBeatMillis();
     }
 
+    /**
+     * Returns the time from which {@link #isTimedOut()} is true.
+     */
+    long getTimeoutTime() {
+        return getLastReceivedTime() + (long) Math.ceil(2.4 * getHeartBeatMillis());
+    }
+
     public boolean set(int sequence, String message) throws IOException {
         return messageStore.set(sequence, message);
     }
 
+    /**
+     * Stores an encoded message, without decoding it if the store is a
+     * {@link RawMessageStore}.
+     */
+    public boolean set(int sequence, byte[] message) throws IOException {
+        if (messageStore instanceof RawMessageStore) {
+            return ((RawMessageStore) messageStore).set(sequence, message, 0, message.length);
+        }
+        return messageStore.set(sequence, new String(message, CharsetSupport.getCharsetInstance()));
+    }
+
     public void get(int first, int last, Collection<String> messages) throws IOException {
         messageStore.get(first, last, messages);
     }
 
+    /**
+     * Queues a message received ahead of sequence. The message is kept as the
+     * bytes it was parsed from, so it must not have been changed. If it cannot
+     * be written to the spill file, it is kept in memory.
+     */
     public void enqueue(int sequence, Message message) {
-        messageQueue.put(sequence, message);
+        try {
+            messageQueue.put(sequence, message.toRawBytes());
+        } catch (IOException e) {
+            LogUtil.logThrowable(log, "Could not write queued message " + sequence
+                    + " to disk, keeping it in memory", e);
+        }
     }
 
+    /**
+     * Removes a queued message and parses it again with the dictionaries of
+     * the session.
+     *
+     * @return the message, or null if it is not queued
+     * @deprecated queued messages are kept as bytes, use
+     *             {@link #dequeueBytes(int)} and parse them as received
+     *             messages instead
+     */
+    @Deprecated
     public Message dequeue(int sequence) {
-        return messageQueue.remove(sequence);
+        return parse(dequeueBytes(sequence));
+    }
+
+    /**
+     * Removes a queued message.
+     *
+     * @return the bytes of the message, or null if it is not queued or could
+     *         not be read from the spill file
+     */
+    public byte[] dequeueBytes(int sequence) {
+        try {
+            return messageQueue.remove(sequence);
+        } catch (IOException e) {
+            LogUtil.logThrowable(log, "Could not read queued message " + sequence
+                    + " from disk", e);
+            return null;
+        }
     }
 
     /**
@@ -316,21 +416,89 @@ public final class SessionState {
      * @param seqnum up to which sequence number messages should be deleted
      */
     public void dequeueMessagesUpTo(int seqnum) {
-        for (int i = 1; i < seqnum; i++) {
-            dequeue(i);
+        try {
+            messageQueue.removeBefore(seqnum);
+        } catch (IOException e) {
+            LogUtil.logThrowable(log, "Could not delete the queued message file", e);
         }
     }
 
+    /**
+     * Returns the queued message with the lowest sequence number without
+     * removing it.
+     *
+     * @return the message, or null if no messages are queued
+     * @deprecated use {@link #getNextQueuedSeqNum()}
+     */
+    @Deprecated
     public Message getNextQueuedMessage() {
-        return !messageQueue.isEmpty() ? messageQueue.values().iterator().next() : null;
+        final int sequence = messageQueue.firstSeqNum();
+        if (sequence == 0) {
+            return null;
+        }
+        try {
+            return parse(messageQueue.get(sequence));
+        } catch (IOException e) {
+            LogUtil.logThrowable(log, "Could not read queued message " + sequence
+                    + " from disk", e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the lowest queued sequence number, or 0 if no messages are queued.
+     */
+    public int getNextQueuedSeqNum() {
+        return messageQueue.firstSeqNum();
     }
 
     public Collection<Integer> getQueuedSeqNums() {
-        return messageQueue.keySet();
+        return messageQueue.seqNums();
+    }
+
+    /**
+     * Returns the number of queued messages. May be called from any thread.
+     */
+    public int getQueuedMessageCount() {
+        return messageQueue.size();
+    }
+
+    /**
+     * Returns the number of queued messages that were written to disk. May be
+     * called from any thread.
+     */
+    public int getSpilledMessageCount() {
+        return messageQueue.getSpilledCount();
+    }
+
+    /**
+     * Sets how many bytes of queued messages are kept in memory. Further
+     * messages are written to a temporary file.
+     */
+    public void setQueueMemoryLimit(long memoryLimit) {
+        messageQueue.setMemoryLimit(memoryLimit);
     }
 
     public void clearQueue() {
-        messageQueue.clear();
+        try {
+            messageQueue.clear();
+        } catch (IOException e) {
+            LogUtil.logThrowable(log, "Could not delete the queued message file", e);
+        }
+    }
+
+    private Message parse(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            if (lock instanceof Session) {
+                return MessageUtils.parse((Session) lock, data, 0, data.length);
+            }
+            return new Message(new String(data, CharsetSupport.getCharsetInstance()), false);
+        } catch (InvalidMessage e) {
+            throw new RuntimeError("Queued message cannot be parsed", e);
+        }
     }
 
     public void lockSenderMsgSeqNum() {
@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import quickfix.DataDictionary.GroupInfo;
+import quickfix.DataDictionary.IntStringPair;
+import quickfix.field.converter.BooleanConverter;
+import quickfix.field.converter.CharConverter;
+import quickfix.field.converter.DoubleConverter;
+import quickfix.field.converter.IntConverter;
+import quickfix.field.converter.UtcDateOnlyConverter;
+import quickfix.field.converter.UtcTimeOnlyConverter;
+import quickfix.field.converter.UtcTimestampConverter;
+
+/**
+ * The validation rules of a data dictionary compiled into arrays indexed by
+ * tag, so that validating a message does not look up boxed tags in hash maps.
+ * <p>
+ * A plan is an immutable snapshot. The data dictionary compiles it when a
+ * message is first validated and again after the dictionary was changed.
+ */
+final class ValidationPlan {
+
+    /**
+     * Tags up to this value are kept in dense arrays. The few larger tags,
+     * if any, are looked up in maps.
+     */
+    static final int MAX_DENSE_TAG = 0xFFFF;
+
+    static final byte CHECK_NONE = 0;
+    static final byte CHECK_CHAR = 1;
+    static final byte CHECK_DOUBLE = 2;
+    static final byte CHECK_INT = 3;
+    static final byte CHECK_BOOLEAN = 4;
+    static final byte CHECK_UTC_DATE = 5;
+    static final byte CHECK_UTC_TIME_ONLY = 6;
+    static final byte CHECK_UTC_TIMESTAMP = 7;
+
+    private static final MessagePlan EMPTY_MESSAGE_PLAN = new MessagePlan(new BitSet(), new int[0],
+            new int[0], new GroupInfo[0]);
+
+    private final BitSet fields = new BitSet();
+    private final byte[] checks;
+    private final Map<Integer, Byte> sparseChecks = new HashMap<Integer, Byte>();
+    private final FieldValues[] values;
+    private final Map<Integer, FieldValues> sparseValues = new HashMap<Integer, FieldValues>();
+    private final Map<String, MessagePlan> messagePlans = new HashMap<String, MessagePlan>();
+
+    ValidationPlan(Set<Integer> fields, Map<Integer, FieldType> fieldTypes,
+            Map<Integer, Set<String>> fieldValues, Map<String, Set<Integer>> messageFields,
+            Map<String, Set<Integer>> requiredFields, Map<IntStringPair, GroupInfo> groups,
+            String beginString) {
+        for (int field : fields) {
+            if (field >= 0) {
+                this.fields.set(field);
+            }
+        }
+
+        checks = new byte[denseLength(fieldTypes.keySet())];
+        for (Map.Entry<Integer, FieldType> entry : fieldTypes.entrySet()) {
+            final byte check = getCheck(entry.getValue(), beginString);
+            if (check != CHECK_NONE) {
+                final int tag = entry.getKey();
+                if (tag >= 0 && tag < checks.length) {
+                    checks[tag] = check;
+                } else {
+                    sparseChecks.put(tag, check);
+                }
+            }
+        }
+
+        values = new FieldValues[denseLength(fieldValues.keySet())];
+        for (Map.Entry<Integer, Set<String>> entry : fieldValues.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            final int tag = entry.getKey();
+            final FieldValues fieldValue = new FieldValues(entry.getValue(),
+                    fieldTypes.get(tag) == FieldType.MultipleValueString);
+            if (tag >= 0 && tag < values.length) {
+                values[tag] = fieldValue;
+            } else {
+                sparseValues.put(tag, fieldValue);
+            }
+        }
+
+        final Set<String> msgTypes = new HashSet<String>();
+        msgTypes.addAll(messageFields.keySet());
+        msgTypes.addAll(requiredFields.keySet());
+        for (IntStringPair group : groups.keySet()) {
+            msgTypes.add(group.getStringValue());
+        }
+        for (String msgType : msgTypes) {
+            messagePlans.put(msgType, compileMessage(msgType, messageFields.get(msgType),
+                    requiredFields.get(msgType), groups));
+        }
+    }
+
+    private static int denseLength(Set<Integer> tags) {
+        int max = -1;
+        for (int tag : tags) {
+            if (tag <= MAX_DENSE_TAG && tag > max) {
+                max = tag;
+            }
+        }
+        return max + 1;
+    }
+
+    private static byte getCheck(FieldType fieldType, String beginString) {
+        if (fieldType == FieldType.Char) {
+            return beginString != null && beginString.compareTo(FixVersions.BEGINSTRING_FIX41) > 0
+                    ? CHECK_CHAR
+                    : CHECK_NONE;
+        } else if (fieldType == FieldType.Price || fieldType == FieldType.Amt
+                || fieldType == FieldType.Qty || fieldType == FieldType.Float
+                || fieldType == FieldType.PriceOffset || fieldType == FieldType.Percentage) {
+            return CHECK_DOUBLE;
+        } else if (fieldType == FieldType.Int || fieldType == FieldType.NumInGroup
+                || fieldType == FieldType.SeqNum || fieldType == FieldType.Length) {
+            return CHECK_INT;
+        } else if (fieldType == FieldType.Boolean) {
+            return CHECK_BOOLEAN;
+        } else if (fieldType == FieldType.UtcDate) {
+            return CHECK_UTC_DATE;
+        } else if (fieldType == FieldType.UtcTimeOnly) {
+            return CHECK_UTC_TIME_ONLY;
+        } else if (fieldType == FieldType.UtcTimeStamp
+                || fieldType == FieldType.UtcTimeStampSecondPresicion
+                || fieldType == FieldType.Time) {
+            return CHECK_UTC_TIMESTAMP;
+        }
+        return CHECK_NONE;
+    }
+
+    private static MessagePlan compileMessage(String msgType, Set<Integer> messageFields,
+            Set<Integer> requiredFields, Map<IntStringPair, GroupInfo> groups) {
+        final BitSet fields = new BitSet();
+        if (messageFields != null) {
+            for (int field : messageFields) {
+                if (field >= 0) {
+                    fields.set(field);
+                }
+            }
+        }
+
+        // keep the order of the set so that the same missing tag is reported
+        final int[] required;
+        if (requiredFields != null) {
+            required = new int[requiredFields.size()];
+            int i = 0;
+            for (int field : requiredFields) {
+                required[i++] = field;
+            }
+        } else {
+            required = new int[0];
+        }
+
+        int groupCount = 0;
+        for (IntStringPair group : groups.keySet()) {
+            if (msgType.equals(group.getStringValue())) {
+                groupCount++;
+            }
+        }
+        final int[] groupTags = new int[groupCount];
+        int i = 0;
+        for (IntStringPair group : groups.keySet()) {
+            if (msgType.equals(group.getStringValue())) {
+                groupTags[i++] = group.getIntValue();
+            }
+        }
+        Arrays.sort(groupTags);
+        final GroupInfo[] groupInfos = new GroupInfo[groupCount];
+        for (i = 0; i < groupCount; i++) {
+            groupInfos[i] = groups.get(new IntStringPair(groupTags[i], msgType));
+        }
+
+        return new MessagePlan(fields, required, groupTags, groupInfos);
+    }
+
+    /**
+     * Returns the plan for a message type, or an empty plan if the dictionary
+     * has no rules for it.
+     */
+    MessagePlan getMessagePlan(String msgType) {
+        final MessagePlan plan = messagePlans.get(msgType);
+        return plan != null ? plan : EMPTY_MESSAGE_PLAN;
+    }
+
+    boolean isField(int tag) {
+        return tag >= 0 && fields.get(tag);
+    }
+
+    void checkValidFormat(StringField field) throws IncorrectDataFormat {
+        final int tag = field.getTag();
+        final byte check;
+        if (tag >= 0 && tag < checks.length) {
+            check = checks[tag];
+        } else if (sparseChecks.isEmpty()) {
+            return;
+        } else {
+            final Byte sparseCheck = sparseChecks.get(tag);
+            check = sparseCheck != null ? sparseCheck : CHECK_NONE;
+        }
+        if (check == CHECK_NONE) {
+            return;
+        }
+        try {
+            switch (check) {
+            case CHECK_CHAR:
+                CharConverter.convert(field.getValue());
+                break;
+            case CHECK_DOUBLE:
+                DoubleConverter.convert(field.getValue());
+                break;
+            case CHECK_INT:
+                IntConverter.convert(field.getValue());
+                break;
+            case CHECK_BOOLEAN:
+                BooleanConverter.convert(field.getValue());
+                break;
+            case CHECK_UTC_DATE:
+                UtcDateOnlyConverter.convert(field.getValue());
+                break;
+            case CHECK_UTC_TIME_ONLY:
+                UtcTimeOnlyConverter.convert(field.getValue());
+                break;
+            default:
+                UtcTimestampConverter.convert(field.getValue());
+                break;
+            }
+        } catch (final FieldConvertError e) {
+            throw new IncorrectDataFormat(field.getTag(), field.getValue());
+        }
+    }
+
+    void checkValue(StringField field) throws IncorrectTagValue {
+        final int tag = field.getField();
+        final FieldValues fieldValues;
+        if (tag >= 0 && tag < values.length) {
+            fieldValues = values[tag];
+        } else {
+            fieldValues = sparseValues.isEmpty() ? null : sparseValues.get(tag);
+        }
+        if (fieldValues != null && !fieldValues.isValid(field.getValue())) {
+            throw new IncorrectTagValue(tag);
+        }
+    }
+
+    /**
+     * The enumerated values of a field.
+     */
+    private static final class FieldValues {
+        private final Set<String> values;
+        private final boolean anyValue;
+        private final boolean multipleValues;
+
+        FieldValues(Set<String> values, boolean multipleValues) {
+            this.values = new HashSet<String>(values);
+            anyValue = values.contains(DataDictionary.ANY_VALUE);
+            this.multipleValues = multipleValues;
+        }
+
+        boolean isValid(String value) {
+            if (anyValue) {
+                return true;
+            }
+            if (!multipleValues) {
+                return values.contains(value);
+            }
+            for (String val : value.split(" ")) {
+                if (!values.contains(val)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The rules of a single message type: the tags allowed in it, the
+     * required tags and the repeating groups.
+     */
+    static final class MessagePlan {
+        private final BitSet fields;
+        private final int[] requiredFields;
+        private final int[] groupTags;
+        private final GroupInfo[] groups;
+
+        MessagePlan(BitSet fields, int[] requiredFields, int[] groupTags, GroupInfo[] groups) {
+            this.fields = fields;
+            this.requiredFields = requiredFields;
+            this.groupTags = groupTags;
+            this.groups = groups;
+        }
+
+        boolean isField(int tag) {
+            return tag >= 0 && fields.get(tag);
+        }
+
+        int[] getRequiredFields() {
+            return requiredFields;
+        }
+
+        boolean hasGroups() {
+            return groupTags.length > 0;
+        }
+
+        /**
+         * Returns the group started by the tag, or null if the tag is not a
+         * group count field of this message type.
+         */
+        GroupInfo getGroup(int tag) {
+            if (groupTags.length == 0) {
+                return null;
+            }
+            final int i = Arrays.binarySearch(groupTags, tag);
+            return i >= 0 ? groups[i] : null;
+        }
+    }
+}
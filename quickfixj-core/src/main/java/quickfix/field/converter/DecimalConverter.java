@@ -22,6 +22,7 @@ package quickfix.field.converter;
 import java.math.BigDecimal;
 
 import quickfix.FieldConvertError;
+import quickfix.FixedPointDecimal;
 
 public class DecimalConverter {
 
@@ -47,6 +48,140 @@ public class DecimalConverter {
         return DoubleConverter.getDecimalFormat(padding).format(d);
     }
 
+    /**
+     * Converts a fixed-point decimal to a string, with as many digits after
+     * the decimal point as the scale.
+     *
+     * @param mantissa the unscaled value
+     * @param scale the number of digits after the decimal point
+     * @return the formatted String representing the decimal.
+     * @throws IllegalArgumentException if the scale is negative
+     * @see BigDecimal#toPlainString()
+     */
+    public static String convert(long mantissa, int scale) {
+        if (scale < 0) {
+            throw new IllegalArgumentException("negative scale: " + scale);
+        }
+        final char[] buffer = new char[scale + 21];
+        int pos = buffer.length;
+        // accumulate negatively so that Long.MIN_VALUE can be represented
+        long remaining = mantissa < 0 ? mantissa : -mantissa;
+        int digits = 0;
+        while (remaining != 0 || digits <= scale) {
+            buffer[--pos] = (char) ('0' - remaining % 10);
+            remaining /= 10;
+            if (++digits == scale) {
+                buffer[--pos] = '.';
+            }
+        }
+        if (mantissa < 0) {
+            buffer[--pos] = '-';
+        }
+        return new String(buffer, pos, buffer.length - pos);
+    }
+
+    /**
+     * Convert a String value to a fixed-point decimal. Only plain decimals
+     * (an optional minus sign, digits and an optional decimal point) whose
+     * digits fit in a long are accepted.
+     *
+     * @param value the String value to convert
+     * @param result receives the mantissa and the number of digits after the
+     *            decimal point
+     * @return the result
+     * @throws FieldConvertError if the String is not a valid decimal pattern
+     *             or has too many digits.
+     */
+    public static FixedPointDecimal convert(String value, FixedPointDecimal result)
+            throws FieldConvertError {
+        final int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && value.charAt(0) == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        boolean digits = false;
+        for (; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            final int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                throw new FieldConvertError("invalid decimal value: " + value);
+            }
+            if (mantissa > (Long.MAX_VALUE - digit) / 10) {
+                throw new FieldConvertError("invalid decimal value: " + value
+                        + ": too many digits");
+            }
+            mantissa = mantissa * 10 + digit;
+            digits = true;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (!digits) {
+            throw new FieldConvertError("invalid decimal value: " + value);
+        }
+        return result.set(negative ? -mantissa : mantissa, scale < 0 ? 0 : scale);
+    }
+
+    /**
+     * Convert a range of ASCII encoded bytes to a fixed-point decimal without
+     * creating an intermediate String.
+     *
+     * @param data the bytes containing the value
+     * @param offset the offset of the first byte of the value
+     * @param length the number of bytes in the value
+     * @param result receives the mantissa and the number of digits after the
+     *            decimal point
+     * @return the result
+     * @throws FieldConvertError if the bytes are not a valid decimal pattern
+     *             or have too many digits.
+     * @see #convert(String, FixedPointDecimal)
+     */
+    public static FixedPointDecimal convert(byte[] data, int offset, int length,
+            FixedPointDecimal result) throws FieldConvertError {
+        final int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (length > 0 && data[i] == '-') {
+            negative = true;
+            i++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        boolean digits = false;
+        for (; i < end; i++) {
+            final byte b = data[i];
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            final int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                throw new FieldConvertError("invalid decimal value: " + new String(data, offset, length));
+            }
+            if (mantissa > (Long.MAX_VALUE - digit) / 10) {
+                throw new FieldConvertError("invalid decimal value: " + new String(data, offset, length)
+                        + ": too many digits");
+            }
+            mantissa = mantissa * 10 + digit;
+            digits = true;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (!digits) {
+            throw new FieldConvertError("invalid decimal value: " + new String(data, offset, length));
+        }
+        return result.set(negative ? -mantissa : mantissa, scale < 0 ? 0 : scale);
+    }
+
     /**
      * Convert a String value to a decimal.
      *
@@ -61,4 +196,26 @@ public class DecimalConverter {
             throw new FieldConvertError("invalid double value: " + value);
         }
     }
+
+    /**
+     * Convert a range of ASCII encoded bytes to a decimal without creating
+     * an intermediate String.
+     *
+     * @param data the bytes containing the value
+     * @param offset the offset of the first byte of the value
+     * @param length the number of bytes in the value
+     * @return the parsed BigDecimal
+     * @throws FieldConvertError if the bytes are not a valid decimal pattern.
+     */
+    public static BigDecimal convert(byte[] data, int offset, int length) throws FieldConvertError {
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (data[offset + i] & 0xFF);
+        }
+        try {
+            return new BigDecimal(chars, 0, length);
+        } catch (NumberFormatException e) {
+            throw new FieldConvertError("invalid double value: " + new String(chars));
+        }
+    }
 }
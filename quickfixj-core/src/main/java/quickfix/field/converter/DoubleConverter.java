@@ -25,6 +25,8 @@ import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.quickfixj.CharsetSupport;
+
 import quickfix.FieldConvertError;
 import quickfix.RuntimeError;
 
@@ -34,6 +36,16 @@ import quickfix.RuntimeError;
 public class DoubleConverter {
     private static final Pattern decimalPattern = Pattern.compile("-?\\d*(\\.\\d*)?");
     private static final ThreadLocal<DecimalFormat[]> threadDecimalFormats = new ThreadLocal<DecimalFormat[]>();
+    // values with up to 15 digits are parsed without Double.parseDouble
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = new double[MAX_EXACT_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
 
     /**
      * Converts a double to a string with no padding.
@@ -91,6 +103,85 @@ public class DoubleConverter {
      * @throws FieldConvertError if the String is not a valid double pattern.
      */
     public static double convert(String value) throws FieldConvertError {
+        final int length = value.length();
+        int i = 0;
+        if (length > 0 && value.charAt(0) == '-') {
+            i++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < length && digits <= MAX_EXACT_DIGITS; i++) {
+            final char c = value.charAt(i);
+            if (c == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            final int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (i == length && digits > 0 && digits <= MAX_EXACT_DIGITS) {
+            return toDouble(mantissa, scale, value.charAt(0) == '-');
+        }
+        return parse(value);
+    }
+
+    /**
+     * Convert a range of ASCII encoded bytes to a double, creating an
+     * intermediate String only for values with many digits.
+     *
+     * @param data the bytes containing the value
+     * @param offset the offset of the first byte of the value
+     * @param length the number of bytes in the value
+     * @return the parsed double
+     * @throws FieldConvertError if the bytes are not a valid double pattern.
+     */
+    public static double convert(byte[] data, int offset, int length) throws FieldConvertError {
+        final int end = offset + length;
+        int i = offset;
+        if (length > 0 && data[i] == '-') {
+            i++;
+        }
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < end && digits <= MAX_EXACT_DIGITS; i++) {
+            final byte b = data[i];
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            final int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (i == end && digits > 0 && digits <= MAX_EXACT_DIGITS) {
+            return toDouble(mantissa, scale, data[offset] == '-');
+        }
+        return parse(new String(data, offset, length, CharsetSupport.getCharsetInstance()));
+    }
+
+    private static double toDouble(long mantissa, int scale, boolean negative) {
+        // the mantissa and the power of ten are exact doubles, so the
+        // quotient is correctly rounded like by Double.parseDouble
+        final double d = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -d : d;
+    }
+
+    private static double parse(String value) throws FieldConvertError {
         try {
             Matcher matcher = decimalPattern.matcher(value);
             if (!matcher.matches()) {
@@ -57,4 +57,43 @@ public final class IntConverter {
             throw new FieldConvertError("invalid integral value: " + value + ": " + e);
         }
     }
+
+    /**
+     * Convert a range of ASCII encoded bytes to an integer without creating
+     * an intermediate String.
+     *
+     * @param data the bytes containing the value
+     * @param offset the offset of the first byte of the value
+     * @param length the number of bytes in the value
+     * @return the converted integer
+     * @throws FieldConvertError raised if the bytes do not represent a valid integer
+     */
+    public static int convert(byte[] data, int offset, int length) throws FieldConvertError {
+        final int end = offset + length;
+        int i = offset;
+        boolean negative = false;
+        if (length > 0 && data[i] == '-') {
+            negative = true;
+            i++;
+        }
+        if (i == end) {
+            throw new FieldConvertError("invalid integral value: " + new String(data, offset, length));
+        }
+        // accumulate negatively so that Integer.MIN_VALUE can be represented
+        final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        final int multmin = limit / 10;
+        int result = 0;
+        for (; i < end; i++) {
+            final int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new FieldConvertError("invalid integral value: " + new String(data, offset, length));
+            }
+            if (result < multmin || result * 10 < limit + digit) {
+                throw new FieldConvertError("invalid integral value: " + new String(data, offset, length)
+                        + ": value out of range");
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
 }
@@ -20,8 +20,6 @@
 package quickfix.field.converter;
 
 import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.ParseException;
 import java.util.Date;
 
 import quickfix.FieldConvertError;
@@ -30,10 +28,6 @@ import quickfix.FieldConvertError;
  * Convert between a date and a String
  */
 public class UtcDateOnlyConverter extends AbstractDateTimeConverter {
-    // SimpleDateFormats are not thread safe. A thread local is being
-    // used to maintain high concurrency among multiple session threads
-    private static final ThreadLocal<UtcDateOnlyConverter> utcDateConverter = new ThreadLocal<UtcDateOnlyConverter>();
-    private final DateFormat dateFormat = createDateFormat("yyyyMMdd");
 
     /**
      * Convert a date to a String ("YYYYMMDD")
@@ -42,16 +36,9 @@ public class UtcDateOnlyConverter extends AbstractDateTimeConverter {
      * @return the formatted date
      */
     public static String convert(Date d) {
-        return getFormatter().format(d);
-    }
-
-    private static DateFormat getFormatter() {
-        UtcDateOnlyConverter converter = utcDateConverter.get();
-        if (converter == null) {
-            converter = new UtcDateOnlyConverter();
-            utcDateConverter.set(converter);
-        }
-        return converter.dateFormat;
+        final char[] buffer = new char[UtcTimestampCodec.DATE_LENGTH];
+        UtcTimestampCodec.formatDateOnly(d.getTime(), buffer, 0);
+        return new String(buffer);
     }
 
     /**
@@ -62,17 +49,10 @@ public class UtcDateOnlyConverter extends AbstractDateTimeConverter {
      * @throws FieldConvertError raised for an invalid date string.
      */
     public static Timestamp convert(String value) throws FieldConvertError {
-        Timestamp d = null;
         String type = "date";
         assertLength(value, 8, type);
         assertDigitSequence(value, 0, 8, type);
-        try {
-            Date date = getFormatter().parse(value);
-            d = new Timestamp(date.getTime());
-        } catch (ParseException e) {
-            throwFieldConvertError(value, type);
-        }
-        return d;
+        return new Timestamp(UtcTimestampCodec.parseDate(value, 0));
     }
 
 }
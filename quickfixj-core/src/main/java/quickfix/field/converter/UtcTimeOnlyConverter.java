@@ -20,8 +20,6 @@
 package quickfix.field.converter;
 
 import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.ParseException;
 
 import quickfix.FieldConvertError;
 
@@ -29,14 +27,6 @@ import quickfix.FieldConvertError;
  * Convert between a time and a String.
  */
 public class UtcTimeOnlyConverter extends AbstractDateTimeConverter {
-    // SimpleDateFormats are not thread safe. A thread local is being
-    // used to maintain high concurrency among multiple session threads
-    private static final ThreadLocal<DateFormat> UTC_TIMESTAMP_FORMAT = new ThreadLocal<DateFormat>() {
-        @Override
-        protected DateFormat initialValue() {
-            return createDateFormat("HH:mm:ss");
-        }
-    };
 
     /**
      * Convert a time (represented as a Timestamp) to a String (HH:MM:SS or HH:MM:SS.SSS)
@@ -48,9 +38,11 @@ public class UtcTimeOnlyConverter extends AbstractDateTimeConverter {
      * @return a String representing the time.
      */
     public static String convert(Timestamp timestamp, boolean includeMilliseconds, boolean includeMicroseconds, boolean includeNanoseconds) {
-        TimePrecision timePrecision = TimePrecision.chooseSuitable(includeMilliseconds, includeMicroseconds, includeNanoseconds);
-        return UTC_TIMESTAMP_FORMAT.get().format(timestamp)
-                + timePrecision.print(timestamp.getNanos());
+        final char[] buffer = new char[UtcTimestampCodec.MAX_TIME_ONLY_LENGTH];
+        final int length = UtcTimestampCodec.formatTimeOnly(timestamp.getTime(),
+                timestamp.getNanos(), UtcTimestampCodec.getFractionDigits(includeMilliseconds,
+                        includeMicroseconds, includeNanoseconds), buffer, 0);
+        return new String(buffer, 0, length);
     }
 
     /**
@@ -72,28 +64,30 @@ public class UtcTimeOnlyConverter extends AbstractDateTimeConverter {
      * @throws FieldConvertError raised for invalid time string
      */
     public static Timestamp convert(String value) throws FieldConvertError {
-        Timestamp d = null;
-        try {
-            verifyFormat(value);
-            d = new Timestamp(UTC_TIMESTAMP_FORMAT.get()
-                    .parse(value.substring(0, 8)).getTime());
-            int nanosecond = 0;
-            if (value.length() > 9) {
-                nanosecond = parseFractionOfSeconds(value.substring(9));
-            }
-            d.setNanos(nanosecond);
-        } catch (ParseException e) {
-            throwFieldConvertError(value, "time");
+        verifyFormat(value);
+        final Timestamp d = new Timestamp(UtcTimestampCodec.parseTime(value, 0));
+        if (value.length() > 9) {
+            d.setNanos(UtcTimestampCodec.parseFraction(value, 9, value.length() - 9));
         }
         return d;
     }
 
     private static void verifyFormat(String value) throws FieldConvertError {
+        String type = "time";
         if (value.length() != 8
                 && value.length() != 12
                 && value.length() != 15
                 && value.length() != 18) {
-            throwFieldConvertError(value, "time");
+            throwFieldConvertError(value, type);
+        }
+        assertDigitSequence(value, 0, 2, type);
+        assertSeparator(value, 2, ':', type);
+        assertDigitSequence(value, 3, 5, type);
+        assertSeparator(value, 5, ':', type);
+        assertDigitSequence(value, 6, 8, type);
+        if (value.length() > 8) {
+            assertSeparator(value, 8, '.', type);
+            assertDigitSequence(value, 9, value.length(), type);
         }
     }
 
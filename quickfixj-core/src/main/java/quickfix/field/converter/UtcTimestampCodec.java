@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.field.converter;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import quickfix.SystemTime;
+
+/**
+ * Formats and parses the parts of UTC timestamps (YYYYMMDD-HH:MM:SS.sss)
+ * directly in character and byte arrays, without date formats or
+ * intermediate strings.
+ * <p>
+ * The date of the last formatted day is kept, so formatting a timestamp on
+ * the same day as the previous one copies its date. Dates are parsed with
+ * calendar arithmetic and are not cached. Dates before the Gregorian cutover
+ * in 1582 are handled by {@link GregorianCalendar}, like by the date formats
+ * this class replaces. Years after 9999 cannot be formatted.
+ */
+public final class UtcTimestampCodec {
+
+    /**
+     * Length of a timestamp with nanoseconds.
+     */
+    public static final int MAX_TIMESTAMP_LENGTH = 27;
+
+    /**
+     * Length of a time with nanoseconds.
+     */
+    public static final int MAX_TIME_ONLY_LENGTH = 18;
+
+    /**
+     * Length of a date.
+     */
+    public static final int DATE_LENGTH = 8;
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final int DAYS_0000_TO_1970 = 719468;
+    // 1582-10-15, the first day of the Gregorian calendar
+    private static final long GREGORIAN_CUTOVER_DAY = -141427L;
+    // 10000-01-01
+    private static final long MAX_DAY = 2932897L;
+
+    private static volatile Day lastDay = new Day(0);
+
+    private UtcTimestampCodec() {
+    }
+
+    /**
+     * Returns the number of fraction digits for a precision.
+     */
+    public static int getFractionDigits(boolean includeMilliseconds, boolean includeMicroseconds,
+            boolean includeNanoseconds) {
+        if (includeNanoseconds) {
+            return 9;
+        } else if (includeMicroseconds) {
+            return 6;
+        } else if (includeMilliseconds) {
+            return 3;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Writes a timestamp (YYYYMMDD-HH:MM:SS[.fraction]).
+     *
+     * @param time milliseconds since the epoch
+     * @param nanos nanoseconds within the second
+     * @param fractionDigits 0, 3, 6 or 9
+     * @param buffer the buffer, which needs room for
+     *            {@link #MAX_TIMESTAMP_LENGTH} characters
+     * @param offset where to start writing
+     * @return the offset after the timestamp
+     * @throws IllegalArgumentException if the year is before 1 or after 9999
+     */
+    public static int formatTimestamp(long time, int nanos, int fractionDigits, char[] buffer,
+            int offset) {
+        final long day = floorDiv(time, MILLIS_PER_DAY);
+        System.arraycopy(getDay(day).chars, 0, buffer, offset, DATE_LENGTH);
+        buffer[offset + DATE_LENGTH] = '-';
+        return formatTime(time - day * MILLIS_PER_DAY, nanos, fractionDigits, buffer,
+                offset + DATE_LENGTH + 1);
+    }
+
+    /**
+     * Writes a timestamp as ASCII bytes.
+     *
+     * @see #formatTimestamp(long, int, int, char[], int)
+     */
+    public static int formatTimestamp(long time, int nanos, int fractionDigits, byte[] buffer,
+            int offset) {
+        final long day = floorDiv(time, MILLIS_PER_DAY);
+        System.arraycopy(getDay(day).bytes, 0, buffer, offset, DATE_LENGTH);
+        buffer[offset + DATE_LENGTH] = '-';
+        return formatTime(time - day * MILLIS_PER_DAY, nanos, fractionDigits, buffer,
+                offset + DATE_LENGTH + 1);
+    }
+
+    /**
+     * Writes the time of a timestamp (HH:MM:SS[.fraction]).
+     *
+     * @see #formatTimestamp(long, int, int, char[], int)
+     */
+    public static int formatTimeOnly(long time, int nanos, int fractionDigits, char[] buffer,
+            int offset) {
+        return formatTime(time - floorDiv(time, MILLIS_PER_DAY) * MILLIS_PER_DAY, nanos,
+                fractionDigits, buffer, offset);
+    }
+
+    /**
+     * Writes the date of a timestamp (YYYYMMDD).
+     *
+     * @see #formatTimestamp(long, int, int, char[], int)
+     */
+    public static int formatDateOnly(long time, char[] buffer, int offset) {
+        System.arraycopy(getDay(floorDiv(time, MILLIS_PER_DAY)).chars, 0, buffer, offset,
+                DATE_LENGTH);
+        return offset + DATE_LENGTH;
+    }
+
+    /**
+     * Parses a date (YYYYMMDD) whose characters have been checked to be
+     * digits. Out of range months and days roll over like in a lenient
+     * calendar.
+     *
+     * @return the milliseconds since the epoch at the start of the day
+     */
+    public static long parseDate(CharSequence value, int offset) {
+        final int year = parseDigits(value, offset, 4);
+        final int month = parseDigits(value, offset + 4, 2);
+        final int day = parseDigits(value, offset + 6, 2);
+        if (year < 1583 || month < 1 || month > 12 || day < 1 || day > 28
+                && day > daysInMonth(year, month)) {
+            final Calendar c = new GregorianCalendar(SystemTime.UTC_TIMEZONE);
+            c.clear();
+            c.set(year, month - 1, day);
+            return c.getTimeInMillis();
+        }
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+    }
+
+    /**
+     * Parses a time (HH:MM:SS) whose characters have been checked.
+     *
+     * @return the milliseconds since the start of the day
+     */
+    public static long parseTime(CharSequence value, int offset) {
+        return parseDigits(value, offset, 2) * 3600000L
+                + parseDigits(value, offset + 3, 2) * 60000L
+                + parseDigits(value, offset + 6, 2) * 1000L;
+    }
+
+    /**
+     * Parses 3, 6 or 9 digits of a fraction of a second.
+     *
+     * @return the nanoseconds
+     */
+    public static int parseFraction(CharSequence value, int offset, int digits) {
+        int nanos = parseDigits(value, offset, digits);
+        for (int i = digits; i < 9; i++) {
+            nanos *= 10;
+        }
+        return nanos;
+    }
+
+    private static Day getDay(long day) {
+        Day date = lastDay;
+        if (date.day != day) {
+            date = new Day(day);
+            lastDay = date;
+        }
+        return date;
+    }
+
+    private static int formatTime(long millisOfDay, int nanos, int fractionDigits,
+            char[] buffer, int offset) {
+        final int seconds = (int) (millisOfDay / 1000);
+        formatDigits(seconds / 3600, 2, buffer, offset);
+        buffer[offset + 2] = ':';
+        formatDigits(seconds / 60 % 60, 2, buffer, offset + 3);
+        buffer[offset + 5] = ':';
+        formatDigits(seconds % 60, 2, buffer, offset + 6);
+        offset += 8;
+        if (fractionDigits == 0) {
+            return offset;
+        }
+        buffer[offset] = '.';
+        formatDigits(truncate(nanos, fractionDigits), fractionDigits, buffer, offset + 1);
+        return offset + 1 + fractionDigits;
+    }
+
+    private static int formatTime(long millisOfDay, int nanos, int fractionDigits,
+            byte[] buffer, int offset) {
+        final int seconds = (int) (millisOfDay / 1000);
+        formatDigits(seconds / 3600, 2, buffer, offset);
+        buffer[offset + 2] = ':';
+        formatDigits(seconds / 60 % 60, 2, buffer, offset + 3);
+        buffer[offset + 5] = ':';
+        formatDigits(seconds % 60, 2, buffer, offset + 6);
+        offset += 8;
+        if (fractionDigits == 0) {
+            return offset;
+        }
+        buffer[offset] = '.';
+        formatDigits(truncate(nanos, fractionDigits), fractionDigits, buffer, offset + 1);
+        return offset + 1 + fractionDigits;
+    }
+
+    private static int truncate(int nanos, int fractionDigits) {
+        switch (fractionDigits) {
+        case 3:
+            return nanos / 1000000;
+        case 6:
+            return nanos / 1000;
+        default:
+            return nanos;
+        }
+    }
+
+    private static void formatDigits(int value, int digits, char[] buffer, int offset) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static void formatDigits(int value, int digits, byte[] buffer, int offset) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int parseDigits(CharSequence value, int offset, int digits) {
+        int n = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            n = n * 10 + (value.charAt(i) - '0');
+        }
+        return n;
+    }
+
+    private static long floorDiv(long x, long y) {
+        final long q = x / y;
+        return q * y > x ? q - 1 : q;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    // H. Hinnant, "chrono-Compatible Low-Level Date Algorithms"
+    private static long daysFromCivil(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = y / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * A day since the epoch and its YYYYMMDD characters.
+     */
+    private static final class Day {
+        final long day;
+        final char[] chars = new char[DATE_LENGTH];
+        final byte[] bytes = new byte[DATE_LENGTH];
+
+        Day(long day) {
+            this.day = day;
+            final int year;
+            final int month;
+            final int dayOfMonth;
+            if (day >= GREGORIAN_CUTOVER_DAY) {
+                if (day >= MAX_DAY) {
+                    throw new IllegalArgumentException("Year after 9999: " + day * MILLIS_PER_DAY);
+                }
+                final int dayOfEra = (int) (day + DAYS_0000_TO_1970) % 146097;
+                final int era = (int) (day + DAYS_0000_TO_1970) / 146097;
+                final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+                        - dayOfEra / 146096) / 365;
+                final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+                final int mp = (5 * dayOfYear + 2) / 153;
+                dayOfMonth = dayOfYear - (153 * mp + 2) / 5 + 1;
+                month = mp < 10 ? mp + 3 : mp - 9;
+                year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+            } else {
+                final Calendar c = new GregorianCalendar(SystemTime.UTC_TIMEZONE);
+                c.setTimeInMillis(day * MILLIS_PER_DAY);
+                if (c.get(Calendar.ERA) != GregorianCalendar.AD) {
+                    throw new IllegalArgumentException("Year before 1: " + day * MILLIS_PER_DAY);
+                }
+                year = c.get(Calendar.YEAR);
+                month = c.get(Calendar.MONTH) + 1;
+                dayOfMonth = c.get(Calendar.DAY_OF_MONTH);
+            }
+            formatDigits(year, 4, chars, 0);
+            formatDigits(month, 2, chars, 4);
+            formatDigits(dayOfMonth, 2, chars, 6);
+            for (int i = 0; i < DATE_LENGTH; i++) {
+                bytes[i] = (byte) chars[i];
+            }
+        }
+    }
+}
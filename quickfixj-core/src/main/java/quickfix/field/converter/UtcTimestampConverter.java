@@ -20,28 +20,14 @@
 package quickfix.field.converter;
 
 import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.concurrent.*;
 
 import quickfix.FieldConvertError;
-import quickfix.SystemTime;
 
 /**
  * Convert between a timestamp and a String. A timestamp includes both a date
  * and a time.
  */
 public class UtcTimestampConverter extends AbstractDateTimeConverter {
-    // SimpleDateFormats are not thread safe. A thread local is being
-    // used to maintain high concurrency among multiple session threads
-    private static final ThreadLocal<DateFormat> UTC_TIMESTAMP_FORMAT = new ThreadLocal<DateFormat>() {
-        @Override
-        protected DateFormat initialValue() {
-            return createDateFormat("yyyyMMdd-HH:mm:ss");
-        }
-    };
-    private final static ConcurrentHashMap<String, Long> dateCache = new ConcurrentHashMap<String, Long>();
 
     /**
      * Convert a timestamp (represented as a Timestamp) to a String.
@@ -52,9 +38,11 @@ public class UtcTimestampConverter extends AbstractDateTimeConverter {
      * @return the formatted timestamp
      */
     public static String convert(Timestamp timestamp, boolean includeMilliseconds, boolean includeMicroseconds, boolean includeNanoseconds) {
-    	TimePrecision timePrecision = TimePrecision.chooseSuitable(includeMilliseconds, includeMicroseconds, includeNanoseconds);
-    	return UTC_TIMESTAMP_FORMAT.get().format(timestamp)
-                + timePrecision.print(timestamp.getNanos());
+        final char[] buffer = new char[UtcTimestampCodec.MAX_TIMESTAMP_LENGTH];
+        final int length = UtcTimestampCodec.formatTimestamp(timestamp.getTime(),
+                timestamp.getNanos(), UtcTimestampCodec.getFractionDigits(includeMilliseconds,
+                        includeMicroseconds, includeNanoseconds), buffer, 0);
+        return new String(buffer, 0, length);
     }
 
     /**
@@ -68,12 +56,6 @@ public class UtcTimestampConverter extends AbstractDateTimeConverter {
         return convert(timestamp, includeMilliseconds, includeMicroseconds, false);
     }
 
-    //
-    // Performance optimization: the calendar for the start of the day is cached.
-    // The time is converted to millis and then added to the millis specified by
-    // the base calendar.
-    //
-
     /**
      * Convert a timestamp string into a Timestamp.
      *
@@ -83,36 +65,14 @@ public class UtcTimestampConverter extends AbstractDateTimeConverter {
      */
     public static Timestamp convert(String value) throws FieldConvertError {
         verifyFormat(value);
-        int nanosecond = 0;
-        long timeOffset = (parseLong(value.substring(9, 11)) * 3600000L)
-                + (parseLong(value.substring(12, 14)) * 60000L)
-                + (parseLong(value.substring(15, 17)) * 1000L);
-        Timestamp result = new Timestamp(getMillisForDay(value) + timeOffset);
-
+        final Timestamp result = new Timestamp(UtcTimestampCodec.parseDate(value, 0)
+                + UtcTimestampCodec.parseTime(value, 9));
         if (value.length() > 18) {
-            nanosecond = parseFractionOfSeconds(value.substring(18));
+            result.setNanos(UtcTimestampCodec.parseFraction(value, 18, value.length() - 18));
         }
-        result.setNanos(nanosecond);
-        
         return result;
     }
 
-    private static Long getMillisForDay(String value) {
-        String dateString = value.substring(0, 8);
-        Long millis = dateCache.get(dateString);
-        if (millis == null) {
-            Calendar c = new GregorianCalendar(1970, 0, 1, 0, 0, 0);
-            c.setTimeZone(SystemTime.UTC_TIMEZONE);
-            int year = Integer.parseInt(value.substring(0, 4));
-            int month = Integer.parseInt(value.substring(4, 6));
-            int day = Integer.parseInt(value.substring(6, 8));
-            c.set(year, month - 1, day);
-            millis = c.getTimeInMillis();
-            dateCache.put(dateString, c.getTimeInMillis());
-        }
-        return millis;
-    }
-
     private static void verifyFormat(String value) throws FieldConvertError {
         String type = "timestamp";
         if (value.length() != 17
@@ -97,8 +97,15 @@ public abstract class AbstractIoHandler extends IoHandlerAdapter {
         try {
             Session quickFixSession = findQFSession(ioSession);
             if (quickFixSession != null) {
-                eventHandlingStrategy.onMessage(quickFixSession, EventHandlingStrategy.END_OF_STREAM );
-                ioSession.removeAttribute(SessionConnector.QF_SESSION);
+                final MessageParsingStage messageParsingStage = getMessageParsingStage();
+                if (messageParsingStage != null) {
+                    // handed on after the messages that are still being parsed
+                    messageParsingStage.submit(ioSession, new EndOfStreamTask(ioSession,
+                            quickFixSession));
+                } else {
+                    eventHandlingStrategy.onMessage(quickFixSession, EventHandlingStrategy.END_OF_STREAM );
+                    ioSession.removeAttribute(SessionConnector.QF_SESSION);
+                }
             }
             ioSession.close(true);
         } catch (Exception e) {
@@ -110,20 +117,27 @@ public abstract class AbstractIoHandler extends IoHandlerAdapter {
     @Override
     public void messageReceived(IoSession ioSession, Object message) throws Exception {
         String messageString = (String) message;
-        SessionID remoteSessionID = MessageUtils.getReverseSessionID(messageString);
-        Session quickFixSession = findQFSession(ioSession, remoteSessionID);
+        // the session ID is only extracted from the header until a session is bound
+        Session quickFixSession = findQFSession(ioSession);
+        final boolean bound = quickFixSession != null;
+        if (!bound) {
+            SessionID remoteSessionID = MessageUtils.getReverseSessionID(messageString);
+            quickFixSession = findQFSession(ioSession, remoteSessionID);
+        }
         if (quickFixSession != null) {
             quickFixSession.getLog().onIncoming(messageString);
+            final MessageParsingStage messageParsingStage = getMessageParsingStage();
+            if (messageParsingStage != null) {
+                // until the connection is bound the logon can change how later messages are parsed
+                messageParsingStage.submit(ioSession, new ParseTask(ioSession, quickFixSession,
+                        messageString, !bound));
+                return;
+            }
             try {
                 Message fixMessage = parse(quickFixSession, messageString);
                 processMessage(ioSession, fixMessage);
             } catch (InvalidMessage e) {
-                if (MsgType.LOGON.equals(MessageUtils.getMessageType(messageString))) {
-                    log.error("Invalid LOGON message, disconnecting: " + e.getMessage());
-                    ioSession.close(true);
-                } else {
-                    log.error("Invalid message: " + e.getMessage());
-                }
+                handleInvalidMessage(ioSession, messageString, e);
             }
         } else {
             log.error("Disconnecting; received message for unknown session: " + messageString);
@@ -131,6 +145,16 @@ public abstract class AbstractIoHandler extends IoHandlerAdapter {
         }
     }
 
+    private void handleInvalidMessage(IoSession ioSession, String messageString, InvalidMessage e)
+            throws InvalidMessage {
+        if (MsgType.LOGON.equals(MessageUtils.getMessageType(messageString))) {
+            log.error("Invalid LOGON message, disconnecting: " + e.getMessage());
+            ioSession.close(true);
+        } else {
+            log.error("Invalid message: " + e.getMessage());
+        }
+    }
+
     protected Session findQFSession(IoSession ioSession, SessionID sessionID) {
         Session quickfixSession = findQFSession(ioSession);
         if (quickfixSession == null) {
@@ -149,4 +173,107 @@ public abstract class AbstractIoHandler extends IoHandlerAdapter {
 
     protected abstract void processMessage(IoSession ioSession, Message message) throws Exception;
 
+    private MessageParsingStage getMessageParsingStage() {
+        final SessionConnector connector = eventHandlingStrategy != null ? eventHandlingStrategy
+                .getSessionConnector() : null;
+        return connector != null ? connector.getMessageParsingStage() : null;
+    }
+
+    /**
+     * Reports a failure of a task that ran on the parsing stage the way MINA
+     * reports failures of the I/O thread.
+     */
+    private void taskFailed(IoSession ioSession, Throwable cause) {
+        try {
+            exceptionCaught(ioSession, cause);
+        } catch (Exception e) {
+            log.error("Error while handling exception", e);
+        }
+    }
+
+    /**
+     * Parses a received message on the parsing stage and passes it on as
+     * {@link #messageReceived} does.
+     */
+    private final class ParseTask extends MessageParsingStage.Task {
+        private final IoSession ioSession;
+        private final Session quickFixSession;
+        private final String messageString;
+        private final boolean parseOnDelivery;
+        private Message fixMessage;
+        private InvalidMessage invalidMessage;
+        private RuntimeException failure;
+
+        ParseTask(IoSession ioSession, Session quickFixSession, String messageString,
+                boolean parseOnDelivery) {
+            this.ioSession = ioSession;
+            this.quickFixSession = quickFixSession;
+            this.messageString = messageString;
+            this.parseOnDelivery = parseOnDelivery;
+        }
+
+        @Override
+        void parse() {
+            if (!parseOnDelivery) {
+                parseMessage();
+            }
+        }
+
+        @Override
+        void deliver() {
+            if (parseOnDelivery) {
+                parseMessage();
+            }
+            try {
+                if (failure != null) {
+                    taskFailed(ioSession, failure);
+                } else if (invalidMessage != null) {
+                    handleInvalidMessage(ioSession, messageString, invalidMessage);
+                } else {
+                    processMessage(ioSession, fixMessage);
+                }
+            } catch (Exception e) {
+                taskFailed(ioSession, e);
+            }
+        }
+
+        private void parseMessage() {
+            try {
+                fixMessage = MessageUtils.parse(quickFixSession, messageString);
+            } catch (InvalidMessage e) {
+                invalidMessage = e;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Signals the end of the stream once the messages received before it are
+     * passed on.
+     */
+    private final class EndOfStreamTask extends MessageParsingStage.Task {
+        private final IoSession ioSession;
+        private final Session quickFixSession;
+
+        EndOfStreamTask(IoSession ioSession, Session quickFixSession) {
+            this.ioSession = ioSession;
+            this.quickFixSession = quickFixSession;
+        }
+
+        @Override
+        void parse() {
+        }
+
+        @Override
+        void deliver() {
+            try {
+                eventHandlingStrategy.onMessage(quickFixSession, EventHandlingStrategy.END_OF_STREAM);
+                ioSession.removeAttribute(SessionConnector.QF_SESSION);
+            } catch (RuntimeException e) {
+                taskFailed(ioSession, e);
+            }
+        }
+    }
+
 }
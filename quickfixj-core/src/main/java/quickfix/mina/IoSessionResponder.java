@@ -26,13 +26,14 @@ import org.apache.mina.core.future.WriteFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import quickfix.Responder;
+import quickfix.Message;
+import quickfix.MessageResponder;
 
 /**
  * The class that partially integrates the QuickFIX/J Session to
  * the MINA networking code.
  */
-public class IoSessionResponder implements Responder {
+public class IoSessionResponder implements MessageResponder {
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final IoSession ioSession;
     private final boolean synchronousWrites;
@@ -46,6 +47,21 @@ public class IoSessionResponder implements Responder {
 
     @Override
     public boolean send(String data) {
+        return write(data);
+    }
+
+    @Override
+    public boolean send(Message message) {
+        // The message is encoded by the FIXMessageEncoder within this call
+        return write(message);
+    }
+
+    @Override
+    public boolean send(byte[] data) {
+        return write(data);
+    }
+
+    private boolean write(Object data) {
         // The data is written asynchronously in a MINA thread
         WriteFuture future = ioSession.write(data);
         if (synchronousWrites) {
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import quickfix.Message;
+import quickfix.Session;
+
+/**
+ * Message queue backed by a <code>LinkedBlockingQueue</code>. This is the
+ * default queue of the {@link SingleThreadedEventHandlingStrategy}.
+ */
+public class LinkedSessionMessageQueue implements SessionMessageQueue {
+    private final BlockingQueue<SessionMessageEvent> eventQueue;
+
+    public LinkedSessionMessageQueue(int capacity) {
+        eventQueue = new LinkedBlockingQueue<SessionMessageEvent>(capacity);
+    }
+
+    public void put(Session session, Message message) throws InterruptedException {
+        eventQueue.put(new SessionMessageEvent(session, message));
+    }
+
+    public int poll(Handler handler, long timeout, TimeUnit unit) throws InterruptedException {
+        final SessionMessageEvent event = eventQueue.poll(timeout, unit);
+        if (event == null) {
+            return 0;
+        }
+        handler.onMessage(event.session, event.message);
+        return 1;
+    }
+
+    public int drain(Handler handler) {
+        if (eventQueue.isEmpty()) {
+            return 0;
+        }
+        final List<SessionMessageEvent> events = new ArrayList<SessionMessageEvent>();
+        eventQueue.drainTo(events);
+        for (final SessionMessageEvent event : events) {
+            handler.onMessage(event.session, event.message);
+        }
+        return events.size();
+    }
+
+    public int size() {
+        return eventQueue.size();
+    }
+
+    private static class SessionMessageEvent {
+        private final Session session;
+        private final Message message;
+
+        public SessionMessageEvent(Session session, Message message) {
+            this.session = session;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.mina.core.session.IoSession;
+
+/**
+ * Parses received messages on a pool of worker threads instead of the I/O
+ * thread that decoded them, so that parsing does not hold up the reads of
+ * other connections served by the same I/O processor.
+ * <p>
+ * Messages of one connection are parsed in parallel but handed on in the
+ * order they were received. Each connection keeps its tasks in a queue in
+ * arrival order, and the worker that completes the task at the head of the
+ * queue delivers every completed task from the head on. Only one thread at a
+ * time delivers for a connection. When too many tasks of a connection are
+ * waiting, reading from it is suspended until half of them are delivered.
+ * <p>
+ * Idle worker threads terminate, so the stage does not have to be shut down.
+ */
+final class MessageParsingStage {
+
+    private static final String CONNECTION_QUEUE = "QF_PARSING_QUEUE";
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final ThreadPoolExecutor executor;
+    private final int maxPending;
+
+    /**
+     * A message handed from the I/O thread to the stage.
+     */
+    abstract static class Task {
+        private volatile boolean done;
+
+        /**
+         * Parses the message. May run concurrently with the other tasks of the
+         * connection.
+         */
+        abstract void parse();
+
+        /**
+         * Hands the parsed message on. Runs in arrival order and never
+         * concurrently with another task of the connection.
+         */
+        abstract void deliver();
+    }
+
+    /**
+     * @param threads the number of worker threads
+     * @param maxPending the number of waiting tasks at which reading from a
+     *        connection is suspended
+     */
+    MessageParsingStage(int threads, int maxPending) {
+        this.maxPending = maxPending;
+        executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ParserThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues a task for a connection. Tasks of a connection have to be
+     * submitted from one thread at a time, as the I/O processor does.
+     */
+    void submit(final IoSession ioSession, final Task task) {
+        ConnectionQueue queue = (ConnectionQueue) ioSession.getAttribute(CONNECTION_QUEUE);
+        if (queue == null) {
+            queue = new ConnectionQueue();
+            ioSession.setAttribute(CONNECTION_QUEUE, queue);
+        }
+        queue.tasks.add(task);
+        synchronized (queue) {
+            if (++queue.pending >= maxPending && !queue.readSuspended) {
+                queue.readSuspended = true;
+                ioSession.suspendRead();
+            }
+        }
+        final ConnectionQueue connectionQueue = queue;
+        executor.execute(new Runnable() {
+            public void run() {
+                try {
+                    task.parse();
+                } finally {
+                    task.done = true;
+                    deliver(ioSession, connectionQueue);
+                }
+            }
+        });
+    }
+
+    private void deliver(IoSession ioSession, ConnectionQueue queue) {
+        do {
+            // a worker that is delivering picks up this task when it is done
+            if (!queue.delivering.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                Task task;
+                while ((task = queue.pollDone()) != null) {
+                    task.deliver();
+                    synchronized (queue) {
+                        if (--queue.pending <= maxPending / 2 && queue.readSuspended) {
+                            queue.readSuspended = false;
+                            ioSession.resumeRead();
+                        }
+                    }
+                }
+            } finally {
+                queue.delivering.set(false);
+            }
+        } while (queue.isHeadDone());
+    }
+
+    /**
+     * For tests: returns the number of worker threads currently running.
+     */
+    int getPoolSize() {
+        return executor.getPoolSize();
+    }
+
+    private static final class ConnectionQueue {
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<Task>();
+        private final AtomicBoolean delivering = new AtomicBoolean();
+        // guarded by this, so that suspending and resuming reads cannot overtake each other
+        private int pending;
+        private boolean readSuspended;
+
+        boolean isHeadDone() {
+            final Task task = tasks.peek();
+            return task != null && task.done;
+        }
+
+        Task pollDone() {
+            // only the delivering thread removes tasks
+            return isHeadDone() ? tasks.poll() : null;
+        }
+    }
+
+    private static final class ParserThreadFactory implements ThreadFactory {
+        private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "QFJ Message Parser-"
+                    + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
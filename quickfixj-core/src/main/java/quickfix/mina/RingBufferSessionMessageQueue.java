@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import quickfix.Message;
+import quickfix.Session;
+
+/**
+ * Lock-free multi-producer, single-consumer message queue backed by a
+ * preallocated ring of reusable events.
+ * <p>
+ * Producers claim a sequence number with a compare-and-set on the tail, fill
+ * in the event at that position of the ring and publish it by writing the
+ * sequence number into the slot. The consumer takes published events in order
+ * and frees their slots by advancing the head. Nothing is allocated and no
+ * locks are taken once the queue is created.
+ * <p>
+ * How a thread waits, either the consumer for a message or a producer for a
+ * free slot, is chosen with a {@link WaitStrategy}, trading CPU for latency.
+ */
+public class RingBufferSessionMessageQueue implements SessionMessageQueue {
+
+    /**
+     * How threads wait for the queue.
+     */
+    public enum WaitStrategy {
+        /** Spin on the CPU. Lowest latency, but keeps a core busy. */
+        BUSY_SPIN,
+        /** Spin, yielding the CPU to other threads between checks. */
+        YIELD,
+        /** Park the thread until it is woken up by the other side. */
+        PARK
+    }
+
+    /** Largest supported capacity. */
+    public static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private static final long PRODUCER_PARK_NANOS = 10000L;
+
+    private final SessionMessageEvent[] events;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicReference<Thread> parkedConsumer = new AtomicReference<Thread>();
+
+    /**
+     * @param capacity the minimum capacity, rounded up to a power of two
+     * @param waitStrategy how producers and the consumer wait
+     */
+    public RingBufferSessionMessageQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > MAXIMUM_CAPACITY) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        events = new SessionMessageEvent[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = new SessionMessageEvent();
+            published.set(i, -1);
+        }
+        mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public void put(Session session, Message message) throws InterruptedException {
+        long sequence;
+        do {
+            sequence = tail.get();
+            while (sequence - head.get() >= events.length) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                waitForSlot();
+                sequence = tail.get();
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        final int index = (int) sequence & mask;
+        final SessionMessageEvent event = events[index];
+        event.session = session;
+        event.message = message;
+        published.set(index, sequence);
+
+        // only one producer wakes up a parked consumer
+        if (parkedConsumer.get() != null) {
+            final Thread consumer = parkedConsumer.getAndSet(null);
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
+        }
+    }
+
+    private void waitForSlot() {
+        switch (waitStrategy) {
+        case BUSY_SPIN:
+            break;
+        case YIELD:
+            Thread.yield();
+            break;
+        default:
+            LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+            break;
+        }
+    }
+
+    public int poll(Handler handler, long timeout, TimeUnit unit) throws InterruptedException {
+        final long sequence = head.get();
+        if (!isPublished(sequence) && !awaitPublished(sequence, unit.toNanos(timeout))) {
+            return 0;
+        }
+        return consume(handler, sequence);
+    }
+
+    public int drain(Handler handler) {
+        return consume(handler, head.get());
+    }
+
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head.get(), events.length));
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == sequence;
+    }
+
+    private boolean awaitPublished(long sequence, long timeoutNanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        while (!isPublished(sequence)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                parkedConsumer.set(Thread.currentThread());
+                // check again, a producer may have published before seeing us
+                if (!isPublished(sequence)) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+                parkedConsumer.set(null);
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Handles the published events starting at the given sequence, at most a
+     * ring's worth so that the consumer gets to check for other work.
+     */
+    private int consume(Handler handler, long sequence) {
+        int count = 0;
+        while (count < events.length && isPublished(sequence)) {
+            final SessionMessageEvent event = events[(int) sequence & mask];
+            final Session session = event.session;
+            final Message message = event.message;
+            event.session = null;
+            event.message = null;
+            // free the slot before handling so producers are not held up
+            head.lazySet(++sequence);
+            count++;
+            handler.onMessage(session, message);
+        }
+        return count;
+    }
+
+    private static final class SessionMessageEvent {
+        private Session session;
+        private Message message;
+    }
+}
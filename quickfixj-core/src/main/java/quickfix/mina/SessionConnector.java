@@ -58,6 +58,33 @@ public abstract class SessionConnector implements Connector {
     public static final String SESSIONS_PROPERTY = "sessions";
     public final static String QF_SESSION = "QF_SESSION";
 
+    /**
+     * How the sessions are checked for heartbeats, timeouts and schedule
+     * changes: <code>sweep</code> (the default) calls every session once a
+     * second, <code>wheel</code> only calls the sessions that are due.
+     */
+    public static final String SETTING_SESSION_TIMER = "SessionTimer";
+
+    /**
+     * Number of threads calling the sessions with the <code>wheel</code>
+     * session timer. The default is 1.
+     */
+    public static final String SETTING_SESSION_TIMER_THREADS = "SessionTimerThreads";
+
+    /**
+     * Number of threads parsing received messages. With the default of 0
+     * messages are parsed on the I/O threads. Otherwise they are parsed on a
+     * pool of this many threads and handed to the sessions in the order they
+     * were received.
+     */
+    public static final String SETTING_PARSER_THREADS = "ParserThreads";
+
+    public static final String SESSION_TIMER_SWEEP = "sweep";
+    public static final String SESSION_TIMER_WHEEL = "wheel";
+
+    private static final long SESSION_TIMER_TICK_MILLIS = 100L;
+    private static final int SESSION_TIMER_TICKS_PER_WHEEL = 512;
+
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     protected final PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
@@ -68,7 +95,13 @@ public abstract class SessionConnector implements Connector {
     private final static ScheduledExecutorService scheduledExecutorService = Executors
             .newSingleThreadScheduledExecutor(new QFTimerThreadFactory());
     private ScheduledFuture<?> sessionTimerFuture;
+    private final Object sessionTimerLock = new Object();
+    // @GuardedBy(sessionTimerLock)
+    private SessionTimerWheel sessionTimerWheel;
+    private final boolean useSessionTimerWheel;
+    private final int sessionTimerThreads;
     private IoFilterChainBuilder ioFilterChainBuilder;
+    private final MessageParsingStage messageParsingStage;
 
     public SessionConnector(SessionSettings settings, SessionFactory sessionFactory) throws ConfigError {
         this.settings = settings;
@@ -76,6 +109,37 @@ public abstract class SessionConnector implements Connector {
         if (settings == null) {
             throw new ConfigError("no settings");
         }
+        try {
+            String sessionTimer = SESSION_TIMER_SWEEP;
+            if (settings.isSetting(SETTING_SESSION_TIMER)) {
+                sessionTimer = settings.getString(SETTING_SESSION_TIMER).trim();
+            }
+            if (SESSION_TIMER_WHEEL.equalsIgnoreCase(sessionTimer)) {
+                useSessionTimerWheel = true;
+            } else if (SESSION_TIMER_SWEEP.equalsIgnoreCase(sessionTimer)) {
+                useSessionTimerWheel = false;
+            } else {
+                throw new ConfigError("Invalid " + SETTING_SESSION_TIMER + ": " + sessionTimer);
+            }
+            sessionTimerThreads = settings.isSetting(SETTING_SESSION_TIMER_THREADS)
+                    ? (int) settings.getLong(SETTING_SESSION_TIMER_THREADS)
+                    : 1;
+            if (sessionTimerThreads < 1) {
+                throw new ConfigError("Invalid " + SETTING_SESSION_TIMER_THREADS + ": "
+                        + sessionTimerThreads);
+            }
+            final int parserThreads = settings.isSetting(SETTING_PARSER_THREADS)
+                    ? (int) settings.getLong(SETTING_PARSER_THREADS)
+                    : 0;
+            if (parserThreads < 0) {
+                throw new ConfigError("Invalid " + SETTING_PARSER_THREADS + ": " + parserThreads);
+            }
+            messageParsingStage = parserThreads > 0
+                    ? new MessageParsingStage(parserThreads, DEFAULT_QUEUE_CAPACITY)
+                    : null;
+        } catch (FieldConvertError e) {
+            throw new ConfigError(e);
+        }
     }
 
     public void addPropertyChangeListener(PropertyChangeListener listener) {
@@ -87,6 +151,18 @@ public abstract class SessionConnector implements Connector {
     }
 
     protected void setSessions(Map<SessionID, Session> sessions) {
+        synchronized (sessionTimerLock) {
+            if (sessionTimerWheel != null) {
+                for (Session session : this.sessions.values()) {
+                    if (sessions.get(session.getSessionID()) != session) {
+                        sessionTimerWheel.remove(session);
+                    }
+                }
+                for (Session session : sessions.values()) {
+                    sessionTimerWheel.add(session);
+                }
+            }
+        }
         this.sessions = sessions;
         propertyChangeSupport.firePropertyChange(SESSIONS_PROPERTY, null, sessions);
     }
@@ -123,12 +199,22 @@ public abstract class SessionConnector implements Connector {
 
     public void addDynamicSession(Session inSession) {
         sessions.put(inSession.getSessionID(), inSession);
+        synchronized (sessionTimerLock) {
+            if (sessionTimerWheel != null) {
+                sessionTimerWheel.add(inSession);
+            }
+        }
         log.debug("adding session for " + inSession.getSessionID());
         propertyChangeSupport.firePropertyChange(SESSIONS_PROPERTY, null, sessions);
     }
 
     public void removeDynamicSession(SessionID inSessionID) {
-        sessions.remove(inSessionID);
+        final Session session = sessions.remove(inSessionID);
+        synchronized (sessionTimerLock) {
+            if (sessionTimerWheel != null && session != null) {
+                sessionTimerWheel.remove(session);
+            }
+        }
         log.debug("removing session for " + inSessionID);
         propertyChangeSupport.firePropertyChange(SESSIONS_PROPERTY, null, sessions);
     }
@@ -254,18 +340,68 @@ public abstract class SessionConnector implements Connector {
     }
 
     protected void startSessionTimer() {
+        if (useSessionTimerWheel) {
+            synchronized (sessionTimerLock) {
+                if (sessionTimerWheel == null) {
+                    sessionTimerWheel = new SessionTimerWheel(SESSION_TIMER_TICK_MILLIS,
+                            SESSION_TIMER_TICKS_PER_WHEEL, sessionTimerThreads);
+                    for (Session session : sessions.values()) {
+                        sessionTimerWheel.add(session);
+                    }
+                    sessionTimerWheel.start();
+                }
+            }
+            log.info("SessionTimer started with " + sessionTimerThreads + " timer thread(s)");
+            return;
+        }
         sessionTimerFuture = scheduledExecutorService.scheduleAtFixedRate(new SessionTimerTask(), 0, 1000L,
                 TimeUnit.MILLISECONDS);
         log.info("SessionTimer started");
     }
 
     protected void stopSessionTimer() {
+        synchronized (sessionTimerLock) {
+            if (sessionTimerWheel != null) {
+                sessionTimerWheel.stop();
+                sessionTimerWheel = null;
+                log.info("SessionTimer canceled");
+            }
+        }
         if (sessionTimerFuture != null) {
             if (sessionTimerFuture.cancel(false))
                 log.info("SessionTimer canceled");
         }
     }
 
+    /**
+     * Returns true if the sessions are called by a timing wheel when they are
+     * due rather than every second.
+     *
+     * @see #SETTING_SESSION_TIMER
+     */
+    public boolean isSessionTimerWheel() {
+        return useSessionTimerWheel;
+    }
+
+    /**
+     * For tests: returns the number of sessions in the timing wheel.
+     */
+    int getSessionTimerWheelSize() {
+        synchronized (sessionTimerLock) {
+            return sessionTimerWheel != null ? sessionTimerWheel.size() : 0;
+        }
+    }
+
+    /**
+     * Returns the stage parsing received messages, or null if they are parsed
+     * on the I/O threads.
+     *
+     * @see #SETTING_PARSER_THREADS
+     */
+    MessageParsingStage getMessageParsingStage() {
+        return messageParsingStage;
+    }
+
     protected ScheduledExecutorService getScheduledExecutorService() {
         return scheduledExecutorService;
     }
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.concurrent.TimeUnit;
+
+import quickfix.Message;
+import quickfix.Session;
+
+/**
+ * Queue of received messages waiting to be processed by the
+ * {@link SingleThreadedEventHandlingStrategy}. Messages may be put by any
+ * number of threads but are taken by a single consumer thread.
+ *
+ * @see LinkedSessionMessageQueue
+ * @see RingBufferSessionMessageQueue
+ */
+public interface SessionMessageQueue {
+
+    /**
+     * Receives the messages taken from the queue.
+     */
+    interface Handler {
+        void onMessage(Session session, Message message);
+    }
+
+    /**
+     * Adds a message to the queue, waiting for space if the queue is full.
+     */
+    void put(Session session, Message message) throws InterruptedException;
+
+    /**
+     * Waits for messages and passes them to the handler. Only one thread may
+     * take messages from the queue.
+     *
+     * @param handler the handler for the messages
+     * @param timeout how long to wait for a message
+     * @param unit the unit of the timeout
+     * @return the number of messages handled, 0 if none arrived in time
+     */
+    int poll(Handler handler, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Passes all messages currently in the queue to the handler without
+     * waiting.
+     *
+     * @return the number of messages handled
+     */
+    int drain(Handler handler);
+
+    int size();
+}
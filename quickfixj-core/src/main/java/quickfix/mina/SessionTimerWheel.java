@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import quickfix.LogUtil;
+import quickfix.Session;
+import quickfix.SystemTime;
+
+/**
+ * Calls {@link Session#next()} only for the sessions that are due, using a
+ * hashed timing wheel of session deadlines.
+ * <p>
+ * After each call the session is put back into the wheel at the time returned
+ * by {@link Session#getNextTimerDeadline()}. State changes that bring that time
+ * forward wake the session up through its
+ * {@link Session#setTimerWakeup(Runnable) timer wakeup}. The due sessions are
+ * handed to a pool of timer threads, so a slow session only holds up one of
+ * them.
+ * <p>
+ * The wheel itself is only changed by its tick thread. Other threads post
+ * requests to it, which are applied at the next tick or, for wakeups, right
+ * away.
+ */
+final class SessionTimerWheel {
+
+    /**
+     * Delay after which a session is checked again when its deadline has
+     * passed but the session had nothing to do, which is as often as the
+     * sessions were checked before the wheel existed.
+     */
+    static final long RETRY_DELAY_MILLIS = 1000L;
+
+    /**
+     * Longest time a session is left alone, in case a state change did not
+     * wake it up.
+     */
+    static final long MAX_DELAY_MILLIS = 30000L;
+
+    private static final Logger log = LoggerFactory.getLogger(SessionTimerWheel.class);
+    private static final AtomicInteger wheelCount = new AtomicInteger();
+
+    private final long tickMillis;
+    private final Entry[] buckets;
+    private final int mask;
+    private final ConcurrentMap<Session, Entry> entries = new ConcurrentHashMap<Session, Entry>();
+    private final Queue<Request> requests = new ConcurrentLinkedQueue<Request>();
+    private final ExecutorService timerThreads;
+    private final Thread tickThread;
+    private volatile boolean stopped;
+    // owned by the tick thread
+    private long startTime;
+    private long currentTick;
+
+    /**
+     * @param tickMillis the resolution of the wheel
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two
+     * @param threads the number of threads calling the sessions
+     */
+    SessionTimerWheel(long tickMillis, int ticksPerWheel, int threads) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        buckets = new Entry[size];
+        mask = size - 1;
+        final int id = wheelCount.incrementAndGet();
+        timerThreads = Executors.newFixedThreadPool(threads, new TimerThreadFactory("QFJ Timer-" + id + "-"));
+        tickThread = new Thread(new Runnable() {
+            public void run() {
+                runTicks();
+            }
+        }, "QFJ Timer Wheel-" + id);
+        tickThread.setDaemon(true);
+    }
+
+    void start() {
+        startTime = SystemTime.currentTimeMillis();
+        tickThread.start();
+    }
+
+    void stop() {
+        stopped = true;
+        LockSupport.unpark(tickThread);
+        timerThreads.shutdown();
+        for (final Session session : entries.keySet()) {
+            remove(session);
+        }
+    }
+
+    /**
+     * Adds a session to the wheel. It is called right away and then whenever
+     * it is due.
+     */
+    void add(Session session) {
+        final Entry entry = new Entry(session);
+        if (entries.putIfAbsent(session, entry) == null) {
+            session.setTimerWakeup(entry);
+            post(new Request(Request.WAKEUP, entry, 0));
+        }
+    }
+
+    void remove(Session session) {
+        final Entry entry = entries.remove(session);
+        if (entry != null) {
+            session.setTimerWakeup(null);
+            post(new Request(Request.REMOVE, entry, 0));
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void post(Request request) {
+        requests.add(request);
+        if (request.type == Request.WAKEUP) {
+            LockSupport.unpark(tickThread);
+        }
+    }
+
+    private void runTicks() {
+        while (!stopped) {
+            try {
+                processRequests();
+                final long targetTick = (SystemTime.currentTimeMillis() - startTime) / tickMillis;
+                while (currentTick <= targetTick) {
+                    expire(currentTick);
+                    currentTick++;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(tickMillis));
+            } catch (Throwable e) {
+                log.error("Error during timer processing", e);
+            }
+        }
+    }
+
+    private void processRequests() {
+        Request request;
+        while ((request = requests.poll()) != null) {
+            final Entry entry = request.entry;
+            switch (request.type) {
+            case Request.WAKEUP:
+                if (entry.state == Entry.WAITING) {
+                    unlink(entry);
+                    dispatch(entry);
+                } else if (entry.state == Entry.RUNNING) {
+                    entry.wakeupRequested = true;
+                } else if (entry.state == Entry.NEW) {
+                    dispatch(entry);
+                }
+                break;
+            case Request.DONE:
+                if (entry.state != Entry.RUNNING) {
+                    break;
+                }
+                if (entry.wakeupRequested) {
+                    dispatch(entry);
+                } else {
+                    schedule(entry, request.deadline);
+                }
+                break;
+            case Request.REMOVE:
+                if (entry.state == Entry.WAITING) {
+                    unlink(entry);
+                }
+                entry.state = Entry.REMOVED;
+                break;
+            default:
+                throw new IllegalStateException("Unknown request " + request.type);
+            }
+        }
+    }
+
+    private void schedule(Entry entry, long deadline) {
+        final long now = SystemTime.currentTimeMillis();
+        if (deadline <= now) {
+            deadline = now + RETRY_DELAY_MILLIS;
+        } else if (deadline - now > MAX_DELAY_MILLIS) {
+            deadline = now + MAX_DELAY_MILLIS;
+        }
+        final long tick = Math.max((deadline - startTime + tickMillis - 1) / tickMillis, currentTick);
+        entry.remainingRounds = (tick - currentTick) / buckets.length;
+        entry.bucket = (int) (tick & mask);
+        entry.state = Entry.WAITING;
+        entry.prev = null;
+        entry.next = buckets[entry.bucket];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        buckets[entry.bucket] = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            buckets[entry.bucket] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private void expire(long tick) {
+        Entry entry = buckets[(int) (tick & mask)];
+        while (entry != null) {
+            final Entry next = entry.next;
+            if (entry.remainingRounds > 0) {
+                entry.remainingRounds--;
+            } else {
+                unlink(entry);
+                dispatch(entry);
+            }
+            entry = next;
+        }
+    }
+
+    private void dispatch(Entry entry) {
+        entry.state = Entry.RUNNING;
+        entry.wakeupRequested = false;
+        try {
+            timerThreads.execute(entry.task);
+        } catch (RejectedExecutionException e) {
+            // the wheel has been stopped
+            entry.state = Entry.REMOVED;
+        }
+    }
+
+    /**
+     * A session in the wheel. All fields but the session are owned by the
+     * tick thread.
+     */
+    private final class Entry implements Runnable {
+        static final int NEW = 0;
+        static final int WAITING = 1;
+        static final int RUNNING = 2;
+        static final int REMOVED = 3;
+
+        final Session session;
+        final Runnable task = new Runnable() {
+            public void run() {
+                long deadline;
+                try {
+                    session.next();
+                } catch (Throwable e) {
+                    LogUtil.logThrowable(session.getSessionID(), "Error in session timer processing", e);
+                }
+                try {
+                    deadline = session.getNextTimerDeadline();
+                } catch (Throwable e) {
+                    LogUtil.logThrowable(session.getSessionID(), "Error in session timer processing", e);
+                    deadline = SystemTime.currentTimeMillis() + RETRY_DELAY_MILLIS;
+                }
+                post(new Request(Request.DONE, Entry.this, deadline));
+            }
+        };
+        int state = NEW;
+        boolean wakeupRequested;
+        long remainingRounds;
+        int bucket;
+        Entry prev;
+        Entry next;
+
+        Entry(Session session) {
+            this.session = session;
+        }
+
+        /**
+         * The timer wakeup of the session.
+         */
+        public void run() {
+            post(new Request(Request.WAKEUP, this, 0));
+        }
+    }
+
+    private static final class Request {
+        static final int WAKEUP = 0;
+        static final int DONE = 1;
+        static final int REMOVE = 2;
+
+        final int type;
+        final Entry entry;
+        final long deadline;
+
+        Request(int type, Entry entry, long deadline) {
+            this.type = type;
+            this.entry = entry;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class TimerThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        TimerThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
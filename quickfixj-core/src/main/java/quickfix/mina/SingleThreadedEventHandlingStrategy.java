@@ -19,14 +19,16 @@
 
 package quickfix.mina;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import quickfix.ConfigError;
+import quickfix.FieldConvertError;
 import quickfix.LogUtil;
 import quickfix.Message;
+import quickfix.RuntimeError;
 import quickfix.Session;
 import quickfix.SessionID;
+import quickfix.SessionSettings;
 import quickfix.SystemTime;
 
 /**
@@ -34,15 +36,76 @@ import quickfix.SystemTime;
  */
 public class SingleThreadedEventHandlingStrategy implements EventHandlingStrategy {
     public static final String MESSAGE_PROCESSOR_THREAD_NAME = "QFJ Message Processor";
-    private final BlockingQueue<SessionMessageEvent> eventQueue;
+
+    /**
+     * Queue used to pass received messages to the message processor thread:
+     * <code>linked</code> (the default) for a <code>LinkedBlockingQueue</code> or
+     * <code>ringbuffer</code> for a preallocated lock-free ring buffer.
+     */
+    public static final String SETTING_MESSAGE_QUEUE_TYPE = "MessageQueueType";
+
+    /**
+     * How threads wait for the <code>ringbuffer</code> queue:
+     * <code>busyspin</code>, <code>yield</code> or <code>park</code> (the default).
+     */
+    public static final String SETTING_MESSAGE_QUEUE_WAIT_STRATEGY = "MessageQueueWaitStrategy";
+
+    public static final String QUEUE_TYPE_LINKED = "linked";
+    public static final String QUEUE_TYPE_RING_BUFFER = "ringbuffer";
+
+    private final SessionMessageQueue eventQueue;
+    private final SessionMessageQueue.Handler messageHandler = new SessionMessageQueue.Handler() {
+        public void onMessage(Session session, Message message) {
+            processMessage(session, message);
+        }
+    };
     private final SessionConnector sessionConnector;
     private volatile Thread messageProcessingThread;
     private volatile boolean isStopped;
     private long stopTime = 0L;
 
+    /**
+     * Creates the strategy with the queue selected by the
+     * {@link #SETTING_MESSAGE_QUEUE_TYPE} setting of the connector.
+     */
     public SingleThreadedEventHandlingStrategy(SessionConnector connector, int queueCapacity) {
+        this(connector, createQueue(connector.getSettings(), queueCapacity));
+    }
+
+    public SingleThreadedEventHandlingStrategy(SessionConnector connector, SessionMessageQueue queue) {
         sessionConnector = connector;
-        eventQueue = new LinkedBlockingQueue<SessionMessageEvent>(queueCapacity);
+        eventQueue = queue;
+    }
+
+    static SessionMessageQueue createQueue(SessionSettings settings, int queueCapacity) {
+        try {
+            String queueType = QUEUE_TYPE_LINKED;
+            if (settings != null && settings.isSetting(SETTING_MESSAGE_QUEUE_TYPE)) {
+                queueType = settings.getString(SETTING_MESSAGE_QUEUE_TYPE).trim();
+            }
+            if (QUEUE_TYPE_LINKED.equalsIgnoreCase(queueType)) {
+                return new LinkedSessionMessageQueue(queueCapacity);
+            }
+            if (!QUEUE_TYPE_RING_BUFFER.equalsIgnoreCase(queueType)) {
+                throw new ConfigError("Invalid " + SETTING_MESSAGE_QUEUE_TYPE + ": " + queueType);
+            }
+            RingBufferSessionMessageQueue.WaitStrategy waitStrategy = RingBufferSessionMessageQueue.WaitStrategy.PARK;
+            if (settings.isSetting(SETTING_MESSAGE_QUEUE_WAIT_STRATEGY)) {
+                final String value = settings.getString(SETTING_MESSAGE_QUEUE_WAIT_STRATEGY).trim();
+                if ("busyspin".equalsIgnoreCase(value)) {
+                    waitStrategy = RingBufferSessionMessageQueue.WaitStrategy.BUSY_SPIN;
+                } else if ("yield".equalsIgnoreCase(value)) {
+                    waitStrategy = RingBufferSessionMessageQueue.WaitStrategy.YIELD;
+                } else if (!"park".equalsIgnoreCase(value)) {
+                    throw new ConfigError("Invalid " + SETTING_MESSAGE_QUEUE_WAIT_STRATEGY + ": " + value);
+                }
+            }
+            return new RingBufferSessionMessageQueue(queueCapacity, waitStrategy);
+        } catch (ConfigError e) {
+            throw new RuntimeError(e);
+        } catch (FieldConvertError e) {
+            throw new RuntimeError(e);
+        }
     }
 
     @Override
@@ -51,7 +114,7 @@ public class SingleThreadedEventHandlingStrategy implements EventHandlingStrateg
             return;
         }
         try {
-            eventQueue.put(new SessionMessageEvent(quickfixSession, message));
+            eventQueue.put(quickfixSession, message);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
@@ -66,13 +129,7 @@ public class SingleThreadedEventHandlingStrategy implements EventHandlingStrateg
         while (true) {
             synchronized (this) {
                 if (isStopped) {
-                    if (!eventQueue.isEmpty()) {
-                        final LinkedBlockingQueue<SessionMessageEvent> tempQueue = new LinkedBlockingQueue<SessionMessageEvent>();
-                        eventQueue.drainTo(tempQueue);
-                        for (SessionMessageEvent event : tempQueue) {
-                            event.processMessage();
-                        }
-                    }
+                    eventQueue.drain(messageHandler);
                     if (stopTime == 0) {
                         stopTime = SystemTime.currentTimeMillis();
                     }
@@ -85,20 +142,13 @@ public class SingleThreadedEventHandlingStrategy implements EventHandlingStrateg
                 }
             }
             try {
-                SessionMessageEvent event = getMessage();
-                if (event != null) {
-                    event.processMessage();
-                }
+                eventQueue.poll(messageHandler, THREAD_WAIT_FOR_MESSAGE_MS, TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
                 // ignore
             }
         }
     }
 
-    private SessionMessageEvent getMessage() throws InterruptedException {
-        return eventQueue.poll(THREAD_WAIT_FOR_MESSAGE_MS, TimeUnit.MILLISECONDS);
-    }
-
     /**
      * Start handling of messages by message processor thread.
      * If thread is still alive, an attempt is made to stop it.
@@ -134,22 +184,16 @@ public class SingleThreadedEventHandlingStrategy implements EventHandlingStrateg
         messageProcessingThread.start();
     }
 
-    private static class SessionMessageEvent {
-        private final Session quickfixSession;
-        private final Message message;
-
-        public SessionMessageEvent(Session session, Message message) {
-            this.message = message;
-            quickfixSession = session;
+    private static void processMessage(Session quickfixSession, Message message) {
+        try {
+            quickfixSession.next(message);
+        } catch (Throwable e) {
+            LogUtil.logThrowable(quickfixSession.getSessionID(), e.getMessage(), e);
         }
+    }
 
-        public void processMessage() {
-            try {
-                quickfixSession.next(message);
-            } catch (Throwable e) {
-                LogUtil.logThrowable(quickfixSession.getSessionID(), e.getMessage(), e);
-            }
-        }
+    SessionMessageQueue getEventQueue() {
+        return eventQueue;
     }
 
     private synchronized void startHandlingMessages() {
@@ -19,18 +19,28 @@
 
 package quickfix.mina;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import quickfix.ConfigError;
+import quickfix.FieldConvertError;
 import quickfix.LogUtil;
 import quickfix.Message;
+import quickfix.RuntimeError;
 import quickfix.Session;
 import quickfix.SessionID;
+import quickfix.SessionSettings;
 import static quickfix.mina.EventHandlingStrategy.END_OF_STREAM;
 
 /**
@@ -38,13 +48,85 @@ import static quickfix.mina.EventHandlingStrategy.END_OF_STREAM;
  */
 public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrategy {
 
+    /**
+     * Maximum number of queued messages a session dispatcher takes from its
+     * queue per wake-up and passes to the session in one go. The default is 1.
+     */
+    public static final String SETTING_DISPATCHER_BATCH_SIZE = "DispatcherBatchSize";
+
+    /**
+     * If set to Y the session dispatchers run on virtual threads when the JVM
+     * provides them, and on platform threads otherwise. Virtual threads are
+     * always daemon threads.
+     */
+    public static final String SETTING_DISPATCHER_VIRTUAL_THREADS = "DispatcherVirtualThreads";
+
+    private static final Logger log = LoggerFactory.getLogger(ThreadPerSessionEventHandlingStrategy.class);
+
     private final ConcurrentMap<SessionID, MessageDispatchingThread> dispatchers = new ConcurrentHashMap<SessionID, MessageDispatchingThread>();
     private final SessionConnector sessionConnector;
     private final int queueCapacity;
+    private final int batchSize;
+    private final boolean virtualThreads;
 
+    /**
+     * Creates the strategy with the {@link #SETTING_DISPATCHER_BATCH_SIZE} and
+     * {@link #SETTING_DISPATCHER_VIRTUAL_THREADS} settings of the connector.
+     */
     public ThreadPerSessionEventHandlingStrategy(SessionConnector connector, int queueCapacity) {
+        this(connector, queueCapacity, getBatchSize(connector), isVirtualThreads(connector));
+    }
+
+    public ThreadPerSessionEventHandlingStrategy(SessionConnector connector, int queueCapacity,
+            int batchSize, boolean virtualThreads) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
         sessionConnector = connector;
         this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            log.warn("Virtual threads are not supported by this JVM, session dispatchers use platform threads");
+            virtualThreads = false;
+        }
+        this.virtualThreads = virtualThreads;
+    }
+
+    private static int getBatchSize(SessionConnector connector) {
+        final SessionSettings settings = connector != null ? connector.getSettings() : null;
+        try {
+            if (settings != null && settings.isSetting(SETTING_DISPATCHER_BATCH_SIZE)) {
+                return (int) settings.getLong(SETTING_DISPATCHER_BATCH_SIZE);
+            }
+            return 1;
+        } catch (ConfigError e) {
+            throw new RuntimeError(e);
+        } catch (FieldConvertError e) {
+            throw new RuntimeError(e);
+        }
+    }
+
+    private static boolean isVirtualThreads(SessionConnector connector) {
+        final SessionSettings settings = connector != null ? connector.getSettings() : null;
+        try {
+            return settings != null && settings.isSetting(SETTING_DISPATCHER_VIRTUAL_THREADS)
+                    && settings.getBool(SETTING_DISPATCHER_VIRTUAL_THREADS);
+        } catch (ConfigError e) {
+            throw new RuntimeError(e);
+        } catch (FieldConvertError e) {
+            throw new RuntimeError(e);
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns true if the session dispatchers run on virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
     }
 
     @Override
@@ -103,11 +185,23 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
         }
     }
 
+    /**
+     * Dispatches the messages of one session. It runs as a platform thread
+     * itself, or if {@link #isVirtualThreads()} is true, {@link #start()} runs
+     * it on a virtual thread instead. In that case this thread is never
+     * started, and the thread state is that of {@link #getThread()}.
+     */
     protected class MessageDispatchingThread extends Thread {
         private final Session quickfixSession;
         private final BlockingQueue<Message> messages;
+        private volatile Thread thread;
         private volatile boolean stopped;
         private volatile boolean stopping;
+        // only written by the dispatcher
+        private volatile long messageCount;
+        private volatile long batchCount;
+        private volatile int maxBatchSize;
+        private volatile int maxQueueSize;
 
         private MessageDispatchingThread(Session session, int queueCapacity) {
             super("QF/J Session dispatcher: " + session.getSessionID());
@@ -115,6 +209,31 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
             messages = new LinkedBlockingQueue<Message>(queueCapacity);
         }
 
+        /**
+         * Starts this thread, or a virtual thread running this dispatcher if
+         * {@link #isVirtualThreads()} is true.
+         */
+        @Override
+        public synchronized void start() {
+            if (virtualThreads) {
+                final Thread virtualThread = VirtualThreads.newThread(getName(), this);
+                thread = virtualThread;
+                virtualThread.start();
+            } else {
+                thread = this;
+                super.start();
+            }
+        }
+
+        /**
+         * Returns the thread this dispatcher runs on, which is this thread
+         * unless it runs on a virtual thread, or null if it has not been
+         * started.
+         */
+        public Thread getThread() {
+            return thread;
+        }
+
         public void enqueue(Message message) {
             if (message == END_OF_STREAM && stopping) {
                 return;
@@ -130,8 +249,37 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
             return messages.size();
         }
 
+        /**
+         * Returns the number of messages passed to the session so far.
+         */
+        public long getMessageCount() {
+            return messageCount;
+        }
+
+        /**
+         * Returns the number of batches taken from the queue so far.
+         */
+        public long getBatchCount() {
+            return batchCount;
+        }
+
+        /**
+         * Returns the largest number of messages taken from the queue at once.
+         */
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        /**
+         * Returns the largest queue size seen when the dispatcher woke up.
+         */
+        public int getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
         @Override
         public void run() {
+            final List<Message> batch = new ArrayList<Message>(batchSize);
             while (!stopping) {
                 try {
                     final Message message = getNextMessage(messages);
@@ -139,9 +287,23 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
                         // no message available in polling interval
                         continue;
                     }
-                    quickfixSession.next(message);
-                    if (message == END_OF_STREAM) {
-                        stopping = true;
+                    batch.add(message);
+                    final int queueSize = messages.size() + 1;
+                    if (batchSize > 1) {
+                        messages.drainTo(batch, batchSize - 1);
+                    }
+                    updateStatistics(batch.size(), queueSize);
+                    for (int i = 0; i < batch.size(); i++) {
+                        final Message next = batch.get(i);
+                        try {
+                            quickfixSession.next(next);
+                            if (next == END_OF_STREAM) {
+                                stopping = true;
+                            }
+                        } catch (final Throwable e) {
+                            LogUtil.logThrowable(quickfixSession.getSessionID(),
+                                    "Error during message processing", e);
+                        }
                     }
                 } catch (final InterruptedException e) {
                     LogUtil.logThrowable(quickfixSession.getSessionID(),
@@ -150,6 +312,8 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
                 } catch (final Throwable e) {
                     LogUtil.logThrowable(quickfixSession.getSessionID(),
                             "Error during message processing", e);
+                } finally {
+                    batch.clear();
                 }
             }
             if (!messages.isEmpty()) {
@@ -178,6 +342,17 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
         public boolean isStopped() {
             return stopped;
         }
+
+        private void updateStatistics(int size, int queueSize) {
+            messageCount += size;
+            batchCount++;
+            if (size > maxBatchSize) {
+                maxBatchSize = size;
+            }
+            if (queueSize > maxQueueSize) {
+                maxQueueSize = queueSize;
+            }
+        }
     }
 
     protected MessageDispatchingThread getDispatcher(SessionID sessionID) {
@@ -216,4 +391,81 @@ public class ThreadPerSessionEventHandlingStrategy implements EventHandlingStrat
         return 0;
     }
 
+    /**
+     * Returns the largest queue size the dispatcher of a session has seen
+     * when it woke up, or 0 if the session has no dispatcher.
+     */
+    public int getMaxQueueSize(SessionID sessionID) {
+        MessageDispatchingThread dispatchingThread = dispatchers.get(sessionID);
+        return dispatchingThread != null ? dispatchingThread.getMaxQueueSize() : 0;
+    }
+
+    /**
+     * Returns the largest batch the dispatcher of a session has taken from its
+     * queue, or 0 if the session has no dispatcher.
+     */
+    public int getMaxBatchSize(SessionID sessionID) {
+        MessageDispatchingThread dispatchingThread = dispatchers.get(sessionID);
+        return dispatchingThread != null ? dispatchingThread.getMaxBatchSize() : 0;
+    }
+
+    /**
+     * Returns the number of batches the dispatcher of a session has taken from
+     * its queue, or 0 if the session has no dispatcher.
+     */
+    public long getBatchCount(SessionID sessionID) {
+        MessageDispatchingThread dispatchingThread = dispatchers.get(sessionID);
+        return dispatchingThread != null ? dispatchingThread.getBatchCount() : 0;
+    }
+
+    /**
+     * Returns the number of messages the dispatcher of a session has passed to
+     * the session, or 0 if the session has no dispatcher.
+     */
+    public long getMessageCount(SessionID sessionID) {
+        MessageDispatchingThread dispatchingThread = dispatchers.get(sessionID);
+        return dispatchingThread != null ? dispatchingThread.getMessageCount() : 0;
+    }
+
+    /**
+     * Creates virtual threads through reflection, as they are only available
+     * on recent JVMs.
+     */
+    private static final class VirtualThreads {
+        private static final Method OF_VIRTUAL;
+        private static final Method NAME;
+        private static final Method UNSTARTED;
+
+        static {
+            Method ofVirtual = null;
+            Method name = null;
+            Method unstarted = null;
+            try {
+                final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                name = builder.getMethod("name", String.class);
+                unstarted = builder.getMethod("unstarted", Runnable.class);
+                // fails if virtual threads are a disabled preview feature
+                ofVirtual.invoke(null);
+            } catch (Exception e) {
+                ofVirtual = null;
+            }
+            OF_VIRTUAL = ofVirtual;
+            NAME = name;
+            UNSTARTED = unstarted;
+        }
+
+        static boolean isSupported() {
+            return OF_VIRTUAL != null;
+        }
+
+        static Thread newThread(String name, Runnable task) {
+            try {
+                final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                return (Thread) UNSTARTED.invoke(builder, task);
+            } catch (Exception e) {
+                throw new RuntimeError("Unable to create virtual thread", e);
+            }
+        }
+    }
 }
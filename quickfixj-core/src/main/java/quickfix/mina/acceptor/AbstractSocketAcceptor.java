@@ -56,6 +56,7 @@ import quickfix.mina.EventHandlingStrategy;
 import quickfix.mina.NetworkingOptions;
 import quickfix.mina.ProtocolFactory;
 import quickfix.mina.SessionConnector;
+import quickfix.mina.ThreadPerSessionEventHandlingStrategy;
 import quickfix.mina.message.FIXProtocolCodecFactory;
 import quickfix.mina.ssl.SSLContextFactory;
 import quickfix.mina.ssl.SSLSupport;
@@ -353,6 +354,18 @@ public abstract class AbstractSocketAcceptor extends SessionConnector implements
         return ehs == null ? 0 : ehs.getQueueSize();
     }
 
+    /**
+     * Returns the strategy that dispatches the messages of each session on its
+     * own thread, or null if this connector uses another strategy. It provides
+     * the queue and batch statistics of the sessions.
+     */
+    public ThreadPerSessionEventHandlingStrategy getThreadPerSessionEventHandlingStrategy() {
+        final EventHandlingStrategy ehs = getEventHandlingStrategy();
+        return ehs instanceof ThreadPerSessionEventHandlingStrategy
+                ? (ThreadPerSessionEventHandlingStrategy) ehs
+                : null;
+    }
+
     protected abstract EventHandlingStrategy getEventHandlingStrategy() ;
 
     private class DefaultAcceptorSessionProvider implements AcceptorSessionProvider {
@@ -52,6 +52,7 @@ import quickfix.mina.EventHandlingStrategy;
 import quickfix.mina.NetworkingOptions;
 import quickfix.mina.ProtocolFactory;
 import quickfix.mina.SessionConnector;
+import quickfix.mina.ThreadPerSessionEventHandlingStrategy;
 import quickfix.mina.ssl.SSLSupport;
 
 /**
@@ -272,5 +273,17 @@ public abstract class AbstractSocketInitiator extends SessionConnector implement
         return ehs == null ? 0 : ehs.getQueueSize();
     }
 
+    /**
+     * Returns the strategy that dispatches the messages of each session on its
+     * own thread, or null if this connector uses another strategy. It provides
+     * the queue and batch statistics of the sessions.
+     */
+    public ThreadPerSessionEventHandlingStrategy getThreadPerSessionEventHandlingStrategy() {
+        final EventHandlingStrategy ehs = getEventHandlingStrategy();
+        return ehs instanceof ThreadPerSessionEventHandlingStrategy
+                ? (ThreadPerSessionEventHandlingStrategy) ehs
+                : null;
+    }
+
     protected abstract EventHandlingStrategy getEventHandlingStrategy();
 }
@@ -20,6 +20,8 @@
 package quickfix.mina.message;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -32,25 +34,46 @@ import org.apache.mina.filter.codec.demux.MessageEncoder;
 import org.quickfixj.CharsetSupport;
 
 import quickfix.Message;
+import quickfix.MessageWriter;
 
 /**
  * Encodes a Message object or message string as a byte array to be
- * transmitted on MINA connection.
+ * transmitted on MINA connection. Message objects are written straight
+ * into a buffer without being converted to a String first, and messages
+ * the session has already encoded are passed on as they are.
  */
 public class FIXMessageEncoder implements MessageEncoder<Object> {
 
     private static final Set<Class<?>> TYPES;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Messages are encoded into a buffer kept by each writing thread and then
+     * copied into an output buffer of the exact size, since MINA holds on to
+     * the output buffer until it has been written.
+     */
+    private static final ThreadLocal<ByteBuffer> ENCODE_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        }
+    };
+
     private final String charsetEncoding;
+    private final Charset charset;
 
     static {
         Set<Class<?>> types = new HashSet<Class<?>>();
         types.add(Message.class);
         types.add(String.class);
+        types.add(byte[].class);
         TYPES = Collections.unmodifiableSet(types);
     }
 
     public FIXMessageEncoder() {
         charsetEncoding = CharsetSupport.getCharset();
+        charset = Charset.forName(charsetEncoding);
     }
 
     public static Set<Class<?>> getMessageTypes() {
@@ -59,11 +82,19 @@ public class FIXMessageEncoder implements MessageEncoder<Object> {
 
     public void encode(IoSession session, Object message, ProtocolEncoderOutput out)
             throws ProtocolCodecException {
+        if (message instanceof Message) {
+            out.write(encodeMessage((Message) message));
+            return;
+        }
+        if (message instanceof byte[]) {
+            // already encoded by the session
+            out.write(IoBuffer.wrap((byte[]) message));
+            return;
+        }
+
         String fixMessageString;
         if (message instanceof String) {
             fixMessageString = (String) message;
-        } else if (message instanceof Message) {
-            fixMessageString = message.toString();
         } else {
             throw new ProtocolCodecException("Invalid FIX message object type: "
                     + message.getClass());
@@ -81,4 +112,18 @@ public class FIXMessageEncoder implements MessageEncoder<Object> {
         buffer.flip();
         out.write(buffer);
     }
+
+    private IoBuffer encodeMessage(Message message) {
+        final ByteBuffer encodeBuffer = ENCODE_BUFFER.get();
+        encodeBuffer.clear();
+        final MessageWriter writer = new MessageWriter(encodeBuffer, charset);
+        final ByteBuffer encoded = writer.write(message);
+        final IoBuffer buffer = IoBuffer.allocate(encoded.remaining());
+        buffer.put(encoded);
+        buffer.flip();
+        if (encoded != encodeBuffer && encoded.capacity() <= MAX_RETAINED_BUFFER_SIZE) {
+            ENCODE_BUFFER.set(encoded);
+        }
+        return buffer;
+    }
 }
@@ -20,6 +20,7 @@
 package quickfix;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import junit.framework.TestCase;
@@ -130,6 +131,37 @@ public abstract class AbstractMessageStoreTest extends TestCase {
         assertEquals("wrong message", "message2", messages.get(1));
     }
 
+    public void testRawMessageStorage() throws Exception {
+        if (!testEnabled || !(store instanceof RawMessageStore)) {
+            return;
+        }
+        final RawMessageStore rawStore = (RawMessageStore) store;
+        final byte[] data = "xxmessage1message2".getBytes("US-ASCII");
+        assertTrue("set failed", rawStore.set(112, data, 10, 8));
+        assertTrue("set failed", rawStore.set(111, data, 2, 8));
+        assertTrue("set failed", store.set(113, "message3"));
+
+        store.refresh();
+
+        final ArrayList<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        rawStore.getMessageBuffers(100, 112, buffers);
+        assertEquals("wrong # of messages", 2, buffers.size());
+        assertEquals("wrong message", "message1", toString(buffers.get(0)));
+        assertEquals("wrong message", "message2", toString(buffers.get(1)));
+
+        final ArrayList<String> messages = new ArrayList<String>();
+        store.get(112, 113, messages);
+        assertEquals("wrong # of messages", 2, messages.size());
+        assertEquals("wrong message", "message2", messages.get(0));
+        assertEquals("wrong message", "message3", messages.get(1));
+    }
+
+    private static String toString(ByteBuffer buffer) throws IOException {
+        final byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return new String(data, "US-ASCII");
+    }
+
     public void testRefreshableMessageStore() throws Exception {
         if (!testEnabled) {
             return;
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class AsyncLogFactoryTest extends TestCase {
+    private final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+    private AsyncLogFactory factory;
+
+    protected void tearDown() throws Exception {
+        if (factory != null) {
+            factory.stop();
+        }
+        super.tearDown();
+    }
+
+    public void testEntriesAreWrittenInOrder() throws Exception {
+        final RecordingLog recordingLog = new RecordingLog();
+        factory = new AsyncLogFactory(new RecordingLogFactory(recordingLog), 4, 2,
+                AsyncLogFactory.OverflowPolicy.BLOCK);
+        AsyncLog log = (AsyncLog) factory.create(sessionID);
+
+        for (int i = 0; i < 50; i++) {
+            log.onIncoming("IN" + i);
+            log.onOutgoing("OUT" + i);
+        }
+        log.onEvent("EVENT");
+        log.onErrorEvent("ERROR");
+        log.flush();
+
+        List<String> entries = recordingLog.getEntries();
+        assertEquals(102, entries.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals("incoming:IN" + i, entries.get(i * 2));
+            assertEquals("outgoing:OUT" + i, entries.get(i * 2 + 1));
+        }
+        assertEquals("event:EVENT", entries.get(100));
+        assertEquals("error:ERROR", entries.get(101));
+        assertEquals(0, factory.getDroppedCount());
+        assertEquals(0, factory.getQueueSize());
+        assertEquals(103, factory.getWrittenCount());
+        assertTrue(factory.getBatchCount() > 0);
+        assertTrue(factory.getMaxQueueSize() <= factory.getCapacity());
+    }
+
+    public void testClearAndCloseWaitForQueuedEntries() throws Exception {
+        final RecordingLog recordingLog = new RecordingLog();
+        factory = new AsyncLogFactory(new RecordingLogFactory(recordingLog));
+        AsyncLog log = (AsyncLog) factory.create(sessionID);
+
+        log.onEvent("EVENT1");
+        log.clear();
+        assertEquals(Arrays.asList("event:EVENT1", "clear"), recordingLog.getEntries());
+
+        log.onEvent("EVENT2");
+        log.close();
+        assertEquals(Arrays.asList("event:EVENT1", "clear", "event:EVENT2", "close"),
+                recordingLog.getEntries());
+    }
+
+    public void testDropPolicy() throws Exception {
+        final BlockingLog blockingLog = new BlockingLog();
+        factory = new AsyncLogFactory(new RecordingLogFactory(blockingLog), 2, 1,
+                AsyncLogFactory.OverflowPolicy.DROP);
+        AsyncLog log = (AsyncLog) factory.create(sessionID);
+
+        log.onEvent("BLOCK");
+        assertTrue(blockingLog.blocked.await(5, TimeUnit.SECONDS));
+        log.onEvent("QUEUED1");
+        log.onEvent("QUEUED2");
+        log.onEvent("DROPPED");
+        assertEquals(1, factory.getDroppedCount());
+        assertEquals(1, log.getDroppedCount());
+        assertEquals(2, factory.getQueueSize());
+
+        blockingLog.release.countDown();
+        log.flush();
+        log.onEvent("AFTER");
+        log.flush();
+        assertEquals(Arrays.asList("event:BLOCK", "event:QUEUED1", "event:QUEUED2", "event:AFTER"),
+                blockingLog.getEntries());
+    }
+
+    public void testReportPolicy() throws Exception {
+        final BlockingLog blockingLog = new BlockingLog();
+        factory = new AsyncLogFactory(new RecordingLogFactory(blockingLog), 1, 1,
+                AsyncLogFactory.OverflowPolicy.REPORT);
+        AsyncLog log = (AsyncLog) factory.create(sessionID);
+
+        log.onEvent("BLOCK");
+        assertTrue(blockingLog.blocked.await(5, TimeUnit.SECONDS));
+        log.onEvent("QUEUED");
+        log.onEvent("DROPPED1");
+        log.onEvent("DROPPED2");
+        assertEquals(2, factory.getDroppedCount());
+
+        blockingLog.release.countDown();
+        log.flush();
+        log.onEvent("AFTER");
+        log.flush();
+        List<String> entries = blockingLog.getEntries();
+        assertEquals(4, entries.size());
+        assertEquals("event:QUEUED", entries.get(1));
+        assertTrue(entries.get(2), entries.get(2).startsWith("error:Async log dropped 2 entries"));
+        assertEquals("event:AFTER", entries.get(3));
+    }
+
+    public void testBlockPolicy() throws Exception {
+        final BlockingLog blockingLog = new BlockingLog();
+        factory = new AsyncLogFactory(new RecordingLogFactory(blockingLog), 1, 1,
+                AsyncLogFactory.OverflowPolicy.BLOCK);
+        final AsyncLog log = (AsyncLog) factory.create(sessionID);
+
+        log.onEvent("BLOCK");
+        assertTrue(blockingLog.blocked.await(5, TimeUnit.SECONDS));
+        log.onEvent("QUEUED");
+        final CountDownLatch logged = new CountDownLatch(1);
+        Thread producer = new Thread() {
+            public void run() {
+                log.onEvent("WAITING");
+                logged.countDown();
+            }
+        };
+        producer.start();
+        assertFalse(logged.await(100, TimeUnit.MILLISECONDS));
+
+        blockingLog.release.countDown();
+        assertTrue(logged.await(5, TimeUnit.SECONDS));
+        log.flush();
+        assertEquals(Arrays.asList("event:BLOCK", "event:QUEUED", "event:WAITING"),
+                blockingLog.getEntries());
+        assertEquals(0, factory.getDroppedCount());
+    }
+
+    public void testLogAfterStop() throws Exception {
+        final RecordingLog recordingLog = new RecordingLog();
+        factory = new AsyncLogFactory(new RecordingLogFactory(recordingLog));
+        Log log = factory.create(sessionID);
+        log.onEvent("BEFORE");
+        factory.stop();
+        assertEquals(Arrays.asList("event:BEFORE"), recordingLog.getEntries());
+
+        log.onEvent("AFTER");
+        assertEquals(Arrays.asList("event:BEFORE", "event:AFTER"), recordingLog.getEntries());
+    }
+
+    public void testCreateDoesNotWaitForWrites() throws Exception {
+        final BlockingLog blockingLog = new BlockingLog();
+        factory = new AsyncLogFactory(new RecordingLogFactory(blockingLog));
+        AsyncLog log = (AsyncLog) factory.create(sessionID);
+
+        log.onEvent("BLOCK");
+        assertTrue(blockingLog.blocked.await(5, TimeUnit.SECONDS));
+        final CountDownLatch created = new CountDownLatch(1);
+        Thread creator = new Thread() {
+            public void run() {
+                factory.create(new SessionID(FixVersions.BEGINSTRING_FIX44, "OTHER", "TARGET"));
+                created.countDown();
+            }
+        };
+        creator.start();
+        try {
+            assertTrue(created.await(5, TimeUnit.SECONDS));
+        } finally {
+            blockingLog.release.countDown();
+        }
+    }
+
+    public void testLogAfterStopFromManyThreads() throws Exception {
+        final RecordingLog recordingLog = new RecordingLog();
+        factory = new AsyncLogFactory(new RecordingLogFactory(recordingLog));
+        final Log log = factory.create(sessionID);
+        factory.stop();
+
+        final int threads = 4;
+        final int entries = 100;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            final String name = "T" + i + ":";
+            new Thread() {
+                public void run() {
+                    for (int j = 0; j < entries; j++) {
+                        log.onEvent(name + j);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        List<String> written = recordingLog.getEntries();
+        assertEquals(threads * entries, written.size());
+        for (int i = 0; i < threads; i++) {
+            int next = 0;
+            for (String entry : written) {
+                if (entry.startsWith("event:T" + i + ":")) {
+                    assertEquals("event:T" + i + ":" + next++, entry);
+                }
+            }
+            assertEquals(entries, next);
+        }
+    }
+
+    public void testSettings() throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setLong(AsyncLogFactory.SETTING_ASYNC_LOG_CAPACITY, 100);
+        settings.setLong(AsyncLogFactory.SETTING_ASYNC_LOG_BATCH_SIZE, 10);
+        settings.setString(AsyncLogFactory.SETTING_ASYNC_LOG_OVERFLOW_POLICY, "drop");
+        factory = new AsyncLogFactory(settings, new RecordingLogFactory(new RecordingLog()));
+        assertEquals(128, factory.getCapacity());
+        assertEquals(10, factory.getBatchSize());
+        assertEquals(AsyncLogFactory.OverflowPolicy.DROP, factory.getOverflowPolicy());
+
+        settings.setString(AsyncLogFactory.SETTING_ASYNC_LOG_OVERFLOW_POLICY, "sometimes");
+        try {
+            new AsyncLogFactory(settings, new RecordingLogFactory(new RecordingLog()));
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            // expected
+        }
+    }
+
+    private static class RecordingLogFactory implements LogFactory {
+        private final Log log;
+
+        RecordingLogFactory(Log log) {
+            this.log = log;
+        }
+
+        public Log create() {
+            throw new UnsupportedOperationException();
+        }
+
+        public Log create(SessionID sessionID) {
+            return log;
+        }
+    }
+
+    private static class RecordingLog implements Log, Closeable {
+        private final List<String> entries = Collections.synchronizedList(new ArrayList<String>());
+
+        List<String> getEntries() {
+            synchronized (entries) {
+                return new ArrayList<String>(entries);
+            }
+        }
+
+        public void clear() {
+            entries.add("clear");
+        }
+
+        public void onIncoming(String message) {
+            entries.add("incoming:" + message);
+        }
+
+        public void onOutgoing(String message) {
+            entries.add("outgoing:" + message);
+        }
+
+        public void onEvent(String text) {
+            entries.add("event:" + text);
+        }
+
+        public void onErrorEvent(String text) {
+            entries.add("error:" + text);
+        }
+
+        public void close() throws IOException {
+            entries.add("close");
+        }
+    }
+
+    /**
+     * Holds up the writer on the first event until released.
+     */
+    private static class BlockingLog extends RecordingLog {
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        public void onEvent(String text) {
+            super.onEvent(text);
+            if (blocked.getCount() > 0) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -19,8 +19,12 @@
 
 package quickfix;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 public class CachedFileStoreTest extends AbstractMessageStoreTest {
 
@@ -57,6 +61,21 @@ public class CachedFileStoreTest extends AbstractMessageStoreTest {
         assertEquals(321, store.getNextTargetMsgSeqNum());
     }
 
+    public void testHeaderFileConversion() throws Exception {
+        CachedFileStore store = (CachedFileStore) getStore();
+        store.closeFiles();
+        FileStoreTest.writeLegacyFiles(store.getHeaderFileName(), store.getMsgFileName(), 1,
+                "MESSAGE1", "MESSAGE2", "MESSAGE3");
+        new File(store.getIndexFileName()).delete();
+        store.initialize(false);
+
+        assertFalse(new File(store.getHeaderFileName()).exists());
+        assertTrue(new File(store.getHeaderFileName() + ".bak").exists());
+        List<String> messages = new ArrayList<String>();
+        store.get(2, 3, messages);
+        assertEquals(Arrays.asList("MESSAGE2", "MESSAGE3"), messages);
+    }
+
     protected void closeMessageStore(MessageStore store) throws IOException {
         ((CachedFileStore) store).closeFiles();
     }
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import quickfix.DataDictionary.GroupInfo;
+import quickfix.DataDictionary.IntStringPair;
+import quickfix.field.LastMkt;
+import quickfix.field.MsgType;
+
+public class DataDictionarySnapshotTest {
+
+    private File directory;
+    private File xmlFile;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("snapshot", "");
+        directory.delete();
+        directory.mkdir();
+        xmlFile = new File(directory, "FIX44.xml");
+        final InputStream in = FileUtil.open(getClass(), "FIX44.xml");
+        try {
+            final OutputStream out = new FileOutputStream(xmlFile);
+            try {
+                final byte[] buffer = new byte[8192];
+                int length;
+                while ((length = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, length);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testSnapshotMatchesXml() throws Exception {
+        final File snapshotFile = DataDictionarySnapshot.create(xmlFile);
+        assertEquals("FIX44" + DataDictionarySnapshot.SNAPSHOT_SUFFIX, snapshotFile.getName());
+
+        final DataDictionary expected = DataDictionaryTest.getDictionary();
+        final DataDictionary actual = new DataDictionary(xmlFile.getPath());
+        assertDictionaryEquals(expected, actual);
+
+        assertEquals(expected.getFieldName(44), actual.getFieldName(44));
+        assertEquals(44, actual.getFieldTag("Price"));
+        assertEquals(expected.getValueName(54, "1"), actual.getValueName(54, "1"));
+        assertEquals(FieldType.Price, actual.getFieldTypeEnum(44));
+        assertEquals(MsgType.ORDER_SINGLE, actual.getMsgType("NewOrderSingle"));
+        assertTrue(actual.isAdminMessage(MsgType.LOGON));
+        assertTrue(actual.isAppMessage(MsgType.ORDER_SINGLE));
+        assertTrue(Arrays.equals(expected.getOrderedFields(), actual.getOrderedFields()));
+    }
+
+    @Test
+    public void testSnapshotIsPreferred() throws Exception {
+        writeModifiedSnapshot(readXml());
+        assertTrue(new DataDictionary(xmlFile.getPath()).isMsgField(MsgType.ORDER_SINGLE,
+                LastMkt.FIELD));
+    }
+
+    @Test
+    public void testSnapshotOfDifferentFileIsIgnored() throws Exception {
+        final byte[] xml = readXml();
+        writeModifiedSnapshot(Arrays.copyOf(xml, xml.length + 1));
+        assertFalse(new DataDictionary(xmlFile.getPath()).isMsgField(MsgType.ORDER_SINGLE,
+                LastMkt.FIELD));
+    }
+
+    @Test
+    public void testSnapshotOfChangedContentIsIgnored() throws Exception {
+        final byte[] xml = readXml();
+        xml[xml.length / 2] ^= 1;
+        writeModifiedSnapshot(xml);
+        assertFalse(new DataDictionary(xmlFile.getPath()).isMsgField(MsgType.ORDER_SINGLE,
+                LastMkt.FIELD));
+    }
+
+    @Test
+    public void testSnapshotOfTouchedFileIsUsed() throws Exception {
+        final File snapshotFile = writeModifiedSnapshot(readXml());
+        assertTrue(xmlFile.setLastModified(snapshotFile.lastModified() + 10000));
+        assertTrue(new DataDictionary(xmlFile.getPath()).isMsgField(MsgType.ORDER_SINGLE,
+                LastMkt.FIELD));
+    }
+
+    @Test
+    public void testTruncatedSnapshot() throws Exception {
+        final DataDictionary dictionary = DataDictionaryTest.getDictionary();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataDictionarySnapshot.write(dictionary, readXml(), bytes);
+        final OutputStream out = new FileOutputStream(new File(directory, "FIX44"
+                + DataDictionarySnapshot.SNAPSHOT_SUFFIX));
+        try {
+            out.write(bytes.toByteArray(), 0, bytes.size() / 2);
+        } finally {
+            out.close();
+        }
+
+        try {
+            new DataDictionary(xmlFile.getPath());
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testSnapshotInJarIsUsed() throws Exception {
+        final byte[] xml = readXml();
+        final File coreJar = writeJar("core.jar", xml, modifiedSnapshot(xml));
+        assertTrue(loadFromClassPath(coreJar).isMsgField(MsgType.ORDER_SINGLE, LastMkt.FIELD));
+    }
+
+    @Test
+    public void testSnapshotInLaterJarIsUsed() throws Exception {
+        // quickfixj-core ships the XML ahead of the message jar that ships the snapshot
+        final byte[] xml = readXml();
+        final File coreJar = writeJar("core.jar", xml, null);
+        final File messagesJar = writeJar("messages.jar", xml, modifiedSnapshot(xml));
+        assertTrue(loadFromClassPath(coreJar, messagesJar).isMsgField(MsgType.ORDER_SINGLE,
+                LastMkt.FIELD));
+    }
+
+    @Test
+    public void testSnapshotInLaterJarOfDifferentFileIsIgnored() throws Exception {
+        final byte[] xml = readXml();
+        final File coreJar = writeJar("core.jar", xml, null);
+        final File messagesJar = writeJar("messages.jar", xml,
+                modifiedSnapshot(Arrays.copyOf(xml, xml.length + 1)));
+        assertFalse(loadFromClassPath(coreJar, messagesJar).isMsgField(MsgType.ORDER_SINGLE,
+                LastMkt.FIELD));
+    }
+
+    private static DataDictionary loadFromClassPath(File... jars) throws Exception {
+        final URL[] urls = new URL[jars.length];
+        for (int i = 0; i < jars.length; i++) {
+            urls[i] = jars[i].toURI().toURL();
+        }
+        // no parent, so that the test resources do not hide the jars
+        final URLClassLoader classLoader = new URLClassLoader(urls, null);
+        final Thread thread = Thread.currentThread();
+        final ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return new DataDictionary("FIX44.xml");
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+            classLoader.close();
+        }
+    }
+
+    private File writeJar(String name, byte[] xml, byte[] snapshot) throws IOException {
+        final File jarFile = new File(directory, name);
+        final JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile));
+        try {
+            out.putNextEntry(new JarEntry("FIX44.xml"));
+            out.write(xml);
+            if (snapshot != null) {
+                out.putNextEntry(new JarEntry("FIX44" + DataDictionarySnapshot.SNAPSHOT_SUFFIX));
+                out.write(snapshot);
+            }
+        } finally {
+            out.close();
+        }
+        return jarFile;
+    }
+
+    private byte[] readXml() throws IOException {
+        final InputStream in = new FileInputStream(xmlFile);
+        try {
+            return DataDictionarySnapshot.readFully(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private File writeModifiedSnapshot(byte[] source) throws Exception {
+        final File snapshotFile = new File(directory, "FIX44" + DataDictionarySnapshot.SNAPSHOT_SUFFIX);
+        final OutputStream out = new FileOutputStream(snapshotFile);
+        try {
+            out.write(modifiedSnapshot(source));
+        } finally {
+            out.close();
+        }
+        return snapshotFile;
+    }
+
+    /**
+     * Returns a snapshot that differs from the XML, so that it shows when it
+     * is used.
+     */
+    private static byte[] modifiedSnapshot(byte[] source) throws Exception {
+        final DataDictionary dictionary = new DataDictionary(DataDictionaryTest.getDictionary());
+        dictionary.addMsgField(MsgType.ORDER_SINGLE, LastMkt.FIELD);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataDictionarySnapshot.write(dictionary, source, out);
+        return out.toByteArray();
+    }
+
+    private static void assertDictionaryEquals(DataDictionary expected, DataDictionary actual) {
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getMessages(), actual.getMessages());
+        assertEquals(expected.getMessageFields(), actual.getMessageFields());
+        assertEquals(expected.getRequiredFields(), actual.getRequiredFields());
+        assertEquals(expected.getFieldValues(), actual.getFieldValues());
+        assertEquals(expected.getFields(), actual.getFields());
+        assertEquals(expected.getGroups().keySet(), actual.getGroups().keySet());
+        for (Map.Entry<IntStringPair, GroupInfo> entry : expected.getGroups().entrySet()) {
+            final GroupInfo group = actual.getGroups().get(entry.getKey());
+            assertEquals(entry.getValue().getDelimiterField(), group.getDelimiterField());
+            assertDictionaryEquals(entry.getValue().getDataDictionary(), group.getDataDictionary());
+        }
+    }
+}
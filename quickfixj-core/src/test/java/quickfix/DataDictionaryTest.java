@@ -32,6 +32,7 @@ import quickfix.field.HandlInst;
 import quickfix.field.LastMkt;
 import quickfix.field.MsgSeqNum;
 import quickfix.field.MsgType;
+import quickfix.field.NoAllocs;
 import quickfix.field.NoHops;
 import quickfix.field.OrdType;
 import quickfix.field.OrderQty;
@@ -39,6 +40,7 @@ import quickfix.field.Price;
 import quickfix.field.SenderCompID;
 import quickfix.field.SenderSubID;
 import quickfix.field.SendingTime;
+import quickfix.field.SessionRejectReason;
 import quickfix.field.Side;
 import quickfix.field.Symbol;
 import quickfix.field.TargetCompID;
@@ -428,6 +430,66 @@ public class DataDictionaryTest extends TestCase {
         assertTrue(nos4.getHeader().isSetField(new SenderSubID()));
     }
 
+    public void testValidationFollowsDictionaryChanges() throws Exception {
+        final DataDictionary dictionary = new DataDictionary(getDictionary());
+        final Message message = parseOrder(dictionary, "30=VX\00154=1\001");
+
+        assertValidationFails(dictionary, message,
+                SessionRejectReason.TAG_NOT_DEFINED_FOR_THIS_MESSAGE_TYPE, LastMkt.FIELD);
+        dictionary.addMsgField(MsgType.ORDER_SINGLE, LastMkt.FIELD);
+        dictionary.validate(message);
+    }
+
+    public void testValidationRejectReasons() throws Exception {
+        final DataDictionary dictionary = new DataDictionary(getDictionary());
+        dictionary.validate(parseOrder(dictionary, "54=1\001"));
+
+        try {
+            dictionary.validate(parseOrder(dictionary, "54=1\00144=ABC\001"));
+            fail("expected IncorrectDataFormat");
+        } catch (IncorrectDataFormat e) {
+            assertEquals(Price.FIELD, e.field);
+        }
+        try {
+            dictionary.validate(parseOrder(dictionary, "54=Z\001"));
+            fail("expected IncorrectTagValue");
+        } catch (IncorrectTagValue e) {
+            assertEquals(Side.FIELD, e.field);
+        }
+        assertValidationFails(dictionary, parseOrder(dictionary, "54=1\0019999=X\001"),
+                SessionRejectReason.INVALID_TAG_NUMBER, 9999);
+
+        final Message missingSide = parseOrder(dictionary, "");
+        assertValidationFails(dictionary, missingSide,
+                SessionRejectReason.REQUIRED_TAG_MISSING, Side.FIELD);
+
+        final Message badGroupCount = parseOrder(dictionary, "54=1\00178=1\00179=ACCOUNT\001");
+        badGroupCount.setInt(NoAllocs.FIELD, 2);
+        assertValidationFails(dictionary, badGroupCount,
+                SessionRejectReason.INCORRECT_NUMINGROUP_COUNT_FOR_REPEATING_GROUP, NoAllocs.FIELD);
+    }
+
+    private static Message parseOrder(DataDictionary dictionary, String extraFields)
+            throws InvalidMessage {
+        final Message message = new Message();
+        message.fromString("8=FIX.4.4\0019=100\00135=D\00149=SENDER\00156=TARGET\00134=1\001"
+                + "52=20110420-09:17:40\00111=CLORDID\00121=1\00155=QFJ\00138=50\00140=2\001"
+                + "60=20110420-09:17:39\001" + extraFields + "10=000\001",
+                dictionary, false);
+        return message;
+    }
+
+    private static void assertValidationFails(DataDictionary dictionary, Message message,
+            int sessionRejectReason, int field) throws Exception {
+        try {
+            dictionary.validate(message);
+            fail("expected FieldException");
+        } catch (FieldException e) {
+            assertEquals(sessionRejectReason, e.getSessionRejectReason());
+            assertEquals(field, e.getField());
+        }
+    }
+
     //
     // Group Validation Tests in RepeatingGroupTest
     //
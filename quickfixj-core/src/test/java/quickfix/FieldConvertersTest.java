@@ -19,14 +19,18 @@
 
 package quickfix;
 
+import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Random;
 import java.util.TimeZone;
 
 import quickfix.field.converter.BooleanConverter;
 import quickfix.field.converter.CharConverter;
+import quickfix.field.converter.DecimalConverter;
 import quickfix.field.converter.DoubleConverter;
 import quickfix.field.converter.IntConverter;
 import quickfix.field.converter.UtcDateOnlyConverter;
@@ -62,6 +66,79 @@ public class FieldConvertersTest extends TestCase {
         }
     }
 
+    public void testIntegerConversionFromBytes() throws Exception {
+        byte[] data = "x=123\001-1\00100023\001-2147483648\0012147483648\001".getBytes();
+        assertEquals(123, IntConverter.convert(data, 2, 3));
+        assertEquals(-1, IntConverter.convert(data, 6, 2));
+        assertEquals(23, IntConverter.convert(data, 9, 5));
+        assertEquals(Integer.MIN_VALUE, IntConverter.convert(data, 15, 11));
+        String[] invalid = { "abc", "123.4", "+200", "-", "", "2147483648" };
+        for (String value : invalid) {
+            try {
+                IntConverter.convert(value.getBytes(), 0, value.length());
+                fail(value);
+            } catch (FieldConvertError e) {
+                // expected
+            }
+        }
+    }
+
+    public void testDecimalConversionFromBytes() throws Exception {
+        byte[] data = "44=12.3450\001".getBytes();
+        assertEquals(new BigDecimal("12.3450"), DecimalConverter.convert(data, 3, 7));
+        try {
+            DecimalConverter.convert(data, 0, 4);
+            fail();
+        } catch (FieldConvertError e) {
+            // expected
+        }
+    }
+
+    public void testFixedPointDecimalConversion() throws Exception {
+        FixedPointDecimal value = new FixedPointDecimal();
+        String[] texts = { "0", "0.00", "12.3450", "-0.05", "-12", "123.", ".5", "-.5",
+                "0045.32", "922337203685477580.7", "-9223372036854775.807" };
+        for (String text : texts) {
+            BigDecimal expected = new BigDecimal(text);
+            assertSame(value, DecimalConverter.convert(text, value));
+            assertEquals(text, expected.unscaledValue().longValue(), value.getMantissa());
+            assertEquals(text, expected.scale(), value.getScale());
+            assertEquals(expected.toPlainString(), value.toString());
+            assertEquals(0, expected.compareTo(value.toBigDecimal()));
+            byte[] data = ("44=" + text + "").getBytes();
+            assertEquals(value, DecimalConverter.convert(data, 3, text.length(),
+                    new FixedPointDecimal()));
+        }
+        assertEquals("-9223372036854775808", DecimalConverter.convert(Long.MIN_VALUE, 0));
+        assertEquals("-0.9223372036854775808", DecimalConverter.convert(Long.MIN_VALUE, 19));
+        assertEquals("0.00000000000000000000001", DecimalConverter.convert(1, 23));
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long mantissa = random.nextLong() >> random.nextInt(64);
+            int scale = random.nextInt(20);
+            String text = DecimalConverter.convert(mantissa, scale);
+            assertEquals(BigDecimal.valueOf(mantissa, scale).toPlainString(), text);
+            if (mantissa != Long.MIN_VALUE) {
+                assertEquals(new FixedPointDecimal(mantissa, scale),
+                        DecimalConverter.convert(text, value));
+            }
+            if (text.replace("-", "").replace(".", "").replaceFirst("^0+", "").length() <= 17) {
+                assertEquals(text, Double.parseDouble(text), DoubleConverter.convert(text), 0);
+            }
+        }
+
+        String[] invalid = { "", "-", ".", "1.2.3", "+1", "1E5", "12a", "9223372036854775808" };
+        for (String text : invalid) {
+            try {
+                DecimalConverter.convert(text, value);
+                fail(text);
+            } catch (FieldConvertError e) {
+                // expected
+            }
+        }
+    }
+
     public void testDoubleConversion() throws Exception {
         assertEquals("45.32", DoubleConverter.convert(45.32));
         assertEquals("45", DoubleConverter.convert(45));
@@ -79,6 +156,12 @@ public class FieldConvertersTest extends TestCase {
         assertEquals(0.06, DoubleConverter.convert("000.06"), 0);
         assertEquals(0.06, DoubleConverter.convert("0.0600"), 0);
         assertEquals(23.0, DoubleConverter.convert("00023."), 0);
+        assertEquals(-0.5, DoubleConverter.convert("-.5"), 0);
+        assertEquals(Double.doubleToLongBits(-0.0),
+                Double.doubleToLongBits(DoubleConverter.convert("-0")));
+        assertEquals(0.1234567890123456789,
+                DoubleConverter.convert("0.1234567890123456789"), 0);
+        assertEquals(12.5, DoubleConverter.convert("44=12.5\001".getBytes(), 3, 4), 0);
 
         try {
             DoubleConverter.convert("abc");
@@ -110,6 +193,12 @@ public class FieldConvertersTest extends TestCase {
         } catch (FieldConvertError e) {
             // expected
         }
+        try {
+            DoubleConverter.convert("-");
+            fail();
+        } catch (FieldConvertError e) {
+            // expected
+        }
         try {
             DoubleConverter.convert("1e6");
             fail();
@@ -232,6 +321,38 @@ public class FieldConvertersTest extends TestCase {
         }
     }
 
+    public void testUtcTimestampConversionAcrossCalendar() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd-HH:mm:ss.SSS");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(42);
+        long min = format.parse("00010101-00:00:00.000").getTime();
+        long max = format.parse("99991231-23:59:59.999").getTime();
+        for (int i = 0; i < 10000; i++) {
+            long time = min + (long) (random.nextDouble() * (max - min));
+            String expected = format.format(new Date(time));
+            Timestamp timestamp = new Timestamp(time);
+            assertEquals(expected, UtcTimestampConverter.convert(timestamp, true, false));
+            assertEquals(expected.substring(0, 8), UtcDateOnlyConverter.convert(timestamp));
+            assertEquals(expected.substring(9), UtcTimeOnlyConverter.convert(timestamp, true, false));
+            assertEquals(time, UtcTimestampConverter.convert(expected).getTime());
+        }
+
+        // months and days out of range roll over
+        assertEquals(format.parse("20000301-00:00:00.000").getTime(),
+                UtcTimestampConverter.convert("20000230-00:00:00").getTime());
+        assertEquals(format.parse("20010101-00:00:00.000").getTime(),
+                UtcDateOnlyConverter.convert("20001301").getTime());
+        assertEquals(format.parse("20000229-00:00:00.000").getTime(),
+                UtcDateOnlyConverter.convert("20000300").getTime());
+
+        try {
+            UtcTimestampConverter.convert(new Timestamp(max + 1), false, false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
     public void testUtcTimeOnlyConversion() throws Exception {
         Calendar c = new GregorianCalendar(0, 0, 0, 12, 5, 6);
         c.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -268,6 +389,12 @@ public class FieldConvertersTest extends TestCase {
         timestamp = UtcTimeOnlyConverter.convert("12:05:06.123456789");
         checkCalendar(timestamp, 12, 5, 6, 1970, 0, 1, 123_456_789);
 
+        try {
+            UtcTimeOnlyConverter.convert("12:05:06,555");
+            fail();
+        } catch (FieldConvertError e) {
+            // expected
+        }
         try {
             UtcTimeOnlyConverter.convert("I2:05:06.555");
             fail();
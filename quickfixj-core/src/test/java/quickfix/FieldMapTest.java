@@ -7,8 +7,15 @@ import quickfix.field.EffectiveTime;
 import quickfix.field.MDEntryTime;
 import quickfix.field.converter.UtcTimeOnlyConverter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.sql.Timestamp;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
+import java.util.TreeMap;
 
 /**
  * Tests the {@link FieldMap} class.
@@ -117,5 +124,114 @@ public class FieldMapTest extends TestCase {
         testOrdering(new int[] { 3, 2, 1 }, new int[] { 1, 3 }, new int[] { 1, 3, 2 });
         testOrdering(new int[] { 1, 2, 3 }, new int[] { 3, 1 }, new int[] { 3, 1, 2 });
         testOrdering(new int[] { 3, 2, 1 }, new int[] { 3, 1 }, new int[] { 3, 1, 2 });
+        testOrdering(new int[] { 5, 100, 4, 1, 3, 2 }, new int[] { 100, 3 }, new int[] { 100, 3, 1, 2, 4, 5 });
+    }
+
+    public void testSetGetAndRemove() throws Exception {
+        FieldMap map = new Message(new int[] { 31, 20 });
+        for (int tag = 40; tag > 0; tag--) {
+            map.setInt(tag, tag);
+        }
+        map.setInt(20, 200);
+        for (int tag = 1; tag <= 40; tag++) {
+            assertTrue(map.isSetField(tag));
+            assertEquals(tag == 20 ? 200 : tag, map.getInt(tag));
+        }
+        for (int tag = 2; tag <= 40; tag += 2) {
+            map.removeField(tag);
+        }
+        assertFalse(map.isSetField(20));
+        assertFalse(map.isSetField(41));
+        try {
+            map.getInt(2);
+            fail("FieldNotFound expected");
+        } catch (FieldNotFound e) {
+            // expected
+        }
+
+        Iterator<Field<?>> it = map.iterator();
+        assertEquals(31, it.next().getTag());
+        int previous = 0;
+        while (it.hasNext()) {
+            Field<?> field = it.next();
+            assertTrue(field.getTag() > previous);
+            assertTrue(field.getTag() % 2 == 1);
+            previous = field.getTag();
+        }
+    }
+
+    public void testIteratorRemove() throws Exception {
+        FieldMap map = new Message();
+        for (int tag = 1; tag <= 10; tag++) {
+            map.setInt(tag, tag);
+        }
+        Iterator<Field<?>> it = map.iterator();
+        while (it.hasNext()) {
+            if (it.next().getTag() % 3 != 0) {
+                it.remove();
+            }
+        }
+        it = map.iterator();
+        assertEquals(3, it.next().getTag());
+        assertEquals(6, it.next().getTag());
+        assertEquals(9, it.next().getTag());
+        assertFalse(it.hasNext());
+
+        it = map.iterator();
+        it.next();
+        map.setInt(11, 11);
+        try {
+            it.next();
+            fail("ConcurrentModificationException expected");
+        } catch (ConcurrentModificationException e) {
+            // expected
+        }
+    }
+
+    public void testSetFieldsWithDifferentOrder() throws Exception {
+        FieldMap source = new Message(new int[] { 3, 2, 1 });
+        source.setInt(1, 1);
+        source.setInt(2, 2);
+        source.setInt(3, 3);
+        FieldMap target = new Message();
+        target.setFields(source);
+        Iterator<Field<?>> it = target.iterator();
+        assertEquals(1, it.next().getTag());
+        assertEquals(2, it.next().getTag());
+        assertEquals(3, it.next().getTag());
+        assertFalse(it.hasNext());
+    }
+
+    public void testSerializedFormIsUnchanged() throws Exception {
+        // the fields are serialized as the TreeMap of earlier versions
+        ObjectStreamClass streamClass = ObjectStreamClass.lookup(FieldMap.class);
+        assertEquals(-3193357271891865972L, streamClass.getSerialVersionUID());
+        assertEquals(TreeMap.class, streamClass.getField("fields").getType());
+        assertEquals(TreeMap.class, streamClass.getField("groups").getType());
+        assertEquals(int[].class, streamClass.getField("fieldOrder").getType());
+    }
+
+    public void testSerializationKeepsFieldOrder() throws Exception {
+        FieldMap map = new Message(new int[] { 3, 2, 1 });
+        map.setInt(1, 1);
+        map.setInt(7, 7);
+        map.setInt(2, 2);
+        map.setInt(3, 3);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream outs = new ObjectOutputStream(out);
+        outs.writeObject(map);
+        outs.close();
+        ObjectInputStream ins = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+        FieldMap copy = (FieldMap) ins.readObject();
+
+        Iterator<Field<?>> it = copy.iterator();
+        assertEquals(3, it.next().getTag());
+        assertEquals(2, it.next().getTag());
+        assertEquals(1, it.next().getTag());
+        assertEquals(7, it.next().getTag());
+        assertFalse(it.hasNext());
+        copy.setInt(4, 4);
+        assertEquals(4, copy.getInt(4));
     }
 }
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileStoreSegmentedTest extends FileStoreTest {
+    @Override
+    protected MessageStoreFactory getMessageStoreFactory() throws ConfigError, FieldConvertError {
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        // Initialize the session settings from the defaults
+        settings.setString(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_PATH, settings
+                .getString(FileStoreFactory.SETTING_FILE_STORE_PATH));
+        settings.setLong(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_SEGMENT_SIZE, 1024);
+        settings.setBool(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_COMPRESS_SEGMENTS, true);
+        return new FileStoreFactory(settings);
+    }
+
+    public void testReadAcrossSegments() throws Exception {
+        FileStore store = (FileStore) getStore();
+        for (int i = 1; i <= 500; i++) {
+            store.set(i, "MESSAGE" + i);
+        }
+        assertTrue(store.getSegmentCount() > 1);
+
+        store.close();
+        store.initialize(false);
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 500, messages);
+        assertEquals(500, messages.size());
+        for (int i = 1; i <= 500; i++) {
+            assertEquals("MESSAGE" + i, messages.get(i - 1));
+        }
+    }
+
+    public void testRetainedSegments() throws Exception {
+        ((FileStore) getStore()).close();
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        settings.setString(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_PATH, settings
+                .getString(FileStoreFactory.SETTING_FILE_STORE_PATH));
+        settings.setLong(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_SEGMENT_SIZE, 1024);
+        settings.setLong(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_RETAINED_SEGMENTS, 1);
+        FileStore store = (FileStore) new FileStoreFactory(settings).create(getSessionID());
+        try {
+            store.reset();
+            for (int i = 1; i <= 500; i++) {
+                store.set(i, "MESSAGE" + i);
+            }
+            assertEquals(2, store.getSegmentCount());
+
+            // messages in deleted segments are left out
+            List<String> messages = new ArrayList<String>();
+            store.get(1, 500, messages);
+            assertTrue(messages.size() < 500);
+            assertEquals("MESSAGE500", messages.get(messages.size() - 1));
+        } finally {
+            store.deleteFiles();
+        }
+    }
+}
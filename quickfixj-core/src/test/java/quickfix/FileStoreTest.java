@@ -19,8 +19,12 @@
 
 package quickfix;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -72,6 +76,83 @@ public class FileStoreTest extends AbstractMessageStoreTest {
         assertEquals(321, store.getNextTargetMsgSeqNum());
     }
 
+    public void testCachedAndIndexedMessages() throws Exception {
+        FileStore store = (FileStore) getStore();
+        for (int i = 1; i <= 2500; i++) {
+            store.set(i, "MESSAGE" + i);
+        }
+        store.set(3000, "MESSAGE3000");
+        store.set(1000, "REWRITTEN1000");
+        assertMessages(store);
+
+        // the positions are loaded again, from the index file
+        store.close();
+        store.initialize(false);
+        assertMessages(store);
+    }
+
+    private static void assertMessages(FileStore store) throws IOException {
+        List<String> messages = new ArrayList<String>();
+        store.get(999, 1001, messages);
+        assertEquals(Arrays.asList("MESSAGE999", "REWRITTEN1000", "MESSAGE1001"), messages);
+        messages.clear();
+        store.get(2499, 3500, messages);
+        assertEquals(Arrays.asList("MESSAGE2499", "MESSAGE2500", "MESSAGE3000"), messages);
+        messages.clear();
+        store.get(1, 2500, messages);
+        assertEquals(2500, messages.size());
+        assertEquals("MESSAGE1", messages.get(0));
+    }
+
+    public void testHeaderFileConversion() throws Exception {
+        FileStore store = (FileStore) getStore();
+        store.close();
+        writeLegacyFiles(store.getHeaderFileName(), store.getMsgFileName(), 5, "MESSAGE5",
+                "MESSAGE6", "MESSAGE7");
+        new File(store.getIndexFileName()).delete();
+        store.initialize(false);
+
+        assertFalse(new File(store.getHeaderFileName()).exists());
+        // kept for going back to an earlier version
+        final File backupFile = new File(store.getHeaderFileName() + ".bak");
+        assertTrue(backupFile.exists());
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 6, messages);
+        assertEquals(Arrays.asList("MESSAGE5", "MESSAGE6"), messages);
+
+        store.set(3, "MESSAGE3");
+        messages.clear();
+        store.get(1, 100, messages);
+        assertEquals(Arrays.asList("MESSAGE3", "MESSAGE5", "MESSAGE6", "MESSAGE7"), messages);
+
+        store.deleteFiles();
+        assertFalse(backupFile.exists());
+    }
+
+    /**
+     * Writes a body file and the header file that versions before the index
+     * file used, with one record per message.
+     */
+    static void writeLegacyFiles(String headerFileName, String msgFileName, int firstSequence,
+            String... messages) throws IOException {
+        final DataOutputStream header = new DataOutputStream(new FileOutputStream(headerFileName));
+        final FileOutputStream body = new FileOutputStream(msgFileName);
+        try {
+            long offset = 0;
+            for (int i = 0; i < messages.length; i++) {
+                final byte[] data = messages[i].getBytes("US-ASCII");
+                header.writeInt(firstSequence + i);
+                header.writeLong(offset);
+                header.writeInt(data.length);
+                body.write(data);
+                offset += data.length;
+            }
+        } finally {
+            header.close();
+            body.close();
+        }
+    }
+
     protected void closeMessageStore(MessageStore store) throws IOException {
         ((FileStore) store).close();
     }
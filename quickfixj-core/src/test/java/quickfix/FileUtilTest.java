@@ -21,8 +21,10 @@ package quickfix;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.InputStream;
 import java.net.Socket;
 
@@ -55,6 +57,22 @@ public class FileUtilTest {
         assertNotNull("Resource not found", in);
     }
 
+    @Test
+    public void testLocate() throws Exception {
+        final File file = File.createTempFile("locate", ".txt");
+        try {
+            assertEquals(file.toURI().toURL(),
+                    FileUtil.locate(null, file.getPath(), FileUtil.Location.FILESYSTEM));
+        } finally {
+            file.delete();
+        }
+        assertNotNull(FileUtil.locate(Message.class, "Session.class",
+                FileUtil.Location.CLASS_RESOURCE));
+        assertNull(FileUtil.locate(Message.class, "NoSuchResource.class",
+                FileUtil.Location.FILESYSTEM, FileUtil.Location.CLASS_RESOURCE,
+                FileUtil.Location.URL));
+    }
+
     @Test
     public void testURLLocation() throws Exception {
         // Assumption: Internet access
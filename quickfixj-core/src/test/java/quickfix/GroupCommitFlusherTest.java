@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GroupCommitFlusherTest {
+
+    private final GroupCommitFlusher flusher = new GroupCommitFlusher();
+    private File file;
+    private RandomAccessFile raf;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("groupcommit", ".dat");
+        raf = new RandomAccessFile(file, "rw");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        raf.close();
+        file.delete();
+    }
+
+    @Test
+    public void testForceFromManyThreads() throws Exception {
+        final int threads = 8;
+        final int writes = 50;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < writes; j++) {
+                            synchronized (raf) {
+                                raf.getChannel().write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }));
+                            }
+                            flusher.force(raf.getChannel());
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        done.await();
+
+        assertEquals(0, failures.get());
+        assertEquals(threads * writes * 4, raf.length());
+        final long syncs = flusher.getSyncCount();
+        assertTrue("syncs: " + syncs, syncs >= 1 && syncs <= threads * writes);
+    }
+
+    @Test
+    public void testForceFailureIsReported() throws Exception {
+        raf.close();
+        try {
+            flusher.force(raf.getChannel());
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+
+        // the flusher keeps working after a failure
+        final RandomAccessFile other = new RandomAccessFile(file, "rw");
+        try {
+            flusher.force(other.getChannel());
+        } finally {
+            other.close();
+        }
+    }
+}
@@ -78,6 +78,63 @@ public class JdbcLogTest extends TestCase {
         assertEquals(0, getRowCount(connection, log.getOutgoingMessagesTableName()));
     }
 
+    public void testBatchedLog() throws Exception {
+        setUpJdbcLog(false, null, 3);
+
+        log.onIncoming("INCOMING");
+        log.onOutgoing("OUTGOING");
+        assertEquals(0, getRowCount(connection, "messages_log"));
+
+        // the third entry fills the batch
+        log.onEvent("EVENT");
+        assertEquals(2, getRowCount(connection, "messages_log"));
+        assertEquals(1, getRowCount(connection, "event_log"));
+        assertLogData(connection, 0, sessionID, "INCOMING", log.getIncomingMessagesTableName());
+        assertLogData(connection, 0, sessionID, "EVENT", "event_log");
+
+        log.onErrorEvent("ERROR");
+        assertEquals(1, getRowCount(connection, "event_log"));
+        log.flush();
+        assertEquals(2, getRowCount(connection, "event_log"));
+
+        log.onEvent("DISCARDED");
+        log.clear();
+        log.close();
+        assertEquals(0, getRowCount(connection, "event_log"));
+        assertEquals(0, getRowCount(connection, "messages_log"));
+    }
+
+    public void testFailedBatchIsKeptForRetry() throws Exception {
+        setUpJdbcLog(false, null, 2);
+        Session.registerSession(new Session(new UnitTestApplication(), new MemoryStoreFactory(),
+                sessionID, new DefaultDataDictionaryProvider(), null, logFactory,
+                new DefaultMessageFactory(), 0));
+
+        dropTable(log.getIncomingMessagesTableName());
+        try {
+            log.onIncoming("INCOMING");
+            log.onEvent("EVENT");
+            assertEquals(2, log.getPendingCount());
+            // the batch is still full after the retry
+            log.onEvent("DROPPED");
+            assertEquals(1, log.getDroppedCount());
+        } finally {
+            initializeTableDefinitions(connection);
+        }
+
+        log.flush();
+        assertEquals(1, getRowCount(connection, "messages_log"));
+        assertLogData(connection, 0, sessionID, "INCOMING", log.getIncomingMessagesTableName());
+        assertLogData(connection, 0, sessionID, "EVENT", "event_log");
+        assertEquals(0, log.getDroppedCount());
+
+        // the dropped entries are reported with the next batch
+        log.flush();
+        assertLogData(connection, 0, sessionID,
+                "JdbcLog dropped 1 entries while log entries could not be inserted", "event_log");
+        Session.lookupSession(sessionID).close();
+    }
+
     /**
      * Make sure the logger handles the situation where the underlying JdbcLog is misconfigured
      * (such as we can't connect ot the DB, or the tables are missing) and doesn't try
@@ -113,11 +170,19 @@ public class JdbcLogTest extends TestCase {
     }
 
     private void setUpJdbcLog(boolean filterHeartbeats, DataSource dataSource) throws ClassNotFoundException, SQLException, ConfigError {
+        setUpJdbcLog(filterHeartbeats, dataSource, 1);
+    }
+
+    private void setUpJdbcLog(boolean filterHeartbeats, DataSource dataSource, int batchSize) throws ClassNotFoundException, SQLException, ConfigError {
         connection = JdbcTestSupport.getConnection();
         SessionSettings settings = new SessionSettings();
         if (filterHeartbeats) {
             settings.setBool(JdbcSetting.SETTING_JDBC_LOG_HEARTBEATS, false);
         }
+        if (batchSize > 1) {
+            settings.setLong(JdbcSetting.SETTING_JDBC_LOG_BATCH_SIZE, batchSize);
+            settings.setLong(JdbcSetting.SETTING_JDBC_LOG_FLUSH_INTERVAL, 0);
+        }
         JdbcTestSupport.setHypersonicSettings(settings);
         initializeTableDefinitions(connection);
         logFactory = new JdbcLogFactory(settings);
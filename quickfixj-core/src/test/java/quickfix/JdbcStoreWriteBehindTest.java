@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the JDBC store tests against a write-behind store and checks the
+ * batching on top.
+ */
+public class JdbcStoreWriteBehindTest extends JdbcStoreTest {
+
+    protected void configureSettings(SessionSettings settings) {
+        settings.setBool(JdbcSetting.SETTING_JDBC_STORE_WRITE_BEHIND, true);
+        settings.setLong(JdbcSetting.SETTING_JDBC_STORE_BATCH_SIZE, 10);
+        settings.setLong(JdbcSetting.SETTING_JDBC_STORE_FLUSH_INTERVAL, 0);
+    }
+
+    protected void closeMessageStore(MessageStore store) throws IOException {
+        ((JdbcStore) store).close();
+    }
+
+    public void testChangesAreWrittenOnFlush() throws Exception {
+        JdbcStore store = (JdbcStore) getStore();
+        store.reset();
+        store.set(1, "MESSAGE1");
+        store.incrNextSenderMsgSeqNum();
+        store.set(2, "MESSAGE2");
+        store.incrNextSenderMsgSeqNum();
+        store.incrNextTargetMsgSeqNum();
+
+        JdbcStore reader = (JdbcStore) createStore();
+        assertEquals(1, reader.getNextSenderMsgSeqNum());
+        assertEquals(1, reader.getNextTargetMsgSeqNum());
+
+        store.flush();
+        reader.refresh();
+        assertEquals(3, reader.getNextSenderMsgSeqNum());
+        assertEquals(2, reader.getNextTargetMsgSeqNum());
+        List<String> messages = new ArrayList<String>();
+        reader.get(1, 2, messages);
+        assertEquals(2, messages.size());
+        assertEquals("MESSAGE1", messages.get(0));
+        assertEquals("MESSAGE2", messages.get(1));
+    }
+
+    public void testChangesAreWrittenWhenBatchIsFull() throws Exception {
+        JdbcStore store = (JdbcStore) getStore();
+        store.reset();
+        for (int i = 1; i < 5; i++) {
+            store.set(i, "MESSAGE" + i);
+            store.incrNextSenderMsgSeqNum();
+        }
+        store.set(5, "MESSAGE5");
+
+        JdbcStore reader = (JdbcStore) createStore();
+        assertEquals(1, reader.getNextSenderMsgSeqNum());
+
+        // the tenth change fills the batch
+        store.incrNextSenderMsgSeqNum();
+        reader.refresh();
+        assertEquals(6, reader.getNextSenderMsgSeqNum());
+    }
+
+    public void testGetReturnsPendingMessages() throws Exception {
+        JdbcStore store = (JdbcStore) getStore();
+        store.reset();
+        store.set(1, "MESSAGE1");
+        store.set(1, "MESSAGE1A");
+        store.flush();
+        store.set(1, "MESSAGE1B");
+        store.set(2, "MESSAGE2");
+
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 2, messages);
+        assertEquals(2, messages.size());
+        assertEquals("MESSAGE1B", messages.get(0));
+        assertEquals("MESSAGE2", messages.get(1));
+    }
+
+    public void testSenderSeqNumIsRecoveredFromStoredMessages() throws Exception {
+        JdbcStore store = (JdbcStore) getStore();
+        store.reset();
+        store.set(1, "MESSAGE1");
+        store.incrNextSenderMsgSeqNum();
+        store.set(2, "MESSAGE2");
+        store.flush();
+        // the process dies before the sequence number update is written
+        store.set(3, "MESSAGE3");
+
+        JdbcStore recovered = (JdbcStore) createStore();
+        assertEquals(3, recovered.getNextSenderMsgSeqNum());
+        recovered.flush();
+
+        JdbcStore reader = (JdbcStore) createStore();
+        assertEquals(3, reader.getNextSenderMsgSeqNum());
+    }
+
+    public void testFlushTimer() throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setBool(JdbcSetting.SETTING_JDBC_STORE_WRITE_BEHIND, true);
+        settings.setLong(JdbcSetting.SETTING_JDBC_STORE_FLUSH_INTERVAL, 10);
+        JdbcStoreFactory factory = new JdbcStoreFactory(settings);
+        factory.setDataSource(getDataSource());
+        JdbcStore store = (JdbcStore) factory.create(getSessionID());
+        try {
+            store.reset();
+            store.setNextSenderMsgSeqNum(42);
+
+            JdbcStore reader = (JdbcStore) createStore();
+            for (int i = 0; i < 100 && reader.getNextSenderMsgSeqNum() != 42; i++) {
+                Thread.sleep(10);
+                reader.refresh();
+            }
+            assertEquals(42, reader.getNextSenderMsgSeqNum());
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MappedFileStoreTest extends AbstractMessageStoreTest {
+
+    private String storePath;
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        MappedFileStore store = (MappedFileStore) getStore();
+        try {
+            store.deleteFiles();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    protected MessageStoreFactory getMessageStoreFactory() throws ConfigError, FieldConvertError {
+        SessionSettings settings = new SessionSettings(getConfigurationFileName());
+        storePath = settings.getString(FileStoreFactory.SETTING_FILE_STORE_PATH);
+        settings.setString(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_PATH, storePath);
+        settings.setLong(getSessionID(), MappedFileStoreFactory.SETTING_MAPPED_FILE_STORE_SEGMENT_SIZE, 64 * 1024);
+        settings.setString(getSessionID(), MappedFileStoreFactory.SETTING_MAPPED_FILE_STORE_FORCE, "batch");
+        return new MappedFileStoreFactory(settings);
+    }
+
+    protected Class<?> getMessageStoreClass() {
+        return MappedFileStore.class;
+    }
+
+    protected void closeMessageStore(MessageStore store) throws IOException {
+        ((MappedFileStore) store).close();
+    }
+
+    public void testCloseAndOpen() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        store.setNextSenderMsgSeqNum(123);
+        store.setNextTargetMsgSeqNum(321);
+        store.set(1, "MESSAGE1");
+        store.set(2, "MESSAGE2");
+        store.close();
+        store.initialize(false);
+
+        assertEquals(123, store.getNextSenderMsgSeqNum());
+        assertEquals(321, store.getNextTargetMsgSeqNum());
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 2, messages);
+        assertEquals(2, messages.size());
+        assertEquals("MESSAGE1", messages.get(0));
+        assertEquals("MESSAGE2", messages.get(1));
+
+        // appending continues after the existing records
+        store.set(3, "MESSAGE3");
+        messages.clear();
+        store.get(1, 3, messages);
+        assertEquals(3, messages.size());
+        assertEquals("MESSAGE3", messages.get(2));
+    }
+
+    public void testMessageIndexReset() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        store.set(1, "MESSAGE");
+        store.reset();
+
+        store.set(2, "MESSAGE");
+
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 1, messages);
+
+        assertEquals(0, messages.size());
+    }
+
+    public void testSegmentRollover() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append('X');
+        }
+        final String body = sb.toString();
+        for (int i = 1; i <= 200; i++) {
+            store.set(i, i + body);
+        }
+        assertTrue(store.getSegmentCount() > 1);
+
+        store.close();
+        store.initialize(false);
+
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 200, messages);
+        assertEquals(200, messages.size());
+        for (int i = 1; i <= 200; i++) {
+            assertEquals(i + body, messages.get(i - 1));
+        }
+    }
+
+    public void testMessageLargerThanSegment() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        try {
+            store.set(1, new String(new char[store.getSegmentSize()]));
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testRewrittenSequenceReturnsLatest() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        store.set(5, "FIRST");
+        store.set(5, "SECOND");
+        store.set(3, "THIRD");
+
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 10, messages);
+        assertEquals(2, messages.size());
+        assertEquals("THIRD", messages.get(0));
+        assertEquals("SECOND", messages.get(1));
+
+        store.close();
+        store.initialize(false);
+        messages.clear();
+        store.get(5, 5, messages);
+        assertEquals("SECOND", messages.get(0));
+    }
+
+    public void testGetMessageBuffers() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        store.set(1, "MESSAGE1");
+        store.set(3, "MESSAGE3");
+
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        store.getMessageBuffers(1, 3, buffers);
+        assertEquals(2, buffers.size());
+        assertTrue(buffers.get(0).isReadOnly());
+        assertEquals("MESSAGE1", toString(buffers.get(0)));
+        assertEquals("MESSAGE3", toString(buffers.get(1)));
+    }
+
+    public void testSequenceGapDoesNotGrowIndex() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        store.set(1, "MESSAGE1");
+        store.set(Integer.MAX_VALUE - 1, "MESSAGE2");
+        assertEquals(2, store.getIndexPageCount());
+
+        List<String> messages = new ArrayList<String>();
+        store.get(Integer.MAX_VALUE - 1, Integer.MAX_VALUE - 1, messages);
+        assertEquals("MESSAGE2", messages.get(0));
+    }
+
+    public void testDamagedRecordIsTruncated() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        store.set(1, "MESSAGE1");
+        store.set(2, "MESSAGE2");
+        store.set(3, "MESSAGE3");
+        store.close();
+
+        // second record: header of 12 bytes after the first record of 12 + 8 bytes
+        RandomAccessFile file = new RandomAccessFile(store.getMsgFileName(), "rw");
+        try {
+            file.seek(20 + 12 + 2);
+            file.write('X');
+        } finally {
+            file.close();
+        }
+
+        store.initialize(false);
+        List<String> messages = new ArrayList<String>();
+        store.get(1, 3, messages);
+        assertEquals(1, messages.size());
+        assertEquals("MESSAGE1", messages.get(0));
+
+        // the damaged tail is cleared so new records are found after a reopen
+        store.set(2, "MESSAGE2");
+        store.close();
+        store.initialize(false);
+        messages.clear();
+        store.get(1, 3, messages);
+        assertEquals(2, messages.size());
+        assertEquals("MESSAGE2", messages.get(1));
+    }
+
+    public void testFilesCanBeDeletedAfterClose() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        store.set(1, "MESSAGE1");
+        store.close();
+
+        assertTrue(new File(store.getMsgFileName()).delete());
+        assertTrue(new File(store.getStateFileName()).delete());
+        store.initialize(false);
+    }
+
+    public void testBatchForce() throws Exception {
+        MappedFileStore store = (MappedFileStore) getStore();
+        for (int i = 1; i < MappedFileStoreFactory.DEFAULT_FORCE_BATCH_SIZE; i++) {
+            store.set(i, "MESSAGE");
+        }
+        assertTrue(store.isDirty());
+        store.set(MappedFileStoreFactory.DEFAULT_FORCE_BATCH_SIZE, "MESSAGE");
+        assertFalse(store.isDirty());
+    }
+
+    public void testMessageForce() throws Exception {
+        MappedFileStore store = new MappedFileStore(storePath, getSessionID(), 64 * 1024,
+                MappedFileStore.ForcePolicy.MESSAGE, 1, 0);
+        try {
+            store.set(1, "MESSAGE");
+            assertFalse(store.isDirty());
+            store.incrNextSenderMsgSeqNum();
+            assertFalse(store.isDirty());
+        } finally {
+            store.close();
+        }
+    }
+
+    public void testTimerForce() throws Exception {
+        MappedFileStore store = new MappedFileStore(storePath, getSessionID(), 64 * 1024,
+                MappedFileStore.ForcePolicy.TIMER, 1, 10);
+        try {
+            store.set(1, "MESSAGE");
+            for (int i = 0; i < 100 && store.isDirty(); i++) {
+                Thread.sleep(10);
+            }
+            assertFalse(store.isDirty());
+        } finally {
+            store.close();
+        }
+    }
+
+    public void testInvalidForcePolicy() throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setString(getSessionID(), FileStoreFactory.SETTING_FILE_STORE_PATH, storePath);
+        settings.setString(getSessionID(), MappedFileStoreFactory.SETTING_MAPPED_FILE_STORE_FORCE, "never");
+        try {
+            new MappedFileStoreFactory(settings).create(getSessionID());
+            fail("expected exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ConfigError);
+        }
+    }
+
+    private static String toString(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return new String(data);
+    }
+}
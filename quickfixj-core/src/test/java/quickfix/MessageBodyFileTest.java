@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class MessageBodyFileTest extends TestCase {
+
+    private File file;
+    private MessageBodyFile body;
+    private final List<long[]> positions = new ArrayList<long[]>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("qfj-body", ".body");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SystemTime.setTimeSource(null);
+        if (body != null) {
+            body.close();
+        }
+        for (final File f : MessageBodyFile.listFiles(file.getPath())) {
+            f.delete();
+        }
+        super.tearDown();
+    }
+
+    public void testSingleFile() throws Exception {
+        body = new MessageBodyFile(file.getPath(), "rw", MessageBodyFile.Rollover.NONE);
+        append(100);
+
+        assertEquals(1, body.getSegmentCount());
+        assertTrue(file.exists());
+        assertMessages(1, 100);
+    }
+
+    public void testSizeRollover() throws Exception {
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(100, 0, 0,
+                false));
+        append(100);
+
+        assertTrue(body.getSegmentCount() > 1);
+        assertFalse(file.exists());
+        assertMessages(1, 100);
+
+        body.close();
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(100, 0, 0,
+                false));
+        append(101, 1);
+        assertMessages(1, 101);
+    }
+
+    public void testIntervalRollover() throws Exception {
+        final MockSystemTimeSource timeSource = new MockSystemTimeSource(1000);
+        SystemTime.setTimeSource(timeSource);
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(0, 60000, 0,
+                false));
+        append(10);
+        assertEquals(1, body.getSegmentCount());
+
+        timeSource.increment(60000);
+        append(11, 1);
+        assertEquals(2, body.getSegmentCount());
+        assertMessages(1, 11);
+    }
+
+    public void testRetention() throws Exception {
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(100, 0, 2,
+                false));
+        append(100);
+
+        assertEquals(3, body.getSegmentCount());
+        final List<byte[]> messages = new ArrayList<byte[]>();
+        body.read(positions, messages);
+        assertTrue(messages.size() < 100);
+        // the newest messages are kept
+        assertEquals("MESSAGE100", new String(messages.get(messages.size() - 1), "US-ASCII"));
+        assertEquals(3, MessageBodyFile.listFiles(file.getPath()).size());
+    }
+
+    public void testCompression() throws Exception {
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(100, 0, 0,
+                true));
+        append(100);
+        final int segmentCount = body.getSegmentCount();
+
+        for (int i = 0; i < 500 && countCompressed() < segmentCount - 1; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(segmentCount - 1, countCompressed());
+        assertMessages(1, 100);
+
+        body.close();
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(100, 0, 0,
+                true));
+        assertMessages(1, 100);
+    }
+
+    public void testCompressedMessagesInAnyOrder() throws Exception {
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(200, 0, 0,
+                true));
+        append(100);
+        for (int i = 0; i < 500 && countCompressed() < body.getSegmentCount() - 1; i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(countCompressed() > 0);
+
+        // messages are returned in the requested order, including repeats
+        final List<long[]> requested = new ArrayList<long[]>();
+        requested.add(positions.get(40));
+        requested.add(positions.get(2));
+        requested.add(positions.get(40));
+        requested.add(positions.get(99));
+        requested.add(positions.get(0));
+        final List<byte[]> messages = new ArrayList<byte[]>();
+        body.read(requested, messages);
+        assertEquals(5, messages.size());
+        assertEquals("MESSAGE41", new String(messages.get(0), "US-ASCII"));
+        assertEquals("MESSAGE3", new String(messages.get(1), "US-ASCII"));
+        assertEquals("MESSAGE41", new String(messages.get(2), "US-ASCII"));
+        assertEquals("MESSAGE100", new String(messages.get(3), "US-ASCII"));
+        assertEquals("MESSAGE1", new String(messages.get(4), "US-ASCII"));
+    }
+
+    public void testReadWhileSegmentsAreCompressed() throws Exception {
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(100, 0, 0,
+                true));
+        append(100);
+        final List<long[]> written = new ArrayList<long[]>(positions);
+        final Throwable[] failure = new Throwable[1];
+        final Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int n = 0; n < 200; n++) {
+                        final List<byte[]> messages = new ArrayList<byte[]>();
+                        body.read(written, messages);
+                        assertEquals(100, messages.size());
+                        assertEquals("MESSAGE1", new String(messages.get(0), "US-ASCII"));
+                    }
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        };
+        reader.start();
+        // segments are started and compressed while the other thread reads
+        append(101, 400);
+        reader.join(30000);
+        assertFalse(reader.isAlive());
+        if (failure[0] != null) {
+            throw new AssertionError(failure[0]);
+        }
+        assertMessages(1, 500);
+    }
+
+    public void testSingleFileBecomesFirstSegment() throws Exception {
+        body = new MessageBodyFile(file.getPath(), "rw", MessageBodyFile.Rollover.NONE);
+        append(10);
+        body.close();
+
+        body = new MessageBodyFile(file.getPath(), "rw", new MessageBodyFile.Rollover(100, 0, 0,
+                false));
+        assertFalse(file.exists());
+        assertMessages(1, 10);
+        append(11, 20);
+        assertTrue(body.getSegmentCount() > 1);
+        assertMessages(1, 30);
+    }
+
+    private void append(int count) throws Exception {
+        append(1, count);
+    }
+
+    private void append(int first, int count) throws Exception {
+        for (int i = first; i < first + count; i++) {
+            final byte[] data = ("MESSAGE" + i).getBytes("US-ASCII");
+            positions.add(new long[] { body.append(data, 0, data.length), data.length });
+        }
+    }
+
+    private void assertMessages(int first, int last) throws Exception {
+        final List<byte[]> messages = new ArrayList<byte[]>();
+        body.read(positions.subList(first - 1, last), messages);
+        assertEquals(last - first + 1, messages.size());
+        for (int i = first; i <= last; i++) {
+            assertEquals("MESSAGE" + i, new String(messages.get(i - first), "US-ASCII"));
+        }
+    }
+
+    private int countCompressed() {
+        int count = 0;
+        for (final File f : MessageBodyFile.listFiles(file.getPath())) {
+            if (f.getName().endsWith(".gz")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
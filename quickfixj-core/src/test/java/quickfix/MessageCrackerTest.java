@@ -20,8 +20,10 @@
 package quickfix;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.stub;
 
@@ -36,6 +38,7 @@ import quickfix.field.BeginString;
 import quickfix.field.DefaultApplVerID;
 import quickfix.field.EncryptMethod;
 import quickfix.field.HeartBtInt;
+import quickfix.field.MsgType;
 import quickfix.field.SenderCompID;
 import quickfix.field.TargetCompID;
 
@@ -274,6 +277,44 @@ public class MessageCrackerTest {
         assertTrue(messageCracked > 0);
     }
 
+    @Test
+    public void testGeneratedCracker() throws Exception {
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER",
+                "TARGET");
+        quickfix.fix44.MessageCracker cracker = new quickfix.fix44.MessageCracker() {
+            @Override
+            public void onMessage(quickfix.fix44.Email message, SessionID sessionID) {
+                messageCracked += 1;
+            }
+
+            @Override
+            public void onMessage(quickfix.fix44.TradeCaptureReport message,
+                    SessionID sessionID) {
+                messageCracked += 10;
+            }
+
+            @Override
+            public void onMessage(quickfix.fix44.TradeCaptureReportAck message,
+                    SessionID sessionID) {
+                messageCracked += 100;
+            }
+        };
+
+        cracker.crack(createFix44Email(), sessionID);
+        cracker.crack(new quickfix.fix44.TradeCaptureReport(), sessionID);
+        cracker.crack(new quickfix.fix44.TradeCaptureReportAck(), sessionID);
+        assertEquals(111, messageCracked);
+
+        quickfix.fix44.Message unknown = new quickfix.fix44.Message();
+        unknown.getHeader().setString(MsgType.FIELD, "AE1");
+        try {
+            cracker.crack(unknown, sessionID);
+            fail("expected UnsupportedMessageType");
+        } catch (UnsupportedMessageType e) {
+            // expected
+        }
+    }
+
     private class MessageHandler {
         @MessageCracker.Handler
         public void handle(quickfix.fixt11.Logon logon, SessionID sessionID) {
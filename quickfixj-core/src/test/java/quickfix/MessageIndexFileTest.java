@@ -0,0 +1,264 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class MessageIndexFileTest extends TestCase {
+
+    private File file;
+    private MessageIndexFile index;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("qfj-index", ".index");
+        index = new MessageIndexFile(file.getPath(), "rw");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        index.close();
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testPutAndGet() throws Exception {
+        assertTrue(index.isEmpty());
+        assertNull(index.get(1));
+
+        index.put(10, 0, 5);
+        index.put(12, 5, 7);
+
+        assertEquals(10, index.getFirstSequence());
+        assertEquals(12, index.getLastSequence());
+        assertPosition(0, 5, index.get(10));
+        assertNull(index.get(11));
+        assertPosition(5, 7, index.get(12));
+        assertNull(index.get(13));
+
+        index.put(10, 12, 0);
+        assertPosition(12, 0, index.get(10));
+    }
+
+    public void testRangeRead() throws Exception {
+        for (int i = 1; i <= 10000; i++) {
+            if (i % 3 != 0) {
+                index.put(i, i * 100L, i);
+            }
+        }
+
+        final TreeMap<Long, long[]> positions = new TreeMap<Long, long[]>();
+        index.get(4000, 20000, positions);
+        assertEquals(4001, positions.size());
+        assertEquals(Long.valueOf(4000), positions.firstKey());
+        assertEquals(Long.valueOf(10000), positions.lastKey());
+        assertFalse(positions.containsKey(4002L));
+        assertPosition(400000, 4000, positions.get(4000L));
+
+        positions.clear();
+        index.get(20000, 30000, positions);
+        assertTrue(positions.isEmpty());
+    }
+
+    public void testLowerSequenceAddsBlock() throws Exception {
+        for (int i = 5000; i < 10000; i++) {
+            index.put(i, i, 1);
+        }
+        final long length = file.length();
+        index.put(3, 3, 1);
+
+        assertEquals(3, index.getFirstSequence());
+        assertEquals(9999, index.getLastSequence());
+        assertPosition(3, 1, index.get(3));
+        assertNull(index.get(4));
+        assertPosition(5000, 1, index.get(5000));
+        assertPosition(9999, 1, index.get(9999));
+        // the existing entries are not moved
+        assertTrue(file.length() - length < 100000);
+    }
+
+    public void testSequenceGap() throws Exception {
+        index.put(1, 10, 1);
+        index.put(1 << 30, 20, 2);
+        index.put(Integer.MAX_VALUE, 30, 3);
+        assertTrue(file.length() < 1000000);
+
+        assertEquals(1, index.getFirstSequence());
+        assertEquals(Integer.MAX_VALUE, index.getLastSequence());
+        assertNull(index.get(2));
+        assertNull(index.get(1 << 29));
+        assertPosition(20, 2, index.get(1 << 30));
+
+        final TreeMap<Long, long[]> positions = new TreeMap<Long, long[]>();
+        index.get(1, Integer.MAX_VALUE, positions);
+        assertEquals(3, positions.size());
+        assertPosition(30, 3, positions.get((long) Integer.MAX_VALUE));
+
+        final long[] offsets = new long[10];
+        final int[] lengths = new int[10];
+        index.get(Integer.MAX_VALUE - 9, Integer.MAX_VALUE, offsets, lengths);
+        assertEquals(-1, lengths[0]);
+        assertEquals(30, offsets[9]);
+        assertEquals(3, lengths[9]);
+
+        index.close();
+        index = new MessageIndexFile(file.getPath(), "rw");
+        assertEquals(1, index.getFirstSequence());
+        assertEquals(Integer.MAX_VALUE, index.getLastSequence());
+        assertPosition(20, 2, index.get(1 << 30));
+    }
+
+    public void testReopen() throws Exception {
+        index.put(7, 70, 3);
+        index.put(9, 90, 4);
+        index.close();
+        index = new MessageIndexFile(file.getPath(), "rw");
+
+        assertEquals(7, index.getFirstSequence());
+        assertEquals(9, index.getLastSequence());
+        assertPosition(90, 4, index.get(9));
+
+        // a block cut short by a crash is ignored and replaced
+        index.close();
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() + 100);
+        raf.close();
+        index = new MessageIndexFile(file.getPath(), "rw");
+        assertEquals(9, index.getLastSequence());
+        index.put(100000, 100, 5);
+        assertPosition(100, 5, index.get(100000));
+        assertPosition(90, 4, index.get(9));
+
+        index.clear();
+        assertTrue(index.isEmpty());
+        index.put(1, 0, 2);
+        assertEquals(1, index.getFirstSequence());
+        assertPosition(0, 2, index.get(1));
+    }
+
+    public void testMappedReads() throws Exception {
+        index.close();
+        index = new MessageIndexFile(file.getPath(), "rw", true);
+        index.put(1, 0, 10);
+        assertPosition(0, 10, index.get(1));
+
+        // entries written after the file was mapped are read from a new mapping
+        for (int i = 2; i <= 5000; i++) {
+            index.put(i, i * 10L, 10);
+        }
+        assertPosition(50000, 10, index.get(5000));
+        final long[] offsets = new long[5000];
+        final int[] lengths = new int[5000];
+        index.get(1, 5000, offsets, lengths);
+        assertEquals(0, offsets[0]);
+        assertEquals(49990, offsets[4998]);
+        assertEquals(10, lengths[4999]);
+    }
+
+    public void testMappedClear() throws Exception {
+        index.close();
+        index = new MessageIndexFile(file.getPath(), "rw", true);
+        index.put(1, 0, 10);
+        assertPosition(0, 10, index.get(1));
+        for (int i = 2; i <= 5000; i++) {
+            index.put(i, i * 10L, 10);
+        }
+        assertPosition(50000, 10, index.get(5000));
+
+        // the mappings are released, so the file can be truncated
+        index.clear();
+        assertEquals(0, file.length());
+        assertNull(index.get(1));
+        index.put(1, 20, 30);
+        assertPosition(20, 30, index.get(1));
+    }
+
+    public void testInvalidFile() throws Exception {
+        index.close();
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write("not an index file".getBytes("US-ASCII"));
+        out.close();
+        try {
+            new MessageIndexFile(file.getPath(), "rw");
+            fail("expected exception");
+        } catch (IOException e) {
+            // expected
+        }
+        file.delete();
+        index = new MessageIndexFile(file.getPath(), "rw");
+    }
+
+    public void testConvert() throws Exception {
+        index.close();
+        final File headerFile = File.createTempFile("qfj-index", ".header");
+        final DataOutputStream header = new DataOutputStream(new FileOutputStream(headerFile));
+        try {
+            for (int i = 1; i <= 10000; i++) {
+                writeRecord(header, i, i * 100L, i % 50);
+            }
+            // a rewritten message, a jump back into an earlier block and a gap
+            writeRecord(header, 5, 7, 3);
+            writeRecord(header, 5000, 9, 4);
+            writeRecord(header, 100000, 11, 5);
+        } finally {
+            header.close();
+        }
+
+        MessageIndexFile.convert(headerFile, file.getPath());
+        assertFalse(headerFile.exists());
+        final File backupFile = MessageIndexFile.getBackupFile(headerFile);
+        assertTrue(backupFile.delete());
+
+        // blocks 0, 1, 2 and 24 after the file header
+        assertEquals(8 + 4 * (4 + 4096 * 12), file.length());
+        index = new MessageIndexFile(file.getPath(), "rw");
+        assertEquals(1, index.getFirstSequence());
+        assertEquals(100000, index.getLastSequence());
+        assertPosition(100, 1, index.get(1));
+        assertPosition(7, 3, index.get(5));
+        assertPosition(9, 4, index.get(5000));
+        assertPosition(409500, 45, index.get(4095));
+        assertPosition(409600, 46, index.get(4096));
+        assertPosition(1000000, 0, index.get(10000));
+        assertNull(index.get(10001));
+        assertPosition(11, 5, index.get(100000));
+    }
+
+    private static void writeRecord(DataOutputStream header, int sequence, long offset,
+            int length) throws IOException {
+        header.writeInt(sequence);
+        header.writeLong(offset);
+        header.writeInt(length);
+    }
+
+    private static void assertPosition(long offset, int length, long[] position) {
+        assertNotNull(position);
+        assertEquals(offset, position[0]);
+        assertEquals(length, position[1]);
+    }
+}
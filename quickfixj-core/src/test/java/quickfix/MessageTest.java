@@ -23,6 +23,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -59,6 +60,7 @@ import quickfix.field.HandlInst;
 import quickfix.field.Headline;
 import quickfix.field.HopCompID;
 import quickfix.field.IOIid;
+import quickfix.field.LastPx;
 import quickfix.field.LeavesQty;
 import quickfix.field.ListID;
 import quickfix.field.ListSeqNo;
@@ -648,6 +650,107 @@ public class MessageTest {
                 actualMessageString.contains("453=2\001448=8\001447=D\001452=4\001448=AAA35354\001447=D\001452=3"));
     }
 
+    @Test
+    public void testFromBytes() throws Exception {
+        final String messageString = "8=FIX.4.4\0019=171\00135=D\00149=SenderCompId\00156=TargetCompId\001" +
+            "11=183339\00122=8\00138=1\00140=2\00144=12\00148=BHP\00154=2\00155=BHP\00159=1\00160=20060223-22:38:33\001" +
+            "526=3620\001453=2\001448=8\001447=D\001452=4\001448=AAA35354\001447=D\001452=3\00110=168\001";
+        final DataDictionary dataDictionary = DataDictionaryTest.getDictionary();
+        final byte[] data = ("garbage" + messageString).getBytes(CharsetSupport.getCharsetInstance());
+
+        final Message fromString = new quickfix.fix44.NewOrderSingle();
+        fromString.fromString(messageString, dataDictionary, true);
+        final Message fromBytes = new quickfix.fix44.NewOrderSingle();
+        fromBytes.fromBytes(data, 7, data.length - 7, dataDictionary, true);
+
+        assertNull(fromBytes.getException());
+        assertEquals(fromString.toString(), fromBytes.toString());
+        assertEquals(messageString, fromBytes.getMessageData());
+        assertEquals(1, fromBytes.getInt(OrderQty.FIELD));
+        assertEquals(new BigDecimal("12"), fromBytes.getDecimal(Price.FIELD));
+        assertEquals("SenderCompId", fromBytes.getHeader().getString(SenderCompID.FIELD));
+        assertEquals(2, fromBytes.getGroupCount(quickfix.field.NoPartyIDs.FIELD));
+        assertEquals("AAA35354", fromBytes.getGroup(2, quickfix.field.NoPartyIDs.FIELD).getString(PartyID.FIELD));
+    }
+
+    @Test
+    public void testFromBytesDataField() throws Exception {
+        // data fields may contain SOH and their length is counted in bytes
+        final Message message = new Message();
+        message.getHeader().setString(BeginString.FIELD, FixVersions.BEGINSTRING_FIX44);
+        message.getHeader().setString(MsgType.FIELD, MsgType.LOGON);
+        message.setInt(RawDataLength.FIELD, 5);
+        message.setString(RawData.FIELD, "a\001b=c");
+        final byte[] data = message.toString().getBytes(CharsetSupport.getCharsetInstance());
+
+        final Message parsed = new Message();
+        parsed.fromBytes(data, 0, data.length, DataDictionaryTest.getDictionary(), true);
+
+        assertEquals("a\001b=c", parsed.getString(RawData.FIELD));
+        assertEquals(message.toString(), parsed.toString());
+    }
+
+    @Test
+    public void testFixedPointDecimalFields() throws Exception {
+        final Message message = new Message();
+        message.getHeader().setString(BeginString.FIELD, FixVersions.BEGINSTRING_FIX44);
+        message.getHeader().setString(MsgType.FIELD, MsgType.EXECUTION_REPORT);
+        message.setDecimal(Price.FIELD, 123450, 4);
+        message.setDecimal(OrderQty.FIELD, new FixedPointDecimal(-5, 0));
+        message.setField(new LastPx(105, 3));
+        message.setString(CumQty.FIELD, "1E3");
+        assertEquals("12.3450", message.getString(Price.FIELD));
+        assertEquals("0.105", message.getString(LastPx.FIELD));
+
+        final byte[] data = message.toString().getBytes(CharsetSupport.getCharsetInstance());
+        final Message parsed = new Message();
+        parsed.fromBytes(data, 0, data.length, null, false);
+        for (Message m : new Message[] { message, parsed }) {
+            final FixedPointDecimal value = new FixedPointDecimal();
+            assertSame(value, m.getDecimal(Price.FIELD, value));
+            assertEquals(new FixedPointDecimal(123450, 4), value);
+            assertEquals(12.345, m.getDouble(Price.FIELD), 0);
+            assertEquals(new FixedPointDecimal(-5, 0), m.getDecimal(OrderQty.FIELD, value));
+            assertEquals(105, m.getDecimal(LastPx.FIELD, value).getMantissa(6) / 1000);
+            try {
+                m.getDecimal(CumQty.FIELD, value);
+                fail("FieldException expected");
+            } catch (final FieldException e) {
+                assertEquals(CumQty.FIELD, e.getField());
+            }
+            assertEquals(new BigDecimal("1E3"), m.getDecimal(CumQty.FIELD));
+        }
+    }
+
+    @Test
+    public void testFromBytesInvalid() throws Exception {
+        final byte[] badChecksum = "8=FIX.4.4\0019=5\00135=0\00110=000\001".getBytes();
+        try {
+            new Message().fromBytes(badChecksum, 0, badChecksum.length, DataDictionaryTest.getDictionary(), true);
+            fail("InvalidMessage expected");
+        } catch (final InvalidMessage e) {
+            assertTrue(e.getMessage().contains("Expected CheckSum="));
+        }
+
+        final byte[] badTag = "8=FIX.4.4\0019=5\00135=0\001x1=2\00110=000\001".getBytes();
+        try {
+            new Message().fromBytes(badTag, 0, badTag.length, null, false);
+            fail("InvalidMessage expected");
+        } catch (final InvalidMessage e) {
+            assertTrue(e.getMessage().startsWith("Bad tag format"));
+        }
+
+        final byte[] badInt = "8=FIX.4.4\0019=5\00135=0\00134=x\00110=000\001".getBytes();
+        final Message message = new Message();
+        message.fromBytes(badInt, 0, badInt.length, null, false);
+        try {
+            message.getHeader().getInt(MsgSeqNum.FIELD);
+            fail("FieldException expected");
+        } catch (final FieldException e) {
+            assertEquals(SessionRejectReason.INCORRECT_DATA_FORMAT_FOR_VALUE, e.getSessionRejectReason());
+        }
+    }
+
     @Test
     public void testHeaderFieldsMissing() throws Exception {
         try {
@@ -146,6 +146,42 @@ public class MessageUtilsTest extends TestCase {
         assertThat(message, is(notNullValue()));
     }
 
+    public void testGetStringFieldFromBytes() throws Exception {
+        byte[] data = ("8=FIX.4.0\0019=56\00135=A\00134=1\00149=TW\001" +
+            "52=20060118-16:34:19\00156=ISLD\00198=0\001108=2\00110=223\001").getBytes();
+        assertEquals("A", MessageUtils.getStringField(data, 0, data.length, 35));
+        assertEquals("A", MessageUtils.getMessageType(data, 0, data.length));
+        assertEquals("2", MessageUtils.getStringField(data, 0, data.length, 108));
+        assertEquals("223", MessageUtils.getStringField(data, 0, data.length, 10));
+        assertNull(MessageUtils.getStringField(data, 0, data.length, 8000));
+        assertNull(MessageUtils.getStringField(data, 0, data.length - 1, 10));
+    }
+
+    public void testChecksumFromBytes() throws Exception {
+        String messageString = "8=FIX.4.0\0019=56\00135=A\00134=1\00149=TW\001" +
+            "52=20060118-16:34:19\00156=ISLD\00198=0\001108=2\00110=223\001";
+        byte[] data = ("XX" + messageString).getBytes();
+        assertEquals(MessageUtils.checksum(messageString),
+                MessageUtils.checksum(data, 2, data.length - 2, true));
+    }
+
+    public void testParseBytes() throws Exception {
+        Session mockSession = mock(Session.class);
+        DataDictionaryProvider mockDataDictionaryProvider = mock(DataDictionaryProvider.class);
+        stub(mockSession.getDataDictionaryProvider()).toReturn(mockDataDictionaryProvider);
+        stub(mockSession.getMessageFactory()).toReturn(new DefaultMessageFactory());
+
+        quickfix.fixt11.Logon logon = new quickfix.fixt11.Logon(new EncryptMethod(EncryptMethod.NONE_OTHER), new HeartBtInt(30),
+                new DefaultApplVerID(ApplVerID.FIX42));
+        byte[] data = logon.toString().getBytes();
+
+        Message message = MessageUtils.parse(mockSession, data, 0, data.length);
+
+        assertThat((quickfix.fixt11.Logon)message, is(quickfix.fixt11.Logon.class));
+        assertEquals(30, message.getInt(HeartBtInt.FIELD));
+        assertEquals(logon.toString(), message.toString());
+    }
+
     public void testLegacyParse() throws Exception {
         String data = "8=FIX.4.4\0019=309\00135=8\00149=ASX\00156=CL1_FIX44\00134=4\001" +
             "52=20060324-01:05:58\00117=X-B-WOW-1494E9A0:58BD3F9D-1109\001150=D\001" +
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.After;
+import org.junit.Test;
+import org.quickfixj.CharsetSupport;
+
+import quickfix.field.BodyLength;
+import quickfix.field.CheckSum;
+import quickfix.field.Headline;
+import quickfix.field.HopCompID;
+import quickfix.field.MsgSeqNum;
+import quickfix.field.NoHops;
+import quickfix.field.NoPartyIDs;
+import quickfix.field.PartyID;
+import quickfix.field.PartyIDSource;
+import quickfix.field.PartyRole;
+import quickfix.field.RawData;
+import quickfix.field.RawDataLength;
+import quickfix.field.SenderCompID;
+import quickfix.field.TargetCompID;
+import quickfix.fix44.News;
+import quickfix.fix44.NewOrderSingle;
+
+public class MessageWriterTest {
+
+    @After
+    public void tearDown() throws Exception {
+        CharsetSupport.setCharset(CharsetSupport.getDefaultCharset());
+    }
+
+    @Test
+    public void testWriteSameAsToString() throws Exception {
+        final NewOrderSingle message = createOrder();
+        assertWrittenAsString(message, ByteBuffer.allocate(1024));
+    }
+
+    @Test
+    public void testWriteSetsBodyLengthAndCheckSum() throws Exception {
+        final NewOrderSingle message = createOrder();
+        final String expected = message.toString();
+        message.getHeader().removeField(BodyLength.FIELD);
+        message.getTrailer().setString(CheckSum.FIELD, "000");
+
+        new MessageWriter(ByteBuffer.allocate(1024)).write(message);
+
+        assertEquals(expected, message.toString());
+        assertEquals(message.bodyLength(), message.getHeader().getInt(BodyLength.FIELD));
+    }
+
+    @Test
+    public void testWriteExpandsBuffer() throws Exception {
+        final NewOrderSingle message = createOrder();
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        final MessageWriter writer = new MessageWriter(buffer);
+
+        final ByteBuffer written = writer.write(message);
+
+        assertNotSame(buffer, written);
+        assertSame(written, writer.getBuffer());
+        assertEquals(message.toString(), decode(written, CharsetSupport.getCharsetInstance()));
+    }
+
+    @Test
+    public void testWriteAfterExistingContent() throws Exception {
+        final ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.put("prefix".getBytes());
+        final Message message = createOrder();
+
+        final ByteBuffer written = new MessageWriter(buffer).write(message);
+
+        assertTrue(written.position() >= 6);
+        assertEquals("prefix", new String(written.array(), 0, 6));
+        assertEquals(message.toString(), decode(written, CharsetSupport.getCharsetInstance()));
+    }
+
+    @Test
+    public void testWriteGroupsAndDataFields() throws Exception {
+        final Message message = new Message();
+        message.getHeader().setString(quickfix.field.BeginString.FIELD, FixVersions.BEGINSTRING_FIX44);
+        message.getHeader().setString(quickfix.field.MsgType.FIELD, "B");
+        final Group hop = new Group(NoHops.FIELD, HopCompID.FIELD);
+        hop.setString(HopCompID.FIELD, "HOP");
+        message.getHeader().addGroup(hop);
+        message.setString(Headline.FIELD, "headline");
+        message.setInt(RawDataLength.FIELD, 5);
+        message.setString(RawData.FIELD, "a\001b=c");
+
+        assertWrittenAsString(message, ByteBuffer.allocate(8));
+        assertEquals(1, message.getHeader().getGroupCount(NoHops.FIELD));
+    }
+
+    @Test
+    public void testWriteParsedMessage() throws Exception {
+        final String messageString = "8=FIX.4.4\0019=171\00135=D\00149=SenderCompId\00156=TargetCompId\001"
+                + "11=183339\00122=8\00138=1\00140=2\00144=12\00148=BHP\00154=2\00155=BHP\00159=1\00160=20060223-22:38:33\001"
+                + "526=3620\001453=2\001448=8\001447=D\001452=4\001448=AAA35354\001447=D\001452=3\00110=168\001";
+        final byte[] data = messageString.getBytes(CharsetSupport.getCharsetInstance());
+        final Message message = new NewOrderSingle();
+        message.fromBytes(data, 0, data.length, DataDictionaryTest.getDictionary(), true);
+
+        final ByteBuffer written = new MessageWriter(ByteBuffer.allocate(64)).write(message);
+
+        assertEquals(messageString, decode(written, CharsetSupport.getCharsetInstance()));
+    }
+
+    @Test
+    public void testWriteMultiByteCharset() throws Exception {
+        CharsetSupport.setCharset("UTF-8");
+        final News news = new News();
+        news.getHeader().setString(SenderCompID.FIELD, "SENDER");
+        news.getHeader().setString(TargetCompID.FIELD, "TARGET");
+        news.set(new Headline("\u6D4B\u9A8C\u6570\u636E \u00E4bcf\u00F6d\u00E7\u00E9"));
+
+        final Charset charset = CharsetSupport.getCharsetInstance();
+        final ByteBuffer written = new MessageWriter(ByteBuffer.allocate(1024), charset).write(news);
+        final byte[] bytes = new byte[written.remaining()];
+        written.get(bytes);
+
+        assertArrayEquals(news.toString().getBytes(charset), bytes);
+        assertEquals(MessageUtils.checksum(bytes, 0, bytes.length, true),
+                news.getTrailer().getInt(CheckSum.FIELD));
+    }
+
+    @Test
+    public void testWriteUnmappableCharacters() throws Exception {
+        final News news = new News();
+        news.set(new Headline("\u6D4B\u00E4"));
+        final Charset charset = Charset.forName("US-ASCII");
+
+        final ByteBuffer written = new MessageWriter(ByteBuffer.allocate(1024), charset).write(news);
+        final byte[] bytes = new byte[written.remaining()];
+        written.get(bytes);
+
+        assertTrue(new String(bytes, charset).contains("\001148=??\001"));
+        assertEquals(MessageUtils.checksum(bytes, 0, bytes.length, true),
+                news.getTrailer().getInt(CheckSum.FIELD));
+    }
+
+    @Test
+    public void testWriteEncodedFields() throws Exception {
+        final NewOrderSingle message = createOrder();
+        final Charset charset = CharsetSupport.getCharsetInstance();
+        message.getHeader().setField(new EncodedStringField(quickfix.field.BeginString.FIELD,
+                FixVersions.BEGINSTRING_FIX44, charset));
+        message.getHeader().setField(new EncodedStringField(SenderCompID.FIELD, "SENDER", charset));
+        message.getHeader().setField(new EncodedStringField(TargetCompID.FIELD, "TARGET", charset));
+        assertWrittenAsString(message, ByteBuffer.allocate(1024));
+
+        final ByteBuffer written = new MessageWriter(ByteBuffer.allocate(1024)).write(message);
+        final byte[] bytes = new byte[written.remaining()];
+        written.get(bytes);
+        assertEquals(MessageUtils.checksum(bytes, 0, bytes.length, true),
+                message.getTrailer().getInt(CheckSum.FIELD));
+    }
+
+    @Test
+    public void testWriteEncodedFieldsWithOtherCharset() throws Exception {
+        final News news = new News(new Headline("\u00E4bc"));
+        news.getHeader().setField(new EncodedStringField(SenderCompID.FIELD, "S\u00E4NDER",
+                Charset.forName("ISO-8859-1")));
+        CharsetSupport.setCharset("UTF-8");
+
+        final Charset charset = CharsetSupport.getCharsetInstance();
+        final ByteBuffer written = new MessageWriter(ByteBuffer.allocate(1024), charset).write(news);
+        final byte[] bytes = new byte[written.remaining()];
+        written.get(bytes);
+
+        assertArrayEquals(news.toString().getBytes(charset), bytes);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testEncodedFieldCannotBeChanged() throws Exception {
+        new EncodedStringField(SenderCompID.FIELD, "SENDER", CharsetSupport.getCharsetInstance())
+                .setValue("OTHER");
+    }
+
+    private static NewOrderSingle createOrder() {
+        final NewOrderSingle message = new NewOrderSingle();
+        message.getHeader().setString(SenderCompID.FIELD, "SENDER");
+        message.getHeader().setString(TargetCompID.FIELD, "TARGET");
+        message.getHeader().setInt(MsgSeqNum.FIELD, 123456);
+        message.setString(quickfix.field.ClOrdID.FIELD, "ORDER-1");
+        message.setChar(quickfix.field.Side.FIELD, quickfix.field.Side.BUY);
+        message.setDecimal(quickfix.field.OrderQty.FIELD, new java.math.BigDecimal("100"));
+        for (int i = 0; i < 3; i++) {
+            final NewOrderSingle.NoPartyIDs party = new NewOrderSingle.NoPartyIDs();
+            party.set(new PartyID("PARTY" + i));
+            party.set(new PartyIDSource(PartyIDSource.PROPRIETARY_CUSTOM_CODE));
+            party.set(new PartyRole(PartyRole.CLIENT_ID));
+            message.addGroup(party);
+        }
+        assertEquals(3, message.getGroupCount(NoPartyIDs.FIELD));
+        return message;
+    }
+
+    private static void assertWrittenAsString(Message message, ByteBuffer buffer) {
+        final ByteBuffer written = new MessageWriter(buffer).write(message);
+        assertEquals(message.toString(), decode(written, CharsetSupport.getCharsetInstance()));
+    }
+
+    private static String decode(ByteBuffer buffer, Charset charset) {
+        return new String(buffer.array(), buffer.position(), buffer.remaining(), charset);
+    }
+}
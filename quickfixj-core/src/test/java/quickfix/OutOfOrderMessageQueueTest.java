@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class OutOfOrderMessageQueueTest extends TestCase {
+
+    public void testRemoveInAnyOrder() throws Exception {
+        OutOfOrderMessageQueue queue = new OutOfOrderMessageQueue(Long.MAX_VALUE);
+        assertNull(queue.remove(1));
+        assertEquals(0, queue.firstSeqNum());
+
+        // wider than the initial capacity, in both directions
+        for (int seqNum = 100; seqNum < 140; seqNum += 2) {
+            queue.put(seqNum, bytes(seqNum));
+        }
+        queue.put(61, bytes(61));
+        queue.put(100, bytes(1000));
+        assertEquals(21, queue.size());
+        assertEquals(61, queue.firstSeqNum());
+        assertEquals(Arrays.asList(61, 100, 102), queue.seqNums().subList(0, 3));
+
+        assertNull(queue.remove(101));
+        assertEquals("1000", new String(queue.remove(100)));
+        assertEquals("61", new String(queue.remove(61)));
+        assertEquals(102, queue.firstSeqNum());
+        assertEquals("138", new String(queue.remove(138)));
+
+        queue.removeBefore(130);
+        assertEquals(Arrays.asList(130, 132, 134, 136), queue.seqNums());
+        queue.removeBefore(200);
+        assertEquals(0, queue.size());
+        assertTrue(queue.seqNums().isEmpty());
+
+        queue.put(5, bytes(5));
+        assertEquals(5, queue.firstSeqNum());
+        assertEquals("5", new String(queue.remove(5)));
+    }
+
+    public void testSpillOverMemoryLimit() throws Exception {
+        OutOfOrderMessageQueue queue = new OutOfOrderMessageQueue(10);
+        for (int seqNum = 1; seqNum <= 1000; seqNum++) {
+            queue.put(seqNum, bytes(seqNum));
+        }
+        assertEquals(1000, queue.size());
+        // 1 to 9 fill 9 bytes, then 10 and 11 would not fit, but no other does
+        assertEquals(991, queue.getSpilledCount());
+
+        queue.put(500, bytes(5000));
+        assertEquals(1000, queue.size());
+        for (int seqNum = 1000; seqNum > 0; seqNum--) {
+            assertEquals(seqNum == 500 ? "5000" : Integer.toString(seqNum),
+                    new String(queue.remove(seqNum)));
+        }
+        assertEquals(0, queue.getSpilledCount());
+
+        queue.setMemoryLimit(3);
+        queue.put(7, bytes(7000));
+        queue.put(8, bytes(8));
+        assertEquals(1, queue.getSpilledCount());
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.getSpilledCount());
+        assertNull(queue.remove(7));
+    }
+
+    public void testHugeGap() throws Exception {
+        OutOfOrderMessageQueue queue = new OutOfOrderMessageQueue(Long.MAX_VALUE);
+        queue.put(Integer.MAX_VALUE, bytes(Integer.MAX_VALUE));
+        queue.put(2, bytes(2));
+        queue.put(1 << 30, bytes(1 << 30));
+        for (int seqNum = 100; seqNum < 200; seqNum++) {
+            queue.put(seqNum, bytes(seqNum));
+        }
+        assertEquals(103, queue.size());
+        assertEquals(2, queue.firstSeqNum());
+        assertEquals(Arrays.asList(198, 199, 1 << 30, Integer.MAX_VALUE),
+                queue.seqNums().subList(99, 103));
+
+        assertEquals(Integer.toString(Integer.MAX_VALUE),
+                new String(queue.remove(Integer.MAX_VALUE)));
+        queue.removeBefore(150);
+        assertEquals(51, queue.size());
+        assertEquals(150, queue.firstSeqNum());
+        queue.removeBefore(Integer.MAX_VALUE);
+        assertEquals(0, queue.size());
+    }
+
+    private static byte[] bytes(int seqNum) {
+        return Integer.toString(seqNum).getBytes();
+    }
+}
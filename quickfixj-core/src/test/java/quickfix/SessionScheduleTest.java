@@ -130,6 +130,54 @@ public class SessionScheduleTest {
         doIsSessionTimeTest(schedule, false, 2000, 10, 10, 18, 25, 0);
     }
 
+    @Test
+    public void testNextTransitionTime() throws Exception {
+        SessionSchedule schedule = newSessionSchedule(new Timestamp(getUtcTime(3, 0, 0).getTimeInMillis()),
+                new Timestamp(getUtcTime(18, 0, 0).getTimeInMillis()), -1, -1);
+        assertEquals(utcMillis(2004, Calendar.OCTOBER, 10, 18, 0, 0) + 1,
+                schedule.getNextTransitionTime(utcMillis(2004, Calendar.OCTOBER, 10, 10, 0, 0)));
+        assertEquals(utcMillis(2004, Calendar.OCTOBER, 11, 3, 0, 0),
+                schedule.getNextTransitionTime(utcMillis(2004, Calendar.OCTOBER, 10, 19, 0, 0)));
+        assertEquals(utcMillis(2004, Calendar.OCTOBER, 10, 3, 0, 0),
+                schedule.getNextTransitionTime(utcMillis(2004, Calendar.OCTOBER, 10, 2, 0, 0)));
+
+        // the session time changes exactly at the transitions
+        long transition = schedule.getNextTransitionTime(utcMillis(2004, Calendar.OCTOBER, 10, 10, 0, 0));
+        mockSystemTimeSource.setSystemTimes(new long[] { transition - 1 });
+        assertTrue(schedule.isSessionTime());
+        mockSystemTimeSource.setSystemTimes(new long[] { transition });
+        assertFalse(schedule.isSessionTime());
+        transition = schedule.getNextTransitionTime(transition);
+        mockSystemTimeSource.setSystemTimes(new long[] { transition - 1 });
+        assertFalse(schedule.isSessionTime());
+        mockSystemTimeSource.setSystemTimes(new long[] { transition });
+        assertTrue(schedule.isSessionTime());
+
+        // July 24, 2004 - Saturday
+        schedule = newSessionSchedule(new Timestamp(getUtcTime(18, 0, 0).getTimeInMillis()),
+                new Timestamp(getUtcTime(3, 0, 0).getTimeInMillis()), Calendar.SATURDAY,
+                Calendar.SATURDAY);
+        assertEquals(utcMillis(2004, Calendar.JULY, 24, 18, 0, 0),
+                schedule.getNextTransitionTime(utcMillis(2004, Calendar.JULY, 24, 10, 0, 0)));
+        assertEquals(utcMillis(2004, Calendar.JULY, 31, 3, 0, 0) + 1,
+                schedule.getNextTransitionTime(utcMillis(2004, Calendar.JULY, 26, 10, 0, 0)));
+    }
+
+    @Test
+    public void testNextTransitionTimeNonStopSession() throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setBool(Session.SETTING_NON_STOP_SESSION, true);
+        SessionSchedule schedule = new SessionSchedule(settings, new SessionID("FIX.4.2", "SENDER", "TARGET"));
+        assertEquals(Long.MAX_VALUE, schedule.getNextTransitionTime(System.currentTimeMillis()));
+    }
+
+    private static long utcMillis(int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+
     private void doIsSessionTimeTest(SessionSchedule schedule, boolean expectedInSession, int year,
             int month, int day, int hour, int minute, int second) {
         doIsSessionTimeTest(schedule, expectedInSession, year, month, day, hour, minute, second,
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyString;
@@ -19,15 +20,20 @@ import java.io.Closeable;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.Flushable;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.AfterClass;
+import org.quickfixj.CharsetSupport;
 import org.junit.Test;
 
 import quickfix.field.ApplVerID;
@@ -39,16 +45,21 @@ import quickfix.field.EndSeqNo;
 import quickfix.field.GapFillFlag;
 import quickfix.field.Headline;
 import quickfix.field.HeartBtInt;
+import quickfix.field.LastMsgSeqNumProcessed;
 import quickfix.field.MsgSeqNum;
 import quickfix.field.MsgType;
 import quickfix.field.NewSeqNo;
+import quickfix.field.OnBehalfOfCompID;
 import quickfix.field.OrigSendingTime;
 import quickfix.field.PossDupFlag;
 import quickfix.field.RefSeqNum;
 import quickfix.field.SenderCompID;
 import quickfix.field.SendingTime;
+import quickfix.field.SenderLocationID;
+import quickfix.field.SenderSubID;
 import quickfix.field.SessionStatus;
 import quickfix.field.TargetCompID;
+import quickfix.field.TargetLocationID;
 import quickfix.field.TestReqID;
 import quickfix.field.Text;
 import quickfix.field.converter.UtcTimestampConverter;
@@ -1099,6 +1110,228 @@ public class SessionTest {
         session.close();
     }
 
+    @Test
+    public void testResendMessagesFromMappedFileStore() throws Exception {
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+        final SessionSettings settings = new SessionSettings();
+        settings.setString(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH,
+                System.getProperty("java.io.tmpdir") + File.separator + "qfj-mapped-" + System.currentTimeMillis());
+        settings.setLong(sessionID, MappedFileStoreFactory.SETTING_MAPPED_FILE_STORE_SEGMENT_SIZE, 64 * 1024);
+
+        final UnitTestApplication application = new UnitTestApplication();
+        final Session session = new Session(application,
+                new MappedFileStoreFactory(settings), sessionID, null, null, null,
+                new DefaultMessageFactory(), 30, false, 30,
+                true, false, false, false, false, false, false, false,
+                true, false, 1.5, null, null,
+                true, new int[] { 5 }, false, false, false, true, false, true, false,
+                null, true, 0, false, false, true, true);
+        final MappedFileStore store = (MappedFileStore) session.getStore();
+        try {
+            final AtomicInteger resentWithoutLock = new AtomicInteger();
+            final UnitTestResponder responder = new UnitTestResponder() {
+                @Override
+                public boolean send(String data) {
+                    // other senders are not held up while messages are resent
+                    if (data.contains("\00135=B\001") && data.contains("\00143=Y\001")
+                            && canLockSenderMsgSeqNum(session)) {
+                        resentWithoutLock.incrementAndGet();
+                    }
+                    return super.send(data);
+                }
+            };
+            session.setResponder(responder);
+
+            session.logon();
+            session.next();
+            final Message logonRequest = new Message(responder.sentMessageData);
+            session.next(createLogonResponse(sessionID, logonRequest, 1));
+            assertTrue(session.isLoggedOn());
+
+            session.send(createAppMessage(2));
+            session.send(createAppMessage(3));
+            application.clear();
+
+            processMessage(session, createResendRequest(2, 1));
+
+            // the logon is gap filled and both application messages are resent
+            assertEquals(2, application.toAppMessages.size());
+            assertEquals(3, application.lastToAppMessage().getHeader().getInt(MsgSeqNum.FIELD));
+            final Message resent = new Message(responder.sentMessageData);
+            assertTrue(resent.getHeader().getBoolean(PossDupFlag.FIELD));
+            assertTrue(resent.getHeader().isSetField(OrigSendingTime.FIELD));
+            assertEquals(2, resentWithoutLock.get());
+        } finally {
+            session.close();
+            store.deleteFiles();
+        }
+    }
+
+    private static boolean canLockSenderMsgSeqNum(final Session session) {
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                session.getSessionState().lockSenderMsgSeqNum();
+                session.getSessionState().unlockSenderMsgSeqNum();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    @Test
+    public void testResendMessagesWithoutApplicationCallbacks() throws Exception {
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+        final SessionSettings settings = new SessionSettings();
+        settings.setString(sessionID, FileStoreFactory.SETTING_FILE_STORE_PATH,
+                System.getProperty("java.io.tmpdir") + File.separator + "qfj-mapped-" + System.currentTimeMillis());
+        settings.setLong(sessionID, MappedFileStoreFactory.SETTING_MAPPED_FILE_STORE_SEGMENT_SIZE, 64 * 1024);
+
+        final UnitTestApplication application = new UnitTestApplication();
+        final Session session = new Session(application,
+                new MappedFileStoreFactory(settings), sessionID, null, null, null,
+                new DefaultMessageFactory(), 30, false, 30,
+                true, false, false, false, false, false, false, false,
+                true, false, 1.5, null, null,
+                true, new int[] { 5 }, false, false, false, true, false, true, false,
+                null, true, 0, false, false, true, true);
+        session.setResendWithoutApplicationCallbacks(true);
+        final MappedFileStore store = (MappedFileStore) session.getStore();
+        try {
+            // the patched bytes are written to the responder as they are
+            final UnitTestMessageResponder responder = new UnitTestMessageResponder();
+            session.setResponder(responder);
+
+            session.logon();
+            session.next();
+            final Message logonRequest = new Message(new String(responder.sentMessageBytes));
+            session.next(createLogonResponse(sessionID, logonRequest, 1));
+            assertTrue(session.isLoggedOn());
+
+            session.send(createAppMessage(2));
+            final News news = createAppMessage(3);
+            news.getHeader().setString(OnBehalfOfCompID.FIELD, "ONBEHALF");
+            news.getHeader().setInt(LastMsgSeqNumProcessed.FIELD, 1);
+            session.sendRaw(news);
+            application.clear();
+
+            processMessage(session, createResendRequest(2, 1));
+
+            // the messages are resent without asking the application
+            assertEquals(0, application.toAppMessages.size());
+            final List<String> stored = new ArrayList<String>();
+            store.get(3, 3, stored);
+            final Message original = new Message(stored.get(0));
+            final String resentData = new String(responder.sentMessageBytes);
+            final Message resent = new Message(resentData);
+            assertEquals(3, resent.getHeader().getInt(MsgSeqNum.FIELD));
+            assertTrue(resent.getHeader().getBoolean(PossDupFlag.FIELD));
+            assertEquals(original.getHeader().getString(SendingTime.FIELD),
+                    resent.getHeader().getString(OrigSendingTime.FIELD));
+
+            // the result is the same as setting the fields on the parsed message
+            original.getHeader().setBoolean(PossDupFlag.FIELD, true);
+            original.getHeader().setString(OrigSendingTime.FIELD,
+                    original.getHeader().getString(SendingTime.FIELD));
+            original.getHeader().setString(SendingTime.FIELD,
+                    resent.getHeader().getString(SendingTime.FIELD));
+            assertEquals(original.toString(), resentData);
+        } finally {
+            session.close();
+            store.deleteFiles();
+        }
+    }
+
+    @Test
+    public void testSendThroughSessionSender() throws Exception {
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER",
+                "SENDERSUB", SessionID.NOT_SET, "TARGET", SessionID.NOT_SET, "TARGETLOC",
+                SessionID.NOT_SET);
+        final UnitTestApplication application = new UnitTestApplication();
+        final Session session = SessionFactoryTestSupport.createSession(sessionID, application, false);
+        try {
+            final UnitTestResponder responder = new UnitTestResponder();
+            session.setResponder(responder);
+            logonTo(session);
+
+            final SessionSender sender = Session.lookupSender(sessionID);
+            assertSame(session.getSender(), sender);
+            assertEquals(sessionID, sender.getSessionID());
+            assertNull(Session.lookupSender(new SessionID(FixVersions.BEGINSTRING_FIX44, "A", "B")));
+
+            for (int i = 2; i <= 3; i++) {
+                assertTrue(sender.send(new News(new Headline("Headline"))));
+                final Message sent = new Message(responder.sentMessageData);
+                final Message.Header header = sent.getHeader();
+                assertEquals(FixVersions.BEGINSTRING_FIX44, header.getString(BeginString.FIELD));
+                assertEquals("SENDER", header.getString(SenderCompID.FIELD));
+                assertEquals("SENDERSUB", header.getString(SenderSubID.FIELD));
+                assertFalse(header.isSetField(SenderLocationID.FIELD));
+                assertEquals("TARGET", header.getString(TargetCompID.FIELD));
+                assertEquals("TARGETLOC", header.getString(TargetLocationID.FIELD));
+                assertEquals(i, header.getInt(MsgSeqNum.FIELD));
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void testNextTimerDeadline() throws Exception {
+        final MockSystemTimeSource systemTimeSource = new MockSystemTimeSource(1000000L);
+        SystemTime.setTimeSource(systemTimeSource);
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+        final Session session = SessionFactoryTestSupport.createSession(sessionID,
+                new UnitTestApplication(), false);
+        try {
+            final AtomicInteger wakeups = new AtomicInteger();
+            session.setTimerWakeup(new Runnable() {
+                public void run() {
+                    wakeups.incrementAndGet();
+                }
+            });
+            // nothing to do until connected
+            assertEquals(Long.MAX_VALUE, session.getNextTimerDeadline());
+
+            final UnitTestResponder responder = new UnitTestResponder();
+            session.setResponder(responder);
+            assertEquals(1, wakeups.get());
+            // the acceptor waits for the logon
+            assertEquals(Long.MAX_VALUE, session.getNextTimerDeadline());
+
+            // set from the logon by the acceptor's IoHandler
+            session.setHeartBeatInterval(30);
+            logonTo(session);
+            assertEquals(2, wakeups.get());
+            final long logonTime = systemTimeSource.getTime();
+            assertEquals(logonTime + 30000 - 9, session.getNextTimerDeadline());
+
+            systemTimeSource.increment(30000 - 9);
+            session.next();
+            assertEquals(MsgType.HEARTBEAT, new Message(responder.sentMessageData).getHeader()
+                    .getString(MsgType.FIELD));
+            // the test request is due before the next heartbeat
+            assertEquals(logonTime + 45000, session.getNextTimerDeadline());
+
+            session.logout();
+            assertEquals(3, wakeups.get());
+            assertEquals(systemTimeSource.getTime(), session.getNextTimerDeadline());
+            session.next();
+            // waiting for the logout response
+            assertEquals(4, wakeups.get());
+            assertEquals(systemTimeSource.getTime() + 2000, session.getNextTimerDeadline());
+        } finally {
+            session.close();
+            SystemTime.setTimeSource(null);
+        }
+    }
+
     // QFJ-493
     @Test
     public void testGapFillSatisfiesResendRequest() throws Exception {
@@ -1287,6 +1520,64 @@ public class SessionTest {
         session.close();
     }
 
+    @Test
+    public void testQueuedMessagesSpilledToDisk() throws Exception {
+        final UnitTestApplication application = new UnitTestApplication();
+        final Session session = setUpSession(application, false,
+                new UnitTestResponder());
+        final SessionState state = getSessionState(session);
+        session.setQueuedMessagesMemoryLimit(1000);
+
+        logonTo(session, 1);
+        for (int i = 10; i < 60; i++) {
+            processMessage(session, createAppMessage(i));
+        }
+        assertEquals(50, session.getQueuedMessageCount());
+        assertTrue(session.getSpilledMessageCount() > 0);
+        assertTrue(session.getSpilledMessageCount() < 50);
+        assertTrue(application.fromAppMessages.isEmpty());
+
+        // the gap fill releases the queued messages, which are parsed again
+        processMessage(session, createSequenceReset(2, 10, true));
+        assertEquals(50, application.fromAppMessages.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(10 + i, application.fromAppMessages.get(i).getHeader()
+                    .getInt(MsgSeqNum.FIELD));
+        }
+        assertEquals(60, state.getNextTargetMsgSeqNum());
+        assertEquals(0, session.getQueuedMessageCount());
+        assertEquals(0, session.getSpilledMessageCount());
+
+        session.close();
+    }
+
+    @Test
+    public void testInvalidQueuedMessageIsSkipped() throws Exception {
+        final UnitTestApplication application = new UnitTestApplication();
+        final Session session = setUpSession(application, false,
+                new UnitTestResponder());
+        final SessionState state = getSessionState(session);
+
+        logonTo(session, 1);
+        // a queued message is parsed again when its turn comes, and fails
+        // like a received message would if a field is malformed
+        final String invalid = createAppMessage(3).toString().replace("148=", "148");
+        state.enqueue(3, new Message() {
+            @Override
+            byte[] toRawBytes() {
+                return invalid.getBytes();
+            }
+        });
+
+        processMessage(session, createAppMessage(2));
+        assertEquals(1, application.fromAppMessages.size());
+        assertEquals(0, session.getQueuedMessageCount());
+        assertEquals(3, state.getNextTargetMsgSeqNum());
+        assertTrue(session.isLoggedOn());
+
+        session.close();
+    }
+
     /**
      * QFJ-721: Receiving a non-Logon message after having sent a Logon on a
      * non-FIXT session formerly lead to a NPE since the field
@@ -2090,6 +2381,117 @@ public class SessionTest {
         return news;
     }
 
+    @Test
+    public void testSendMessageWithoutMessageString() throws Exception {
+        final SessionID sessionID = new SessionID(
+                FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+        // no log and no persisted messages, so the responder encodes the message
+        final Session session = new Session(new UnitTestApplication(),
+                new MemoryStoreFactory(), sessionID, null, null, null,
+                new DefaultMessageFactory(), 30, false, 30, true, false, true, false, false,
+                false, false, false, false, false, 1.5, null, null, true, new int[] { 5 },
+                false, false, false, true, false, true, false, null, true, 0, false, false,
+                true, true);
+        final UnitTestMessageResponder responder = new UnitTestMessageResponder();
+        session.setResponder(responder);
+
+        session.logon();
+        session.next();
+
+        assertNull(responder.sentMessageData);
+        assertNotNull(responder.sentMessage);
+        assertEquals(MsgType.LOGON, responder.sentMessage.getHeader().getString(MsgType.FIELD));
+        assertEquals(2, session.getStore().getNextSenderMsgSeqNum());
+        session.close();
+    }
+
+    @Test
+    public void testSendEncodedMessageWhenPersisted() throws Exception {
+        final SessionID sessionID = new SessionID(
+                FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+        // the message is encoded once for the store, the log and the responder
+        final Session session = SessionFactoryTestSupport.createSession(sessionID,
+                new UnitTestApplication(), true);
+        final UnitTestMessageResponder responder = new UnitTestMessageResponder();
+        session.setResponder(responder);
+
+        session.logon();
+        session.next();
+
+        assertNull(responder.sentMessageData);
+        assertNull(responder.sentMessage);
+        assertNotNull(responder.sentMessageBytes);
+        final String sent = new String(responder.sentMessageBytes, CharsetSupport.getCharset());
+        assertEquals(MsgType.LOGON, MessageUtils.getMessageType(sent));
+        final List<String> stored = new ArrayList<String>();
+        session.getStore().get(1, 1, stored);
+        assertEquals(1, stored.size());
+        assertEquals(sent, stored.get(0));
+        session.close();
+    }
+
+    @Test
+    public void testMessageIsStoredBeforeItIsSent() throws Exception {
+        final SessionID sessionID = new SessionID(
+                FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+        final Session session = SessionFactoryTestSupport.createSession(sessionID,
+                new UnitTestApplication(), true);
+        final List<String> storedWhenSent = new ArrayList<String>();
+        final int[] nextSenderWhenSent = new int[1];
+        session.setResponder(new UnitTestResponder() {
+            @Override
+            public boolean send(String data) {
+                try {
+                    session.getStore().get(1, 1, storedWhenSent);
+                    nextSenderWhenSent[0] = session.getStore().getNextSenderMsgSeqNum();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return super.send(data);
+            }
+        });
+
+        session.logon();
+        session.next();
+
+        assertEquals(1, storedWhenSent.size());
+        assertEquals(MsgType.LOGON, MessageUtils.getMessageType(storedWhenSent.get(0)));
+        assertEquals(2, nextSenderWhenSent[0]);
+        session.close();
+    }
+
+    @Test
+    public void testWriteBehindStoreIsFlushedOnDisconnect() throws Exception {
+        final SessionID sessionID = new SessionID(
+                FixVersions.BEGINSTRING_FIX44, "SENDER", "TARGET");
+        final int[] flushes = new int[1];
+        final MessageStoreFactory storeFactory = new MessageStoreFactory() {
+            public MessageStore create(SessionID sessionID) {
+                return new FlushableMemoryStore(sessionID, flushes);
+            }
+        };
+        final Session session = new Session(new UnitTestApplication(), storeFactory, sessionID,
+                null, null, new ScreenLogFactory(true, true, true), new DefaultMessageFactory(), 30);
+        session.setResponder(new UnitTestResponder());
+
+        session.disconnect("test", false);
+        assertEquals(1, flushes[0]);
+        session.close();
+    }
+
+    private static class FlushableMemoryStore extends MemoryStore implements Flushable {
+        private final int[] flushes;
+
+        FlushableMemoryStore(SessionID sessionID, int[] flushes) {
+            super(sessionID);
+            this.flushes = flushes;
+        }
+
+        public void flush() {
+            flushes[0]++;
+        }
+    }
+
     private Session setUpSession(Application application, boolean isInitiator,
             Responder responder) throws NoSuchFieldException,
             IllegalAccessException {
@@ -2208,4 +2610,19 @@ public class SessionTest {
         }
     }
 
+    private class UnitTestMessageResponder extends UnitTestResponder implements MessageResponder {
+        public Message sentMessage;
+        public byte[] sentMessageBytes;
+
+        public boolean send(Message message) {
+            sentMessage = message;
+            return true;
+        }
+
+        public boolean send(byte[] data) {
+            sentMessageBytes = data;
+            return true;
+        }
+    }
+
 }
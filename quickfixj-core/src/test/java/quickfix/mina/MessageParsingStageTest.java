@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class MessageParsingStageTest {
+
+    @Test
+    public void testDeliversInArrivalOrder() throws Exception {
+        final MessageParsingStage stage = new MessageParsingStage(4, 10000);
+        final List<IoSession> ioSessions = new ArrayList<IoSession>();
+        final List<List<Integer>> delivered = new ArrayList<List<Integer>>();
+        for (int i = 0; i < 3; i++) {
+            ioSessions.add(new DummySession());
+            delivered.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        final CountDownLatch done = new CountDownLatch(3000);
+        final Random random = new Random(42);
+
+        for (int i = 0; i < 1000; i++) {
+            for (int c = 0; c < ioSessions.size(); c++) {
+                final int index = i;
+                final long parseNanos = random.nextInt(20000);
+                final List<Integer> messages = delivered.get(c);
+                stage.submit(ioSessions.get(c), new MessageParsingStage.Task() {
+                    @Override
+                    void parse() {
+                        final long end = System.nanoTime() + parseNanos;
+                        while (System.nanoTime() < end) {
+                            Thread.yield();
+                        }
+                    }
+
+                    @Override
+                    void deliver() {
+                        messages.add(index);
+                        done.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (final List<Integer> messages : delivered) {
+            assertEquals(1000, messages.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(Integer.valueOf(i), messages.get(i));
+            }
+        }
+        assertTrue(stage.getPoolSize() <= 4);
+    }
+
+    @Test
+    public void testSuspendsReadingWhileTasksPileUp() throws Exception {
+        final MessageParsingStage stage = new MessageParsingStage(1, 4);
+        final IoSession ioSession = createMockIoSession();
+        final CountDownLatch parsing = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(4);
+
+        for (int i = 0; i < 4; i++) {
+            stage.submit(ioSession, new MessageParsingStage.Task() {
+                @Override
+                void parse() {
+                    try {
+                        parsing.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                @Override
+                void deliver() {
+                    delivered.countDown();
+                }
+            });
+        }
+        verify(ioSession).suspendRead();
+        verify(ioSession, never()).resumeRead();
+
+        parsing.countDown();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        verify(ioSession, timeout(5000)).resumeRead();
+    }
+
+    /**
+     * DummySession declares suspendRead and resumeRead final, so the calls are
+     * verified on a mock that keeps its attributes in a map.
+     */
+    private static IoSession createMockIoSession() {
+        final Map<Object, Object> attributes = new ConcurrentHashMap<Object, Object>();
+        final IoSession ioSession = mock(IoSession.class);
+        when(ioSession.getAttribute(any())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                return attributes.get(invocation.getArguments()[0]);
+            }
+        });
+        when(ioSession.setAttribute(any(), any())).thenAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                final Object[] arguments = invocation.getArguments();
+                return attributes.put(arguments[0], arguments[1]);
+            }
+        });
+        return ioSession;
+    }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import quickfix.FieldNotFound;
+import quickfix.Message;
+import quickfix.Session;
+import quickfix.field.MsgSeqNum;
+import quickfix.mina.RingBufferSessionMessageQueue.WaitStrategy;
+
+public class RingBufferSessionMessageQueueTest {
+
+    @Test
+    public void testCapacityIsRoundedToPowerOfTwo() {
+        assertEquals(1, new RingBufferSessionMessageQueue(1, WaitStrategy.PARK).getCapacity());
+        assertEquals(16, new RingBufferSessionMessageQueue(16, WaitStrategy.PARK).getCapacity());
+        assertEquals(16384, new RingBufferSessionMessageQueue(10000, WaitStrategy.PARK).getCapacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RingBufferSessionMessageQueue(0, WaitStrategy.PARK);
+    }
+
+    @Test
+    public void testPollInOrder() throws Exception {
+        final RingBufferSessionMessageQueue queue = new RingBufferSessionMessageQueue(4, WaitStrategy.PARK);
+        final Message first = new Message();
+        final Message second = new Message();
+        queue.put(null, first);
+        queue.put(null, second);
+        assertEquals(2, queue.size());
+
+        final List<Message> received = new ArrayList<Message>();
+        assertEquals(2, queue.poll(new CollectingHandler(received), 0, TimeUnit.MILLISECONDS));
+        assertSame(first, received.get(0));
+        assertSame(second, received.get(1));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testPollTimesOut() throws Exception {
+        final RingBufferSessionMessageQueue queue = new RingBufferSessionMessageQueue(4, WaitStrategy.PARK);
+        final long start = System.currentTimeMillis();
+        assertEquals(0, queue.poll(new CollectingHandler(new ArrayList<Message>()), 50, TimeUnit.MILLISECONDS));
+        assertEquals(true, System.currentTimeMillis() - start >= 40);
+    }
+
+    @Test
+    public void testDrainWrapsAround() throws Exception {
+        final RingBufferSessionMessageQueue queue = new RingBufferSessionMessageQueue(4, WaitStrategy.YIELD);
+        final List<Message> received = new ArrayList<Message>();
+        for (int i = 0; i < 10; i++) {
+            queue.put(null, new Message());
+            queue.put(null, new Message());
+            assertEquals(2, queue.drain(new CollectingHandler(received)));
+        }
+        assertEquals(20, received.size());
+        assertEquals(0, queue.drain(new CollectingHandler(received)));
+    }
+
+    @Test
+    public void testInterruptedWhileFull() throws Exception {
+        final RingBufferSessionMessageQueue queue = new RingBufferSessionMessageQueue(1, WaitStrategy.PARK);
+        queue.put(null, new Message());
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread producer = new Thread() {
+            public void run() {
+                try {
+                    queue.put(null, new Message());
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        producer.start();
+        Thread.sleep(50);
+        producer.interrupt();
+        producer.join(5000);
+        assertEquals(InterruptedException.class, failure.get().getClass());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testMultipleProducersBusySpin() throws Exception {
+        // a large ring so spinning threads rarely wait on each other on small machines
+        assertMultipleProducers(WaitStrategy.BUSY_SPIN, 1024);
+    }
+
+    @Test
+    public void testMultipleProducersYield() throws Exception {
+        assertMultipleProducers(WaitStrategy.YIELD, 16);
+    }
+
+    @Test
+    public void testMultipleProducersPark() throws Exception {
+        assertMultipleProducers(WaitStrategy.PARK, 16);
+    }
+
+    private void assertMultipleProducers(WaitStrategy waitStrategy, int capacity) throws Exception {
+        final int producers = 4;
+        final int messages = 5000;
+        final RingBufferSessionMessageQueue queue = new RingBufferSessionMessageQueue(capacity, waitStrategy);
+        final Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i++) {
+            final int producer = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < messages; j++) {
+                            final Message message = new Message();
+                            message.getHeader().setInt(MsgSeqNum.FIELD, producer * messages + j);
+                            queue.put(null, message);
+                        }
+                    } catch (InterruptedException e) {
+                        fail(e.getMessage());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        final int[] next = new int[producers];
+        final int[] received = new int[1];
+        final SessionMessageQueue.Handler handler = new SessionMessageQueue.Handler() {
+            public void onMessage(Session session, Message message) {
+                try {
+                    final int value = message.getHeader().getInt(MsgSeqNum.FIELD);
+                    final int producer = value / messages;
+                    // messages of a producer arrive in the order they were put
+                    assertEquals(next[producer]++, value % messages);
+                    received[0]++;
+                } catch (FieldNotFound e) {
+                    fail(e.getMessage());
+                }
+            }
+        };
+        final long deadline = System.currentTimeMillis() + 30000;
+        while (received[0] < producers * messages && System.currentTimeMillis() < deadline) {
+            queue.poll(handler, 100, TimeUnit.MILLISECONDS);
+        }
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(producers * messages, received[0]);
+        assertEquals(0, queue.size());
+    }
+
+    private static class CollectingHandler implements SessionMessageQueue.Handler {
+        private final List<Message> messages;
+
+        CollectingHandler(List<Message> messages) {
+            this.messages = messages;
+        }
+
+        public void onMessage(Session session, Message message) {
+            messages.add(message);
+        }
+    }
+}
@@ -173,6 +173,76 @@ public class SessionConnectorTest extends TestCase {
         assertEquals(0, connector.getManagedSessions().size());
     }
 
+    public void testSessionTimerWheel() throws Exception {
+        SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        SessionID sessionID2 = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD1");
+        SessionSettings settings = setUpSessionSettings(sessionID);
+        settings.setString(sessionID2, SessionFactory.SETTING_CONNECTION_TYPE,
+                SessionFactory.ACCEPTOR_CONNECTION_TYPE);
+        settings.setString(SessionConnector.SETTING_SESSION_TIMER, SessionConnector.SESSION_TIMER_WHEEL);
+        settings.setLong(SessionConnector.SETTING_SESSION_TIMER_THREADS, 2);
+        DefaultSessionFactory sessionFactory = new DefaultSessionFactory(new UnitTestApplication(),
+                new MemoryStoreFactory(), new ScreenLogFactory(true, true, true));
+
+        SessionConnector connector = new SessionConnectorUnderTest(settings, sessionFactory);
+        assertTrue(connector.isSessionTimerWheel());
+        Session session = connector.createSession(sessionID);
+        connector.setSessions(new HashMap<SessionID, Session>(
+                Collections.singletonMap(sessionID, session)));
+
+        connector.startSessionTimer();
+        try {
+            assertEquals(1, connector.getSessionTimerWheelSize());
+            Session session2 = connector.createSession(sessionID2);
+            connector.addDynamicSession(session2);
+            assertEquals(2, connector.getSessionTimerWheelSize());
+            connector.removeDynamicSession(sessionID2);
+            assertEquals(1, connector.getSessionTimerWheelSize());
+        } finally {
+            connector.stopSessionTimer();
+        }
+        assertEquals(0, connector.getSessionTimerWheelSize());
+    }
+
+    public void testInvalidSessionTimerSettings() throws Exception {
+        SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        SessionSettings settings = setUpSessionSettings(sessionID);
+        settings.setString(SessionConnector.SETTING_SESSION_TIMER, "never");
+        try {
+            new SessionConnectorUnderTest(settings, null);
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            // expected
+        }
+
+        settings = setUpSessionSettings(sessionID);
+        settings.setString(SessionConnector.SETTING_SESSION_TIMER, SessionConnector.SESSION_TIMER_WHEEL);
+        settings.setLong(SessionConnector.SETTING_SESSION_TIMER_THREADS, 0);
+        try {
+            new SessionConnectorUnderTest(settings, null);
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            // expected
+        }
+    }
+
+    public void testParserThreadsSetting() throws Exception {
+        SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        SessionSettings settings = setUpSessionSettings(sessionID);
+        assertNull(new SessionConnectorUnderTest(settings, null).getMessageParsingStage());
+
+        settings.setLong(SessionConnector.SETTING_PARSER_THREADS, 2);
+        assertNotNull(new SessionConnectorUnderTest(settings, null).getMessageParsingStage());
+
+        settings.setLong(SessionConnector.SETTING_PARSER_THREADS, -1);
+        try {
+            new SessionConnectorUnderTest(settings, null);
+            fail("expected ConfigError");
+        } catch (ConfigError e) {
+            // expected
+        }
+    }
+
     private SessionSettings setUpSessionSettings(SessionID sessionID) {
         SessionSettings settings = new SessionSettings();
         settings.setString(Session.SETTING_USE_DATA_DICTIONARY, "N");
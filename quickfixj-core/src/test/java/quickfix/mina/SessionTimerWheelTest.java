@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) quickfixengine.org  All rights reserved.
+ *
+ * This file is part of the QuickFIX FIX Engine
+ *
+ * This file may be distributed under the terms of the quickfixengine.org
+ * license as defined by quickfixengine.org and appearing in the file
+ * LICENSE included in the packaging of this file.
+ *
+ * This file is provided AS IS with NO WARRANTY OF ANY KIND, INCLUDING
+ * THE WARRANTY OF DESIGN, MERCHANTABILITY AND FITNESS FOR A
+ * PARTICULAR PURPOSE.
+ *
+ * See http://www.quickfixengine.org/LICENSE for licensing information.
+ *
+ * Contact ask@quickfixengine.org if any conditions of this licensing
+ * are not clear to you.
+ ******************************************************************************/
+
+package quickfix.mina;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.Invocation;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import quickfix.Session;
+import quickfix.SessionID;
+
+public class SessionTimerWheelTest {
+
+    private SessionTimerWheel wheel;
+
+    @Before
+    public void setUp() {
+        wheel = new SessionTimerWheel(10, 64, 2);
+        wheel.start();
+    }
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void testSessionIsCalledWhenDue() throws Exception {
+        final Session session = mockSession("A");
+        when(session.getNextTimerDeadline()).thenAnswer(new Answer<Long>() {
+            public Long answer(InvocationOnMock invocation) {
+                return System.currentTimeMillis() + 50;
+            }
+        });
+
+        wheel.add(session);
+        verify(session, timeout(2000).atLeast(5)).next();
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void testSessionIsNotCalledBeforeDeadline() throws Exception {
+        final Session session = mockSession("A");
+        when(session.getNextTimerDeadline()).thenReturn(Long.MAX_VALUE);
+
+        wheel.add(session);
+        verify(session, timeout(2000)).getNextTimerDeadline();
+        Thread.sleep(200);
+        verify(session, times(1)).next();
+    }
+
+    @Test
+    public void testWakeup() throws Exception {
+        final AtomicReference<Runnable> wakeup = new AtomicReference<Runnable>();
+        final Session session = mockSession("A");
+        when(session.getNextTimerDeadline()).thenReturn(Long.MAX_VALUE);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) {
+                wakeup.set((Runnable) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(session).setTimerWakeup(any(Runnable.class));
+
+        wheel.add(session);
+        verify(session, timeout(2000)).getNextTimerDeadline();
+        wakeup.get().run();
+        verify(session, timeout(2000).times(2)).next();
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final Session session = mockSession("A");
+        when(session.getNextTimerDeadline()).thenAnswer(new Answer<Long>() {
+            public Long answer(InvocationOnMock invocation) {
+                return System.currentTimeMillis() + 20;
+            }
+        });
+
+        wheel.add(session);
+        verify(session, timeout(2000).atLeast(2)).next();
+        wheel.remove(session);
+        verify(session).setTimerWakeup(null);
+        assertEquals(0, wheel.size());
+
+        // a call in progress may still complete
+        Thread.sleep(100);
+        final int calls = countNextCalls(session);
+        Thread.sleep(200);
+        assertEquals(calls, countNextCalls(session));
+    }
+
+    @Test
+    public void testSlowSessionDoesNotDelayOthers() throws Exception {
+        final CountDownLatch slowSessionCalled = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Session slowSession = mockSession("SLOW");
+        when(slowSession.getNextTimerDeadline()).thenReturn(Long.MAX_VALUE);
+        doAnswer(new Answer<Void>() {
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                slowSessionCalled.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(slowSession).next();
+        wheel.add(slowSession);
+        assertTrue(slowSessionCalled.await(2, TimeUnit.SECONDS));
+
+        final Session session = mockSession("A");
+        when(session.getNextTimerDeadline()).thenReturn(Long.MAX_VALUE);
+        wheel.add(session);
+        verify(session, timeout(1000)).next();
+        release.countDown();
+    }
+
+    private static Session mockSession(String targetCompID) throws Exception {
+        final Session session = mock(Session.class);
+        when(session.getSessionID()).thenReturn(new SessionID("FIX.4.4", "SENDER", targetCompID));
+        return session;
+    }
+
+    private static int countNextCalls(Session session) {
+        int calls = 0;
+        for (final Invocation invocation : mockingDetails(session).getInvocations()) {
+            if ("next".equals(invocation.getMethod().getName())) {
+                calls++;
+            }
+        }
+        return calls;
+    }
+}
@@ -23,6 +23,7 @@ import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 import org.junit.After;
 import org.junit.Test;
@@ -95,6 +96,40 @@ public class SingleThreadedEventHandlingStrategyTest {
 
     }
 
+    @Test
+    public void testRingBufferQueue() throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setString(SingleThreadedEventHandlingStrategy.SETTING_MESSAGE_QUEUE_TYPE, "ringbuffer");
+        settings.setString(SingleThreadedEventHandlingStrategy.SETTING_MESSAGE_QUEUE_WAIT_STRATEGY, "yield");
+        SessionConnector connector = new SessionConnectorUnderTest(settings, sessionFactory);
+        SingleThreadedEventHandlingStrategy ehs = new SingleThreadedEventHandlingStrategy(connector, 1000);
+
+        RingBufferSessionMessageQueue queue = (RingBufferSessionMessageQueue) ehs.getEventQueue();
+        assertEquals(1024, queue.getCapacity());
+        assertEquals(RingBufferSessionMessageQueue.WaitStrategy.YIELD, queue.getWaitStrategy());
+
+        try {
+            ehs.blockInThread();
+        } finally {
+            ehs.stopHandlingMessages();
+        }
+    }
+
+    @Test
+    public void testDefaultQueue() throws Exception {
+        SessionConnector connector = new SessionConnectorUnderTest(new SessionSettings(), sessionFactory);
+        SingleThreadedEventHandlingStrategy ehs = new SingleThreadedEventHandlingStrategy(connector, 1000);
+        assertTrue(ehs.getEventQueue() instanceof LinkedSessionMessageQueue);
+    }
+
+    @Test(expected = RuntimeError.class)
+    public void testInvalidQueueType() throws Exception {
+        SessionSettings settings = new SessionSettings();
+        settings.setString(SingleThreadedEventHandlingStrategy.SETTING_MESSAGE_QUEUE_TYPE, "unknown");
+        SessionConnector connector = new SessionConnectorUnderTest(settings, sessionFactory);
+        new SingleThreadedEventHandlingStrategy(connector, 1000);
+    }
+
     private void checkThreads(ThreadMXBean bean) {
         ThreadInfo[] dumpAllThreads = bean.dumpAllThreads(false, false);
         int qfjMPThreads = 0;
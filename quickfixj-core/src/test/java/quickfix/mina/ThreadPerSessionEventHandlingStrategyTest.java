@@ -24,6 +24,7 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -70,6 +71,10 @@ public class ThreadPerSessionEventHandlingStrategyTest {
             super(null, SessionConnector.DEFAULT_QUEUE_CAPACITY);
         }
 
+        public ThreadPerSessionEventHandlingStrategyUnderTest(int batchSize) {
+            super(null, SessionConnector.DEFAULT_QUEUE_CAPACITY, batchSize, false);
+        }
+
         public Exception getNextMessageException;
         public int getMessageCount = 1;
 
@@ -286,6 +291,85 @@ public class ThreadPerSessionEventHandlingStrategyTest {
         strategy.getDispatcher(sessionID).run();
     }
 
+    @Test
+    public void testBatchDispatch() throws Exception {
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        final Session session = setUpSession(sessionID);
+        final ThreadPerSessionEventHandlingStrategyUnderTest strategy = new ThreadPerSessionEventHandlingStrategyUnderTest(4);
+
+        for (int i = 0; i < 10; i++) {
+            final Message message = new Logon();
+            message.setInt(HeartBtInt.FIELD, 30);
+            strategy.onMessage(session, message);
+        }
+        assertEquals(10, strategy.getQueueSize(sessionID));
+        strategy.getMessageCount = 3;
+        final ThreadPerSessionEventHandlingStrategy.MessageDispatchingThread dispatcher = strategy
+                .getDispatcher(sessionID);
+        dispatcher.run();
+
+        assertEquals(0, dispatcher.getQueueSize());
+        assertEquals(10, dispatcher.getMessageCount());
+        assertEquals(3, dispatcher.getBatchCount());
+        assertEquals(4, dispatcher.getMaxBatchSize());
+        assertEquals(10, dispatcher.getMaxQueueSize());
+        assertNull(strategy.getDispatcher(sessionID));
+        assertEquals(0, strategy.getMaxBatchSize(sessionID));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBatchSize() throws Exception {
+        new ThreadPerSessionEventHandlingStrategy(null, SessionConnector.DEFAULT_QUEUE_CAPACITY, 0, false);
+    }
+
+    /**
+     * Messages are dispatched whether or not the JVM provides virtual threads.
+     */
+    @Test
+    public void testEventHandlingWithVirtualThreads() throws Exception {
+        final SessionID sessionID = new SessionID(FixVersions.BEGINSTRING_FIX40, "TW", "ISLD");
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Thread[] dispatchingThread = new Thread[1];
+
+        final UnitTestApplication application = new UnitTestApplication() {
+            @Override
+            public void fromAdmin(Message message, SessionID sessionId) throws FieldNotFound,
+                    IncorrectDataFormat, IncorrectTagValue, RejectLogon {
+                super.fromAdmin(message, sessionId);
+                dispatchingThread[0] = Thread.currentThread();
+                latch.countDown();
+            }
+        };
+
+        final Session session = setUpSession(sessionID, application);
+        strategy = new ThreadPerSessionEventHandlingStrategy(null,
+                SessionConnector.DEFAULT_QUEUE_CAPACITY, 8, true);
+
+        final Message message = new Logon();
+        message.getHeader().setString(SenderCompID.FIELD, "ISLD");
+        message.getHeader().setString(TargetCompID.FIELD, "TW");
+        message.getHeader().setString(SendingTime.FIELD,
+                UtcTimestampConverter.convert(new Timestamp(System.currentTimeMillis()), false, false));
+        message.getHeader().setInt(MsgSeqNum.FIELD, 1);
+        message.setInt(HeartBtInt.FIELD, 30);
+
+        strategy.onMessage(session, message);
+
+        if (!latch.await(5, TimeUnit.SECONDS)) {
+            fail("Timeout");
+        }
+        assertEquals(1, strategy.getMessageCount(sessionID));
+        assertEquals(1, strategy.getBatchCount(sessionID));
+        // the dispatcher refers to the thread it actually runs on
+        final ThreadPerSessionEventHandlingStrategy.MessageDispatchingThread dispatcher = strategy
+                .getDispatcher(sessionID);
+        assertSame(dispatchingThread[0], dispatcher.getThread());
+        assertTrue(dispatcher.getThread().isAlive());
+
+        strategy.stopDispatcherThreads();
+        assertNull(strategy.getDispatcher(sessionID));
+    }
+
     // verify the assumption that this always returns null
     @Test
     public void testVerifyGetConnectorAssumption() throws Exception {
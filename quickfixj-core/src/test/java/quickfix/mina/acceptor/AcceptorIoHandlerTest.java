@@ -20,8 +20,11 @@
 package quickfix.mina.acceptor;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.stub;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -33,6 +36,7 @@ import org.apache.mina.core.session.IoSession;
 import org.junit.Test;
 
 import quickfix.FixVersions;
+import quickfix.Message;
 import quickfix.Session;
 import quickfix.SessionFactoryTestSupport;
 import quickfix.SessionID;
@@ -166,4 +170,29 @@ public class AcceptorIoHandlerTest {
         verify(mockIoSession).getAttribute("QF_SESSION");
         verifyNoMoreInteractions(mockEventHandlingStrategy);
     }
+
+    @Test
+    public void testMessageReceivedWithBoundSession() throws Exception {
+        IoSession mockIoSession = mock(IoSession.class);
+
+        Session qfSession = SessionFactoryTestSupport.createSession();
+        stub(mockIoSession.getAttribute("QF_SESSION")).toReturn(qfSession);
+
+        EventHandlingStrategy mockEventHandlingStrategy = mock(EventHandlingStrategy.class);
+
+        // the header names a session that is not known to the acceptor
+        Logout logout = new Logout();
+        logout.getHeader().setString(SenderCompID.FIELD, "UNKNOWN");
+        logout.getHeader().setString(TargetCompID.FIELD, "UNKNOWN");
+
+        AcceptorIoHandler handler = new AcceptorIoHandler(
+                createSessionProvider(new HashMap<SessionID, Session>()),
+                new NetworkingOptions(new Properties()), mockEventHandlingStrategy);
+
+        handler.messageReceived(mockIoSession, logout.toString());
+
+        // once to find the session and once in processMessage, no session lookup
+        verify(mockIoSession, times(2)).getAttribute("QF_SESSION");
+        verify(mockEventHandlingStrategy).onMessage(eq(qfSession), any(Message.class));
+    }
 }
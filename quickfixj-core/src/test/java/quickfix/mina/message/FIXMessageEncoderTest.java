@@ -20,6 +20,7 @@
 package quickfix.mina.message;
 
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 
 import junit.framework.ComparisonFailure;
 import junit.framework.TestCase;
@@ -96,6 +97,50 @@ public class FIXMessageEncoderTest extends TestCase {
         assertEquals("wrong encoding", new String(bytes, CharsetSupport.getCharset()), news.toString());
     }
 
+    public void testEncodingLargeMessage() throws Exception {
+        News news = new News();
+        news.getHeader().setString(SenderCompID.FIELD, "TW");
+        news.getHeader().setString(TargetCompID.FIELD, "ISLD");
+        StringBuilder headline = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            headline.append("headline");
+        }
+        news.set(new Headline(headline.toString()));
+        FIXMessageEncoder encoder = new FIXMessageEncoder();
+        ProtocolEncoderOutputForTest encoderOut = new ProtocolEncoderOutputForTest();
+        encoder.encode(null, news, encoderOut);
+        byte[] bytes = new byte[encoderOut.buffer.remaining()];
+        encoderOut.buffer.get(bytes);
+
+        assertEquals(news.toString(), new String(bytes, CharsetSupport.getCharset()));
+    }
+
+    public void testEncodingBytes() throws Exception {
+        byte[] data = "8=FIX.4.4\0019=5\00135=0\00110=161\001".getBytes(CharsetSupport.getCharset());
+        FIXMessageEncoder encoder = new FIXMessageEncoder();
+        ProtocolEncoderOutputForTest encoderOut = new ProtocolEncoderOutputForTest();
+        encoder.encode(null, data, encoderOut);
+        byte[] bytes = new byte[encoderOut.buffer.remaining()];
+        encoderOut.buffer.get(bytes);
+        assertTrue(Arrays.equals(data, bytes));
+    }
+
+    public void testEncodingReusesBuffer() throws Exception {
+        News news = new News();
+        news.set(new Headline(new String(new char[4000]).replace('\0', 'x')));
+        FIXMessageEncoder encoder = new FIXMessageEncoder();
+        ProtocolEncoderOutputForTest encoderOut = new ProtocolEncoderOutputForTest();
+        encoder.encode(null, news, encoderOut);
+        assertEquals(news.toString().length(), encoderOut.buffer.remaining());
+
+        // a smaller message after an expansion gets an output buffer of its own size
+        News small = new News();
+        small.set(new Headline("small"));
+        encoder.encode(null, small, encoderOut);
+        assertEquals(small.toString().length(), encoderOut.buffer.remaining());
+        assertEquals(small.toString().length(), encoderOut.buffer.capacity());
+    }
+
     public void testEncodingBadType() throws Exception {
         FIXMessageEncoder encoder = new FIXMessageEncoder();
         try {